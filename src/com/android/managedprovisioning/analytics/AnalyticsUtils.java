@@ -172,6 +172,40 @@ public class AnalyticsUtils {
         }
     }
 
+    /**
+     * Returns the name of a {@link MetricsEvent} time category, or its value if it is unknown.
+     */
+    static String getCategoryName(int metricsEvent) {
+        switch (metricsEvent) {
+            case PROVISIONING_COPY_ACCOUNT_TASK_MS:
+                return "PROVISIONING_COPY_ACCOUNT_TASK_MS";
+            case PROVISIONING_CREATE_PROFILE_TASK_MS:
+                return "PROVISIONING_CREATE_PROFILE_TASK_MS";
+            case PROVISIONING_DOWNLOAD_PACKAGE_TASK_MS:
+                return "PROVISIONING_DOWNLOAD_PACKAGE_TASK_MS";
+            case PROVISIONING_ENCRYPT_DEVICE_ACTIVITY_TIME_MS:
+                return "PROVISIONING_ENCRYPT_DEVICE_ACTIVITY_TIME_MS";
+            case PROVISIONING_INSTALL_PACKAGE_TASK_MS:
+                return "PROVISIONING_INSTALL_PACKAGE_TASK_MS";
+            case PROVISIONING_PREPROVISIONING_ACTIVITY_TIME_MS:
+                return "PROVISIONING_PREPROVISIONING_ACTIVITY_TIME_MS";
+            case PROVISIONING_PROVISIONING_ACTIVITY_TIME_MS:
+                return "PROVISIONING_PROVISIONING_ACTIVITY_TIME_MS";
+            case PROVISIONING_START_PROFILE_TASK_MS:
+                return "PROVISIONING_START_PROFILE_TASK_MS";
+            case PROVISIONING_WEB_ACTIVITY_TIME_MS:
+                return "PROVISIONING_WEB_ACTIVITY_TIME_MS";
+            case PROVISIONING_TERMS_ACTIVITY_TIME_MS:
+                return "PROVISIONING_TERMS_ACTIVITY_TIME_MS";
+            case PROVISIONING_TOTAL_TASK_TIME_MS:
+                return "PROVISIONING_TOTAL_TASK_TIME_MS";
+            case VIEW_UNKNOWN:
+                return "VIEW_UNKNOWN";
+            default:
+                return Integer.toString(metricsEvent);
+        }
+    }
+
     /**
      * Returns the time passed since provisioning started, in milliseconds.
      * Returns <code>-1</code> if the provisioning start time was not specified via
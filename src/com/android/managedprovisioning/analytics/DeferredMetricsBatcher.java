@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import static com.android.internal.util.Preconditions.checkNotNull;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.DevicePolicyProtos.DevicePolicyEvent;
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single writer of a deferred metrics file.
+ *
+ * <p>Events are queued without locking and written in batches from a background thread, through
+ * a buffered stream which is kept open between batches. A batch is written once
+ * {@link #MAX_BATCH_SIZE} events are queued or {@link #MAX_BATCH_DELAY_MILLIS} after the first
+ * queued event, whichever comes first, and on {@link #flush()}.
+ *
+ * <p>Events are framed as described in {@link DeferredMetricsFile}, and the file is compacted
+ * when a batch would take it over its size cap. Batches are written while holding the
+ * {@link DeferredMetricsFile#getLock lock} of the file, so that they don't interleave with its
+ * rotation by the reader.
+ */
+class DeferredMetricsBatcher {
+
+    @VisibleForTesting
+    static final int MAX_BATCH_SIZE = 32;
+    @VisibleForTesting
+    static final long MAX_BATCH_DELAY_MILLIS = 1000;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final File mFile;
+    private final ScheduledExecutorService mExecutor;
+    private final long mMaxFileBytes;
+    private final ConcurrentLinkedQueue<DevicePolicyEvent> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mQueueSize = new AtomicInteger();
+    private final AtomicBoolean mBatchScheduled = new AtomicBoolean();
+    private final Object mLock;
+
+    // Only accessed while holding mLock
+    private OutputStream mOutputStream;
+
+    DeferredMetricsBatcher(File file, ScheduledExecutorService executor) {
+        this(file, executor, DeferredMetricsFile.MAX_FILE_BYTES);
+    }
+
+    @VisibleForTesting
+    DeferredMetricsBatcher(File file, ScheduledExecutorService executor, long maxFileBytes) {
+        mFile = checkNotNull(file);
+        mExecutor = checkNotNull(executor);
+        mMaxFileBytes = maxFileBytes;
+        mLock = DeferredMetricsFile.getLock(file);
+    }
+
+    /**
+     * Queues {@code events} to be appended to the file.
+     */
+    void enqueue(List<DevicePolicyEvent> events) {
+        mQueue.addAll(events);
+        if (mQueueSize.addAndGet(events.size()) >= MAX_BATCH_SIZE) {
+            mExecutor.execute(this::writeBatch);
+        } else if (mBatchScheduled.compareAndSet(false, true)) {
+            mExecutor.schedule(this::writeBatch, MAX_BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes every queued event and closes the file on the writer thread, so that the caller
+     * doesn't wait for the disk. Called at the end of a provisioning session, before the file is
+     * handed to {@link DeferredMetricsReader}.
+     *
+     * @return a {@link Future} which completes once the events are on disk.
+     */
+    Future<?> flush() {
+        return mExecutor.submit(this::writeAndClose);
+    }
+
+    private void writeAndClose() {
+        synchronized (mLock) {
+            writeBatch();
+            closeOutputStream();
+        }
+    }
+
+    private void writeBatch() {
+        synchronized (mLock) {
+            writeBatchLocked();
+        }
+    }
+
+    private void writeBatchLocked() {
+        mBatchScheduled.set(false);
+        final List<byte[]> frames = new ArrayList<>();
+        long batchBytes = 0;
+        DevicePolicyEvent event;
+        while ((event = mQueue.poll()) != null) {
+            mQueueSize.decrementAndGet();
+            final byte[] frame = DeferredMetricsFile.toFrame(event);
+            frames.add(frame);
+            batchBytes += frame.length;
+        }
+        if (frames.isEmpty()) {
+            return;
+        }
+        while (batchBytes > mMaxFileBytes) {
+            batchBytes -= frames.remove(0).length;
+        }
+        if (mFile.length() + batchBytes > mMaxFileBytes) {
+            closeOutputStream();
+            DeferredMetricsFile.compact(mFile, mMaxFileBytes, batchBytes);
+        }
+        try {
+            final OutputStream outputStream = getOutputStream();
+            for (byte[] frame : frames) {
+                outputStream.write(frame);
+            }
+            outputStream.flush();
+        } catch (IOException e) {
+            ProvisionLogger.loge("Failed to write DevicePolicyEvents to " + mFile, e);
+            closeOutputStream();
+        }
+    }
+
+    private OutputStream getOutputStream() throws IOException {
+        if (mOutputStream != null && !mFile.exists()) {
+            // The file was moved aside to be replayed, start a new one
+            closeOutputStream();
+        }
+        if (mOutputStream == null) {
+            mOutputStream = new BufferedOutputStream(
+                    new FileOutputStream(mFile, /* append= */ true), BUFFER_SIZE);
+        }
+        return mOutputStream;
+    }
+
+    private void closeOutputStream() {
+        if (mOutputStream == null) {
+            return;
+        }
+        try {
+            mOutputStream.close();
+        } catch (IOException e) {
+            ProvisionLogger.loge("Failed to close OutputStream.", e);
+        }
+        mOutputStream = null;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import android.annotation.Nullable;
+import android.util.AtomicFile;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.DevicePolicyProtos.DevicePolicyEvent;
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk format of the deferred metrics file.
+ *
+ * <p>Every {@link DevicePolicyEvent} is stored in its own frame: a magic number, the length of
+ * the event, the CRC32 of the event, then the event itself. A frame which is torn or corrupted is
+ * skipped by scanning for the next magic number, so it doesn't take the rest of the file with it.
+ *
+ * <p>The file is capped at {@link #MAX_FILE_BYTES}. When a batch of events wouldn't fit,
+ * {@link #compact} rewrites the file without the events that were already replayed, without the
+ * corrupt frames and, if that is not enough, without the oldest events.
+ *
+ * <p>The file is never read in place. {@link #rotateForReplay} moves it aside first, so that the
+ * reader owns the events it replays while new events go to a fresh file. The writer, compaction
+ * and rotation of a file all hold its {@link #getLock lock}.
+ */
+final class DeferredMetricsFile {
+
+    @VisibleForTesting
+    static final long MAX_FILE_BYTES = 256 * 1024;
+
+    private static final int FRAME_MAGIC = 0x4d504576;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int MAX_EVENT_BYTES = 64 * 1024;
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String REPLAY_SUFFIX = ".replay";
+
+    private static final Map<String, Object> sLocks = new HashMap<>();
+
+    private DeferredMetricsFile() {}
+
+    /**
+     * Returns the frame holding {@code event}.
+     */
+    static byte[] toFrame(DevicePolicyEvent event) {
+        final byte[] payload = event.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(FRAME_MAGIC)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Reads the frames of a deferred metrics file.
+     *
+     * <p>The file is read in memory in one go, which its size cap allows.
+     */
+    static class Reader {
+        private final ByteBuffer mBuffer;
+        private int mCorruptFrameCount;
+
+        /**
+         * @param offset where to start reading, as returned by {@link #getPosition()}.
+         */
+        Reader(File file, long offset) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                final long length = in.length();
+                final byte[] data = new byte[(int) Math.min(length, Integer.MAX_VALUE)];
+                in.readFully(data);
+                mBuffer = ByteBuffer.wrap(data);
+            }
+            mBuffer.position((int) Math.max(0, Math.min(offset, mBuffer.limit())));
+        }
+
+        /**
+         * Returns the next valid event, or {@code null} at the end of the file.
+         */
+        @Nullable
+        DevicePolicyEvent next() {
+            while (mBuffer.remaining() >= HEADER_BYTES) {
+                final int start = mBuffer.position();
+                final int magic = mBuffer.getInt();
+                final int length = mBuffer.getInt();
+                final int crc = mBuffer.getInt();
+                if (magic == FRAME_MAGIC
+                        && length >= 0
+                        && length <= MAX_EVENT_BYTES
+                        && length <= mBuffer.remaining()) {
+                    final byte[] payload = new byte[length];
+                    mBuffer.get(payload);
+                    final CRC32 actualCrc = new CRC32();
+                    actualCrc.update(payload);
+                    if ((int) actualCrc.getValue() == crc) {
+                        try {
+                            return DevicePolicyEvent.parseFrom(payload);
+                        } catch (InvalidProtocolBufferException e) {
+                            // Fall through and skip the frame
+                        }
+                    }
+                }
+                mCorruptFrameCount++;
+                resync(start + 1);
+            }
+            mBuffer.position(mBuffer.limit());
+            return null;
+        }
+
+        /**
+         * Returns the position right after the last event returned by {@link #next()}.
+         */
+        long getPosition() {
+            return mBuffer.position();
+        }
+
+        int getCorruptFrameCount() {
+            return mCorruptFrameCount;
+        }
+
+        /**
+         * Moves to the first magic number found from {@code from} onwards.
+         */
+        private void resync(int from) {
+            for (int i = from; i + Integer.BYTES <= mBuffer.limit(); i++) {
+                if (mBuffer.getInt(i) == FRAME_MAGIC) {
+                    mBuffer.position(i);
+                    return;
+                }
+            }
+            mBuffer.position(mBuffer.limit());
+        }
+    }
+
+    /**
+     * Rewrites {@code file} so that {@code incomingBytes} more can be appended within
+     * {@code maxBytes}. Events before the replay checkpoint and corrupt frames are dropped first,
+     * then the oldest events. The checkpoint is reset, since the offsets change.
+     */
+    static void compact(File file, long maxBytes, long incomingBytes) {
+        final List<byte[]> frames = new ArrayList<>();
+        long totalBytes = 0;
+        try {
+            final Reader reader = new Reader(file, readCheckpoint(file));
+            DevicePolicyEvent event;
+            while ((event = reader.next()) != null) {
+                final byte[] frame = toFrame(event);
+                frames.add(frame);
+                totalBytes += frame.length;
+            }
+            if (reader.getCorruptFrameCount() > 0) {
+                ProvisionLogger.logw("Dropping " + reader.getCorruptFrameCount()
+                        + " corrupt deferred metrics");
+            }
+        } catch (FileNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            // Rewriting the file from the frames read so far would drop the unread events
+            ProvisionLogger.loge("Could not read deferred metrics for compaction", e);
+            return;
+        }
+        // Leave some room, so that the file isn't compacted again on the next batch
+        final long targetBytes = Math.min(maxBytes / 2, maxBytes - incomingBytes);
+        int firstKept = 0;
+        while (firstKept < frames.size() && totalBytes > targetBytes) {
+            totalBytes -= frames.get(firstKept).length;
+            firstKept++;
+        }
+        if (firstKept > 0) {
+            ProvisionLogger.logw("Evicting " + firstKept + " oldest deferred metrics");
+        }
+
+        final AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream stream = null;
+        try {
+            stream = atomicFile.startWrite();
+            for (int i = firstKept; i < frames.size(); i++) {
+                stream.write(frames.get(i));
+            }
+            atomicFile.finishWrite(stream);
+        } catch (IOException e) {
+            ProvisionLogger.loge("Could not compact deferred metrics", e);
+            if (stream != null) {
+                atomicFile.failWrite(stream);
+            }
+        }
+        getCheckpointFile(file).delete();
+    }
+
+    /**
+     * Returns the lock guarding the layout of {@code file} and of its checkpoint.
+     */
+    static Object getLock(File file) {
+        synchronized (sLocks) {
+            return sLocks.computeIfAbsent(file.getAbsolutePath(), path -> new Object());
+        }
+    }
+
+    /**
+     * Returns whether {@code file} has events which haven't been replayed, either in the file
+     * itself or in a replay which didn't finish.
+     */
+    static boolean hasEventsToReplay(File file) {
+        return file.exists() || getReplayFile(file).exists();
+    }
+
+    /**
+     * Returns the file to replay the events of {@code file} from, or {@code null} if there are
+     * none.
+     *
+     * <p>If a previous replay didn't finish, its file is returned so that it resumes from its
+     * checkpoint. Otherwise {@code file} and its checkpoint are moved to the replay file, and the
+     * writer starts a new {@code file} on its next batch. The replay file can be deleted once it
+     * has been read, without losing events written since.
+     */
+    @Nullable
+    static File rotateForReplay(File file) {
+        final File replayFile = getReplayFile(file);
+        synchronized (getLock(file)) {
+            if (replayFile.exists()) {
+                return replayFile;
+            }
+            if (!file.exists()) {
+                return null;
+            }
+            final long checkpoint = readCheckpoint(file);
+            if (!file.renameTo(replayFile)) {
+                ProvisionLogger.loge("Could not move " + file + " to " + replayFile);
+                return null;
+            }
+            deleteCheckpoint(file);
+            if (checkpoint > 0) {
+                writeCheckpoint(replayFile, checkpoint);
+            }
+        }
+        return replayFile;
+    }
+
+    @VisibleForTesting
+    static File getReplayFile(File file) {
+        return new File(file.getPath() + REPLAY_SUFFIX);
+    }
+
+    /**
+     * Returns the offset up to which {@code file} has been replayed.
+     */
+    static long readCheckpoint(File file) {
+        try (DataInputStream in = new DataInputStream(getCheckpointFile(file).openRead())) {
+            final long checkpoint = in.readLong();
+            if (checkpoint >= 0 && checkpoint <= file.length()) {
+                return checkpoint;
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing has been replayed yet
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not read deferred metrics checkpoint", e);
+        }
+        return 0;
+    }
+
+    static void writeCheckpoint(File file, long checkpoint) {
+        final AtomicFile checkpointFile = getCheckpointFile(file);
+        FileOutputStream stream = null;
+        try {
+            stream = checkpointFile.startWrite();
+            final DataOutputStream out = new DataOutputStream(stream);
+            out.writeLong(checkpoint);
+            out.flush();
+            checkpointFile.finishWrite(stream);
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not write deferred metrics checkpoint", e);
+            if (stream != null) {
+                checkpointFile.failWrite(stream);
+            }
+        }
+    }
+
+    static void deleteCheckpoint(File file) {
+        getCheckpointFile(file).delete();
+    }
+
+    private static AtomicFile getCheckpointFile(File file) {
+        return new AtomicFile(new File(file.getPath() + CHECKPOINT_SUFFIX));
+    }
+}
@@ -51,6 +51,9 @@ public class DeferredMetricsReader {
     }
 
     public void scheduleDumpMetrics(Context context) {
+        // The session has ended, make sure all of its events are on disk. The flush runs on the
+        // writer thread, well before the job below can start.
+        DeferredMetricsWriter.flush(mFile);
         final JobInfo jobInfo = new JobInfo.Builder(JOB_ID, PROCESS_METRICS_SERVICE_COMPONENT)
                 .setExtras(PersistableBundle.forPair(EXTRA_FILE_PATH, mFile.getAbsolutePath()))
                 .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
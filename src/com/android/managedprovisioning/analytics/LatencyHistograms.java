@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import android.annotation.Nullable;
+import android.content.Context;
+import android.util.AtomicFile;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent latency histograms of the intervals measured by {@link TimeLogger}, keyed by
+ * {@link TimeLogger.TimeCategory} and, for provisioning tasks, by task class.
+ *
+ * <p>Every histogram uses {@link #BUCKET_COUNT} log-linear buckets: values under
+ * {@link #SUB_BUCKETS} milliseconds are counted exactly, and every power of two above that is
+ * split into {@link #SUB_BUCKETS} buckets, which bounds the error of a percentile to about 6%.
+ * To reflect recent sessions, a histogram keeps two windows of up to {@link #WINDOW_SIZE} samples
+ * and drops the older one when the newer one is full, so percentiles cover between
+ * {@link #WINDOW_SIZE} and twice as many of the latest samples.
+ *
+ * <p>Samples are recorded on a background executor, which reads the histograms from a file
+ * before the first sample, so callers never wait for the disk. The histograms are saved after
+ * new samples, with one write for all the samples recorded while the previous write was pending.
+ * They can be read through {@link ProvisioningDumpService}.
+ */
+public class LatencyHistograms {
+
+    @VisibleForTesting
+    static final int SUB_BUCKET_BITS = 4;
+    @VisibleForTesting
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Values are clamped below 2^24 ms, which is more than 4 hours. */
+    @VisibleForTesting
+    static final int MAX_VALUE_BITS = 24;
+    @VisibleForTesting
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    @VisibleForTesting
+    static final int WINDOW_SIZE = 500;
+    @VisibleForTesting
+    static final int MAX_HISTOGRAMS = 64;
+
+    private static final String HISTOGRAMS_FILE = "latency_histograms";
+    private static final int VERSION = 1;
+    private static final double[] DUMPED_PERCENTILES = {50, 90, 95, 99};
+
+    private static LatencyHistograms sInstance;
+
+    private final Context mContext;
+    private final Executor mExecutor;
+    private final Map<String, Histogram> mHistograms = new LinkedHashMap<>();
+    private AtomicFile mFile;
+    private boolean mLoaded;
+    private boolean mWritePending;
+
+    public static synchronized LatencyHistograms getInstance(Context context) {
+        if (sInstance == null) {
+            Context applicationContext = context.getApplicationContext();
+            sInstance = new LatencyHistograms(
+                    applicationContext == null ? context : applicationContext,
+                    Executors.newSingleThreadExecutor());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    LatencyHistograms(Context context, Executor executor) {
+        mContext = context;
+        mExecutor = executor;
+    }
+
+    /**
+     * Adds a sample, asynchronously.
+     *
+     * @param category the {@link TimeLogger.TimeCategory} of the interval.
+     * @param source the task class which measured the interval, or {@code null}.
+     * @param millis the length of the interval.
+     */
+    public void record(int category, @Nullable String source, long millis) {
+        mExecutor.execute(() -> recordSample(category, source, millis));
+    }
+
+    /**
+     * Returns the given percentile of the samples of a histogram, or -1 if it has no samples.
+     */
+    public synchronized long getPercentile(int category, @Nullable String source,
+            double percentile) {
+        loadLocked();
+        final Histogram histogram = mHistograms.get(getKey(category, source));
+        return histogram == null ? -1 : histogram.getPercentile(percentile);
+    }
+
+    /**
+     * Prints the sample count and percentiles of every histogram.
+     */
+    public synchronized void dump(PrintWriter writer) {
+        loadLocked();
+        writer.println("Latency histograms (ms):");
+        for (Map.Entry<String, Histogram> entry : mHistograms.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            final StringBuilder line = new StringBuilder("  ")
+                    .append(getReadableKey(entry.getKey()))
+                    .append(": count=")
+                    .append(histogram.getCount());
+            for (double percentile : DUMPED_PERCENTILES) {
+                line.append(" p").append((int) percentile).append('=')
+                        .append(histogram.getPercentile(percentile));
+            }
+            line.append(" max=").append(histogram.getPercentile(100));
+            writer.println(line);
+        }
+    }
+
+    @VisibleForTesting
+    static int getBucketIndex(long millis) {
+        final long value = Math.max(0, Math.min(millis, (1L << MAX_VALUE_BITS) - 1));
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = highestBit - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value counted in the bucket at {@code index}.
+     */
+    @VisibleForTesting
+    static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    private static String getKey(int category, @Nullable String source) {
+        return source == null ? Integer.toString(category) : category + "/" + source;
+    }
+
+    /**
+     * Returns a key with the name of its category instead of its value.
+     */
+    private static String getReadableKey(String key) {
+        final int separator = key.indexOf('/');
+        final String category = separator < 0 ? key : key.substring(0, separator);
+        try {
+            return AnalyticsUtils.getCategoryName(Integer.parseInt(category))
+                    + (separator < 0 ? "" : key.substring(separator));
+        } catch (NumberFormatException e) {
+            return key;
+        }
+    }
+
+    /**
+     * Adds a sample on the executor, and schedules a write if none is pending.
+     */
+    private void recordSample(int category, @Nullable String source, long millis) {
+        synchronized (this) {
+            loadLocked();
+            final String key = getKey(category, source);
+            Histogram histogram = mHistograms.get(key);
+            if (histogram == null) {
+                if (mHistograms.size() >= MAX_HISTOGRAMS) {
+                    ProvisionLogger.logw("Too many latency histograms, ignoring " + key);
+                    return;
+                }
+                histogram = new Histogram();
+                mHistograms.put(key, histogram);
+            }
+            histogram.record(millis);
+            if (mFile == null || mWritePending) {
+                return;
+            }
+            mWritePending = true;
+        }
+        // Runs after the samples already queued, which are saved by the same write
+        mExecutor.execute(this::writePending);
+    }
+
+    private void loadLocked() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        final File filesDir = mContext.getFilesDir();
+        if (filesDir == null) {
+            return;
+        }
+        mFile = new AtomicFile(new File(filesDir, HISTOGRAMS_FILE));
+        try (DataInputStream in = new DataInputStream(mFile.openRead())) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            final int histogramCount = in.readInt();
+            for (int i = 0; i < histogramCount; i++) {
+                final String key = in.readUTF();
+                final Histogram histogram = new Histogram();
+                histogram.readFrom(in);
+                mHistograms.put(key, histogram);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing recorded yet
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not read latency histograms", e);
+            mHistograms.clear();
+        }
+    }
+
+    private byte[] serializeLocked() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(VERSION);
+            out.writeInt(mHistograms.size());
+            for (Map.Entry<String, Histogram> entry : mHistograms.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writePending() {
+        final byte[] snapshot;
+        synchronized (this) {
+            mWritePending = false;
+            snapshot = serializeLocked();
+        }
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            stream.write(snapshot);
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not write latency histograms", e);
+            if (stream != null) {
+                mFile.failWrite(stream);
+            }
+        }
+    }
+
+    /**
+     * Fixed-size histogram over the two latest windows of samples.
+     */
+    private static final class Histogram {
+        private int[] mCurrent = new int[BUCKET_COUNT];
+        private int[] mPrevious = new int[BUCKET_COUNT];
+        private int mCurrentCount;
+        private int mPreviousCount;
+
+        void record(long millis) {
+            if (mCurrentCount == WINDOW_SIZE) {
+                final int[] previous = mPrevious;
+                mPrevious = mCurrent;
+                mPreviousCount = mCurrentCount;
+                mCurrent = previous;
+                Arrays.fill(mCurrent, 0);
+                mCurrentCount = 0;
+            }
+            mCurrent[getBucketIndex(millis)]++;
+            mCurrentCount++;
+        }
+
+        int getCount() {
+            return mCurrentCount + mPreviousCount;
+        }
+
+        long getPercentile(double percentile) {
+            final int count = getCount();
+            if (count == 0) {
+                return -1;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mCurrent[i] + mPrevious[i];
+                if (seen >= rank) {
+                    return getBucketUpperBound(i);
+                }
+            }
+            return getBucketUpperBound(BUCKET_COUNT - 1);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            writeWindow(out, mCurrent, mCurrentCount);
+            writeWindow(out, mPrevious, mPreviousCount);
+        }
+
+        void readFrom(DataInputStream in) throws IOException {
+            mCurrentCount = readWindow(in, mCurrent);
+            mPreviousCount = readWindow(in, mPrevious);
+        }
+
+        /**
+         * Writes the non-empty buckets of a window.
+         */
+        private static void writeWindow(DataOutputStream out, int[] window, int count)
+                throws IOException {
+            int nonEmptyBuckets = 0;
+            for (int bucket : window) {
+                if (bucket > 0) {
+                    nonEmptyBuckets++;
+                }
+            }
+            out.writeInt(count);
+            out.writeInt(nonEmptyBuckets);
+            for (int i = 0; i < window.length; i++) {
+                if (window[i] > 0) {
+                    out.writeShort(i);
+                    out.writeInt(window[i]);
+                }
+            }
+        }
+
+        private static int readWindow(DataInputStream in, int[] window) throws IOException {
+            final int count = in.readInt();
+            final int nonEmptyBuckets = in.readInt();
+            for (int i = 0; i < nonEmptyBuckets; i++) {
+                final int index = in.readShort();
+                if (index < 0 || index >= window.length) {
+                    throw new IOException("Invalid bucket " + index);
+                }
+                window[index] = in.readInt();
+            }
+            return count;
+        }
+    }
+}
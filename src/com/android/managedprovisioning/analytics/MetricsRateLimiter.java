@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import android.os.SystemClock;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+/**
+ * Token bucket which paces the metrics replayed to statsd.
+ *
+ * <p>statsd drops events when too many arrive at once. The bucket holds up to {@code burst}
+ * tokens and refills at {@code eventsPerSecond}, so short bursts go through straight away while
+ * the sustained rate stays within what statsd can take.
+ */
+class MetricsRateLimiter {
+
+    /**
+     * Sustained rate, matching the 10 ms that used to be waited between two events.
+     */
+    @VisibleForTesting
+    static final int DEFAULT_EVENTS_PER_SECOND = 100;
+    @VisibleForTesting
+    static final int DEFAULT_BURST = 20;
+
+    private final double mEventsPerMilli;
+    private final int mBurst;
+    private double mTokens;
+    private long mLastRefillMillis = -1;
+
+    MetricsRateLimiter() {
+        this(DEFAULT_EVENTS_PER_SECOND, DEFAULT_BURST);
+    }
+
+    @VisibleForTesting
+    MetricsRateLimiter(int eventsPerSecond, int burst) {
+        mEventsPerMilli = eventsPerSecond / 1000.0;
+        mBurst = burst;
+        mTokens = burst;
+    }
+
+    int getBurst() {
+        return mBurst;
+    }
+
+    /**
+     * Waits until {@code events} events can be written.
+     *
+     * @param events the number of events, at most {@link #getBurst()}.
+     * @return {@code false} if the thread was interrupted while waiting.
+     */
+    boolean acquire(int events) {
+        if (events > mBurst) {
+            throw new IllegalArgumentException(
+                    "Cannot acquire " + events + " events, burst is " + mBurst);
+        }
+        refill();
+        while (mTokens < events) {
+            long waitMillis = (long) Math.ceil((events - mTokens) / mEventsPerMilli);
+            try {
+                sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            refill();
+        }
+        mTokens -= events;
+        return true;
+    }
+
+    private void refill() {
+        long now = now();
+        if (mLastRefillMillis >= 0) {
+            mTokens = Math.min(mBurst, mTokens + (now - mLastRefillMillis) * mEventsPerMilli);
+        }
+        mLastRefillMillis = now;
+    }
+
+    @VisibleForTesting
+    long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @VisibleForTesting
+    void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+}
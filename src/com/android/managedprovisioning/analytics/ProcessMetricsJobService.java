@@ -28,16 +28,21 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.DevicePolicyProtos.DevicePolicyEvent;
 import com.android.managedprovisioning.common.ProvisionLogger;
 
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A {@link JobService} that reads the logs from the {@link InputStream} written to by
  * {@link DeferredMetricsWriter} and writes them using another {@link MetricsWriter}.
  *
+ * <p>The file is read with {@link DeferredMetricsFile.Reader}, which skips corrupt events.
+ * Events are replayed in batches paced by a {@link MetricsRateLimiter}. The offset reached in
+ * the file is saved after every batch, so a job which is stopped part of the way through is
+ * rescheduled and resumes from there.
+ *
  * @see DeferredMetricsWriter
  */
 public class ProcessMetricsJobService extends JobService {
@@ -45,10 +50,18 @@ public class ProcessMetricsJobService extends JobService {
     static String EXTRA_FILE_PATH = "extra_file_path";
 
     private final MetricsWriter mMetricsWriter;
+    private final MetricsRateLimiter mRateLimiter;
+    private ReadDeferredMetricsAsyncTask mTask;
 
     @VisibleForTesting
     ProcessMetricsJobService(MetricsWriter metricsWriter) {
+        this(metricsWriter, new MetricsRateLimiter());
+    }
+
+    @VisibleForTesting
+    ProcessMetricsJobService(MetricsWriter metricsWriter, MetricsRateLimiter rateLimiter) {
         mMetricsWriter = metricsWriter;
+        mRateLimiter = checkNotNull(rateLimiter);
     }
 
     public ProcessMetricsJobService() {
@@ -62,7 +75,8 @@ public class ProcessMetricsJobService extends JobService {
             return false;
         }
         final File metrics = new File(extras.getString(EXTRA_FILE_PATH));
-        if (!metrics.exists()) {
+        if (!DeferredMetricsFile.hasEventsToReplay(metrics)) {
+            DeferredMetricsFile.deleteCheckpoint(metrics);
             return false;
         }
         executeReadDeferredMetrics(params, metrics);
@@ -72,25 +86,35 @@ public class ProcessMetricsJobService extends JobService {
     @VisibleForTesting
     void executeReadDeferredMetrics(JobParameters params,
             File metricsFile) {
-        new ReadDeferredMetricsAsyncTask(params, metricsFile, mMetricsWriter).execute();
+        mTask = new ReadDeferredMetricsAsyncTask(params, metricsFile, mMetricsWriter);
+        mTask.execute();
     }
 
     @Override
     public boolean onStopJob(JobParameters params) {
-        return false;
+        if (mTask == null) {
+            return false;
+        }
+        // The replay stops after the current batch, and resumes from its checkpoint
+        mTask.stop();
+        mTask = null;
+        return true;
     }
 
     /**
      * An {@link AsyncTask} which reads the logs from the {@link File} specified in the constructor
      * and writes them to the specified {@link MetricsWriter}.
      *
-     * <p>The {@link File} will be deleted after they are written to the {@link MetricsWriter}.
+     * <p>The events are first moved aside with {@link DeferredMetricsFile#rotateForReplay}, so
+     * that events written meanwhile aren't affected. The moved events are deleted after they are
+     * all written to the {@link MetricsWriter}. If they can't be read, they are kept and the job is
+     * rescheduled.
      */
-    private class ReadDeferredMetricsAsyncTask extends AsyncTask<Void, Void, Void> {
-        private static final int METRICS_INTERVAL_MILLIS = 10;
+    private class ReadDeferredMetricsAsyncTask extends AsyncTask<Void, Void, Boolean> {
         private final MetricsWriter mMetricsWriter;
         private final File mFile;
         private final JobParameters mJobParameters;
+        private volatile boolean mStopped;
 
         ReadDeferredMetricsAsyncTask(JobParameters params,
                 File file,
@@ -100,39 +124,62 @@ public class ProcessMetricsJobService extends JobService {
             mJobParameters = params;
         }
 
+        void stop() {
+            mStopped = true;
+        }
+
+        /**
+         * Returns whether the job should be rescheduled.
+         */
         @Override
-        protected Void doInBackground(Void... voids) {
-            try (InputStream inputStream =  new FileInputStream(mFile)) {
-                DevicePolicyEvent event;
-                while ((event = DevicePolicyEvent.parseDelimitedFrom(inputStream)) != null) {
-                    delayProcessMetric();
-                    mMetricsWriter.write(devicePolicyEventToLogger(event));
+        protected Boolean doInBackground(Void... voids) {
+            final File replayFile = DeferredMetricsFile.rotateForReplay(mFile);
+            if (replayFile == null) {
+                return false;
+            }
+            try {
+                final DeferredMetricsFile.Reader reader = new DeferredMetricsFile.Reader(
+                        replayFile, DeferredMetricsFile.readCheckpoint(replayFile));
+                final List<DevicePolicyEventLogger> batch = new ArrayList<>();
+                boolean endOfFile = false;
+                while (!endOfFile) {
+                    if (mStopped || !mRateLimiter.acquire(mRateLimiter.getBurst())) {
+                        ProvisionLogger.logi("Replay of deferred metrics stopped at "
+                                + reader.getPosition());
+                        return true;
+                    }
+                    batch.clear();
+                    while (batch.size() < mRateLimiter.getBurst()) {
+                        final DevicePolicyEvent event = reader.next();
+                        if (event == null) {
+                            endOfFile = true;
+                            break;
+                        }
+                        batch.add(devicePolicyEventToLogger(event));
+                    }
+                    if (!batch.isEmpty()) {
+                        mMetricsWriter.write(batch.toArray(new DevicePolicyEventLogger[0]));
+                        DeferredMetricsFile.writeCheckpoint(replayFile, reader.getPosition());
+                    }
+                }
+                if (reader.getCorruptFrameCount() > 0) {
+                    ProvisionLogger.logw("Skipped " + reader.getCorruptFrameCount()
+                            + " corrupt deferred metrics");
                 }
             } catch (IOException e) {
-                ProvisionLogger.loge(
-                        "Could not parse DevicePolicyEvent while reading from stream.", e);
-            } finally {
-                mFile.delete();
+                // Keep the file and its checkpoint, the unsent events are replayed on retry
+                ProvisionLogger.loge("Could not read deferred metrics.", e);
+                return true;
             }
-            return null;
+            replayFile.delete();
+            DeferredMetricsFile.deleteCheckpoint(replayFile);
+            return false;
         }
 
         @Override
-        protected void onPostExecute(Void aVoid) {
-            jobFinished(mJobParameters, false);
-        }
-
-        /**
-         * Waits for {@link #METRICS_INTERVAL_MILLIS}.
-         * <p>statsd cannot handle too many metrics at once, so we must wait between each
-         * {@link MetricsWriter#write(DevicePolicyEventLogger...)} call.
-         */
-        private void delayProcessMetric() {
-            try {
-                Thread.sleep(METRICS_INTERVAL_MILLIS);
-            } catch (InterruptedException e) {
-                ProvisionLogger.loge(
-                        "Thread interrupted while waiting to log metric.", e);
+        protected void onPostExecute(Boolean needsReschedule) {
+            if (!mStopped) {
+                jobFinished(mJobParameters, needsReschedule);
             }
         }
 
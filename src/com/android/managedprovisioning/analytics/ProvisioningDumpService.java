@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.IBinder;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/**
+ * Service which only exists to expose provisioning diagnostics through dumpsys: the
+ * {@link LatencyHistograms} and the last {@link ProvisioningTracer} trace.
+ *
+ * <p>dumpsys only reaches running services, so the service has to be started first with
+ * {@code adb shell am start-service
+ * com.android.managedprovisioning/.analytics.ProvisioningDumpService}, then dumped with
+ * {@code adb shell dumpsys activity service
+ * com.android.managedprovisioning/.analytics.ProvisioningDumpService}.
+ */
+public class ProvisioningDumpService extends Service {
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        LatencyHistograms.getInstance(this).dump(writer);
+        ProvisioningTracer.getInstance().dump(writer, args);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import android.annotation.Nullable;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Base64;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.DevicePolicyProtos.ProvisioningTrace;
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Records nested {@link TraceSpan spans} over a provisioning session: the session, then the
+ * controller, then its tasks, then the steps of the tasks.
+ *
+ * <p>Every span is also emitted as an {@link Trace} section, so it shows up in system traces on
+ * the thread which ran it. The tree of spans of the last session is kept in memory, and is
+ * exported as a {@link ProvisioningTrace}. A session records at most {@link #MAX_SPANS} spans;
+ * the spans after that are only emitted to system traces. The last trace can be read through
+ * {@link ProvisioningDumpService}.
+ */
+public class ProvisioningTracer {
+
+    @VisibleForTesting
+    static final int MAX_SPANS = 512;
+
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private static final ProvisioningTracer sInstance = new ProvisioningTracer();
+
+    private final ThreadLocal<Deque<TraceSpan>> mOpenSections =
+            ThreadLocal.withInitial(ArrayDeque::new);
+    private int mNextCookie;
+    private TraceSpan mSession;
+    private int mSpanCount;
+    private int mDroppedSpanCount;
+    private ProvisioningTrace mLastTrace;
+
+    public static ProvisioningTracer getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ProvisioningTracer() {}
+
+    /**
+     * Starts a new session, ending the current one if any.
+     */
+    public synchronized TraceSpan startSession(String name) {
+        if (mSession != null) {
+            endSession();
+        }
+        mSpanCount = 0;
+        mDroppedSpanCount = 0;
+        mSession = startSpan(/* parent= */ null, name, /* section= */ false);
+        return mSession;
+    }
+
+    /**
+     * Ends the current session, and keeps its spans as the last trace.
+     */
+    public synchronized void endSession() {
+        if (mSession == null) {
+            return;
+        }
+        endSpan(mSession);
+        mLastTrace = ProvisioningTrace.newBuilder()
+                .setSession(toProto(mSession, mSession.mStartNanos))
+                .setDroppedSpanCount(mDroppedSpanCount)
+                .build();
+        mSession = null;
+    }
+
+    /**
+     * Starts an asynchronous span within the current session.
+     */
+    public TraceSpan startChild(String name) {
+        return startSpan(getCurrentSpan(), name, /* section= */ false);
+    }
+
+    /**
+     * Starts a section on the current thread, within the innermost section open on the thread or
+     * else within the current session.
+     */
+    public TraceSpan startSection(String name) {
+        return startSpan(getCurrentSpan(), name, /* section= */ true);
+    }
+
+    /**
+     * Returns the spans of the last session which ended, or {@code null} if none did.
+     */
+    @Nullable
+    public synchronized ProvisioningTrace getLastTrace() {
+        return mLastTrace;
+    }
+
+    /**
+     * Prints the spans of the last session, or the {@link ProvisioningTrace} in base64 if
+     * {@code args} contains {@code --proto}.
+     */
+    public void dump(PrintWriter writer, String[] args) {
+        final ProvisioningTrace trace = getLastTrace();
+        if (trace == null) {
+            writer.println("No provisioning trace");
+            return;
+        }
+        for (String arg : args) {
+            if ("--proto".equals(arg)) {
+                writer.println(Base64.encodeToString(trace.toByteArray(), Base64.NO_WRAP));
+                return;
+            }
+        }
+        writer.println("Provisioning trace (start offset ms, duration ms):");
+        dumpSpan(writer, trace.getSession(), /* depth= */ 1);
+        if (trace.getDroppedSpanCount() > 0) {
+            writer.println("  " + trace.getDroppedSpanCount() + " spans dropped");
+        }
+    }
+
+    synchronized TraceSpan startSpan(@Nullable TraceSpan parent, String name, boolean section) {
+        final TraceSpan span = new TraceSpan(this, parent, name, section, mNextCookie++, now());
+        if (section) {
+            Trace.beginSection(truncate(name));
+            mOpenSections.get().push(span);
+        } else {
+            Trace.beginAsyncSection(truncate(name), span.mCookie);
+        }
+        if (parent != null) {
+            if (mSpanCount < MAX_SPANS) {
+                parent.mChildren.add(span);
+                mSpanCount++;
+            } else {
+                mDroppedSpanCount++;
+            }
+        }
+        return span;
+    }
+
+    /**
+     * Ends {@code span}. A section can only be ended on the thread which started it, and ending
+     * it also ends the sections started within it which are still open.
+     */
+    synchronized void endSpan(TraceSpan span) {
+        if (span.mEndNanos >= 0) {
+            return;
+        }
+        if (!span.mSection) {
+            span.mEndNanos = now();
+            Trace.endAsyncSection(truncate(span.mName), span.mCookie);
+            return;
+        }
+        if (span.mThread != Thread.currentThread()) {
+            // Trace sections are per thread, so it can't be ended here
+            ProvisionLogger.logw("Trace section " + span.mName + " not ended on its thread");
+            return;
+        }
+        final Deque<TraceSpan> openSections = mOpenSections.get();
+        final long endNanos = now();
+        TraceSpan section;
+        do {
+            section = openSections.pop();
+            if (section != span) {
+                ProvisionLogger.logw("Trace section " + section.mName + " not ended in order");
+            }
+            section.mEndNanos = endNanos;
+            Trace.endSection();
+        } while (section != span);
+    }
+
+    @VisibleForTesting
+    long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Nullable
+    private synchronized TraceSpan getCurrentSpan() {
+        final TraceSpan section = mOpenSections.get().peek();
+        return section != null ? section : mSession;
+    }
+
+    private ProvisioningTrace.Span toProto(TraceSpan span, long sessionStartNanos) {
+        final ProvisioningTrace.Span.Builder builder = ProvisioningTrace.Span.newBuilder()
+                .setName(span.mName)
+                .setThreadName(span.mThreadName)
+                .setStartOffsetMicros((span.mStartNanos - sessionStartNanos) / NANOS_PER_MICRO);
+        if (span.mEndNanos >= 0) {
+            builder.setDurationMicros((span.mEndNanos - span.mStartNanos) / NANOS_PER_MICRO);
+        }
+        for (TraceSpan child : span.mChildren) {
+            builder.addChildren(toProto(child, sessionStartNanos));
+        }
+        return builder.build();
+    }
+
+    private static void dumpSpan(PrintWriter writer, ProvisioningTrace.Span span, int depth) {
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            line.append("  ");
+        }
+        line.append(span.getName())
+                .append(" [").append(span.getThreadName()).append("] ")
+                .append(span.getStartOffsetMicros() / 1000).append(' ')
+                .append(span.hasDurationMicros() ? span.getDurationMicros() / 1000 : "unfinished");
+        writer.println(line);
+        for (ProvisioningTrace.Span child : span.getChildrenList()) {
+            dumpSpan(writer, child, depth + 1);
+        }
+    }
+
+    private static String truncate(String name) {
+        return name.length() <= MAX_SECTION_NAME_LENGTH
+                ? name : name.substring(0, MAX_SECTION_NAME_LENGTH);
+    }
+}
@@ -29,6 +29,7 @@ import static com.android.internal.util.Preconditions.checkNotNull;
 import static com.android.managedprovisioning.analytics.AnalyticsUtils.CATEGORY_VIEW_UNKNOWN;
 
 import android.annotation.IntDef;
+import android.annotation.Nullable;
 import android.app.admin.DevicePolicyEventLogger;
 import android.content.Context;
 import com.android.internal.annotations.VisibleForTesting;
@@ -45,6 +46,8 @@ public class TimeLogger {
     private final MetricsLoggerWrapper mMetricsLoggerWrapper;
     private final AnalyticsUtils mAnalyticsUtils;
     private final ProvisioningAnalyticsTracker mProvisioningTracker;
+    private final LatencyHistograms mLatencyHistograms;
+    @Nullable private final String mSource;
     private Long mStartTime;
 
     @IntDef({
@@ -73,11 +76,29 @@ public class TimeLogger {
             MetricsLoggerWrapper metricsLoggerWrapper,
             AnalyticsUtils analyticsUtils,
             ProvisioningAnalyticsTracker provisioningAnalyticsTracker) {
+        this(context, category, /* source= */ null, metricsLoggerWrapper, analyticsUtils,
+                provisioningAnalyticsTracker, LatencyHistograms.getInstance(context));
+    }
+
+    /**
+     * @param source the task class measuring the time, used to split its
+     * {@link LatencyHistograms} from other classes logging the same category.
+     */
+    public TimeLogger(
+            Context context,
+            int category,
+            @Nullable String source,
+            MetricsLoggerWrapper metricsLoggerWrapper,
+            AnalyticsUtils analyticsUtils,
+            ProvisioningAnalyticsTracker provisioningAnalyticsTracker,
+            LatencyHistograms latencyHistograms) {
         mContext = checkNotNull(context);
         mCategory = checkNotNull(category);
+        mSource = source;
         mMetricsLoggerWrapper = checkNotNull(metricsLoggerWrapper);
         mAnalyticsUtils = checkNotNull(analyticsUtils);
         mProvisioningTracker = checkNotNull(provisioningAnalyticsTracker);
+        mLatencyHistograms = checkNotNull(latencyHistograms);
     }
 
     /**
@@ -103,6 +124,7 @@ public class TimeLogger {
             if (devicePolicyEvent != CATEGORY_VIEW_UNKNOWN) {
                 mProvisioningTracker.logTimeLoggerEvent(devicePolicyEvent, time);
             }
+            mLatencyHistograms.record(mCategory, mSource, time);
         }
     }
 }
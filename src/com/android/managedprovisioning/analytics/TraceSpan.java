@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import android.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A timed span of a provisioning session, recorded by {@link ProvisioningTracer}.
+ *
+ * <p>A span is either asynchronous, which can end on any thread and is shown as an async slice
+ * in system traces, or a section, which must end on the thread that started it and is shown
+ * nested in the slices of that thread. Sections are meant to be used with try-with-resources.
+ */
+public final class TraceSpan implements AutoCloseable {
+
+    final ProvisioningTracer mTracer;
+    final String mName;
+    final String mThreadName;
+    final Thread mThread;
+    final boolean mSection;
+    final int mCookie;
+    final long mStartNanos;
+    @Nullable final TraceSpan mParent;
+    // The fields below are only accessed while holding the lock on mTracer
+    final List<TraceSpan> mChildren = new ArrayList<>();
+    long mEndNanos = -1;
+
+    TraceSpan(ProvisioningTracer tracer, @Nullable TraceSpan parent, String name,
+            boolean section, int cookie, long startNanos) {
+        mTracer = tracer;
+        mParent = parent;
+        mName = name;
+        mSection = section;
+        mCookie = cookie;
+        mStartNanos = startNanos;
+        mThread = Thread.currentThread();
+        mThreadName = mThread.getName();
+    }
+
+    /**
+     * Starts an asynchronous span within this one.
+     */
+    public TraceSpan startChild(String name) {
+        return mTracer.startSpan(this, name, /* section= */ false);
+    }
+
+    /**
+     * Starts a section within this one on the current thread.
+     */
+    public TraceSpan startSection(String name) {
+        return mTracer.startSpan(this, name, /* section= */ true);
+    }
+
+    /**
+     * Ends the span. Calls after the first one are ignored.
+     */
+    public void end() {
+        mTracer.endSpan(this);
+    }
+
+    @Override
+    public void close() {
+        end();
+    }
+
+    public String getName() {
+        return mName;
+    }
+}
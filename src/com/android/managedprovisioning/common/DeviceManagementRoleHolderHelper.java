@@ -31,14 +31,20 @@ import android.os.Bundle;
 import android.os.PersistableBundle;
 import android.text.TextUtils;
 
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.provisioning.Constants;
 
 import com.google.android.setupcompat.util.WizardManagerHelper;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Helper class for logic related to device management role holder launching.
@@ -46,24 +52,79 @@ import java.util.stream.Collectors;
 public final class DeviceManagementRoleHolderHelper {
     private static final Map<String, String> sManagedProvisioningToRoleHolderIntentAction =
             createManagedProvisioningToRoleHolderIntentActionMap();
+    /**
+     * How long {@link #isRoleHolderReadyForProvisioning}, which is called on the main thread,
+     * waits for a running validation of the role holder before validating it itself.
+     */
+    private static final long VALIDATION_TIMEOUT_MILLIS = 2000;
 
     private final String mRoleHolderPackageName;
     private final PackageInstallChecker mPackageInstallChecker;
     private final ResolveIntentChecker mResolveIntentChecker;
     private final RoleHolderStubChecker mRoleHolderStubChecker;
     private final FeatureFlagChecker mFeatureFlagChecker;
+    private final RoleHolderValidationCache mValidationCache;
 
+    /**
+     * Creates a helper which validates the role holder on the calling thread, and only caches
+     * the result for its own lifetime.
+     */
     public DeviceManagementRoleHolderHelper(
             @Nullable String roleHolderPackageName,
             PackageInstallChecker packageInstallChecker,
             ResolveIntentChecker resolveIntentChecker,
             RoleHolderStubChecker roleHolderStubChecker,
             FeatureFlagChecker featureFlagChecker) {
+        this(roleHolderPackageName, packageInstallChecker, resolveIntentChecker,
+                roleHolderStubChecker, featureFlagChecker,
+                new RoleHolderValidationCache(Runnable::run));
+    }
+
+    public DeviceManagementRoleHolderHelper(
+            @Nullable String roleHolderPackageName,
+            PackageInstallChecker packageInstallChecker,
+            ResolveIntentChecker resolveIntentChecker,
+            RoleHolderStubChecker roleHolderStubChecker,
+            FeatureFlagChecker featureFlagChecker,
+            RoleHolderValidationCache validationCache) {
         mRoleHolderPackageName = roleHolderPackageName;
         mPackageInstallChecker = requireNonNull(packageInstallChecker);
         mResolveIntentChecker = requireNonNull(resolveIntentChecker);
         mRoleHolderStubChecker = requireNonNull(roleHolderStubChecker);
         mFeatureFlagChecker = requireNonNull(featureFlagChecker);
+        mValidationCache = requireNonNull(validationCache);
+    }
+
+    /**
+     * Starts validating the device management role holder on the executor of the
+     * {@link RoleHolderValidationCache}, so that {@link #isRoleHolderReadyForProvisioning} finds
+     * the result in the cache.
+     */
+    public void prefetchRoleHolderValidation(Context context) {
+        requireNonNull(context);
+        if (!isRoleHolderProvisioningEnabled()) {
+            return;
+        }
+        getRoleHolderValidation(mRoleHolderPackageName, context.getPackageManager());
+    }
+
+    /**
+     * Drops the cached validation of the device management role holder, so that it is validated
+     * again on next check. Called once the role holder may have been updated.
+     */
+    public void invalidateRoleHolderValidation() {
+        if (!TextUtils.isEmpty(mRoleHolderPackageName)) {
+            mValidationCache.invalidate(mRoleHolderPackageName);
+        }
+    }
+
+    /**
+     * Returns the intent actions the role holder must resolve to be valid.
+     */
+    @VisibleForTesting
+    static Collection<String> getRequiredRoleHolderActions() {
+        return Collections.unmodifiableCollection(
+                sManagedProvisioningToRoleHolderIntentAction.values());
     }
 
     /**
@@ -190,11 +251,48 @@ public final class DeviceManagementRoleHolderHelper {
     private boolean isRoleHolderValid(
             String roleHolderPackageName,
             PackageManager packageManager) {
-        Collection<String> requiredRoleHolderIntentActions =
-                sManagedProvisioningToRoleHolderIntentAction.values();
-        List<String> unhandledRequiredActions = requiredRoleHolderIntentActions.parallelStream()
-                .filter(action -> !canResolveIntent(packageManager, roleHolderPackageName, action))
-                .collect(Collectors.toList());
+        Future<Boolean> validation = getRoleHolderValidation(roleHolderPackageName, packageManager);
+        try {
+            return validation.get(VALIDATION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            ProvisionLogger.loge("Role holder validation failed.", e);
+            mValidationCache.invalidate(roleHolderPackageName);
+            return false;
+        } catch (TimeoutException e) {
+            // A slow validation doesn't make the role holder invalid, finish it here instead
+            ProvisionLogger.logw("Role holder validation did not complete in time, validating "
+                    + "on the calling thread.");
+            return validateRoleHolder(roleHolderPackageName, packageManager);
+        } catch (InterruptedException e) {
+            ProvisionLogger.loge("Interrupted while validating the role holder.", e);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the cached validation of the role holder, starting it if there is none.
+     */
+    private Future<Boolean> getRoleHolderValidation(
+            String roleHolderPackageName,
+            PackageManager packageManager) {
+        return mValidationCache.getValidation(roleHolderPackageName,
+                () -> validateRoleHolder(roleHolderPackageName, packageManager));
+    }
+
+    /**
+     * Returns whether the role holder resolves every required intent action, in a single pass on
+     * the calling thread.
+     */
+    private boolean validateRoleHolder(
+            String roleHolderPackageName,
+            PackageManager packageManager) {
+        List<String> unhandledRequiredActions = new ArrayList<>();
+        for (String action : sManagedProvisioningToRoleHolderIntentAction.values()) {
+            if (!canResolveIntent(packageManager, roleHolderPackageName, action)) {
+                unhandledRequiredActions.add(action);
+            }
+        }
         if (!unhandledRequiredActions.isEmpty()) {
             ProvisionLogger.logi("Role holder validation failed. Role holder does not implement "
                     + "the following required intents: "
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.common;
+
+import static android.content.pm.PackageManager.GET_META_DATA;
+import static android.content.pm.PackageManager.MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS;
+import static android.content.pm.PackageManager.MATCH_UNINSTALLED_PACKAGES;
+
+import static com.android.internal.util.Preconditions.checkNotNull;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived index of the applications of every user, shared by the tasks of a provisioning or
+ * OTA run so that they don't each enumerate the installed applications.
+ *
+ * <p>The applications of a user are fetched with a single
+ * {@link PackageManager#getInstalledApplications(int)} call, including uninstalled and
+ * hidden-until-installed applications and their meta-data, and kept for at most
+ * {@link #MAX_AGE_MILLIS}. The index of a user is dropped when a {@code PACKAGE_*} broadcast is
+ * received for it, and should be {@link #invalidate(int) invalidated} right away by tasks which
+ * install or remove packages themselves.
+ */
+public class PackageIndex {
+
+    @VisibleForTesting
+    static final long MAX_AGE_MILLIS = 60_000;
+
+    private static final int FLAGS =
+            MATCH_UNINSTALLED_PACKAGES | MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS | GET_META_DATA;
+
+    private static PackageIndex sInstance;
+
+    private final IntFunction<List<ApplicationInfo>> mLoader;
+    private final LongSupplier mClock;
+    private final SparseArray<Entry> mEntries = new SparseArray<>();
+
+    private final BroadcastReceiver mPackageChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final int userId = getSendingUserId();
+            if (userId == UserHandle.USER_ALL) {
+                invalidateAll();
+            } else {
+                invalidate(userId);
+            }
+        }
+    };
+
+    public static synchronized PackageIndex getInstance(Context context) {
+        if (sInstance == null) {
+            final Context applicationContext = context.getApplicationContext() == null
+                    ? context : context.getApplicationContext();
+            sInstance = new PackageIndex(
+                    userId -> loadApplications(applicationContext, userId),
+                    SystemClock::elapsedRealtime);
+            sInstance.registerPackageChangedReceiver(applicationContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PackageIndex(IntFunction<List<ApplicationInfo>> loader, LongSupplier clock) {
+        mLoader = checkNotNull(loader);
+        mClock = checkNotNull(clock);
+    }
+
+    /**
+     * Returns the package names of the system applications of the given user, including the ones
+     * which are uninstalled or hidden until installed. The returned set can be modified by the
+     * caller.
+     */
+    public Set<String> getSystemPackages(int userId) {
+        final Set<String> packageNames = new HashSet<>();
+        for (ApplicationInfo info : getEntry(userId).mApplications) {
+            if ((info.flags & ApplicationInfo.FLAG_SYSTEM) != 0) {
+                packageNames.add(info.packageName);
+            }
+        }
+        return packageNames;
+    }
+
+    /**
+     * Returns the applications installed for the given user, with their meta-data.
+     */
+    public List<ApplicationInfo> getInstalledApplications(int userId) {
+        return getEntry(userId).mInstalledApplications;
+    }
+
+    /**
+     * Returns the package names of the applications installed for the given user, which are the
+     * ones {@link PackageManager#getPackageInfoAsUser} finds with default flags. The returned set
+     * can't be modified.
+     */
+    public Set<String> getInstalledPackages(int userId) {
+        return getEntry(userId).mInstalledPackageNames;
+    }
+
+    /**
+     * Returns the system applications installed for the given user, with their meta-data.
+     */
+    public List<ApplicationInfo> getInstalledSystemApplications(int userId) {
+        final List<ApplicationInfo> applications = new ArrayList<>();
+        for (ApplicationInfo info : getInstalledApplications(userId)) {
+            if ((info.flags & ApplicationInfo.FLAG_SYSTEM) != 0) {
+                applications.add(info);
+            }
+        }
+        return applications;
+    }
+
+    /**
+     * Drops the index of the given user, so that it is fetched again on next access.
+     */
+    public synchronized void invalidate(int userId) {
+        mEntries.remove(userId);
+    }
+
+    /**
+     * Drops the index of every user. Called at the start of a run so that it starts from the
+     * current state of the device.
+     */
+    public synchronized void invalidateAll() {
+        mEntries.clear();
+    }
+
+    private synchronized Entry getEntry(int userId) {
+        final long now = mClock.getAsLong();
+        Entry entry = mEntries.get(userId);
+        if (entry == null || now - entry.mCreatedMillis > MAX_AGE_MILLIS) {
+            entry = new Entry(mLoader.apply(userId), now);
+            mEntries.put(userId, entry);
+        }
+        return entry;
+    }
+
+    private void registerPackageChangedReceiver(Context context) {
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.registerReceiverAsUser(
+                mPackageChangedReceiver,
+                UserHandle.ALL,
+                filter,
+                /* broadcastPermission= */ null,
+                /* scheduler= */ null);
+    }
+
+    private static List<ApplicationInfo> loadApplications(Context context, int userId) {
+        try {
+            return context.createPackageContextAsUser(
+                    /* packageName= */ "android", /* flags= */ 0, UserHandle.of(userId))
+                            .getPackageManager().getInstalledApplications(FLAGS);
+        } catch (PackageManager.NameNotFoundException e) {
+            // Should never happen.
+            ProvisionLogger.loge("Could not list the applications of user " + userId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static final class Entry {
+        final List<ApplicationInfo> mApplications;
+        final List<ApplicationInfo> mInstalledApplications;
+        final Set<String> mInstalledPackageNames;
+        final long mCreatedMillis;
+
+        Entry(List<ApplicationInfo> applications, long createdMillis) {
+            mApplications = Collections.unmodifiableList(applications);
+            final List<ApplicationInfo> installedApplications = new ArrayList<>();
+            final Set<String> installedPackageNames = new HashSet<>();
+            for (ApplicationInfo info : applications) {
+                if (isInstalled(info)) {
+                    installedApplications.add(info);
+                    installedPackageNames.add(info.packageName);
+                }
+            }
+            mInstalledApplications = Collections.unmodifiableList(installedApplications);
+            mInstalledPackageNames = Collections.unmodifiableSet(installedPackageNames);
+            mCreatedMillis = createdMillis;
+        }
+
+        /**
+         * Returns whether the application would be listed without
+         * {@link PackageManager#MATCH_UNINSTALLED_PACKAGES} and
+         * {@link PackageManager#MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS}.
+         */
+        private static boolean isInstalled(ApplicationInfo info) {
+            return (info.flags & ApplicationInfo.FLAG_INSTALLED) != 0
+                    && (info.privateFlags & ApplicationInfo.PRIVATE_FLAG_HIDDEN) == 0
+                    && !info.hiddenUntilInstalled;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.common;
+
+import static com.android.internal.util.Preconditions.checkNotNull;
+
+import android.util.AtomicFile;
+import android.util.SparseArray;
+import android.util.Xml;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores sets of package names per user, such as the snapshots of system apps or cross-profile
+ * apps taken during provisioning and on subsequent OTAs.
+ *
+ * <p>A set is stored in {@code {user_serial_number}.bin} in a folder, as the sorted package names
+ * where each name only stores the suffix it doesn't share with the previous one. Files are
+ * replaced atomically, and the last set read or written is kept in memory.
+ *
+ * <p>Sets used to be stored one XML element per package in {@code {user_serial_number}.xml}.
+ * Such a file is read once, rewritten in the binary format and deleted.
+ */
+public class PackageSnapshotStore {
+
+    private static final String FILE_EXTENSION = ".bin";
+    private static final String LEGACY_FILE_EXTENSION = ".xml";
+    private static final String TAG_PACKAGE_LIST_ITEM = "item";
+    private static final String ATTR_VALUE = "value";
+    private static final int MAGIC = 0x4d505353; // "MPSS"
+    private static final int VERSION = 1;
+
+    private final File mFolder;
+    private final SparseArray<Set<String>> mCache = new SparseArray<>();
+
+    public PackageSnapshotStore(File folder) {
+        mFolder = checkNotNull(folder);
+    }
+
+    /**
+     * Returns whether a set is stored for the user with the given serial number.
+     */
+    public synchronized boolean hasSnapshot(int userSerialNumber) {
+        return mCache.get(userSerialNumber) != null
+                || getFile(userSerialNumber).exists()
+                || getLegacyFile(userSerialNumber).exists();
+    }
+
+    /**
+     * Returns the set stored for the user with the given serial number, or an empty set if there
+     * is none or it can't be read.
+     */
+    public synchronized Set<String> read(int userSerialNumber) {
+        Set<String> packageNames = mCache.get(userSerialNumber);
+        if (packageNames != null) {
+            return packageNames;
+        }
+        final File file = getFile(userSerialNumber);
+        final File legacyFile = getLegacyFile(userSerialNumber);
+        if (file.exists()) {
+            packageNames = readFile(file);
+        } else if (legacyFile.exists()) {
+            ProvisionLogger.logi("Migrating package snapshot " + legacyFile);
+            packageNames = readLegacyFile(legacyFile);
+            if (writeFile(file, packageNames)) {
+                legacyFile.delete();
+            }
+        } else {
+            return Collections.emptySet();
+        }
+        packageNames = Collections.unmodifiableSet(packageNames);
+        mCache.put(userSerialNumber, packageNames);
+        return packageNames;
+    }
+
+    /**
+     * Replaces the set stored for the user with the given serial number.
+     */
+    public synchronized void write(int userSerialNumber, Set<String> packageNames) {
+        mFolder.mkdirs();
+        mCache.remove(userSerialNumber);
+        if (writeFile(getFile(userSerialNumber), packageNames)) {
+            mCache.put(userSerialNumber,
+                    Collections.unmodifiableSet(new HashSet<>(packageNames)));
+            getLegacyFile(userSerialNumber).delete();
+        }
+    }
+
+    private File getFile(int userSerialNumber) {
+        return new File(mFolder, userSerialNumber + FILE_EXTENSION);
+    }
+
+    private File getLegacyFile(int userSerialNumber) {
+        return new File(mFolder, userSerialNumber + LEGACY_FILE_EXTENSION);
+    }
+
+    private static Set<String> readFile(File file) {
+        try {
+            return decode(new AtomicFile(file).readFully());
+        } catch (IOException e) {
+            ProvisionLogger.loge("IOException trying to read the package snapshot " + file, e);
+            return new HashSet<>();
+        }
+    }
+
+    private static boolean writeFile(File file, Set<String> packageNames) {
+        final AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream stream = null;
+        try {
+            stream = atomicFile.startWrite();
+            stream.write(encode(packageNames));
+            atomicFile.finishWrite(stream);
+            return true;
+        } catch (IOException e) {
+            ProvisionLogger.loge("IOException trying to write the package snapshot " + file, e);
+            atomicFile.failWrite(stream);
+            return false;
+        }
+    }
+
+    @VisibleForTesting
+    static byte[] encode(Collection<String> packageNames) {
+        final List<String> sorted = new ArrayList<>(packageNames);
+        Collections.sort(sorted);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarInt(out, sorted.size());
+            byte[] previous = new byte[0];
+            for (String packageName : sorted) {
+                final byte[] current = packageName.getBytes(StandardCharsets.UTF_8);
+                final int prefixLength = getCommonPrefixLength(previous, current);
+                writeVarInt(out, prefixLength);
+                writeVarInt(out, current.length - prefixLength);
+                out.write(current, prefixLength, current.length - prefixLength);
+                previous = current;
+            }
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @VisibleForTesting
+    static Set<String> decode(byte[] bytes) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a package snapshot");
+        }
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported package snapshot version " + version);
+        }
+        final int count = readVarInt(in);
+        final Set<String> packageNames = new HashSet<>(count);
+        byte[] previous = new byte[0];
+        for (int i = 0; i < count; i++) {
+            final int prefixLength = readVarInt(in);
+            final int suffixLength = readVarInt(in);
+            if (prefixLength > previous.length || suffixLength > in.available()) {
+                throw new IOException("Invalid package snapshot entry " + i);
+            }
+            final byte[] current = new byte[prefixLength + suffixLength];
+            System.arraycopy(previous, 0, current, 0, prefixLength);
+            in.readFully(current, prefixLength, suffixLength);
+            packageNames.add(new String(current, StandardCharsets.UTF_8));
+            previous = current;
+        }
+        return packageNames;
+    }
+
+    private static Set<String> readLegacyFile(File file) {
+        final Set<String> result = new HashSet<>();
+        try (InputStream stream = new FileInputStream(file)) {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(stream, null);
+            parser.next();
+
+            int type;
+            int outerDepth = parser.getDepth();
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
+                    && (type != XmlPullParser.END_TAG || parser.getDepth() > outerDepth)) {
+                if (type == XmlPullParser.END_TAG || type == XmlPullParser.TEXT) {
+                    continue;
+                }
+                String tag = parser.getName();
+                if (tag.equals(TAG_PACKAGE_LIST_ITEM)) {
+                    result.add(parser.getAttributeValue(null, ATTR_VALUE));
+                } else {
+                    ProvisionLogger.loge("Unknown tag: " + tag);
+                }
+            }
+        } catch (IOException e) {
+            ProvisionLogger.loge("IOException trying to read the package snapshot " + file, e);
+        } catch (XmlPullParserException e) {
+            ProvisionLogger.loge(
+                    "XmlPullParserException trying to read the package snapshot " + file, e);
+        }
+        return result;
+    }
+
+    private static int getCommonPrefixLength(byte[] a, byte[] b) {
+        final int maxLength = Math.min(a.length, b.length);
+        int length = 0;
+        while (length < maxLength && a[length] == b[length]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Negative length in package snapshot");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed length in package snapshot");
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.common;
+
+import static com.android.internal.util.Preconditions.checkNotNull;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.util.ArrayMap;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache of the result of the role holder validation done by
+ * {@link DeviceManagementRoleHolderHelper}, keyed by the package name of the role holder.
+ *
+ * <p>Validations run on the executor of the cache, so that they can be started ahead of time and
+ * off the main thread. Only successful validations are kept: a package which fails validation,
+ * such as a role holder stub which hasn't been updated yet, is validated again on next access.
+ * The result of a package is dropped when a {@code PACKAGE_ADDED},
+ * {@code PACKAGE_REPLACED}, {@code PACKAGE_CHANGED} or {@code PACKAGE_REMOVED} broadcast is
+ * received for it, so a cached result doesn't require querying the package manager. Enabling or
+ * disabling a component changes which intents a package resolves without changing its version
+ * code, which is why {@code PACKAGE_CHANGED} is included.
+ */
+public class RoleHolderValidationCache {
+
+    private static RoleHolderValidationCache sInstance;
+
+    private final Executor mExecutor;
+    private final Map<String, Future<Boolean>> mResults = new ArrayMap<>();
+
+    private final BroadcastReceiver mPackageChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            if (data != null) {
+                invalidate(data.getSchemeSpecificPart());
+            }
+        }
+    };
+
+    public static synchronized RoleHolderValidationCache getInstance(Context context) {
+        if (sInstance == null) {
+            final Context applicationContext = context.getApplicationContext() == null
+                    ? context : context.getApplicationContext();
+            sInstance = new RoleHolderValidationCache(Executors.newSingleThreadExecutor());
+            sInstance.registerPackageChangedReceiver(applicationContext);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Creates a cache which isn't shared nor invalidated by package broadcasts, running
+     * validations on {@code executor}.
+     */
+    RoleHolderValidationCache(Executor executor) {
+        mExecutor = checkNotNull(executor);
+    }
+
+    /**
+     * Returns the result of the validation of a package, starting {@code validator} on the
+     * executor of the cache if there is no result for it yet.
+     */
+    Future<Boolean> getValidation(String packageName, Callable<Boolean> validator) {
+        final FutureTask<Boolean> task;
+        synchronized (this) {
+            final Future<Boolean> result = mResults.get(packageName);
+            if (result != null) {
+                return result;
+            }
+            task = new ValidationTask(packageName, validator);
+            mResults.put(packageName, task);
+        }
+        mExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Drops the result of the given package, so that it is validated again on next access.
+     */
+    public synchronized void invalidate(String packageName) {
+        mResults.remove(packageName);
+    }
+
+    private synchronized void onValidationFailed(String packageName, Future<Boolean> result) {
+        if (mResults.get(packageName) == result) {
+            mResults.remove(packageName);
+        }
+    }
+
+    private void registerPackageChangedReceiver(Context context) {
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(mPackageChangedReceiver, filter);
+    }
+
+    /**
+     * Validation which drops itself from the cache when it doesn't succeed.
+     */
+    private final class ValidationTask extends FutureTask<Boolean> {
+        private final String mPackageName;
+
+        ValidationTask(String packageName, Callable<Boolean> validator) {
+            super(validator);
+            mPackageName = packageName;
+        }
+
+        @Override
+        protected void done() {
+            boolean valid;
+            try {
+                valid = Boolean.TRUE.equals(get());
+            } catch (CancellationException | ExecutionException | InterruptedException e) {
+                valid = false;
+            }
+            if (!valid) {
+                onValidationFailed(mPackageName, this);
+            }
+        }
+    }
+}
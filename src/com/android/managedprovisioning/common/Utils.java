@@ -21,8 +21,6 @@ import static android.app.admin.DevicePolicyManager.ACTION_PROVISION_MANAGED_DEV
 import static android.app.admin.DevicePolicyManager.ACTION_PROVISION_MANAGED_PROFILE;
 import static android.app.admin.DevicePolicyManager.FLAG_SUPPORTED_MODES_DEVICE_OWNER;
 import static android.app.admin.DevicePolicyManager.FLAG_SUPPORTED_MODES_ORGANIZATION_OWNED;
-import static android.content.pm.PackageManager.MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS;
-import static android.content.pm.PackageManager.MATCH_UNINSTALLED_PACKAGES;
 import static android.net.NetworkCapabilities.NET_CAPABILITY_INTERNET;
 import static android.net.NetworkCapabilities.NET_CAPABILITY_VALIDATED;
 import static android.net.NetworkCapabilities.TRANSPORT_CELLULAR;
@@ -76,16 +74,16 @@ import com.google.android.setupcompat.template.FooterButton;
 import com.google.android.setupcompat.template.FooterButton.ButtonType;
 import com.google.android.setupdesign.GlifLayout;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 import java.util.function.Consumer;
 
 /**
@@ -94,38 +92,14 @@ import java.util.function.Consumer;
 public class Utils {
     public static final String SHA256_TYPE = "SHA-256";
 
+    @VisibleForTesting
+    static final long HASH_MAPPING_WINDOW_BYTES = 16 * 1024 * 1024;
+
     // value chosen to match UX designs; when updating check status bar icon colors
     private static final int THRESHOLD_BRIGHT_COLOR = 190;
 
     public Utils() {}
 
-    /**
-     * Returns the system apps currently available to a given user.
-     *
-     * <p>Calls the {@link IPackageManager} to retrieve all system apps available to a user and
-     * returns their package names.
-     *
-     * @param ipm an {@link IPackageManager} object
-     * @param userId the id of the user to check the apps for
-     */
-    public Set<String> getCurrentSystemApps(IPackageManager ipm, int userId) {
-        Set<String> apps = new HashSet<>();
-        List<ApplicationInfo> aInfos = null;
-        try {
-            aInfos = ipm.getInstalledApplications(
-                    MATCH_UNINSTALLED_PACKAGES | MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS, userId)
-                    .getList();
-        } catch (RemoteException neverThrown) {
-            ProvisionLogger.loge("This should not happen.", neverThrown);
-        }
-        for (ApplicationInfo aInfo : aInfos) {
-            if ((aInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0) {
-                apps.add(aInfo.packageName);
-            }
-        }
-        return apps;
-    }
-
     /**
      * Disables a given component in a given user.
      *
@@ -626,44 +600,31 @@ public class Utils {
 
     /**
      * Computes a hash of a file with a spcific hash algorithm.
+     *
+     * <p>The file is memory-mapped in windows of {@link #HASH_MAPPING_WINDOW_BYTES} and fed to the
+     * digest directly, instead of being copied through a small heap buffer one read at a time.
      */
-    // TODO: Add unit tests
     @Nullable
     public byte[] computeHashOfFile(String fileLocation, String hashType) {
-        InputStream fis = null;
         MessageDigest md;
-        byte hash[] = null;
         try {
             md = MessageDigest.getInstance(hashType);
         } catch (NoSuchAlgorithmException e) {
             ProvisionLogger.loge("Hashing algorithm " + hashType + " not supported.", e);
             return null;
         }
-        try {
-            fis = new FileInputStream(fileLocation);
-
-            byte[] buffer = new byte[256];
-            int n = 0;
-            while (n != -1) {
-                n = fis.read(buffer);
-                if (n > 0) {
-                    md.update(buffer, 0, n);
-                }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileLocation),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += HASH_MAPPING_WINDOW_BYTES) {
+                long length = Math.min(HASH_MAPPING_WINDOW_BYTES, size - position);
+                md.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
             }
-            hash = md.digest();
-        } catch (IOException e) {
+            return md.digest();
+        } catch (IOException | InvalidPathException e) {
             ProvisionLogger.loge("IO error.", e);
-        } finally {
-            // Close input stream quietly.
-            try {
-                if (fis != null) {
-                    fis.close();
-                }
-            } catch (IOException e) {
-                // Ignore.
-            }
+            return null;
         }
-        return hash;
     }
 
     /**
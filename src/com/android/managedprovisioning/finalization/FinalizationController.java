@@ -34,6 +34,7 @@ import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.ProvisioningParams;
+import com.android.managedprovisioning.model.ProvisioningParamsRepository;
 import com.android.managedprovisioning.provisioning.Constants;
 
 import java.io.File;
@@ -194,13 +195,13 @@ public final class FinalizationController {
     void clearParamsFile() {
         final File file = mProvisioningParamsUtils.getProvisioningParamsFile(mContext);
         if (file != null) {
-            file.delete();
+            ProvisioningParamsRepository.getInstance().delete(file);
         }
     }
 
     private ProvisioningParams loadProvisioningParams() {
         final File file = mProvisioningParamsUtils.getProvisioningParamsFile(mContext);
-        return ProvisioningParams.load(file);
+        return ProvisioningParamsRepository.getInstance().load(file);
     }
 
     /**
@@ -234,7 +235,7 @@ public final class FinalizationController {
             ProvisionLogger.logw(
                     "Attempt to commitFinalizedState when params have already been deleted");
         } else {
-            commitFinalizedState(loadProvisioningParams());
+            commitFinalizedState(params);
         }
     }
 
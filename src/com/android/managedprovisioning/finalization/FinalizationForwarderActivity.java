@@ -32,6 +32,7 @@ import com.android.managedprovisioning.common.DeviceManagementRoleHolderHelper.D
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.RetryLaunchActivity;
 import com.android.managedprovisioning.common.RoleHolderProvider;
+import com.android.managedprovisioning.common.RoleHolderValidationCache;
 import com.android.managedprovisioning.common.SharedPreferences;
 import com.android.managedprovisioning.common.TransitionHelper;
 import com.android.managedprovisioning.common.Utils;
@@ -109,7 +110,8 @@ public class FinalizationForwarderActivity extends Activity implements
                 new DefaultPackageInstallChecker(getPackageManager(), new Utils()),
                 new DefaultResolveIntentChecker(),
                 new DefaultRoleHolderStubChecker(),
-                new DefaultFeatureFlagChecker(getContentResolver()));
+                new DefaultFeatureFlagChecker(getContentResolver()),
+                RoleHolderValidationCache.getInstance(this));
         SharedPreferences sharedPreferences =
                 new ManagedProvisioningSharedPreferences(getApplicationContext());
         return new FinalizationForwarderController(
@@ -27,6 +27,7 @@ import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.ProvisioningParams;
+import com.android.managedprovisioning.model.ProvisioningParamsRepository;
 
 /**
  * This controller is invoked, via a call to
@@ -120,6 +121,7 @@ public final class PreFinalizationController {
     }
 
     private void storeProvisioningParams(ProvisioningParams params) {
-        params.save(mProvisioningParamsUtils.getProvisioningParamsFile(mContext));
+        ProvisioningParamsRepository.getInstance().save(
+                mProvisioningParamsUtils.getProvisioningParamsFile(mContext), params);
     }
 }
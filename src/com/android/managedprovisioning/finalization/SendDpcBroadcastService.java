@@ -33,6 +33,7 @@ import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.finalization.DpcReceivedSuccessReceiver.Callback;
 import com.android.managedprovisioning.model.ProvisioningParams;
+import com.android.managedprovisioning.model.ProvisioningParamsRepository;
 
 /**
  * A {@link Service} which sends the
@@ -48,7 +49,12 @@ public class SendDpcBroadcastService extends Service implements Callback {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         final Context context = getApplicationContext();
-        ProvisioningParams params = intent.getParcelableExtra(EXTRA_PROVISIONING_PARAMS);
+        ProvisioningParams params = loadProvisioningParams(context, intent);
+        if (params == null) {
+            ProvisionLogger.logw("SendDpcBroadcastService started without provisioning params");
+            stopSelf();
+            return START_NOT_STICKY;
+        }
         Utils utils = new Utils();
         ProvisioningIntentProvider helper = new ProvisioningIntentProvider();
         UserHandle managedProfileUserHandle = utils.getManagedProfile(context);
@@ -66,6 +72,19 @@ public class SendDpcBroadcastService extends Service implements Callback {
         return START_STICKY;
     }
 
+    /**
+     * Returns the params passed in {@code intent}. When the service is restarted after its
+     * process died, {@code intent} is {@code null} and the params stored for finalization are
+     * used instead, if any.
+     */
+    private ProvisioningParams loadProvisioningParams(Context context, Intent intent) {
+        if (intent != null && intent.hasExtra(EXTRA_PROVISIONING_PARAMS)) {
+            return intent.getParcelableExtra(EXTRA_PROVISIONING_PARAMS);
+        }
+        return ProvisioningParamsRepository.getInstance().load(
+                ProvisioningParamsUtils.DEFAULT_PROVISIONING_PARAMS_FILE_PROVIDER.apply(context));
+    }
+
     private void maybeLaunchDpc(Context context, ProvisioningParams params, Utils utils,
             ProvisioningIntentProvider helper, UserHandle managedProfileUserHandle) {
         final ProvisioningAnalyticsTracker provisioningAnalyticsTracker =
@@ -58,6 +58,7 @@ import android.util.Xml;
 
 import androidx.annotation.Nullable;
 
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.FastXmlSerializer;
 import com.android.managedprovisioning.common.IllegalProvisioningArgumentException;
 import com.android.managedprovisioning.common.PersistableBundlable;
@@ -69,8 +70,8 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.annotation.Retention;
@@ -578,10 +579,33 @@ public final class ProvisioningParams extends PersistableBundlable {
     }
 
     /**
-     * Saves the ProvisioningParams to the specified file.
+     * Saves the ProvisioningParams to the specified file, in the binary format of
+     * {@link ProvisioningParamsProtoConverter}.
      */
     public void save(File file) {
         ProvisionLogger.logd("Saving ProvisioningParams to " + file);
+        AtomicFile atomicFile = null;
+        FileOutputStream stream = null;
+        try {
+            atomicFile = new AtomicFile(file);
+            stream = atomicFile.startWrite();
+            stream.write(ProvisioningParamsProtoConverter.toBytes(toPersistableBundle()));
+            atomicFile.finishWrite(stream);
+        } catch (IOException e) {
+            ProvisionLogger.loge("Caught exception while trying to save Provisioning Params to "
+                    + " file " + file, e);
+            file.delete();
+            if (atomicFile != null) {
+                atomicFile.failWrite(stream);
+            }
+        }
+    }
+
+    /**
+     * Saves the ProvisioningParams to the specified file in the legacy XML format.
+     */
+    @VisibleForTesting
+    void saveAsXml(File file) {
         AtomicFile atomicFile = null;
         FileOutputStream stream = null;
         try {
@@ -609,19 +633,26 @@ public final class ProvisioningParams extends PersistableBundlable {
         if (disclaimersParam != null) {
             disclaimersParam.cleanUp();
         }
+        ProvisioningParamsRepository.getInstance().invalidate(this);
     }
 
     /**
-     * Loads the ProvisioningParams From the specified file.
+     * Loads the ProvisioningParams From the specified file, written either in the binary format
+     * or, by earlier versions, in XML.
      */
     public static ProvisioningParams load(File file) {
         if (!file.exists()) {
             return null;
         }
         ProvisionLogger.logd("Loading ProvisioningParams from " + file);
-        try (FileInputStream stream = new FileInputStream(file)) {
+        try {
+            final byte[] bytes = new AtomicFile(file).readFully();
+            if (ProvisioningParamsProtoConverter.isBinary(bytes)) {
+                return createBuilderFromPersistableBundle(
+                        ProvisioningParamsProtoConverter.fromBytes(bytes)).build();
+            }
             XmlPullParser parser = Xml.newPullParser();
-            parser.setInput(stream, null);
+            parser.setInput(new ByteArrayInputStream(bytes), null);
             return load(parser);
         } catch (IOException | XmlPullParserException e) {
             ProvisionLogger.loge("Caught exception while trying to load the provisioning params"
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.model;
+
+import android.os.PersistableBundle;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.DevicePolicyProtos.PersistableBundleProto;
+import com.android.managedprovisioning.DevicePolicyProtos.PersistableBundleProto.Entry;
+import com.android.managedprovisioning.DevicePolicyProtos.ProvisioningParamsFile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Binary format of the file written by {@link ProvisioningParams#save}.
+ *
+ * <p>The file starts with {@link #MAGIC}, followed by a {@link ProvisioningParamsFile}. Files
+ * without {@link #MAGIC} were written in XML by earlier versions, and are read as such by
+ * {@link ProvisioningParams#load}.
+ */
+final class ProvisioningParamsProtoConverter {
+
+    /**
+     * Version of the keys and values of {@link ProvisioningParams#toPersistableBundle()}. Files
+     * written with a later version can't be read.
+     */
+    @VisibleForTesting
+    static final int SCHEMA_VERSION = 1;
+
+    private static final byte[] MAGIC = {'M', 'P', 'P', 'B'};
+
+    private ProvisioningParamsProtoConverter() {}
+
+    /**
+     * Returns whether {@code bytes} are in the binary format, as opposed to the legacy XML one.
+     */
+    static boolean isBinary(byte[] bytes) {
+        return bytes.length >= MAGIC.length
+                && Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC);
+    }
+
+    static byte[] toBytes(PersistableBundle params) {
+        return toBytes(params, SCHEMA_VERSION);
+    }
+
+    @VisibleForTesting
+    static byte[] toBytes(PersistableBundle params, int schemaVersion) {
+        final byte[] file = ProvisioningParamsFile.newBuilder()
+                .setSchemaVersion(schemaVersion)
+                .setParams(toProto(params))
+                .build()
+                .toByteArray();
+        final byte[] bytes = Arrays.copyOf(MAGIC, MAGIC.length + file.length);
+        System.arraycopy(file, 0, bytes, MAGIC.length, file.length);
+        return bytes;
+    }
+
+    /**
+     * Reads params written by {@link #toBytes(PersistableBundle)}.
+     *
+     * @throws IOException if the bytes are invalid or were written with a later schema version.
+     */
+    static PersistableBundle fromBytes(byte[] bytes) throws IOException {
+        if (!isBinary(bytes)) {
+            throw new IOException("Not a binary ProvisioningParams file");
+        }
+        final ProvisioningParamsFile file = ProvisioningParamsFile.parseFrom(
+                Arrays.copyOfRange(bytes, MAGIC.length, bytes.length));
+        if (file.getSchemaVersion() > SCHEMA_VERSION) {
+            throw new IOException("Unsupported schema version " + file.getSchemaVersion());
+        }
+        return fromProto(file.getParams());
+    }
+
+    private static PersistableBundleProto toProto(PersistableBundle bundle) {
+        final PersistableBundleProto.Builder builder = PersistableBundleProto.newBuilder();
+        for (String key : bundle.keySet()) {
+            final Object value = bundle.get(key);
+            if (value == null) {
+                continue;
+            }
+            final Entry.Builder entry = Entry.newBuilder().setKey(key);
+            if (value instanceof String) {
+                entry.setStringValue((String) value);
+            } else if (value instanceof Integer) {
+                entry.setIntValue((Integer) value);
+            } else if (value instanceof Long) {
+                entry.setLongValue((Long) value);
+            } else if (value instanceof Double) {
+                entry.setDoubleValue((Double) value);
+            } else if (value instanceof Boolean) {
+                entry.setBooleanValue((Boolean) value);
+            } else if (value instanceof PersistableBundle) {
+                entry.setBundleValue(toProto((PersistableBundle) value));
+            } else if (value instanceof int[]) {
+                final PersistableBundleProto.IntArray.Builder array =
+                        PersistableBundleProto.IntArray.newBuilder();
+                for (int element : (int[]) value) {
+                    array.addValues(element);
+                }
+                entry.setIntArrayValue(array);
+            } else if (value instanceof long[]) {
+                final PersistableBundleProto.LongArray.Builder array =
+                        PersistableBundleProto.LongArray.newBuilder();
+                for (long element : (long[]) value) {
+                    array.addValues(element);
+                }
+                entry.setLongArrayValue(array);
+            } else if (value instanceof double[]) {
+                final PersistableBundleProto.DoubleArray.Builder array =
+                        PersistableBundleProto.DoubleArray.newBuilder();
+                for (double element : (double[]) value) {
+                    array.addValues(element);
+                }
+                entry.setDoubleArrayValue(array);
+            } else if (value instanceof boolean[]) {
+                final PersistableBundleProto.BooleanArray.Builder array =
+                        PersistableBundleProto.BooleanArray.newBuilder();
+                for (boolean element : (boolean[]) value) {
+                    array.addValues(element);
+                }
+                entry.setBooleanArrayValue(array);
+            } else if (value instanceof String[]) {
+                final String[] values = (String[]) value;
+                final PersistableBundleProto.StringArray.Builder array =
+                        PersistableBundleProto.StringArray.newBuilder();
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] == null) {
+                        // Proto strings can't be null, the admin extras may contain some
+                        array.addValues("");
+                        array.addNullIndices(i);
+                    } else {
+                        array.addValues(values[i]);
+                    }
+                }
+                entry.setStringArrayValue(array);
+            } else {
+                // PersistableBundle doesn't accept other types
+                throw new IllegalArgumentException(
+                        "Unsupported value type " + value.getClass() + " for " + key);
+            }
+            builder.addEntries(entry);
+        }
+        return builder.build();
+    }
+
+    private static PersistableBundle fromProto(PersistableBundleProto proto) throws IOException {
+        final PersistableBundle bundle = new PersistableBundle(proto.getEntriesCount());
+        for (Entry entry : proto.getEntriesList()) {
+            final String key = entry.getKey();
+            switch (entry.getValueCase()) {
+                case STRING_VALUE:
+                    bundle.putString(key, entry.getStringValue());
+                    break;
+                case INT_VALUE:
+                    bundle.putInt(key, entry.getIntValue());
+                    break;
+                case LONG_VALUE:
+                    bundle.putLong(key, entry.getLongValue());
+                    break;
+                case DOUBLE_VALUE:
+                    bundle.putDouble(key, entry.getDoubleValue());
+                    break;
+                case BOOLEAN_VALUE:
+                    bundle.putBoolean(key, entry.getBooleanValue());
+                    break;
+                case BUNDLE_VALUE:
+                    bundle.putPersistableBundle(key, fromProto(entry.getBundleValue()));
+                    break;
+                case INT_ARRAY_VALUE: {
+                    final PersistableBundleProto.IntArray array = entry.getIntArrayValue();
+                    final int[] values = new int[array.getValuesCount()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = array.getValues(i);
+                    }
+                    bundle.putIntArray(key, values);
+                    break;
+                }
+                case LONG_ARRAY_VALUE: {
+                    final PersistableBundleProto.LongArray array = entry.getLongArrayValue();
+                    final long[] values = new long[array.getValuesCount()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = array.getValues(i);
+                    }
+                    bundle.putLongArray(key, values);
+                    break;
+                }
+                case DOUBLE_ARRAY_VALUE: {
+                    final PersistableBundleProto.DoubleArray array = entry.getDoubleArrayValue();
+                    final double[] values = new double[array.getValuesCount()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = array.getValues(i);
+                    }
+                    bundle.putDoubleArray(key, values);
+                    break;
+                }
+                case BOOLEAN_ARRAY_VALUE: {
+                    final PersistableBundleProto.BooleanArray array =
+                            entry.getBooleanArrayValue();
+                    final boolean[] values = new boolean[array.getValuesCount()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = array.getValues(i);
+                    }
+                    bundle.putBooleanArray(key, values);
+                    break;
+                }
+                case STRING_ARRAY_VALUE: {
+                    final PersistableBundleProto.StringArray array = entry.getStringArrayValue();
+                    final String[] values = array.getValuesList().toArray(new String[0]);
+                    for (int index : array.getNullIndicesList()) {
+                        if (index < 0 || index >= values.length) {
+                            throw new IOException("Invalid null index " + index + " for " + key);
+                        }
+                        values[index] = null;
+                    }
+                    bundle.putStringArray(key, values);
+                    break;
+                }
+                default:
+                    throw new IOException("Missing value for " + key);
+            }
+        }
+        return bundle;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.model;
+
+import static java.util.Objects.requireNonNull;
+
+import androidx.annotation.Nullable;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the {@link ProvisioningParams} stored in files, so that a params file is
+ * read and parsed once rather than on every access.
+ *
+ * <p>Params saved or deleted through this class update the cache directly. An entry is also
+ * dropped when the length or modification time of its file changes, so files written by other
+ * means are read again, and when its params are {@link ProvisioningParams#cleanUp() cleaned up}.
+ */
+public class ProvisioningParamsRepository {
+
+    private static final ProvisioningParamsRepository sInstance =
+            new ProvisioningParamsRepository();
+
+    private final Map<File, Entry> mEntries = new HashMap<>();
+
+    public static ProvisioningParamsRepository getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ProvisioningParamsRepository() {}
+
+    /**
+     * Returns the params stored in {@code file}, or {@code null} if there are none.
+     */
+    @Nullable
+    public synchronized ProvisioningParams load(File file) {
+        requireNonNull(file);
+        final Entry entry = mEntries.get(file);
+        if (entry != null && entry.matches(file)) {
+            return entry.mParams;
+        }
+        final ProvisioningParams params = ProvisioningParams.load(file);
+        if (params == null) {
+            mEntries.remove(file);
+        } else {
+            mEntries.put(file, new Entry(params, file));
+        }
+        return params;
+    }
+
+    /**
+     * Stores {@code params} in {@code file}.
+     */
+    public synchronized void save(File file, ProvisioningParams params) {
+        requireNonNull(file);
+        requireNonNull(params);
+        params.save(file);
+        if (file.exists()) {
+            mEntries.put(file, new Entry(params, file));
+        } else {
+            mEntries.remove(file);
+        }
+    }
+
+    /**
+     * Deletes {@code file} and the params cached for it.
+     */
+    public synchronized void delete(File file) {
+        mEntries.remove(requireNonNull(file));
+        file.delete();
+    }
+
+    /**
+     * Drops every cached entry for {@code params}, so they are read from their file again.
+     */
+    synchronized void invalidate(ProvisioningParams params) {
+        final Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mParams == params) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final ProvisioningParams mParams;
+        final long mLength;
+        final long mLastModified;
+
+        Entry(ProvisioningParams params, File file) {
+            mParams = params;
+            mLength = file.length();
+            mLastModified = file.lastModified();
+        }
+
+        boolean matches(File file) {
+            return file.length() == mLength && file.lastModified() == mLastModified;
+        }
+    }
+}
@@ -29,15 +29,18 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.pm.UserInfo;
+import android.os.Build;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.ArraySet;
 import android.view.inputmethod.InputMethod;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.DevicePolicyProtos.OtaState;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.model.ProvisioningParams;
@@ -47,20 +50,37 @@ import com.android.managedprovisioning.task.InstallExistingPackageTask;
 import com.android.managedprovisioning.task.MigrateSystemAppsSnapshotTask;
 import com.android.managedprovisioning.task.UpdateInteractAcrossProfilesAppOpTask;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.IntFunction;
 
 /**
  * After a system update, this class resets the cross-profile intent filters and performs any
  * tasks necessary to bring the system up to date.
+ *
+ * <p>The build fingerprint, the system apps of every user and the default cross-profile packages
+ * seen by a run are stored in an {@link OtaStateStore}. The next run skips the work whose inputs
+ * didn't change since: deleting non-required apps and copying system IMEs for users whose system
+ * apps are the same, resetting cross-profile intent filters on the same build, and updating the
+ * cross-profile app-op when the default cross-profile packages are the same.
  */
 // TODO(b/178711424): move any business logic from here into the framework.
 public class OtaController {
 
     private static final String TELECOM_PACKAGE = "com.android.server.telecom";
 
+    /**
+     * How long to wait for the tasks of a stage before moving on, so that a task which never
+     * reports its result doesn't hold back the rest of the update.
+     */
+    @VisibleForTesting
+    static final long AWAIT_TASKS_TIMEOUT_MILLIS = 60 * 1000;
+
     private final Context mContext;
     private final TaskExecutor mTaskExecutor;
+    private final PackageIndex mPackageIndex;
+    private final OtaStateStore mOtaStateStore;
 
     private final UserManager mUserManager;
     private final DevicePolicyManager mDevicePolicyManager;
@@ -69,7 +89,15 @@ public class OtaController {
     private final ProvisioningAnalyticsTracker mProvisioningAnalyticsTracker;
 
     public OtaController(Context context) {
-        this(context, new TaskExecutor(),
+        this(context, new TaskExecutor());
+    }
+
+    /**
+     * @param taskExecutor the executor of the tasks, which may run the tasks of different users
+     *                     concurrently.
+     */
+    public OtaController(Context context, TaskExecutor taskExecutor) {
+        this(context, taskExecutor, PackageIndex.getInstance(context), new OtaStateStore(context),
                 userId -> getMissingSystemImePackages(context, UserHandle.of(userId)),
                 new ProvisioningAnalyticsTracker(
                         MetricsWriterFactory.getMetricsWriter(context, new SettingsFacade()),
@@ -77,11 +105,14 @@ public class OtaController {
     }
 
     @VisibleForTesting
-    OtaController(Context context, TaskExecutor taskExecutor,
+    OtaController(Context context, TaskExecutor taskExecutor, PackageIndex packageIndex,
+            OtaStateStore otaStateStore,
             IntFunction<ArraySet<String>> missingSystemImeProvider,
             ProvisioningAnalyticsTracker provisioningAnalyticsTracker) {
         mContext = checkNotNull(context);
         mTaskExecutor = checkNotNull(taskExecutor);
+        mPackageIndex = checkNotNull(packageIndex);
+        mOtaStateStore = checkNotNull(otaStateStore);
         mProvisioningAnalyticsTracker = checkNotNull(provisioningAnalyticsTracker);
 
         mUserManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
@@ -95,38 +126,124 @@ public class OtaController {
         if (mContext.getUserId() != UserHandle.USER_SYSTEM) {
             return;
         }
+        // The tasks below share the index of installed applications, start from a fresh one.
+        mPackageIndex.invalidateAll();
+
         // Migrate snapshot files to use user serial number as file name.
         mTaskExecutor.execute(
                 UserHandle.USER_SYSTEM, new MigrateSystemAppsSnapshotTask(
                         mContext, mTaskExecutor, mProvisioningAnalyticsTracker));
+        // The snapshots of every user are migrated before the tasks of any user read them.
+        boolean tasksCompleted = awaitTasks();
+
+        final List<UserInfo> users = mUserManager.getUsers();
+        final OtaState previousState = mOtaStateStore.read();
+        final OtaState newState = getCurrentState(users);
+        final boolean sameBuild = previousState != null
+                && previousState.getBuildFingerprint().equals(newState.getBuildFingerprint());
+        final Set<Integer> usersWithNewSystemApps =
+                getUsersWithNewSystemApps(users, previousState, newState);
 
         // Check for device owner.
         final int deviceOwnerUserId = mDevicePolicyManager.getDeviceOwnerUserId();
         if (deviceOwnerUserId != UserHandle.USER_NULL) {
-            addDeviceOwnerTasks(deviceOwnerUserId, mContext);
+            addDeviceOwnerTasks(deviceOwnerUserId, mContext,
+                    usersWithNewSystemApps.contains(deviceOwnerUserId));
         }
 
-        for (UserInfo userInfo : mUserManager.getUsers()) {
+        for (UserInfo userInfo : users) {
+            final boolean newSystemApps = usersWithNewSystemApps.contains(userInfo.id);
             if (userInfo.isManagedProfile()) {
-                addManagedProfileTasks(userInfo.id, mContext);
+                final UserInfo parent = mUserManager.getProfileParent(userInfo.id);
+                addManagedProfileTasks(userInfo.id, mContext, newSystemApps,
+                        newSystemApps || parent == null
+                                || usersWithNewSystemApps.contains(parent.id));
             } else if (mDevicePolicyManager.getProfileOwnerAsUser(userInfo.id) != null) {
-                addManagedUserTasks(userInfo.id, mContext);
-            } else {
+                addManagedUserTasks(userInfo.id, mContext, newSystemApps);
+            } else if (!sameBuild) {
                 // if this user has managed profiles, reset the cross-profile intent filters between
                 // this user and its managed profiles.
                 mDevicePolicyManager.resetDefaultCrossProfileIntentFilters(userInfo.id);
             }
         }
 
-        mTaskExecutor.execute(mContext.getUserId(), new UpdateInteractAcrossProfilesAppOpTask(
-                mContext,
-                /* params= */ null,
-                mTaskExecutor,
-                mProvisioningAnalyticsTracker
-        ));
+        // The app ops of every profile are updated once the apps of all users are up to date.
+        tasksCompleted &= awaitTasks();
+        if (previousState == null || !previousState.getCrossProfileAppsDigest()
+                .equals(newState.getCrossProfileAppsDigest())) {
+            mTaskExecutor.execute(mContext.getUserId(), new UpdateInteractAcrossProfilesAppOpTask(
+                    mContext,
+                    /* params= */ null,
+                    mTaskExecutor,
+                    mProvisioningAnalyticsTracker
+            ));
+            tasksCompleted &= awaitTasks();
+        }
+        if (tasksCompleted) {
+            mOtaStateStore.write(newState);
+        } else {
+            // Don't let the next run skip the work which may not have been done.
+            ProvisionLogger.logw("Not storing the OTA state, some tasks didn't complete");
+        }
+    }
+
+    /**
+     * Waits for the tasks given so far, for at most {@link #AWAIT_TASKS_TIMEOUT_MILLIS}.
+     *
+     * @return whether the tasks completed in time.
+     */
+    private boolean awaitTasks() {
+        if (!mTaskExecutor.awaitIdle(AWAIT_TASKS_TIMEOUT_MILLIS)) {
+            ProvisionLogger.loge("OTA tasks didn't complete in time, moving on");
+            return false;
+        }
+        return true;
+    }
+
+    private OtaState getCurrentState(List<UserInfo> users) {
+        final OtaState.Builder state = OtaState.newBuilder()
+                .setBuildFingerprint(Build.FINGERPRINT)
+                .setCrossProfileAppsDigest(OtaStateStore.digest(
+                        mDevicePolicyManager.getDefaultCrossProfilePackages()));
+        for (UserInfo userInfo : users) {
+            state.addUsers(OtaState.UserState.newBuilder()
+                    .setUserSerialNumber(userInfo.serialNumber)
+                    .setSystemAppsDigest(OtaStateStore.digest(
+                            mPackageIndex.getSystemPackages(userInfo.id))));
+        }
+        return state.build();
+    }
+
+    /**
+     * Returns the users whose system apps changed since {@code previousState}, or which are not
+     * in it.
+     */
+    private static Set<Integer> getUsersWithNewSystemApps(List<UserInfo> users,
+            OtaState previousState, OtaState newState) {
+        final Set<Integer> userIds = new HashSet<>();
+        for (int i = 0; i < users.size(); i++) {
+            final OtaState.UserState userState = newState.getUsers(i);
+            if (!containsUserState(previousState, userState)) {
+                userIds.add(users.get(i).id);
+            }
+        }
+        return userIds;
+    }
+
+    private static boolean containsUserState(OtaState state, OtaState.UserState userState) {
+        if (state == null) {
+            return false;
+        }
+        for (OtaState.UserState previousUserState : state.getUsersList()) {
+            if (previousUserState.getUserSerialNumber() == userState.getUserSerialNumber()) {
+                return previousUserState.getSystemAppsDigest()
+                        .equals(userState.getSystemAppsDigest());
+            }
+        }
+        return false;
     }
 
-    void addDeviceOwnerTasks(final int userId, Context context) {
+    void addDeviceOwnerTasks(final int userId, Context context, boolean newSystemApps) {
         ComponentName deviceOwner = mDevicePolicyManager.getDeviceOwnerComponentOnAnyUser();
         if (deviceOwner == null) {
             // Shouldn't happen
@@ -140,15 +257,18 @@ public class OtaController {
                 .setProvisioningAction(ACTION_PROVISION_MANAGED_DEVICE)
                 .build();
 
-        mTaskExecutor.execute(userId,
-                new DeleteNonRequiredAppsTask(false, context, fakeParams, mTaskExecutor,
-                        mProvisioningAnalyticsTracker));
+        if (newSystemApps) {
+            mTaskExecutor.execute(userId,
+                    new DeleteNonRequiredAppsTask(false, context, fakeParams, mTaskExecutor,
+                            mProvisioningAnalyticsTracker));
+        }
         mTaskExecutor.execute(userId,
                 new DisallowAddUserTask(UserManager.isHeadlessSystemUserMode(), context, fakeParams,
                         mTaskExecutor, mProvisioningAnalyticsTracker));
     }
 
-    void addManagedProfileTasks(final int userId, Context context) {
+    void addManagedProfileTasks(final int userId, Context context, boolean newSystemApps,
+            boolean checkMissingSystemImes) {
         mUserManager.setUserRestriction(UserManager.DISALLOW_WALLPAPER, true,
                 UserHandle.of(userId));
         // Enabling telecom package as it supports managed profiles from N.
@@ -168,17 +288,22 @@ public class OtaController {
                 .setDeviceAdminComponentName(profileOwner)
                 .setProvisioningAction(ACTION_PROVISION_MANAGED_PROFILE)
                 .build();
-        mTaskExecutor.execute(userId,
-                new DeleteNonRequiredAppsTask(false, context, fakeParams, mTaskExecutor,
-                        mProvisioningAnalyticsTracker));
+        if (newSystemApps) {
+            mTaskExecutor.execute(userId,
+                    new DeleteNonRequiredAppsTask(false, context, fakeParams, mTaskExecutor,
+                            mProvisioningAnalyticsTracker));
+        }
 
         // Copying missing system IMEs if necessary.
+        if (!checkMissingSystemImes) {
+            return;
+        }
         mMissingSystemImeProvider.apply(userId).forEach(packageName -> mTaskExecutor.execute(userId,
                 new InstallExistingPackageTask(packageName, context, fakeParams, mTaskExecutor,
                         mProvisioningAnalyticsTracker)));
     }
 
-    void addManagedUserTasks(final int userId, Context context) {
+    void addManagedUserTasks(final int userId, Context context, boolean newSystemApps) {
         ComponentName profileOwner = mDevicePolicyManager.getProfileOwnerAsUser(userId);
         if (profileOwner == null) {
             // Shouldn't happen.
@@ -191,9 +316,11 @@ public class OtaController {
                 .setDeviceAdminComponentName(profileOwner)
                 .setProvisioningAction(ACTION_PROVISION_MANAGED_USER)
                 .build();
-        mTaskExecutor.execute(userId,
-                new DeleteNonRequiredAppsTask(false, context, fakeParams, mTaskExecutor,
-                        mProvisioningAnalyticsTracker));
+        if (newSystemApps) {
+            mTaskExecutor.execute(userId,
+                    new DeleteNonRequiredAppsTask(false, context, fakeParams, mTaskExecutor,
+                            mProvisioningAnalyticsTracker));
+        }
     }
 
     /**
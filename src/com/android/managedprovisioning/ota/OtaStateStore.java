@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.ota;
+
+import static com.android.internal.util.Preconditions.checkNotNull;
+
+import android.annotation.Nullable;
+import android.content.Context;
+import android.util.AtomicFile;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.DevicePolicyProtos.OtaState;
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import com.google.protobuf.ByteString;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores the {@link OtaState} seen by the last OTA run, so that the next run can skip the work
+ * whose inputs didn't change.
+ */
+public class OtaStateStore {
+
+    private static final String FILE_NAME = "ota_state.pb";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final File mFile;
+
+    public OtaStateStore(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    @VisibleForTesting
+    OtaStateStore(File file) {
+        mFile = checkNotNull(file);
+    }
+
+    /**
+     * Returns the stored state, or {@code null} if there is none or it can't be read.
+     */
+    @Nullable
+    public OtaState read() {
+        if (!mFile.exists()) {
+            return null;
+        }
+        try {
+            return OtaState.parseFrom(new AtomicFile(mFile).readFully());
+        } catch (IOException e) {
+            ProvisionLogger.loge("IOException trying to read the OTA state " + mFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the stored state.
+     */
+    public void write(OtaState state) {
+        final AtomicFile atomicFile = new AtomicFile(mFile);
+        FileOutputStream stream = null;
+        try {
+            stream = atomicFile.startWrite();
+            stream.write(state.toByteArray());
+            atomicFile.finishWrite(stream);
+        } catch (IOException e) {
+            ProvisionLogger.loge("IOException trying to write the OTA state " + mFile, e);
+            atomicFile.failWrite(stream);
+        }
+    }
+
+    /**
+     * Returns a digest of the given package names, which doesn't depend on their order.
+     */
+    public static ByteString digest(@Nullable Collection<String> packageNames) {
+        final List<String> sorted = packageNames == null
+                ? new ArrayList<>() : new ArrayList<>(packageNames);
+        Collections.sort(sorted);
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (String packageName : sorted) {
+            digest.update(packageName.getBytes(StandardCharsets.UTF_8));
+            // Package names can't contain a null character
+            digest.update((byte) 0);
+        }
+        return ByteString.copyFrom(digest.digest());
+    }
+}
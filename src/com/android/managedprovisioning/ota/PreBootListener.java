@@ -26,13 +26,24 @@ import com.android.managedprovisioning.common.ProvisionLogger;
  */
 public class PreBootListener extends BroadcastReceiver {
 
+    private static final long AWAIT_TASKS_TIMEOUT_MILLIS = 60 * 1000;
+
     @Override
     public void onReceive(Context context, Intent intent) {
         if (Intent.ACTION_PRE_BOOT_COMPLETED.equals(intent.getAction())) {
             final PendingResult result = goAsync();
             Thread thread = new Thread(() -> {
-                new OtaController(context).run();
-                result.finish();
+                final TaskExecutor taskExecutor = TaskExecutor.createParallel();
+                try {
+                    new OtaController(context, taskExecutor).run();
+                    // Keep the broadcast pending until the tasks of every user are done.
+                    if (!taskExecutor.awaitIdle(AWAIT_TASKS_TIMEOUT_MILLIS)) {
+                        ProvisionLogger.loge("OTA tasks didn't complete in time");
+                    }
+                } finally {
+                    taskExecutor.shutdown();
+                    result.finish();
+                }
             });
             thread.setPriority(Thread.MAX_PRIORITY);
             thread.start();
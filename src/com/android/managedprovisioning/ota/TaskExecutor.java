@@ -16,25 +16,172 @@
 
 package com.android.managedprovisioning.ota;
 
+import android.annotation.Nullable;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.task.AbstractProvisioningTask;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Class that executes the provisioning tasks during the OTA process.
+ *
+ * <p>By default, tasks are run one at a time on the calling thread. A parallel executor, created
+ * with {@link #createParallel()}, runs the tasks of different users concurrently on a bounded pool
+ * of threads, while the tasks of a given user still run one after the other in the order they
+ * were given.
+ *
+ * <p>A task is done once it has reported its result to the executor, which must be the
+ * {@link AbstractProvisioningTask.Callback} of the task. This can happen after its
+ * {@link AbstractProvisioningTask#run(int)} method returns, as for
+ * {@link com.android.managedprovisioning.task.DeleteNonRequiredAppsTask}, whose deletions
+ * complete asynchronously. A task whose {@code run} method throws is done as well.
+ * {@link #awaitIdle(long)} waits until every task given so far is done. The next task of a user
+ * starts as soon as the {@code run} method of the previous one returns.
  */
 public class TaskExecutor implements AbstractProvisioningTask.Callback {
 
-    public synchronized void execute(int userId, AbstractProvisioningTask task) {
-        task.run(userId);
+    @VisibleForTesting
+    static final int MAX_THREADS = 4;
+
+    @Nullable private final ExecutorService mExecutorService;
+    private final Object mLock = new Object();
+    // The following fields are only accessed while holding mLock
+    // Tasks waiting for the running task of their user, keyed by user id
+    private final SparseArray<ArrayDeque<AbstractProvisioningTask>> mQueuedTasks =
+            new SparseArray<>();
+    // Tasks which haven't reported their result yet
+    private final Set<AbstractProvisioningTask> mPendingTasks =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public TaskExecutor() {
+        this(/* executorService= */ null);
+    }
+
+    @VisibleForTesting
+    TaskExecutor(@Nullable ExecutorService executorService) {
+        mExecutorService = executorService;
+    }
+
+    /**
+     * Returns an executor running the tasks of different users concurrently, on at most
+     * {@link #MAX_THREADS} threads. {@link #shutdown()} must be called once it's no longer used.
+     */
+    public static TaskExecutor createParallel() {
+        final int threadCount = Math.max(1,
+                Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        return new TaskExecutor(Executors.newFixedThreadPool(threadCount));
+    }
+
+    public void execute(int userId, AbstractProvisioningTask task) {
+        synchronized (mLock) {
+            mPendingTasks.add(task);
+        }
+        if (mExecutorService == null) {
+            synchronized (this) {
+                try {
+                    task.run(userId);
+                } catch (RuntimeException e) {
+                    onTaskDone(task);
+                    throw e;
+                }
+            }
+            return;
+        }
+        synchronized (mLock) {
+            final ArrayDeque<AbstractProvisioningTask> queuedTasks = mQueuedTasks.get(userId);
+            if (queuedTasks != null) {
+                // A task of this user is running, this one runs after it.
+                queuedTasks.add(task);
+                return;
+            }
+            mQueuedTasks.put(userId, new ArrayDeque<>());
+        }
+        mExecutorService.execute(() -> runTasks(userId, task));
+    }
+
+    /**
+     * Waits until all the tasks given so far are done, for at most {@code timeoutMillis}.
+     *
+     * @return {@code false} if the tasks weren't done in time, or if the calling thread was
+     * interrupted while waiting.
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        final long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+        synchronized (mLock) {
+            while (!mPendingTasks.isEmpty()) {
+                final long remainingMillis = deadline - SystemClock.elapsedRealtime();
+                if (remainingMillis <= 0) {
+                    ProvisionLogger.logw("Timed out waiting for " + mPendingTasks.size()
+                            + " tasks");
+                    return false;
+                }
+                try {
+                    mLock.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the threads of a parallel executor. Tasks given after this are rejected.
+     */
+    public void shutdown() {
+        if (mExecutorService != null) {
+            mExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * Runs {@code task}, then the tasks of the same user queued while it was running.
+     */
+    private void runTasks(int userId, AbstractProvisioningTask task) {
+        while (task != null) {
+            try {
+                task.run(userId);
+            } catch (RuntimeException e) {
+                // Don't hold back the remaining tasks of the user
+                ProvisionLogger.loge("Task failed: " + task.getClass().getSimpleName(), e);
+                onTaskDone(task);
+            }
+            synchronized (mLock) {
+                task = mQueuedTasks.get(userId).poll();
+                if (task == null) {
+                    mQueuedTasks.remove(userId);
+                }
+            }
+        }
+    }
+
+    private void onTaskDone(AbstractProvisioningTask task) {
+        synchronized (mLock) {
+            if (mPendingTasks.remove(task) && mPendingTasks.isEmpty()) {
+                mLock.notifyAll();
+            }
+        }
     }
 
     @Override
     public void onSuccess(AbstractProvisioningTask task) {
         ProvisionLogger.logd("Task ran successfully: " + task.getClass().getSimpleName());
+        onTaskDone(task);
     }
 
     @Override
     public void onError(AbstractProvisioningTask task, int errorMsg, String errorMessage) {
         ProvisionLogger.logd("Error running task: " + task.getClass().getSimpleName());
+        onTaskDone(task);
     }
 }
@@ -83,7 +83,6 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Parcelable;
 import android.os.UserHandle;
 
 import androidx.annotation.Nullable;
@@ -242,6 +241,12 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
 
     private static final Map<String, String> SHORTER_EXTRAS = buildShorterExtrasMap();
 
+    /**
+     * The canonical name of every shorter extra name, see {@link ProvisioningExtras}.
+     */
+    @VisibleForTesting
+    static final Map<String, String> CANONICAL_EXTRAS = buildCanonicalExtrasMap();
+
     private static Map<String, String> buildShorterExtrasMap() {
         Map<String, String> shorterExtras = new HashMap<>();
         shorterExtras.put(
@@ -337,6 +342,14 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
         return shorterExtras;
     }
 
+    private static Map<String, String> buildCanonicalExtrasMap() {
+        Map<String, String> canonicalExtras = new HashMap<>();
+        for (Map.Entry<String, String> entry : SHORTER_EXTRAS.entrySet()) {
+            canonicalExtras.put(entry.getValue(), entry.getKey());
+        }
+        return canonicalExtras;
+    }
+
     private final Utils mUtils;
     private final ParserUtils mParserUtils;
     private final SettingsFacade mSettingsFacade;
@@ -363,19 +376,21 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
     public ProvisioningParams parse(Intent provisioningIntent)
             throws IllegalProvisioningArgumentException{
         String provisioningAction = provisioningIntent.getAction();
+        ProvisioningExtras extras =
+                ProvisioningExtras.from(provisioningIntent.getExtras(), CANONICAL_EXTRAS);
         if (ACTION_RESUME_PROVISIONING.equals(provisioningAction)) {
-            return getParcelableExtraFromLongName(provisioningIntent,
-                    ProvisioningParams.EXTRA_PROVISIONING_PARAMS);
+            return extras.getParcelable(ProvisioningParams.EXTRA_PROVISIONING_PARAMS);
         }
         if (PROVISIONING_ACTIONS_SUPPORT_MIN_PROVISIONING_DATA.contains(provisioningAction)) {
             ProvisionLogger.logi("Processing mininalist extras intent.");
-            return parseMinimalistSupportedProvisioningDataInternal(provisioningIntent, mContext)
+            return parseMinimalistSupportedProvisioningDataInternal(
+                    provisioningIntent, extras, mContext)
                     .build();
         } else if (PROVISIONING_ACTIONS_SUPPORT_ALL_PROVISIONING_DATA.contains(
                 provisioningAction)) {
-            return parseAllSupportedProvisioningData(provisioningIntent, mContext);
+            return parseAllSupportedProvisioningData(provisioningIntent, extras, mContext);
         } else if (ACTION_ESTABLISH_NETWORK_CONNECTION.equals(provisioningAction)) {
-            return parseNetworkProvisioningData(provisioningIntent);
+            return parseNetworkProvisioningData(provisioningIntent, extras);
         } else {
             throw new IllegalProvisioningArgumentException("Unsupported provisioning action: "
                     + provisioningAction);
@@ -389,81 +404,6 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
         return SHORTER_EXTRAS.get(extraName);
     }
 
-    private boolean hasExtraFromLongName(Intent intent, String longName) {
-        return intent.hasExtra(longName) || intent.hasExtra(getShortExtraNames(longName));
-    }
-
-    @Nullable
-    private <T extends Parcelable> T getParcelableExtraFromLongName(
-            Intent intent, String longName) {
-        if (intent.hasExtra(longName)) {
-            return intent.getParcelableExtra(longName);
-        }
-        String shortName = getShortExtraNames(longName);
-        if (intent.hasExtra(shortName)) {
-            return intent.getParcelableExtra(shortName);
-        }
-        return null;
-    }
-
-    @Nullable
-    private Parcelable[] getParcelableArrayExtraFromLongName(Intent intent, String longName) {
-        if (intent.hasExtra(longName)) {
-            return intent.getParcelableArrayExtra(longName);
-        }
-        String shortName = getShortExtraNames(longName);
-        if (intent.hasExtra(shortName)) {
-            return intent.getParcelableArrayExtra(shortName);
-        }
-        return null;
-    }
-
-    private int getIntExtraFromLongName(Intent intent, String longName, int defaultValue) {
-        if (intent.hasExtra(longName)) {
-            return intent.getIntExtra(longName, defaultValue);
-        }
-        String shortName = getShortExtraNames(longName);
-        if (intent.hasExtra(shortName)) {
-            return intent.getIntExtra(shortName, defaultValue);
-        }
-        return defaultValue;
-    }
-
-    private boolean getBooleanExtraFromLongName(
-            Intent intent, String longName, boolean defaultValue) {
-        if (intent.hasExtra(longName)) {
-            return intent.getBooleanExtra(longName, defaultValue);
-        }
-        String shortName = getShortExtraNames(longName);
-        if (intent.hasExtra(shortName)) {
-            return intent.getBooleanExtra(shortName, defaultValue);
-        }
-        return defaultValue;
-    }
-
-    private long getParcelableExtraFromLongName(Intent intent, String longName, long defaultValue) {
-        if (intent.hasExtra(longName)) {
-            return intent.getLongExtra(longName, defaultValue);
-        }
-        String shortName = getShortExtraNames(longName);
-        if (intent.hasExtra(shortName)) {
-            return intent.getLongExtra(shortName, defaultValue);
-        }
-        return defaultValue;
-    }
-
-    @Nullable
-    private String getStringExtraFromLongName(Intent intent, String longName) {
-        if (intent.getStringExtra(longName) != null) {
-            return intent.getStringExtra(longName);
-        }
-        String shortName = getShortExtraNames(longName);
-        if (intent.getStringExtra(shortName) != null) {
-            return intent.getStringExtra(shortName);
-        }
-        return null;
-    }
-
     /**
      * Parses minimal supported set of parameters from bundle extras of a provisioning intent.
      *
@@ -481,7 +421,7 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
      * </ul>
      */
     private ProvisioningParams.Builder parseMinimalistSupportedProvisioningDataInternal(
-            Intent intent, Context context)
+            Intent intent, ProvisioningExtras extras, Context context)
             throws IllegalProvisioningArgumentException {
         final DevicePolicyManager dpm = context.getSystemService(DevicePolicyManager.class);
         boolean isProvisionManagedDeviceFromTrustedSourceIntent =
@@ -496,16 +436,16 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
                     intent, mSettingsFacade, mContext);
 
             // Parse device admin package name and component name.
-            ComponentName deviceAdminComponentName = getParcelableExtraFromLongName(
-                    intent, EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME);
+            ComponentName deviceAdminComponentName = extras.getParcelable(
+                    EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME);
             // Device admin package name is deprecated. It is only supported in Profile Owner
             // provisioning and when resuming NFC provisioning.
             String deviceAdminPackageName = null;
             if (isManagedProfileAction) {
                 // In L, we only support package name. This means some DPC may still send us the
                 // device admin package name only. Attempts to obtain the package name from extras.
-                deviceAdminPackageName = getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_NAME);
+                deviceAdminPackageName = extras.getString(
+                        EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_NAME);
                 // For profile owner, the device admin package should be installed. Verify the
                 // device admin package.
                 deviceAdminComponentName = mUtils.findDeviceAdmin(
@@ -519,39 +459,39 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
                 deviceAdminPackageName = null;
             }
 
-            final boolean skipEducationScreens = shouldSkipEducationScreens(intent);
+            final boolean skipEducationScreens = shouldSkipEducationScreens(intent, extras);
 
             // Only when provisioning PO with ACTION_PROVISION_MANAGED_PROFILE
             final boolean keepAccountMigrated = isManagedProfileAction
-                            && getBooleanExtraFromLongName(
-                                intent, EXTRA_PROVISIONING_KEEP_ACCOUNT_ON_MIGRATION,
+                            && extras.getBoolean(
+                                EXTRA_PROVISIONING_KEEP_ACCOUNT_ON_MIGRATION,
                                 ProvisioningParams
                                         .DEFAULT_EXTRA_PROVISIONING_KEEP_ACCOUNT_MIGRATED);
 
             DisclaimersParam disclaimersParam = new DisclaimersParserImpl(context, provisioningId)
-                    .parse(getParcelableArrayExtraFromLongName(
-                            intent, EXTRA_PROVISIONING_DISCLAIMERS));
+                    .parse(extras.getParcelableArray(
+                            EXTRA_PROVISIONING_DISCLAIMERS));
 
             String organizationName =
-                    getStringExtraFromLongName(intent, EXTRA_PROVISIONING_ORGANIZATION_NAME);
+                    extras.getString(EXTRA_PROVISIONING_ORGANIZATION_NAME);
             String supportUrl = null;
             if (isProvisionManagedDeviceFromTrustedSourceIntent || isFinancedDeviceProvisioning) {
-                supportUrl = getStringExtraFromLongName(intent, EXTRA_PROVISIONING_SUPPORT_URL);
+                supportUrl = extras.getString(EXTRA_PROVISIONING_SUPPORT_URL);
             }
 
             final boolean leaveAllSystemAppsEnabled = isManagedProfileAction
                     ? false
                     : (isFinancedDeviceProvisioning ||
-                            getBooleanExtraFromLongName(
-                                    intent, EXTRA_PROVISIONING_LEAVE_ALL_SYSTEM_APPS_ENABLED,
+                            extras.getBoolean(
+                                    EXTRA_PROVISIONING_LEAVE_ALL_SYSTEM_APPS_ENABLED,
                                     ProvisioningParams.DEFAULT_LEAVE_ALL_SYSTEM_APPS_ENABLED));
 
             int provisioningTrigger = mParserUtils.extractProvisioningTrigger(intent);
             int initiatorRequestedProvisioningModes =
-                    getInitiatorRequestedProvisioningModes(intent);
+                    getInitiatorRequestedProvisioningModes(intent, extras);
 
             final boolean adminOptedOutOfSensorsPermissionGrants =
-                    getBooleanExtraFromLongName(intent,
+                    extras.getBoolean(
                             EXTRA_PROVISIONING_SENSORS_PERMISSION_GRANT_OPT_OUT,
                             ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_PERMISSION_GRANT_OPT_OUT);
             return ProvisioningParams.Builder.builder()
@@ -560,17 +500,17 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
                     .setDeviceAdminComponentName(deviceAdminComponentName)
                     .setDeviceAdminPackageName(deviceAdminPackageName)
                     .setSkipEncryption(
-                            getBooleanExtraFromLongName(
-                                    intent, EXTRA_PROVISIONING_SKIP_ENCRYPTION,
+                            extras.getBoolean(
+                                    EXTRA_PROVISIONING_SKIP_ENCRYPTION,
                                     ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_SKIP_ENCRYPTION))
                     .setLeaveAllSystemAppsEnabled(leaveAllSystemAppsEnabled)
-                    .setAdminExtrasBundle(getParcelableExtraFromLongName(
-                            intent, EXTRA_PROVISIONING_ADMIN_EXTRAS_BUNDLE))
+                    .setAdminExtrasBundle(extras.getParcelable(
+                            EXTRA_PROVISIONING_ADMIN_EXTRAS_BUNDLE))
                     .setDisclaimersParam(disclaimersParam)
                     .setKeepAccountMigrated(keepAccountMigrated)
                     .setSkipEducationScreens(skipEducationScreens)
-                    .setAccountToMigrate(getParcelableExtraFromLongName(
-                            intent, EXTRA_PROVISIONING_ACCOUNT_TO_MIGRATE))
+                    .setAccountToMigrate(extras.getParcelable(
+                            EXTRA_PROVISIONING_ACCOUNT_TO_MIGRATE))
                     .setOrganizationName(organizationName)
                     .setSupportUrl(supportUrl)
                     .setIsQrProvisioning(provisioningTrigger == PROVISIONING_TRIGGER_QR_CODE)
@@ -579,21 +519,21 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
                             mContext, initiatorRequestedProvisioningModes, mUtils))
                     .setInitiatorRequestedProvisioningModes(
                             initiatorRequestedProvisioningModes)
-                    .setSkipOwnershipDisclaimer(getSkipOwnershipDisclaimer(intent))
-                    .setReturnBeforePolicyCompliance(getReturnBeforePolicyCompliance(intent))
+                    .setSkipOwnershipDisclaimer(getSkipOwnershipDisclaimer(intent, extras))
+                    .setReturnBeforePolicyCompliance(
+                            getReturnBeforePolicyCompliance(intent, extras))
                     .setDeviceOwnerPermissionGrantOptOut(
                             adminOptedOutOfSensorsPermissionGrants)
-                    .setKeepScreenOn(getBooleanExtraFromLongName(
-                            intent,
+                    .setKeepScreenOn(extras.getBoolean(
                             EXTRA_PROVISIONING_KEEP_SCREEN_ON,
                             ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_KEEP_SCREEN_ON))
-                    .setAllowOffline(getBooleanExtraFromLongName(
-                            intent,
+                    .setAllowOffline(extras.getBoolean(
                             EXTRA_PROVISIONING_ALLOW_OFFLINE,
                             ProvisioningParams.DEFAULT_EXTRA_ALLOW_OFFLINE))
-                    .setRoleHolderDownloadInfo(parseRoleHolderDownloadInfoFromExtras(intent))
+                    .setRoleHolderDownloadInfo(
+                            parseRoleHolderDownloadInfoFromExtras(intent, extras))
                     .setProvisioningShouldLaunchResultIntent(
-                            getProvisioningShouldLaunchResultIntent(intent));
+                            getProvisioningShouldLaunchResultIntent(intent, extras));
         } catch (ClassCastException e) {
             throw new IllegalProvisioningArgumentException("Extra has invalid type", e);
         } catch (IllegalArgumentException e) {
@@ -603,28 +543,27 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
         }
     }
 
-    private boolean getProvisioningShouldLaunchResultIntent(Intent intent) {
+    private boolean getProvisioningShouldLaunchResultIntent(
+            Intent intent, ProvisioningExtras extras) {
         if (!intent.getAction().equals(ACTION_PROVISION_MANAGED_DEVICE_FROM_TRUSTED_SOURCE)
                 && !intent.getAction().equals(ACTION_PROVISION_MANAGED_PROFILE)) {
             return ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_SHOULD_LAUNCH_RESULT_INTENT;
         }
-        return getBooleanExtraFromLongName(
-                intent,
+        return extras.getBoolean(
                 EXTRA_PROVISIONING_SHOULD_LAUNCH_RESULT_INTENT,
                 ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_SHOULD_LAUNCH_RESULT_INTENT);
     }
 
-    private boolean getSkipOwnershipDisclaimer(Intent intent) {
+    private boolean getSkipOwnershipDisclaimer(Intent intent, ProvisioningExtras extras) {
         if (!intent.getAction().equals(ACTION_PROVISION_MANAGED_DEVICE_FROM_TRUSTED_SOURCE)) {
             return ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_SKIP_OWNERSHIP_DISCLAIMER;
         }
-        return getBooleanExtraFromLongName(
-                intent,
+        return extras.getBoolean(
                 DevicePolicyManager.EXTRA_PROVISIONING_SKIP_OWNERSHIP_DISCLAIMER,
                 ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_SKIP_OWNERSHIP_DISCLAIMER);
     }
 
-    private boolean getReturnBeforePolicyCompliance(Intent intent) {
+    private boolean getReturnBeforePolicyCompliance(Intent intent, ProvisioningExtras extras) {
         if (intent.getAction().equals(ACTION_PROVISION_MANAGED_PROFILE)) {
             // TODO(b/182462297): Default to false after in-setup wizard is no longer supported
             return mSettingsFacade.isDuringSetupWizard(mContext);
@@ -633,17 +572,16 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
         if (intent.getAction().equals(ACTION_PROVISION_FINANCED_DEVICE)) {
             return true;
         }
-        return getBooleanExtraFromLongName(
-                intent,
+        return extras.getBoolean(
                 EXTRA_PROVISIONING_RETURN_BEFORE_POLICY_COMPLIANCE,
                 /* defaultValue */ true);
     }
 
-    private int getInitiatorRequestedProvisioningModes(Intent intent) {
+    private int getInitiatorRequestedProvisioningModes(Intent intent, ProvisioningExtras extras) {
         if (!intent.getAction().equals(ACTION_PROVISION_MANAGED_DEVICE_FROM_TRUSTED_SOURCE)) {
             return ProvisioningParams.DEFAULT_EXTRA_PROVISIONING_SUPPORTED_MODES;
         }
-        int supportedModes = getIntExtraFromLongName(intent,
+        int supportedModes = extras.getInt(
                 EXTRA_PROVISIONING_SUPPORTED_MODES,
                 FLAG_SUPPORTED_MODES_ORGANIZATION_OWNED);
         mParserUtils.validateSupportedModes(supportedModes);
@@ -655,8 +593,8 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
      * a provisioning extra, we only process it for managed Google account enrollment and
      * persistent device owner.
      */
-    private boolean shouldSkipEducationScreens(Intent intent) {
-        if (!getBooleanExtraFromLongName(intent,
+    private boolean shouldSkipEducationScreens(Intent intent, ProvisioningExtras extras) {
+        if (!extras.getBoolean(
                 EXTRA_PROVISIONING_SKIP_EDUCATION_SCREENS,
                 DEFAULT_EXTRA_PROVISIONING_SKIP_EDUCATION_SCREENS)) {
             return false;
@@ -681,29 +619,31 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
      * Parses an intent and return a corresponding {@link ProvisioningParams} object.
      *
      * @param intent intent to be parsed.
+     * @param extras the extras of the intent.
      * @param context a context
      */
-    private ProvisioningParams parseAllSupportedProvisioningData(Intent intent, Context context)
+    private ProvisioningParams parseAllSupportedProvisioningData(
+            Intent intent, ProvisioningExtras extras, Context context)
             throws IllegalProvisioningArgumentException {
         try {
             ProvisionLogger.logi("Processing all supported extras intent: " + intent.getAction());
-            return parseMinimalistSupportedProvisioningDataInternal(intent, context)
+            return parseMinimalistSupportedProvisioningDataInternal(intent, extras, context)
                     // Parse time zone, local time and locale.
-                    .setTimeZone(getStringExtraFromLongName(intent, EXTRA_PROVISIONING_TIME_ZONE))
+                    .setTimeZone(extras.getString(EXTRA_PROVISIONING_TIME_ZONE))
                     .setLocalTime(
-                            getParcelableExtraFromLongName(
-                                    intent, EXTRA_PROVISIONING_LOCAL_TIME,
+                            extras.getLong(
+                                    EXTRA_PROVISIONING_LOCAL_TIME,
                                     ProvisioningParams.DEFAULT_LOCAL_TIME))
                     .setLocale(StoreUtils.stringToLocale(
-                            getStringExtraFromLongName(intent,EXTRA_PROVISIONING_LOCALE)))
+                            extras.getString(EXTRA_PROVISIONING_LOCALE)))
                     .setUseMobileData(
-                            getBooleanExtraFromLongName(
-                                    intent, EXTRA_PROVISIONING_USE_MOBILE_DATA,
+                            extras.getBoolean(
+                                    EXTRA_PROVISIONING_USE_MOBILE_DATA,
                                     DEFAULT_EXTRA_PROVISIONING_USE_MOBILE_DATA))
                     // Parse WiFi configuration.
-                    .setWifiInfo(parseWifiInfoFromExtras(intent))
+                    .setWifiInfo(parseWifiInfoFromExtras(extras))
                     // Parse device admin package download info.
-                    .setDeviceAdminDownloadInfo(parsePackageDownloadInfoFromExtras(intent))
+                    .setDeviceAdminDownloadInfo(parsePackageDownloadInfoFromExtras(extras))
                     // Cases where startedByTrustedSource can be true are
                     // 1. We are reloading a stored provisioning intent, either Nfc bump or
                     //    PROVISION_MANAGED_DEVICE_FROM_TRUSTED_SOURCE, after encryption reboot,
@@ -725,17 +665,19 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
      * Parses an intent and return a corresponding {@link ProvisioningParams} object.
      *
      * @param intent intent to be parsed.
+     * @param extras the extras of the intent.
      */
-    private ProvisioningParams parseNetworkProvisioningData(Intent intent)
+    private ProvisioningParams parseNetworkProvisioningData(
+            Intent intent, ProvisioningExtras extras)
             throws IllegalProvisioningArgumentException {
         try {
             ProvisionLogger.logi("Processing network-related extras intent: " + intent.getAction());
             return ProvisioningParams.Builder.builder(/* skipValidation= */ true)
                     .setUseMobileData(
-                            getBooleanExtraFromLongName(
-                                    intent, EXTRA_PROVISIONING_USE_MOBILE_DATA,
+                            extras.getBoolean(
+                                    EXTRA_PROVISIONING_USE_MOBILE_DATA,
                                     DEFAULT_EXTRA_PROVISIONING_USE_MOBILE_DATA))
-                    .setWifiInfo(parseWifiInfoFromExtras(intent))
+                    .setWifiInfo(parseWifiInfoFromExtras(extras))
                     .build();
         }  catch (IllegalArgumentException e) {
             throw new IllegalProvisioningArgumentException("Invalid parameter found!", e);
@@ -750,37 +692,37 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
      * Parses Wifi configuration from an Intent and returns the result in {@link WifiInfo}.
      */
     @Nullable
-    private WifiInfo parseWifiInfoFromExtras(Intent intent) {
-        if (getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_SSID) == null) {
+    private WifiInfo parseWifiInfoFromExtras(ProvisioningExtras extras) {
+        if (extras.getString(EXTRA_PROVISIONING_WIFI_SSID) == null) {
             return null;
         }
         return WifiInfo.Builder.builder()
-                .setSsid(getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_SSID))
+                .setSsid(extras.getString(EXTRA_PROVISIONING_WIFI_SSID))
                 .setSecurityType(
-                        getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_SECURITY_TYPE))
-                .setPassword(getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_PASSWORD))
-                .setProxyHost(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_PROXY_HOST))
+                        extras.getString(EXTRA_PROVISIONING_WIFI_SECURITY_TYPE))
+                .setPassword(extras.getString(EXTRA_PROVISIONING_WIFI_PASSWORD))
+                .setProxyHost(extras.getString(
+                        EXTRA_PROVISIONING_WIFI_PROXY_HOST))
                 .setProxyBypassHosts(
-                        getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_PROXY_BYPASS))
-                .setPacUrl(getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_PAC_URL))
-                .setProxyPort(getIntExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_PROXY_PORT,
+                        extras.getString(EXTRA_PROVISIONING_WIFI_PROXY_BYPASS))
+                .setPacUrl(extras.getString(EXTRA_PROVISIONING_WIFI_PAC_URL))
+                .setProxyPort(extras.getInt(
+                        EXTRA_PROVISIONING_WIFI_PROXY_PORT,
                         WifiInfo.DEFAULT_WIFI_PROXY_PORT))
-                .setEapMethod(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_EAP_METHOD))
-                .setPhase2Auth(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_PHASE2_AUTH))
-                .setCaCertificate(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_CA_CERTIFICATE))
-                .setUserCertificate(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_USER_CERTIFICATE))
-                .setIdentity(getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_IDENTITY))
-                .setAnonymousIdentity(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_ANONYMOUS_IDENTITY))
-                .setDomain(getStringExtraFromLongName(intent, EXTRA_PROVISIONING_WIFI_DOMAIN))
-                .setHidden(getBooleanExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_WIFI_HIDDEN, WifiInfo.DEFAULT_WIFI_HIDDEN))
+                .setEapMethod(extras.getString(
+                        EXTRA_PROVISIONING_WIFI_EAP_METHOD))
+                .setPhase2Auth(extras.getString(
+                        EXTRA_PROVISIONING_WIFI_PHASE2_AUTH))
+                .setCaCertificate(extras.getString(
+                        EXTRA_PROVISIONING_WIFI_CA_CERTIFICATE))
+                .setUserCertificate(extras.getString(
+                        EXTRA_PROVISIONING_WIFI_USER_CERTIFICATE))
+                .setIdentity(extras.getString(EXTRA_PROVISIONING_WIFI_IDENTITY))
+                .setAnonymousIdentity(extras.getString(
+                        EXTRA_PROVISIONING_WIFI_ANONYMOUS_IDENTITY))
+                .setDomain(extras.getString(EXTRA_PROVISIONING_WIFI_DOMAIN))
+                .setHidden(extras.getBoolean(
+                        EXTRA_PROVISIONING_WIFI_HIDDEN, WifiInfo.DEFAULT_WIFI_HIDDEN))
                 .build();
     }
 
@@ -789,27 +731,27 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
      * in {@link PackageDownloadInfo}.
      */
     @Nullable
-    private PackageDownloadInfo parsePackageDownloadInfoFromExtras(Intent intent) {
-        if (getStringExtraFromLongName(
-                intent, EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_LOCATION) == null) {
+    private PackageDownloadInfo parsePackageDownloadInfoFromExtras(ProvisioningExtras extras) {
+        if (extras.getString(
+                EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_LOCATION) == null) {
             return null;
         }
         PackageDownloadInfo.Builder downloadInfoBuilder = PackageDownloadInfo.Builder.builder()
-                .setMinVersion(getIntExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_DEVICE_ADMIN_MINIMUM_VERSION_CODE,
+                .setMinVersion(extras.getInt(
+                        EXTRA_PROVISIONING_DEVICE_ADMIN_MINIMUM_VERSION_CODE,
                         PackageDownloadInfo.DEFAULT_MINIMUM_VERSION))
-                .setLocation(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_LOCATION))
-                .setCookieHeader(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_COOKIE_HEADER));
+                .setLocation(extras.getString(
+                        EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_LOCATION))
+                .setCookieHeader(extras.getString(
+                        EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_COOKIE_HEADER));
         String packageHash =
-                getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_CHECKSUM);
+                extras.getString(
+                        EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_CHECKSUM);
         if (packageHash != null) {
             downloadInfoBuilder.setPackageChecksum(StoreUtils.stringToByteArray(packageHash));
         }
-        String sigHash = getStringExtraFromLongName(
-                intent, EXTRA_PROVISIONING_DEVICE_ADMIN_SIGNATURE_CHECKSUM);
+        String sigHash = extras.getString(
+                EXTRA_PROVISIONING_DEVICE_ADMIN_SIGNATURE_CHECKSUM);
         if (sigHash != null) {
             downloadInfoBuilder.setSignatureChecksum(StoreUtils.stringToByteArray(sigHash));
         }
@@ -826,21 +768,22 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
      * {@link DevicePolicyManager#EXTRA_PROVISIONING_ROLE_HOLDER_SIGNATURE_CHECKSUM}.
      */
     @Nullable
-    private PackageDownloadInfo parseRoleHolderDownloadInfoFromExtras(Intent intent) {
+    private PackageDownloadInfo parseRoleHolderDownloadInfoFromExtras(
+            Intent intent, ProvisioningExtras extras) {
         if (!intent.getAction().equals(ACTION_PROVISION_MANAGED_DEVICE_FROM_TRUSTED_SOURCE)) {
             ProvisionLogger.logi("Cannot parse role holder download info for non-trusted source "
                     + "provisioning.");
             return null;
         }
-        String downloadLocation = getStringExtraFromLongName(
-                intent, EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_LOCATION);
+        String downloadLocation = extras.getString(
+                EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_LOCATION);
         if (downloadLocation == null) {
             ProvisionLogger.logi("Cannot parse role holder download info, because it does not "
                     + "include the download location extra.");
             return null;
         }
-        String sigHash = getStringExtraFromLongName(
-                intent, EXTRA_PROVISIONING_ROLE_HOLDER_SIGNATURE_CHECKSUM);
+        String sigHash = extras.getString(
+                EXTRA_PROVISIONING_ROLE_HOLDER_SIGNATURE_CHECKSUM);
         if (sigHash == null) {
             ProvisionLogger.logi("Cannot parse role holder download info, because it does not "
                     + "include the signature checksum extra.");
@@ -848,8 +791,8 @@ public class ExtrasProvisioningDataParser implements ProvisioningDataParser {
         }
         PackageDownloadInfo.Builder downloadInfoBuilder = PackageDownloadInfo.Builder.builder()
                 .setLocation(downloadLocation)
-                .setCookieHeader(getStringExtraFromLongName(
-                        intent, EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_COOKIE_HEADER));
+                .setCookieHeader(extras.getString(
+                        EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_COOKIE_HEADER));
         downloadInfoBuilder.setSignatureChecksum(StoreUtils.stringToByteArray(sigHash));
         return downloadInfoBuilder.build();
     }
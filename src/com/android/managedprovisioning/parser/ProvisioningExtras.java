@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.parser;
+
+import android.os.BadParcelableException;
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import androidx.annotation.Nullable;
+
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * View of the extras of a provisioning intent, keyed by the canonical (long) names of the
+ * extras.
+ *
+ * <p>The keys of the extras {@link Bundle} are walked once, and every shorter name (e.g.
+ * {@code a.a.e.PWS}) is mapped to its canonical name. Values are only read from the bundle when
+ * they are asked for, so that unrelated extras are never unparcelled. When an extra is given under
+ * both names, the canonical name wins. Extras with a {@code null} value, or which can't be
+ * unparcelled, are treated as missing.
+ *
+ * <p>Like {@link Bundle}, the typed getters return the default value when the extra has another
+ * type, except {@link #getParcelable(String)} which leaves the check to the caller.
+ */
+class ProvisioningExtras {
+
+    private static final ProvisioningExtras EMPTY =
+            new ProvisioningExtras(new Bundle(), Collections.emptyMap());
+
+    private final Bundle mExtras;
+    /** The keys of the bundle each canonical name can be read from, in order of precedence. */
+    private final Map<String, List<String>> mKeys;
+
+    private ProvisioningExtras(Bundle extras, Map<String, List<String>> keys) {
+        mExtras = extras;
+        mKeys = keys;
+    }
+
+    /**
+     * @param canonicalNames the canonical name of every shorter name.
+     */
+    static ProvisioningExtras from(@Nullable Bundle extras, Map<String, String> canonicalNames) {
+        if (extras == null || extras.isEmpty()) {
+            return EMPTY;
+        }
+        final Map<String, List<String>> keys = new HashMap<>(extras.size());
+        for (String key : extras.keySet()) {
+            final String canonicalName = canonicalNames.get(key);
+            if (canonicalName == null) {
+                keys.computeIfAbsent(key, name -> new ArrayList<>(1)).add(0, key);
+            } else {
+                keys.computeIfAbsent(canonicalName, name -> new ArrayList<>(1)).add(key);
+            }
+        }
+        return new ProvisioningExtras(extras, keys);
+    }
+
+    @Nullable
+    String getString(String name) {
+        final Object value = get(name);
+        return value instanceof String ? (String) value : null;
+    }
+
+    int getInt(String name, int defaultValue) {
+        final Object value = get(name);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    long getLong(String name, long defaultValue) {
+        final Object value = get(name);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    boolean getBoolean(String name, boolean defaultValue) {
+        final Object value = get(name);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * Returns the given extra if it is a {@link Parcelable}. As with
+     * {@link Bundle#getParcelable(String)}, a {@link ClassCastException} is thrown by the caller
+     * if it isn't a {@code T}.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    <T extends Parcelable> T getParcelable(String name) {
+        final Object value = get(name);
+        return value instanceof Parcelable ? (T) value : null;
+    }
+
+    @Nullable
+    Parcelable[] getParcelableArray(String name) {
+        final Object value = get(name);
+        return value instanceof Parcelable[] ? (Parcelable[]) value : null;
+    }
+
+    @Nullable
+    @SuppressWarnings("deprecation")
+    private Object get(String name) {
+        final List<String> keys = mKeys.get(name);
+        if (keys == null) {
+            return null;
+        }
+        for (String key : keys) {
+            try {
+                final Object value = mExtras.get(key);
+                if (value != null) {
+                    return value;
+                }
+            } catch (BadParcelableException e) {
+                ProvisionLogger.logw("Could not read extra " + key, e);
+            }
+        }
+        return null;
+    }
+}
@@ -36,6 +36,7 @@ import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.common.TransitionHelper;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.ProvisioningParams;
+import com.android.managedprovisioning.model.ProvisioningParamsRepository;
 
 import java.io.File;
 import java.util.function.Consumer;
@@ -120,7 +121,8 @@ public class EncryptionController {
     public void setEncryptionReminder(ProvisioningParams params) {
         ProvisionLogger.logd("Setting provisioning reminder for action: "
                 + params.provisioningAction);
-        params.save(getProvisioningParamsFile(mContext));
+        ProvisioningParamsRepository.getInstance().save(
+                getProvisioningParamsFile(mContext), params);
         // Only enable the HOME intent receiver for flows inside SUW, as showing the notification
         // for non-SUW flows is less time cricital.
         if (!mSettingsFacade.isUserSetupCompleted(mContext)) {
@@ -137,7 +139,7 @@ public class EncryptionController {
      */
     public void cancelEncryptionReminder() {
         ProvisionLogger.logd("Cancelling provisioning reminder.");
-        getProvisioningParamsFile(mContext).delete();
+        ProvisioningParamsRepository.getInstance().delete(getProvisioningParamsFile(mContext));
         mUtils.disableComponent(mHomeReceiver, mUserId);
     }
 
@@ -177,7 +179,8 @@ public class EncryptionController {
             return;
         }
 
-        ProvisioningParams params = ProvisioningParams.load(getProvisioningParamsFile(mContext));
+        ProvisioningParams params = ProvisioningParamsRepository.getInstance()
+                .load(getProvisioningParamsFile(mContext));
 
         if (params != null) {
             Intent resumeIntent = new Intent(Globals.ACTION_RESUME_PROVISIONING);
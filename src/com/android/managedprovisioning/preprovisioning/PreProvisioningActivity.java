@@ -343,9 +343,11 @@ public class PreProvisioningActivity extends SetupGlifLayoutActivity implements
                 }
                 break;
             case START_PLATFORM_REQUESTED_ROLE_HOLDER_UPDATE_REQUEST_CODE:
+                mController.onRoleHolderUpdaterFinished();
                 handlePlatformRequestedUpdateResult(resultCode, data);
                 break;
             case START_ROLE_HOLDER_REQUESTED_UPDATE_REQUEST_CODE:
+                mController.onRoleHolderUpdaterFinished();
                 handleRoleHolderRequestedUpdateResult(resultCode, data);
                 break;
             case START_DEVICE_MANAGEMENT_ROLE_HOLDER_PROVISIONING_REQUEST_CODE:
@@ -655,6 +657,7 @@ public class PreProvisioningActivity extends SetupGlifLayoutActivity implements
     private void onProvisioningAborted() {
         setResult(Activity.RESULT_CANCELED);
         mController.logPreProvisioningCancelled();
+        mController.discardPrefetchedPackage();
         getTransitionHelper().finishActivity(this);
     }
 
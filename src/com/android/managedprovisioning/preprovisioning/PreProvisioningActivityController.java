@@ -107,6 +107,7 @@ import com.android.managedprovisioning.common.PolicyComplianceUtils;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.RoleHolderProvider;
 import com.android.managedprovisioning.common.RoleHolderUpdaterProvider;
+import com.android.managedprovisioning.common.RoleHolderValidationCache;
 import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.common.StoreUtils;
 import com.android.managedprovisioning.common.Utils;
@@ -118,6 +119,7 @@ import com.android.managedprovisioning.parser.DisclaimersParserImpl;
 import com.android.managedprovisioning.preprovisioning.PreProvisioningViewModel.DefaultConfig;
 import com.android.managedprovisioning.preprovisioning.PreProvisioningViewModel.PreProvisioningViewModelFactory;
 import com.android.managedprovisioning.provisioning.Constants;
+import com.android.managedprovisioning.task.PackagePrefetcher;
 
 import java.util.IllformedLocaleException;
 import java.util.List;
@@ -171,7 +173,8 @@ public class PreProvisioningActivityController {
                         new DefaultPackageInstallChecker(activity.getPackageManager(), new Utils()),
                         new DefaultResolveIntentChecker(),
                         new DefaultRoleHolderStubChecker(),
-                        new DefaultFeatureFlagChecker(activity.getContentResolver())
+                        new DefaultFeatureFlagChecker(activity.getContentResolver()),
+                        RoleHolderValidationCache.getInstance(activity)
                 ),
                 new DeviceManagementRoleHolderUpdaterHelper(
                         RoleHolderUpdaterProvider.DEFAULT.getPackageName(activity),
@@ -250,6 +253,8 @@ public class PreProvisioningActivityController {
                             roleHolderAdditionalExtras, callingPackage, mViewModel.getRoleHolderState()
                     );
             mSharedPreferences.setIsProvisioningFlowDelegatedToRoleHolder(true);
+            // The role holder downloads the device admin package itself
+            discardPrefetchedPackage();
             mViewModel.onRoleHolderProvisioningInitiated();
             mUi.startRoleHolderProvisioning(roleHolderProvisioningIntent);
             return true;
@@ -279,6 +284,14 @@ public class PreProvisioningActivityController {
         mUi.startRoleHolderUpdater(isRoleHolderRequestedUpdate);
     }
 
+    /**
+     * Called when the role holder updater returns, after which the role holder may have been
+     * replaced, so that it is validated again before provisioning is delegated to it.
+     */
+    public void onRoleHolderUpdaterFinished() {
+        mRoleHolderHelper.invalidateRoleHolderValidation();
+    }
+
     /**
      * Starts the role holder updater with the last provided role holder state.
      *
@@ -375,6 +388,7 @@ public class PreProvisioningActivityController {
         mSharedPreferences.writeProvisioningStartedTimestamp(SystemClock.elapsedRealtime());
         mSharedPreferences.setIsProvisioningFlowDelegatedToRoleHolder(false);
         mProvisioningAnalyticsTracker.logProvisioningSessionStarted(mContext);
+        mRoleHolderHelper.prefetchRoleHolderValidation(mContext);
 
         logProvisioningExtras(intent);
 
@@ -435,6 +449,7 @@ public class PreProvisioningActivityController {
         }
 
         mUi.onParamsValidated(params);
+        maybePrefetchDeviceAdminPackage(params);
 
         // TODO(b/207376815): Have a PreProvisioningForwarderActivity to forward to either
         //  platform-provided provisioning or DMRH
@@ -1042,6 +1057,31 @@ public class PreProvisioningActivityController {
         mViewModel.getTimeLogger().stop();
     }
 
+    /**
+     * Starts downloading the device admin package in the background, so that it is ready by the
+     * time provisioning starts. The network and the installed package are checked in the
+     * background as well.
+     */
+    private void maybePrefetchDeviceAdminPackage(ProvisioningParams params) {
+        if (!Constants.ENABLE_PACKAGE_PREFETCH || params.deviceAdminDownloadInfo == null) {
+            return;
+        }
+        final String packageName = params.inferDeviceAdminPackageName();
+        final int minVersion = params.deviceAdminDownloadInfo.minVersion;
+        PackagePrefetcher.getInstance(mContext).prefetch(params.deviceAdminDownloadInfo,
+                () -> mUtils.isConnectedToNetwork(mContext)
+                        && mUtils.packageRequiresUpdate(packageName, minVersion, mContext));
+    }
+
+    /**
+     * Discards the device admin package downloaded in the background, if any.
+     */
+    public void discardPrefetchedPackage() {
+        if (Constants.ENABLE_PACKAGE_PREFETCH) {
+            PackagePrefetcher.getInstance(mContext).discard();
+        }
+    }
+
     /**
      * Log if PreProvisioning was cancelled.
      */
@@ -16,9 +16,6 @@
 
 package com.android.managedprovisioning.preprovisioning.terms;
 
-import static android.content.pm.PackageManager.GET_META_DATA;
-import static android.content.pm.PackageManager.MATCH_SYSTEM_ONLY;
-
 import static java.util.Objects.requireNonNull;
 
 import android.app.Application;
@@ -27,6 +24,7 @@ import android.util.ArraySet;
 import androidx.lifecycle.ViewModel;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.common.StoreUtils;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.ProvisioningParams;
@@ -110,9 +108,8 @@ final class TermsViewModel extends ViewModel {
                             StoreUtils::readString,
                             mParams,
                             new Utils(),
-                            () -> mApplication.getApplicationContext().getPackageManager()
-                                    .getInstalledApplications(
-                                            MATCH_SYSTEM_ONLY | GET_META_DATA)));
+                            () -> PackageIndex.getInstance(mApplication)
+                                    .getInstalledSystemApplications(mApplication.getUserId())));
         }
     }
 }
@@ -30,6 +30,8 @@ import android.os.UserManager;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.analytics.ProvisioningTracer;
+import com.android.managedprovisioning.analytics.TraceSpan;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
@@ -41,7 +43,11 @@ import com.android.managedprovisioning.task.InstallPackageTask;
 import com.android.managedprovisioning.task.VerifyAdminPackageTask;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Controller that manages the provisioning process. It controls the order of provisioning tasks,
@@ -52,6 +58,12 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
     @VisibleForTesting
     static final int MSG_RUN_TASK = 1;
 
+    /**
+     * Maximum number of tasks that run at the same time when the tasks are run as a graph.
+     */
+    @VisibleForTesting
+    static final int MAX_CONCURRENT_TASKS = 3;
+
     protected final Context mContext;
     protected final ProvisioningParams mParams;
     protected int mUserId;
@@ -78,6 +90,19 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
 
     protected int mCurrentTaskIndex;
 
+    private boolean mTaskGraphEnabled;
+    private final List<Handler> mWorkerHandlers = new ArrayList<>();
+    private final List<HandlerThread> mWorkerThreads = new ArrayList<>();
+    // Unfinished dependencies of each task, only used when the tasks are run as a graph
+    private final Map<AbstractProvisioningTask, Set<AbstractProvisioningTask>>
+            mPendingDependencies = new HashMap<>();
+    private final Set<AbstractProvisioningTask> mDispatchedTasks = new HashSet<>();
+    private final Set<AbstractProvisioningTask> mFinishedTasks = new HashSet<>();
+    private int mNextWorkerIndex;
+    // Only used when the tasks are run one by one
+    private ProvisioningJournal mJournal;
+    private TraceSpan mTraceSpan;
+
     public AbstractProvisioningController(
             Context context,
             ProvisioningParams params,
@@ -99,6 +124,21 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
         }
     }
 
+    /**
+     * Sets whether the tasks are run as a graph rather than one by one.
+     *
+     * <p>When enabled, every task whose dependencies (see
+     * {@link AbstractProvisioningTask#dependsOn(AbstractProvisioningTask...)}) have finished is
+     * run straight away, with at most {@link #MAX_CONCURRENT_TASKS} worker threads.
+     */
+    @MainThread
+    protected synchronized void setTaskGraphEnabled(boolean enabled) {
+        if (mStatus != STATUS_NOT_STARTED) {
+            return;
+        }
+        mTaskGraphEnabled = enabled;
+    }
+
     protected abstract void setUpTasks();
     protected abstract int getErrorTitle();
     protected abstract int getErrorMsgId(AbstractProvisioningTask task, int errorCode);
@@ -110,20 +150,98 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
      */
     @MainThread
     public synchronized void start(Looper looper) {
-        start(new ProvisioningTaskHandler(looper));
+        if (!mTaskGraphEnabled) {
+            start(new ProvisioningTaskHandler(looper));
+            return;
+        }
+        List<Handler> handlers = new ArrayList<>();
+        handlers.add(new ProvisioningTaskHandler(looper));
+        for (int i = 1; i < MAX_CONCURRENT_TASKS; i++) {
+            HandlerThread thread = new HandlerThread(
+                    String.format("%s Worker %d", getClass().getName(), i));
+            thread.start();
+            mWorkerThreads.add(thread);
+            handlers.add(new ProvisioningTaskHandler(thread.getLooper()));
+        }
+        start(handlers);
     }
 
     @VisibleForTesting
     void start(Handler handler) {
+        List<Handler> handlers = new ArrayList<>();
+        handlers.add(handler);
+        start(handlers);
+    }
+
+    @VisibleForTesting
+    synchronized void start(List<Handler> handlers) {
         if (mStatus != STATUS_NOT_STARTED) {
             return;
         }
-        mWorkerHandler = checkNotNull(handler);
+        mWorkerHandler = checkNotNull(handlers.get(0));
+        mWorkerHandlers.addAll(handlers);
 
         mStatus = STATUS_RUNNING;
-        runTask(0);
+        mTraceSpan = ProvisioningTracer.getInstance().startChild(getClass().getSimpleName());
+        if (mTaskGraphEnabled) {
+            buildTaskGraph();
+            runReadyTasks();
+        } else {
+            if (Constants.ENABLE_PROVISIONING_JOURNAL) {
+                mJournal = createJournal();
+                mCurrentTaskIndex = getResumeTaskIndex();
+            }
+            runTask(mCurrentTaskIndex);
+        }
+    }
+
+    @VisibleForTesting
+    ProvisioningJournal createJournal() {
+        List<String> taskNames = new ArrayList<>();
+        for (AbstractProvisioningTask task : mTasks) {
+            taskNames.add(task.getClass().getName());
+        }
+        return new ProvisioningJournal(
+                mContext, getClass().getName() + ":" + mParams.provisioningId, taskNames);
     }
 
+    /**
+     * Returns the index of the first task to run, restoring the output of the tasks that
+     * succeeded before the process died.
+     *
+     * <p>Provisioning starts over if the first unfinished task had already been started and
+     * isn't {@link AbstractProvisioningTask#isIdempotent() idempotent}.
+     */
+    private int getResumeTaskIndex() {
+        int index = 0;
+        while (index < mTasks.size()
+                && mJournal.getState(index) == ProvisioningJournal.STATE_SUCCEEDED
+                && mTasks.get(index).restoreJournalOutput(mJournal.getOutput(index))) {
+            index++;
+        }
+        if (index < mTasks.size()
+                && mJournal.getState(index) != ProvisioningJournal.STATE_NOT_STARTED
+                && !mTasks.get(index).isIdempotent()) {
+            ProvisionLogger.logw("Cannot resume provisioning from "
+                    + mTasks.get(index).getClass().getSimpleName() + ", starting over");
+            mJournal.reset();
+            return 0;
+        }
+        if (index > 0) {
+            ProvisionLogger.logi("Resuming provisioning from task " + index);
+        }
+        for (int i = 0; i < index; i++) {
+            onTaskRestored(mTasks.get(i));
+        }
+        return index;
+    }
+
+    /**
+     * Called instead of {@link #onSuccess(AbstractProvisioningTask)} for a task that succeeded
+     * before the process died, once its output has been restored.
+     */
+    protected void onTaskRestored(AbstractProvisioningTask task) {}
+
     /**
      * Cancel the provisioning progress. When the cancellation is complete, the
      * {@link ProvisioningControllerCallback#cleanUpCompleted()} callback will be given.
@@ -136,22 +254,92 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
     }
 
     private void runTask(int index) {
+        if (index == mTasks.size()) {
+            tasksCompleted();
+            return;
+        }
+        if (mJournal != null) {
+            mJournal.recordStarted(index);
+            // Posted ahead of the task so that it is written before the task runs. This also
+            // persists the success of the previous task, recorded just before, in the same write.
+            mWorkerHandler.post(mJournal::flush);
+        }
+        runTask(mTasks.get(index), mWorkerHandler);
+    }
+
+    private void runTask(AbstractProvisioningTask task, Handler handler) {
+        task.startTraceSpan(mTraceSpan);
+        Message msg = handler.obtainMessage(MSG_RUN_TASK, mUserId, 0 /* arg2 not used */, task);
+        handler.sendMessage(msg);
+    }
+
+    private void buildTaskGraph() {
+        for (int i = 0; i < mTasks.size(); i++) {
+            AbstractProvisioningTask task = mTasks.get(i);
+            Set<AbstractProvisioningTask> dependencies = new HashSet<>();
+            if (task.hasDeclaredDependencies()) {
+                for (AbstractProvisioningTask dependency : task.getDependencies()) {
+                    int dependencyIndex = mTasks.indexOf(dependency);
+                    if (dependencyIndex >= i) {
+                        throw new IllegalStateException(
+                                dependency.getClass().getSimpleName() + " must be added before "
+                                        + task.getClass().getSimpleName());
+                    }
+                    if (dependencyIndex >= 0) {
+                        dependencies.add(dependency);
+                    }
+                }
+            } else {
+                dependencies.addAll(mTasks.subList(0, i));
+            }
+            mPendingDependencies.put(task, dependencies);
+        }
+    }
+
+    private void runReadyTasks() {
         if (mTasks.isEmpty()) {
             tasksCompleted();
             return;
         }
-        AbstractProvisioningTask nextTask = mTasks.get(index);
-        Message msg = mWorkerHandler.obtainMessage(MSG_RUN_TASK, mUserId, 0 /* arg2 not used */,
-                nextTask);
-        mWorkerHandler.sendMessage(msg);
+        for (AbstractProvisioningTask task : mTasks) {
+            if (!mDispatchedTasks.contains(task) && mPendingDependencies.get(task).isEmpty()) {
+                mDispatchedTasks.add(task);
+                runTask(task, mWorkerHandlers.get(mNextWorkerIndex));
+                mNextWorkerIndex = (mNextWorkerIndex + 1) % mWorkerHandlers.size();
+            }
+        }
     }
 
     private void tasksCompleted() {
         mStatus = STATUS_TASKS_COMPLETED;
         mCurrentTaskIndex = -1;
+        deleteJournal();
+        quitWorkerThreads();
+        endTraceSpan();
         mCallback.provisioningTasksCompleted();
     }
 
+    private synchronized void quitWorkerThreads() {
+        for (HandlerThread thread : mWorkerThreads) {
+            thread.quitSafely();
+        }
+        mWorkerThreads.clear();
+    }
+
+    private synchronized void endTraceSpan() {
+        if (mTraceSpan != null) {
+            mTraceSpan.end();
+            mTraceSpan = null;
+        }
+    }
+
+    private synchronized void deleteJournal() {
+        if (mJournal != null) {
+            mJournal.delete();
+            mJournal = null;
+        }
+    }
+
     @Override
     // Note that this callback might come on the main thread
     public synchronized void onSuccess(AbstractProvisioningTask task) {
@@ -159,11 +347,33 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
             return;
         }
 
+        if (mTaskGraphEnabled) {
+            onTaskGraphSuccess(task);
+            return;
+        }
+
+        if (mJournal != null) {
+            mJournal.recordSucceeded(mCurrentTaskIndex, task.getJournalOutput());
+        }
         mCurrentTaskIndex++;
+        runTask(mCurrentTaskIndex);
+    }
+
+    private void onTaskGraphSuccess(AbstractProvisioningTask task) {
+        if (!mDispatchedTasks.contains(task) || !mFinishedTasks.add(task)) {
+            ProvisionLogger.loge("Unexpected success callback from "
+                    + task.getClass().getSimpleName());
+            return;
+        }
+        for (Set<AbstractProvisioningTask> dependencies : mPendingDependencies.values()) {
+            dependencies.remove(task);
+        }
+
+        mCurrentTaskIndex = mFinishedTasks.size();
         if (mCurrentTaskIndex == mTasks.size()) {
             tasksCompleted();
         } else {
-            runTask(mCurrentTaskIndex);
+            runReadyTasks();
         }
     }
 
@@ -171,6 +381,10 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
     // Note that this callback might come on the main thread
     public synchronized void onError(AbstractProvisioningTask task, int errorCode,
             String errorMessage) {
+        if (mTaskGraphEnabled && mStatus != STATUS_RUNNING) {
+            // Another task running at the same time has already failed or been cancelled
+            return;
+        }
         mStatus = STATUS_ERROR;
         cleanup(STATUS_ERROR);
         mProvisioningAnalyticsTracker.logProvisioningError(mContext, task, errorCode);
@@ -186,10 +400,26 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
     private void cleanup(final int newStatus) {
         mWorkerHandler.post(() -> {
                 mStatus = newStatus;
+                cleanUpDownloadedPackages();
+                deleteJournal();
+                quitWorkerThreads();
+                endTraceSpan();
                 mCallback.cleanUpCompleted();
             });
     }
 
+    /**
+     * Deletes the packages downloaded by the tasks, which won't be installed once provisioning
+     * has failed or been cancelled.
+     */
+    private void cleanUpDownloadedPackages() {
+        for (AbstractProvisioningTask task : mTasks) {
+            if (task instanceof DownloadPackageTask) {
+                ((DownloadPackageTask) task).cleanUp();
+            }
+        }
+    }
+
     protected final void addDownloadAndInstallDeviceOwnerPackageTasks() {
         if (mParams.deviceAdminDownloadInfo == null) {
             return;
@@ -229,7 +459,9 @@ public abstract class AbstractProvisioningController implements AbstractProvisio
                 int userId = msg.arg1;
                 ProvisionLogger.logd("Running task: " + task.getClass().getSimpleName()
                         + " for user " + userId);
-                task.run(userId);
+                try (TraceSpan ignored = task.startTraceSection("run")) {
+                    task.run(userId);
+                }
             } else {
                 ProvisionLogger.loge("Unknown message: " + msg.what);
             }
@@ -88,6 +88,48 @@ public final class Constants {
      */
     public static boolean ENABLE_CUSTOM_TRANSITIONS = false;
 
+    /**
+     * A boolean flag to indicate whether provisioning controllers that declare task dependencies
+     * may run independent tasks concurrently.
+     */
+    public static boolean ENABLE_PROVISIONING_TASK_GRAPH = false;
+
+    /**
+     * A boolean flag to indicate whether the admin package is downloaded, hashed and staged into
+     * the install session in a single pass instead of going through the download manager.
+     */
+    public static boolean ENABLE_STREAMING_PACKAGE_DOWNLOAD = false;
+
+    /**
+     * A boolean flag to indicate whether packages are downloaded by Managed Provisioning itself,
+     * resuming interrupted transfers with range requests, instead of by the download manager.
+     */
+    public static boolean ENABLE_RESUMABLE_PACKAGE_DOWNLOAD = false;
+
+    /**
+     * A boolean flag to indicate whether packages are downloaded over several connections at once
+     * when the server supports range requests.
+     */
+    public static boolean ENABLE_SEGMENTED_PACKAGE_DOWNLOAD = false;
+
+    /**
+     * A boolean flag to indicate whether downloaded packages are kept in a persistent cache and
+     * reused by later provisioning attempts.
+     */
+    public static boolean ENABLE_PACKAGE_DOWNLOAD_CACHE = false;
+
+    /**
+     * A boolean flag to indicate whether the device admin package is downloaded in the background
+     * while the pre-provisioning screens are shown.
+     */
+    public static boolean ENABLE_PACKAGE_PREFETCH = false;
+
+    /**
+     * A boolean flag to indicate whether the progress of provisioning is journaled, so that it can
+     * resume where it stopped if the process dies.
+     */
+    public static boolean ENABLE_PROVISIONING_JOURNAL = false;
+
     public static final Intent PROVISIONING_SERVICE_INTENT = new Intent().setComponent(
             new ComponentName(
                     Globals.MANAGED_PROVISIONING_PACKAGE_NAME,
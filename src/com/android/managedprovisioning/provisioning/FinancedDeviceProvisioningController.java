@@ -58,13 +58,19 @@ public final class FinancedDeviceProvisioningController extends AbstractProvisio
 
     @Override
     protected void setUpTasks() {
-        addTasks(new DeviceOwnerInitializeProvisioningTask(mContext, mParams, this));
+        setTaskGraphEnabled(Constants.ENABLE_PROVISIONING_TASK_GRAPH);
+
+        DeviceOwnerInitializeProvisioningTask initializeTask =
+                new DeviceOwnerInitializeProvisioningTask(mContext, mParams, this);
+        addTasks(initializeTask);
 
         addDownloadAndInstallDeviceOwnerPackageTasks();
 
+        // Disallowing user addition doesn't need the admin package, so it can run while the
+        // admin package is being downloaded and installed.
         addTasks(
                 new SetDeviceOwnerPolicyTask(mContext, mParams, this),
-                new DisallowAddUserTask(mContext, mParams, this));
+                new DisallowAddUserTask(mContext, mParams, this).dependsOn(initializeTask));
     }
 
     @Override
@@ -65,6 +65,13 @@ public class ProfileOwnerProvisioningController extends AbstractProvisioningCont
         super.onSuccess(task);
     }
 
+    @Override
+    protected void onTaskRestored(AbstractProvisioningTask task) {
+        if (task instanceof CreateAndProvisionManagedProfileTask) {
+            mUserId = ((CreateAndProvisionManagedProfileTask) task).getProfileUserId();
+        }
+    }
+
     @Override protected int getErrorTitle() {
         return R.string.cant_set_up_profile;
     }
@@ -35,6 +35,8 @@ import androidx.annotation.VisibleForTesting;
 
 import com.android.managedprovisioning.ManagedProvisioningScreens;
 import com.android.managedprovisioning.R;
+import com.android.managedprovisioning.analytics.ProvisioningTracer;
+import com.android.managedprovisioning.analytics.TraceSpan;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.PolicyComplianceUtils;
 import com.android.managedprovisioning.common.ProvisionLogger;
@@ -141,21 +143,25 @@ public class ProvisioningActivity extends AbstractProvisioningActivity
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        mBridge = createBridge();
-        mBridge.initiateUi(/* activity= */ this);
+        final ProvisioningTracer tracer = ProvisioningTracer.getInstance();
+        try (TraceSpan ignored = tracer.startSection("ProvisioningActivity#onCreate")) {
+            mBridge = createBridge();
+            mBridge.initiateUi(/* activity= */ this);
 
-        // assign this Activity as the view store owner to access saved state and receive updates
-        getProvisioningManager().setViewModelStoreOwner(this);
+            // assign this Activity as the view store owner to access saved state and receive
+            // updates
+            getProvisioningManager().setViewModelStoreOwner(this);
 
-        if (mUserProvisioningStateHelper == null) {
-            mUserProvisioningStateHelper = new UserProvisioningStateHelper(this);
-        }
+            if (mUserProvisioningStateHelper == null) {
+                mUserProvisioningStateHelper = new UserProvisioningStateHelper(this);
+            }
 
-        if (mState == STATE_PROVISIONING_FINALIZED) {
-            updateProvisioningFinalizedScreen();
-        }
+            if (mState == STATE_PROVISIONING_FINALIZED) {
+                updateProvisioningFinalizedScreen();
+            }
 
-        writeSharedPreferences();
+            writeSharedPreferences();
+        }
     }
 
     private void writeSharedPreferences() {
@@ -330,7 +336,10 @@ public class ProvisioningActivity extends AbstractProvisioningActivity
     @Override
     protected void onStart() {
         super.onStart();
-        mBridge.onStart(this);
+        final ProvisioningTracer tracer = ProvisioningTracer.getInstance();
+        try (TraceSpan ignored = tracer.startSection("ProvisioningActivity#onStart")) {
+            mBridge.onStart(this);
+        }
     }
 
     @Override
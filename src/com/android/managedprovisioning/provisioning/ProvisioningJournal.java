@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.provisioning;
+
+import static java.util.Objects.requireNonNull;
+
+import android.content.Context;
+import android.util.AtomicFile;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable record of the progress of a provisioning session, so that provisioning can resume
+ * where it stopped if the process dies.
+ *
+ * <p>The journal holds the state of every task of the session and the output of the tasks that
+ * succeeded. Changes are only kept in memory until {@link #flush()} rewrites the journal through
+ * {@link AtomicFile}, so that several changes cost a single write and a crash leaves either the
+ * previous or the new version on disk, never a torn one. A journal written for another session,
+ * or for a different list of tasks, is ignored.
+ */
+class ProvisioningJournal {
+
+    static final int STATE_NOT_STARTED = 0;
+    static final int STATE_STARTED = 1;
+    static final int STATE_SUCCEEDED = 2;
+
+    private static final String JOURNAL_FILE = "provisioning_journal";
+    private static final int VERSION = 1;
+
+    private final AtomicFile mFile;
+    private final String mSessionKey;
+    private final List<String> mTaskNames;
+    private final int[] mStates;
+    private final List<Map<String, String>> mOutputs = new ArrayList<>();
+    private boolean mDirty;
+    private boolean mDeleted;
+
+    ProvisioningJournal(Context context, String sessionKey, List<String> taskNames) {
+        this(new File(context.getFilesDir(), JOURNAL_FILE), sessionKey, taskNames);
+    }
+
+    @VisibleForTesting
+    ProvisioningJournal(File file, String sessionKey, List<String> taskNames) {
+        mFile = new AtomicFile(requireNonNull(file));
+        mSessionKey = requireNonNull(sessionKey);
+        mTaskNames = new ArrayList<>(taskNames);
+        mStates = new int[mTaskNames.size()];
+        for (int i = 0; i < mTaskNames.size(); i++) {
+            mOutputs.add(Collections.emptyMap());
+        }
+        load();
+    }
+
+    int getState(int index) {
+        return mStates[index];
+    }
+
+    Map<String, String> getOutput(int index) {
+        return mOutputs.get(index);
+    }
+
+    /**
+     * Records that the task at {@code index} is about to run. Not persisted until
+     * {@link #flush()}.
+     */
+    synchronized void recordStarted(int index) {
+        mStates[index] = STATE_STARTED;
+        mOutputs.set(index, Collections.emptyMap());
+        mDirty = true;
+    }
+
+    /**
+     * Records that the task at {@code index} succeeded, along with its output. Not persisted
+     * until {@link #flush()}.
+     */
+    synchronized void recordSucceeded(int index, Map<String, String> output) {
+        mStates[index] = STATE_SUCCEEDED;
+        mOutputs.set(index, new HashMap<>(output));
+        mDirty = true;
+    }
+
+    /**
+     * Writes the changes recorded since the last flush, if any. Does nothing once the journal
+     * has been deleted.
+     */
+    synchronized void flush() {
+        if (!mDirty || mDeleted) {
+            return;
+        }
+        mDirty = false;
+        write();
+    }
+
+    /**
+     * Forgets the progress of every task.
+     */
+    synchronized void reset() {
+        for (int i = 0; i < mStates.length; i++) {
+            mStates[i] = STATE_NOT_STARTED;
+            mOutputs.set(i, Collections.emptyMap());
+        }
+        mDirty = false;
+        mFile.delete();
+    }
+
+    /**
+     * Deletes the journal once the session has ended.
+     */
+    synchronized void delete() {
+        mDeleted = true;
+        mFile.delete();
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(mFile.openRead())) {
+            if (in.readInt() != VERSION || !mSessionKey.equals(in.readUTF())) {
+                ProvisionLogger.logi("Ignoring provisioning journal of another session");
+                return;
+            }
+            int taskCount = in.readInt();
+            if (taskCount != mTaskNames.size()) {
+                ProvisionLogger.logi("Ignoring provisioning journal with different tasks");
+                return;
+            }
+            int[] states = new int[taskCount];
+            List<Map<String, String>> outputs = new ArrayList<>();
+            for (int i = 0; i < taskCount; i++) {
+                if (!mTaskNames.get(i).equals(in.readUTF())) {
+                    ProvisionLogger.logi("Ignoring provisioning journal with different tasks");
+                    return;
+                }
+                states[i] = in.readInt();
+                int outputCount = in.readInt();
+                Map<String, String> output = new HashMap<>();
+                for (int j = 0; j < outputCount; j++) {
+                    output.put(in.readUTF(), in.readUTF());
+                }
+                outputs.add(output);
+            }
+            System.arraycopy(states, 0, mStates, 0, taskCount);
+            for (int i = 0; i < taskCount; i++) {
+                mOutputs.set(i, outputs.get(i));
+            }
+        } catch (FileNotFoundException e) {
+            // No session to resume
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not read provisioning journal", e);
+        }
+    }
+
+    private void write() {
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(VERSION);
+            out.writeUTF(mSessionKey);
+            out.writeInt(mTaskNames.size());
+            for (int i = 0; i < mTaskNames.size(); i++) {
+                out.writeUTF(mTaskNames.get(i));
+                out.writeInt(mStates[i]);
+                Map<String, String> output = mOutputs.get(i);
+                out.writeInt(output.size());
+                for (Map.Entry<String, String> entry : output.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+            }
+            out.flush();
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            // Losing the journal only means that provisioning can't be resumed
+            ProvisionLogger.logw("Could not write provisioning journal", e);
+            if (stream != null) {
+                mFile.failWrite(stream);
+            }
+        }
+    }
+}
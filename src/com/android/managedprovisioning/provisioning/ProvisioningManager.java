@@ -32,6 +32,7 @@ import com.android.internal.annotations.GuardedBy;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.analytics.ProvisioningTracer;
 import com.android.managedprovisioning.analytics.TimeLogger;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.ProvisionLogger;
@@ -120,6 +121,7 @@ public class ProvisioningManager implements ProvisioningControllerCallback,
         synchronized (this) {
             if (mController == null) {
                 mTimeLogger.start();
+                ProvisioningTracer.getInstance().startSession("ProvisioningSession");
                 mController = getController(params);
                 mHelper.startNewProvisioningLocked(mController);
                 mProvisioningAnalyticsTracker.logProvisioningStarted(mContext, params);
@@ -154,6 +156,7 @@ public class ProvisioningManager implements ProvisioningControllerCallback,
     public void provisioningTasksCompleted() {
         synchronized (this) {
             mTimeLogger.stop();
+            ProvisioningTracer.getInstance().endSession();
             preFinalizationCompleted();
         }
     }
@@ -171,6 +174,7 @@ public class ProvisioningManager implements ProvisioningControllerCallback,
     @Override
     public void cleanUpCompleted() {
         synchronized (this) {
+            ProvisioningTracer.getInstance().endSession();
             clearControllerLocked();
         }
     }
@@ -23,14 +23,22 @@ import android.content.Context;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.AnalyticsUtils;
+import com.android.managedprovisioning.analytics.LatencyHistograms;
 import com.android.managedprovisioning.analytics.MetricsLoggerWrapper;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.analytics.ProvisioningTracer;
 import com.android.managedprovisioning.analytics.TimeLogger;
+import com.android.managedprovisioning.analytics.TraceSpan;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.model.ProvisioningParams;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Base class for all provisioning tasks.
  */
@@ -39,6 +47,9 @@ public abstract class AbstractProvisioningTask {
     protected final ProvisioningParams mProvisioningParams;
     private final Callback mCallback;
     private TimeLogger mTimeLogger;
+    private final List<AbstractProvisioningTask> mDependencies = new ArrayList<>();
+    private boolean mHasDeclaredDependencies;
+    private TraceSpan mTraceSpan;
 
     /**
      * Constructor for a provisioning task
@@ -67,9 +78,9 @@ public abstract class AbstractProvisioningTask {
         mProvisioningParams = provisioningParams;
         mCallback = checkNotNull(callback);
 
-        mTimeLogger = new TimeLogger(context, getMetricsCategory(), new MetricsLoggerWrapper(),
-                new AnalyticsUtils(),
-                checkNotNull(provisioningAnalyticsTracker));
+        mTimeLogger = new TimeLogger(context, getMetricsCategory(), getClass().getSimpleName(),
+                new MetricsLoggerWrapper(), new AnalyticsUtils(),
+                checkNotNull(provisioningAnalyticsTracker), LatencyHistograms.getInstance(context));
     }
 
     /**
@@ -77,6 +88,7 @@ public abstract class AbstractProvisioningTask {
      * constructor.
      */
     protected final void success() {
+        endTraceSpan();
         mCallback.onSuccess(this);
     }
 
@@ -85,6 +97,7 @@ public abstract class AbstractProvisioningTask {
      * in the constructor.
      */
     protected final void error(int resultCode) {
+        endTraceSpan();
         mCallback.onError(this, resultCode, /* errorMessageRes= */ null);
     }
 
@@ -93,6 +106,7 @@ public abstract class AbstractProvisioningTask {
      * in the constructor.
      */
     protected final void error(int resultCode, String errorMessage) {
+        endTraceSpan();
         mCallback.onError(this, resultCode, errorMessage);
     }
 
@@ -108,6 +122,91 @@ public abstract class AbstractProvisioningTask {
         return VIEW_UNKNOWN;
     }
 
+    /**
+     * Starts the span covering this task within {@code parent}. The span ends when the task
+     * succeeds or fails.
+     */
+    public final void startTraceSpan(TraceSpan parent) {
+        endTraceSpan();
+        mTraceSpan = parent.startChild(getClass().getSimpleName());
+    }
+
+    /**
+     * Starts a section of the span of this task on the current thread, e.g. for a step of the
+     * task. The section must be ended on the same thread.
+     */
+    public final TraceSpan startTraceSection(String name) {
+        final TraceSpan span = mTraceSpan;
+        return span != null
+                ? span.startSection(name)
+                : ProvisioningTracer.getInstance().startSection(name);
+    }
+
+    private void endTraceSpan() {
+        if (mTraceSpan != null) {
+            mTraceSpan.end();
+            mTraceSpan = null;
+        }
+    }
+
+    /**
+     * Declares the tasks that have to finish successfully before this task can be run.
+     *
+     * <p>This is only taken into account when the controller runs its tasks as a graph. A task
+     * that doesn't declare any dependencies is considered to depend on every task added before
+     * it, which preserves the sequential ordering.
+     *
+     * @return this task, for chaining.
+     */
+    public final AbstractProvisioningTask dependsOn(AbstractProvisioningTask... tasks) {
+        mHasDeclaredDependencies = true;
+        for (AbstractProvisioningTask task : tasks) {
+            mDependencies.add(checkNotNull(task));
+        }
+        return this;
+    }
+
+    /**
+     * Returns whether {@link #dependsOn(AbstractProvisioningTask...)} has been called on this
+     * task.
+     */
+    public final boolean hasDeclaredDependencies() {
+        return mHasDeclaredDependencies;
+    }
+
+    /**
+     * Returns the tasks declared through {@link #dependsOn(AbstractProvisioningTask...)}.
+     */
+    public final List<AbstractProvisioningTask> getDependencies() {
+        return Collections.unmodifiableList(mDependencies);
+    }
+
+    /**
+     * Returns whether the task can safely be run again after a run that was interrupted, for
+     * example by the process dying. Provisioning can only be resumed from such a task.
+     */
+    public boolean isIdempotent() {
+        return false;
+    }
+
+    /**
+     * Returns the results of a successful run that later tasks rely on, so that they can be
+     * restored with {@link #restoreJournalOutput(Map)} when provisioning is resumed.
+     */
+    public Map<String, String> getJournalOutput() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Restores the results returned by {@link #getJournalOutput()} instead of running the task
+     * again.
+     *
+     * @return whether the results are still valid. If not, the task is run again.
+     */
+    public boolean restoreJournalOutput(Map<String, String> output) {
+        return true;
+    }
+
     /**
      * Run the task.
      *
@@ -91,6 +91,11 @@ public class AddWifiNetworkTask extends AbstractProvisioningTask
         mInjector = checkNotNull(injector);
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
     @Override
     public void run(int userId) {
         if (mProvisioningParams.wifiInfo == null) {
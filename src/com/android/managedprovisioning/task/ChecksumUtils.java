@@ -77,10 +77,16 @@ final class ChecksumUtils {
      * PackageDownloadInfo}. By default, {@code SHA-256} is used to verify the file hash.
      */
     boolean doesPackageHashMatch(String downloadLocation, byte[] packageChecksum) {
-        byte[] packageSha256Hash = null;
-
         ProvisionLogger.logd("Checking file hash of entire apk file.");
-        packageSha256Hash = mUtils.computeHashOfFile(downloadLocation, Utils.SHA256_TYPE);
+        return doesComputedPackageHashMatch(
+                mUtils.computeHashOfFile(downloadLocation, Utils.SHA256_TYPE), packageChecksum);
+    }
+
+    /**
+     * Returns whether an already computed {@code SHA-256} hash of the downloaded file matches the
+     * hash given in {@link PackageDownloadInfo}.
+     */
+    boolean doesComputedPackageHashMatch(byte[] packageSha256Hash, byte[] packageChecksum) {
         if (Arrays.equals(packageChecksum, packageSha256Hash)) {
             return true;
         }
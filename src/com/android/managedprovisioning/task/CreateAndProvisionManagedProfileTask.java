@@ -25,6 +25,7 @@ import android.app.admin.ProvisioningException;
 import android.content.ComponentName;
 import android.content.Context;
 import android.os.UserHandle;
+import android.os.UserManager;
 import android.stats.devicepolicy.DevicePolicyEnums;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -38,10 +39,16 @@ import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.ProvisioningParams;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Task to create and provision a managed profile.
  */
 public class CreateAndProvisionManagedProfileTask extends AbstractProvisioningTask {
+    @VisibleForTesting
+    static final String JOURNAL_KEY_PROFILE_USER_ID = "profile_user_id";
+
     private final DevicePolicyManager mDpm;
     private final Utils mUtils;
     private int mProfileUserId;
@@ -135,6 +142,33 @@ public class CreateAndProvisionManagedProfileTask extends AbstractProvisioningTa
         return mProfileUserId;
     }
 
+    @Override
+    public Map<String, String> getJournalOutput() {
+        return Collections.singletonMap(
+                JOURNAL_KEY_PROFILE_USER_ID, Integer.toString(mProfileUserId));
+    }
+
+    @Override
+    public boolean restoreJournalOutput(Map<String, String> output) {
+        String profileUserId = output.get(JOURNAL_KEY_PROFILE_USER_ID);
+        if (profileUserId == null) {
+            return false;
+        }
+        int userId;
+        try {
+            userId = Integer.parseInt(profileUserId);
+        } catch (NumberFormatException e) {
+            ProvisionLogger.logw("Invalid managed profile user id in journal: " + profileUserId);
+            return false;
+        }
+        if (!mContext.getSystemService(UserManager.class).isManagedProfile(userId)) {
+            ProvisionLogger.logw("Managed profile " + userId + " no longer exists");
+            return false;
+        }
+        mProfileUserId = userId;
+        return true;
+    }
+
     @Override
     protected int getMetricsCategory() {
         return DevicePolicyEnums.PROVISIONING_PROVISION_MANAGED_PROFILE_TASK_MS;
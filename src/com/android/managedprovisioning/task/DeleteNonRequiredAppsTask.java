@@ -19,22 +19,20 @@ package com.android.managedprovisioning.task;
 import static com.android.internal.util.Preconditions.checkNotNull;
 
 import android.content.Context;
-import android.content.pm.IPackageDeleteObserver;
-import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.model.ProvisioningParams;
 import com.android.managedprovisioning.task.nonrequiredapps.NonRequiredAppsLogic;
 
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Deletes all non-required apps.
@@ -46,8 +44,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * newly installed system apps will be deleted.
  */
 public class DeleteNonRequiredAppsTask extends AbstractProvisioningTask {
+    // Deletions in flight at any time, so that long lists don't flood the package manager
+    private static final int MAX_CONCURRENT_DELETIONS = 4;
+
     private final PackageManager mPm;
     private final NonRequiredAppsLogic mLogic;
+    private final PackageIndex mPackageIndex;
 
     public DeleteNonRequiredAppsTask(
             boolean firstTimeCreation,
@@ -59,6 +61,7 @@ public class DeleteNonRequiredAppsTask extends AbstractProvisioningTask {
                 params,
                 callback,
                 new NonRequiredAppsLogic(context, firstTimeCreation, params),
+                PackageIndex.getInstance(context),
                 new ProvisioningAnalyticsTracker(
                         MetricsWriterFactory.getMetricsWriter(context, new SettingsFacade()),
                         new ManagedProvisioningSharedPreferences(context)));
@@ -76,6 +79,7 @@ public class DeleteNonRequiredAppsTask extends AbstractProvisioningTask {
                 params,
                 callback,
                 new NonRequiredAppsLogic(context, firstTimeCreation, params),
+                PackageIndex.getInstance(context),
                 provisioningAnalyticsTracker);
     }
 
@@ -85,11 +89,13 @@ public class DeleteNonRequiredAppsTask extends AbstractProvisioningTask {
             ProvisioningParams params,
             Callback callback,
             NonRequiredAppsLogic logic,
+            PackageIndex packageIndex,
             ProvisioningAnalyticsTracker provisioningAnalyticsTracker) {
         super(context, params, callback, provisioningAnalyticsTracker);
 
         mPm = checkNotNull(context.getPackageManager());
         mLogic = checkNotNull(logic);
+        mPackageIndex = checkNotNull(packageIndex);
     }
 
     @Override
@@ -105,57 +111,30 @@ public class DeleteNonRequiredAppsTask extends AbstractProvisioningTask {
             return;
         }
 
-        PackageDeleteObserver packageDeleteObserver =
-                new PackageDeleteObserver(packagesToDelete.size());
-        for (String packageName : packagesToDelete) {
-            ProvisionLogger.logd("Deleting package [" + packageName + "] as user " + userId);
-            mPm.deletePackageAsUser(packageName, packageDeleteObserver,
-                    PackageManager.DELETE_SYSTEM_APP, userId);
-        }
+        new PackageDeletionBatch(mPm, userId, packagesToDelete, MAX_CONCURRENT_DELETIONS,
+                failedPackages -> onDeletionsFinished(userId, failedPackages)).start();
     }
 
-    private void removeNonInstalledPackages(Set<String> packages, int userId) {
-        Set<String> toBeRemoved = new HashSet<>();
-        for (String packageName : packages) {
-            try {
-                PackageInfo info = mPm.getPackageInfoAsUser(
-                    packageName, 0 /* default flags */,
-                    userId);
-                if (info == null) {
-                    toBeRemoved.add(packageName);
-                }
-            } catch (PackageManager.NameNotFoundException e) {
-                toBeRemoved.add(packageName);
-            }
+    private void onDeletionsFinished(int userId, Map<String, Integer> failedPackages) {
+        mPackageIndex.invalidate(userId);
+        if (!failedPackages.isEmpty()) {
+            ProvisionLogger.logw("Could not finish the provisioning: package deletion failed for "
+                    + failedPackages);
+            error(0);
+            return;
         }
-        packages.removeAll(toBeRemoved);
+        ProvisionLogger.logi("All non-required system apps with launcher icon, "
+                + "and all disallowed apps have been uninstalled.");
+        success();
     }
 
     /**
-     * Runs the next task when all packages have been deleted or shuts down the activity if package
-     * deletion fails.
+     * Keeps the packages installed for the user. The installed packages come from the same
+     * {@link PackageIndex} entry which {@link NonRequiredAppsLogic#getSystemAppsToRemove} read
+     * the system apps from, so this doesn't query the package manager again.
      */
-    class PackageDeleteObserver extends IPackageDeleteObserver.Stub {
-        private final AtomicInteger mPackageCount = new AtomicInteger(0);
-
-        public PackageDeleteObserver(int packageCount) {
-            this.mPackageCount.set(packageCount);
-        }
-
-        @Override
-        public void packageDeleted(String packageName, int returnCode) {
-            if (returnCode != PackageManager.DELETE_SUCCEEDED) {
-                ProvisionLogger.logw(
-                        "Could not finish the provisioning: package deletion failed");
-                error(0);
-                return;
-            }
-            int currentPackageCount = mPackageCount.decrementAndGet();
-            if (currentPackageCount == 0) {
-                ProvisionLogger.logi("All non-required system apps with launcher icon, "
-                        + "and all disallowed apps have been uninstalled.");
-                success();
-            }
-        }
+    private void removeNonInstalledPackages(Set<String> packages, int userId) {
+        packages.retainAll(mPackageIndex.getInstalledPackages(userId));
     }
+
 }
@@ -57,6 +57,11 @@ public class DisallowAddUserTask extends AbstractProvisioningTask {
         mUserManager = (UserManager) context.getSystemService(Context.USER_SERVICE);
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
     @Override
     public void run(int userId) {
         ProvisionLogger.logi("Running as user " + userId
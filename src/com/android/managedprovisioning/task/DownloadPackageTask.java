@@ -27,6 +27,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.PackageInstaller;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
@@ -36,15 +37,23 @@ import android.provider.Settings;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.analytics.TraceSpan;
 import com.android.managedprovisioning.common.Globals;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
+import com.android.managedprovisioning.common.StoreUtils;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.PackageDownloadInfo;
 import com.android.managedprovisioning.model.ProvisioningParams;
+import com.android.managedprovisioning.provisioning.Constants;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Downloads the management app apk from the url provided by {@link PackageDownloadInfo#location}.
@@ -56,6 +65,10 @@ public class DownloadPackageTask extends AbstractProvisioningTask
     public static final int ERROR_DOWNLOAD_FAILED = 0;
     public static final int ERROR_OTHER = 1;
 
+    @VisibleForTesting
+    static final String JOURNAL_KEY_PACKAGE_LOCATION = "package_location";
+    private static final String JOURNAL_KEY_PACKAGE_HASH = "package_hash";
+
     private BroadcastReceiver mReceiver;
     private final DownloadManager mDownloadManager;
     private final String mPackageName;
@@ -67,6 +80,15 @@ public class DownloadPackageTask extends AbstractProvisioningTask
     private File mDownloadLocationTo; //local file where the package is downloaded.
     private boolean mDoneDownloading;
 
+    private final StreamingPackageDownloader mStreamingDownloader =
+            new StreamingPackageDownloader();
+    private final SegmentedPackageDownloader mSegmentedDownloader =
+            new SegmentedPackageDownloader(mStreamingDownloader);
+    private ExecutorService mStreamingExecutor;
+    private byte[] mPackageHash; // hash computed while streaming the package
+    private int mStagedSessionId = -1; // session the package was streamed into
+    private PackageDownloadCache mPackageDownloadCache;
+
     public DownloadPackageTask(
             Context context,
             ProvisioningParams provisioningParams,
@@ -95,6 +117,40 @@ public class DownloadPackageTask extends AbstractProvisioningTask
         mPackageDownloadInfo = checkNotNull(packageDownloadInfo);
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    public Map<String, String> getJournalOutput() {
+        Map<String, String> output = new HashMap<>();
+        if (mDownloadLocationTo != null) {
+            output.put(JOURNAL_KEY_PACKAGE_LOCATION, mDownloadLocationTo.getAbsolutePath());
+        }
+        if (mPackageHash != null) {
+            output.put(JOURNAL_KEY_PACKAGE_HASH, StoreUtils.byteArrayToString(mPackageHash));
+        }
+        return output;
+    }
+
+    @Override
+    public boolean restoreJournalOutput(Map<String, String> output) {
+        String packageLocation = output.get(JOURNAL_KEY_PACKAGE_LOCATION);
+        if (packageLocation == null) {
+            // The package was already installed, nothing was downloaded
+            return true;
+        }
+        File downloadLocation = new File(packageLocation);
+        if (!downloadLocation.isFile()) {
+            return false;
+        }
+        mDownloadLocationTo = downloadLocation;
+        String packageHash = output.get(JOURNAL_KEY_PACKAGE_HASH);
+        mPackageHash = packageHash == null ? null : StoreUtils.stringToByteArray(packageHash);
+        return true;
+    }
+
     @Override
     public void run(int userId) {
         startTaskTimer();
@@ -105,6 +161,33 @@ public class DownloadPackageTask extends AbstractProvisioningTask
             success();
             return;
         }
+        if (Constants.ENABLE_PACKAGE_PREFETCH) {
+            PackagePrefetcher.PrefetchedPackage prefetchedPackage =
+                    PackagePrefetcher.getInstance(mContext).claim(mPackageDownloadInfo);
+            if (prefetchedPackage != null) {
+                ProvisionLogger.logd("Using prefetched package " + prefetchedPackage.mFile);
+                setDpcDownloadedSetting(mContext);
+                mDownloadLocationTo = prefetchedPackage.mFile;
+                mPackageHash = prefetchedPackage.mPackageHash;
+                mDoneDownloading = true;
+                stopTaskTimer();
+                success();
+                return;
+            }
+        }
+        if (Constants.ENABLE_PACKAGE_DOWNLOAD_CACHE) {
+            mPackageDownloadCache = new PackageDownloadCache(mContext);
+            File cachedPackage = mPackageDownloadCache.checkout(mPackageDownloadInfo);
+            if (cachedPackage != null) {
+                // The package still goes through the regular verification
+                setDpcDownloadedSetting(mContext);
+                mDownloadLocationTo = cachedPackage;
+                mDoneDownloading = true;
+                stopTaskTimer();
+                success();
+                return;
+            }
+        }
         if (!mUtils.isConnectedToNetwork(mContext)) {
             ProvisionLogger.loge("DownloadPackageTask: not connected to the network, can't download"
                     + " the package");
@@ -114,6 +197,14 @@ public class DownloadPackageTask extends AbstractProvisioningTask
 
         setDpcDownloadedSetting(mContext);
 
+        if (Constants.ENABLE_STREAMING_PACKAGE_DOWNLOAD
+                || Constants.ENABLE_RESUMABLE_PACKAGE_DOWNLOAD
+                || Constants.ENABLE_SEGMENTED_PACKAGE_DOWNLOAD) {
+            startStreamingDownload(
+                    /* stageIntoSession= */ Constants.ENABLE_STREAMING_PACKAGE_DOWNLOAD);
+            return;
+        }
+
         mReceiver = createDownloadReceiver();
         // register the receiver on the worker thread to avoid threading issues with respect to
         // the location variable
@@ -131,10 +222,7 @@ public class DownloadPackageTask extends AbstractProvisioningTask
 
         // Note that the apk may not actually be downloaded to this path. This could happen if
         // this file already exists.
-        String path = mContext.getExternalFilesDir(null)
-                + "/download_cache/managed_provisioning_downloaded_app.apk";
-        File downloadedFile = new File(path);
-        downloadedFile.getParentFile().mkdirs(); // If the folder doesn't exists it is created
+        File downloadedFile = getDownloadCacheFile();
         request.setDestinationUri(Uri.fromFile(downloadedFile));
 
         if (mPackageDownloadInfo.cookieHeader != null) {
@@ -144,7 +232,88 @@ public class DownloadPackageTask extends AbstractProvisioningTask
                         + mPackageDownloadInfo.cookieHeader);
             }
         }
-        mDownloadId = mDownloadManager.enqueue(request);
+        try (TraceSpan ignored = startTraceSection("DownloadManager enqueue")) {
+            mDownloadId = mDownloadManager.enqueue(request);
+        }
+    }
+
+    private File getDownloadCacheFile() {
+        String path = mContext.getExternalFilesDir(null)
+                + "/download_cache/managed_provisioning_downloaded_app.apk";
+        File downloadedFile = new File(path);
+        downloadedFile.getParentFile().mkdirs(); // If the folder doesn't exists it is created
+        return downloadedFile;
+    }
+
+    /**
+     * Downloads the package on a background thread with {@link StreamingPackageDownloader}, which
+     * hashes it as it arrives and resumes interrupted transfers, or with
+     * {@link SegmentedPackageDownloader} when {@link Constants#ENABLE_SEGMENTED_PACKAGE_DOWNLOAD}
+     * is set and the package isn't staged.
+     *
+     * @param stageIntoSession whether the package is also written into a
+     * {@link PackageInstaller.Session} as it arrives, so that installation doesn't have to read the
+     * file again. The session is only committed by {@link InstallPackageTask}, after the package
+     * has been verified.
+     */
+    private void startStreamingDownload(boolean stageIntoSession) {
+        final File spillFile = getDownloadCacheFile();
+        final Handler handler = new Handler(Looper.myLooper());
+        mStreamingExecutor = Executors.newSingleThreadExecutor();
+        mStreamingExecutor.execute(() -> {
+            final SessionStagingStreamFactory stagingStreamFactory = stageIntoSession
+                    ? new SessionStagingStreamFactory(
+                            mContext.getPackageManager().getPackageInstaller(),
+                            spillFile.getName())
+                    : null;
+            try (TraceSpan ignored = startTraceSection("download")) {
+                final byte[] packageHash;
+                if (stagingStreamFactory != null) {
+                    packageHash = mStreamingDownloader.download(
+                            mPackageDownloadInfo, spillFile, stagingStreamFactory);
+                    stagingStreamFactory.close();
+                } else if (Constants.ENABLE_SEGMENTED_PACKAGE_DOWNLOAD) {
+                    mSegmentedDownloader.download(mPackageDownloadInfo, spillFile);
+                    // The assembled file is hashed by the verification task
+                    packageHash = null;
+                } else {
+                    packageHash = mStreamingDownloader.download(
+                            mPackageDownloadInfo, spillFile, /* stagingStreamFactory= */ null);
+                }
+                final int stagingSessionId =
+                        stagingStreamFactory == null ? -1 : stagingStreamFactory.getSessionId();
+                handler.post(() -> onStreamingDownloadSuccess(
+                        spillFile, packageHash, stagingSessionId));
+            } catch (IOException | RuntimeException e) {
+                // Runtime exceptions are caught as well, the task would never finish otherwise
+                ProvisionLogger.loge("Streaming download of package failed.", e);
+                if (stagingStreamFactory != null) {
+                    stagingStreamFactory.abandon();
+                }
+                spillFile.delete();
+                handler.post(this::onStreamingDownloadFail);
+            }
+        });
+    }
+
+    private void onStreamingDownloadSuccess(File spillFile, byte[] packageHash, int sessionId) {
+        shutdownStreamingExecutor();
+        mDownloadLocationTo = spillFile;
+        mPackageHash = packageHash;
+        mStagedSessionId = sessionId;
+        onDownloadSuccess();
+    }
+
+    private void onStreamingDownloadFail() {
+        shutdownStreamingExecutor();
+        error(ERROR_DOWNLOAD_FAILED);
+    }
+
+    private void shutdownStreamingExecutor() {
+        if (mStreamingExecutor != null) {
+            mStreamingExecutor.shutdown();
+            mStreamingExecutor = null;
+        }
     }
 
     /**
@@ -202,6 +371,10 @@ public class DownloadPackageTask extends AbstractProvisioningTask
         ProvisionLogger.logd("Downloaded successfully to: "
                 + mDownloadLocationTo.getAbsolutePath());
         mDoneDownloading = true;
+        if (mPackageDownloadCache != null) {
+            // Copied in the background, this doesn't delay the installation
+            mPackageDownloadCache.put(mPackageDownloadInfo, mDownloadLocationTo);
+        }
         stopTaskTimer();
         success();
     }
@@ -211,6 +384,16 @@ public class DownloadPackageTask extends AbstractProvisioningTask
         return mDownloadLocationTo;
     }
 
+    @Override
+    public byte[] getPackageHash() {
+        return mPackageHash;
+    }
+
+    @Override
+    public int getStagedSessionId() {
+        return mStagedSessionId;
+    }
+
     private void onDownloadFail(int errorCode) {
         ProvisionLogger.loge("Downloading package failed (download id " + mDownloadId
                 + "). COLUMN_REASON in DownloadManager response has value: " + errorCode);
@@ -224,6 +407,28 @@ public class DownloadPackageTask extends AbstractProvisioningTask
             mReceiver = null;
         }
 
+        if (mStreamingExecutor != null) {
+            mStreamingExecutor.shutdownNow();
+            mStreamingExecutor = null;
+        }
+        if (mStagedSessionId > 0) {
+            PackageInstaller packageInstaller = mContext.getPackageManager().getPackageInstaller();
+            PackageInstaller.SessionInfo sessionInfo =
+                    packageInstaller.getSessionInfo(mStagedSessionId);
+            if (sessionInfo != null && !sessionInfo.isCommitted()) {
+                packageInstaller.abandonSession(mStagedSessionId);
+            }
+            mStagedSessionId = -1;
+        }
+
+        if (mDownloadId == 0) {
+            // DownloadManager wasn't used: the package was claimed from the prefetcher or the
+            // cache, or streamed, and is only owned by this task
+            if (mDownloadLocationTo != null && mDownloadLocationTo.delete()) {
+                ProvisionLogger.logd("Successfully removed installer file.");
+            }
+            return;
+        }
         boolean removeSuccess = mDownloadManager.remove(mDownloadId) == 1;
         if (removeSuccess) {
             ProvisionLogger.logd("Successfully removed installer file.");
@@ -27,6 +27,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
 import com.android.managedprovisioning.model.ProvisioningParams;
@@ -93,6 +94,11 @@ public class InstallExistingPackageTask extends AbstractProvisioningTask {
         return mPackageName;
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
     @Override
     public void run(int userId) {
         if (mUserId != UserHandle.USER_NULL) {
@@ -104,6 +110,7 @@ public class InstallExistingPackageTask extends AbstractProvisioningTask {
         PackageManager pm = mContext.getPackageManager();
         try {
             int status = pm.installExistingPackageAsUser(mPackageName, userId);
+            PackageIndex.getInstance(mContext).invalidate(userId);
             if (status == PackageManager.INSTALL_SUCCEEDED) {
                 success();
             } else {
@@ -37,6 +37,7 @@ import android.content.pm.PackageManager;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.analytics.TraceSpan;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
@@ -46,8 +47,10 @@ import com.android.managedprovisioning.model.ProvisioningParams;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -71,6 +74,9 @@ public class InstallPackageTask extends AbstractProvisioningTask {
     private final Utils mUtils;
     private int mSessionId = -1;
 
+    // Size of each transferTo() call, so that staging progress can be reported in between
+    private static final long TRANSFER_CHUNK_BYTES = 1024 * 1024;
+
     private static final int SUCCESS_INSTALLED_BROADCAST = 1;
     private static final int SUCCESS_INSTALLED_CALLBACK = 2;
     private final Set<Integer> mSuccessCodes = new HashSet<>();
@@ -113,15 +119,44 @@ public class InstallPackageTask extends AbstractProvisioningTask {
         mUtils = requireNonNull(utils);
     }
 
-    private static void copyStream(@NonNull InputStream in, @NonNull OutputStream out)
+    /**
+     * Writes {@code source} into {@code session}, reporting staging progress every
+     * {@link #TRANSFER_CHUNK_BYTES}.
+     *
+     * <p>The exact length is declared when opening the session stream so the installer can
+     * preallocate it. The bytes are moved with {@link FileChannel#transferTo}. When the session
+     * stream is backed by a revocable file descriptor, the kernel copies them without going
+     * through a heap buffer. Otherwise, as with the default pipe-backed stream, they are streamed
+     * into it from the file channel.
+     */
+    @VisibleForTesting
+    static void writeToSession(@NonNull File source, @NonNull PackageInstaller.Session session)
             throws IOException {
-        byte[] buffer = new byte[16 * 1024];
-        int numRead;
-        while ((numRead = in.read(buffer)) != -1) {
-            out.write(buffer, 0, numRead);
+        final long length = source.length();
+        try (FileInputStream in = new FileInputStream(source);
+             OutputStream out = session.openWrite(source.getName(), 0, length)) {
+            // Returns the channel of a FileOutputStream, or a channel writing to the stream
+            WritableByteChannel outChannel = Channels.newChannel(out);
+            FileChannel inChannel = in.getChannel();
+            long position = 0;
+            while (position < length) {
+                long transferred = inChannel.transferTo(
+                        position, Math.min(TRANSFER_CHUNK_BYTES, length - position), outChannel);
+                if (transferred <= 0) {
+                    throw new IOException("Could not transfer " + source + " at " + position);
+                }
+                position += transferred;
+                session.setStagingProgress((float) position / length);
+            }
+            session.fsync(out);
         }
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
     /**
      * Installs a package. The package will be installed from the given location if one is provided.
      * If a null or empty location is provided, and the package is installed for a different user,
@@ -142,27 +177,46 @@ public class InstallPackageTask extends AbstractProvisioningTask {
             return;
         }
 
-        int installFlags = INSTALL_REPLACE_EXISTING;
         // Current device owner (if exists) must be test-only, so it is fine to replace it with a
         // test-only package of same package name. No need to further verify signature as
         // installation will fail if signatures don't match.
-        if (mDpm.isDeviceOwnerApp(mPackageName)) {
-            installFlags |= PackageManager.INSTALL_ALLOW_TEST;
-        }
-
-        PackageInstaller.SessionParams params = new PackageInstaller.SessionParams(
-                PackageInstaller.SessionParams.MODE_FULL_INSTALL);
-        params.installFlags |= installFlags;
+        boolean allowTest = mDpm.isDeviceOwnerApp(mPackageName);
+        PackageInstaller.SessionParams params = createSessionParams(allowTest);
 
         try {
-            installPackage(packageLocation, mPackageName, params, mContext, mSessionCallback);
-        } catch (IOException e) {
+            int stagedSessionId = mPackageLocationProvider.getStagedSessionId();
+            if (stagedSessionId > 0 && !allowTest) {
+                commitStagedSession(stagedSessionId, mPackageName, mContext, mSessionCallback);
+            } else {
+                if (stagedSessionId > 0) {
+                    // The staged session was created without INSTALL_ALLOW_TEST
+                    mPm.getPackageInstaller().abandonSession(stagedSessionId);
+                }
+                installPackage(packageLocation, mPackageName, params, mContext, mSessionCallback);
+            }
+        } catch (IOException | SecurityException e) {
             ProvisionLogger.loge("Installing package " + mPackageName + " failed.", e);
             error(ERROR_INSTALLATION_FAILED);
         } finally {
             packageLocation.delete();
         }
     }
+
+    /**
+     * Returns the {@link PackageInstaller.SessionParams} used to install a provisioning package.
+     *
+     * @param allowTest whether a test-only package can be installed.
+     */
+    static PackageInstaller.SessionParams createSessionParams(boolean allowTest) {
+        PackageInstaller.SessionParams params = new PackageInstaller.SessionParams(
+                PackageInstaller.SessionParams.MODE_FULL_INSTALL);
+        params.installFlags |= INSTALL_REPLACE_EXISTING;
+        if (allowTest) {
+            params.installFlags |= PackageManager.INSTALL_ALLOW_TEST;
+        }
+        return params;
+    }
+
     /*
     The reason why we have both SessionCallback and BroadcastReceiver is as follows:
     Initially we were just listening for the ACTION_INSTALL_DONE broadcast
@@ -187,20 +241,47 @@ public class InstallPackageTask extends AbstractProvisioningTask {
         pi.registerSessionCallback(sessionCallback);
         mSessionId  = pi.createSession(params);
         try (PackageInstaller.Session session = pi.openSession(mSessionId)) {
-            try (FileInputStream in = new FileInputStream(source);
-                 OutputStream out = session.openWrite(source.getName(), 0, -1)) {
-                copyStream(in, out);
+            try (TraceSpan ignored = startTraceSection("session write")) {
+                writeToSession(source, session);
             } catch (IOException e) {
                 session.abandon();
                 throw e;
             }
 
-            String action = ACTION_INSTALL_DONE + mSessionId;
-            PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                    context,
-                    mSessionId,
-                    new Intent(action),
-                    FLAG_ONE_SHOT | FLAG_UPDATE_CURRENT | FLAG_MUTABLE);
+            commitSession(session, context);
+        }
+    }
+
+    /**
+     * Commits a session the package has already been written to, e.g. while it was being
+     * downloaded.
+     */
+    private void commitStagedSession(
+            int sessionId,
+            String packageName,
+            Context context,
+            PackageInstaller.SessionCallback sessionCallback)
+            throws IOException {
+        ProvisionLogger.logd("Committing staged session " + sessionId + " for " + packageName);
+        PackageInstaller pi = context.getPackageManager().getPackageInstaller();
+        context.registerReceiver(
+                new PackageAddedReceiver(packageName),
+                createPackageAddedIntentFilter());
+        pi.registerSessionCallback(sessionCallback);
+        mSessionId = sessionId;
+        try (PackageInstaller.Session session = pi.openSession(mSessionId)) {
+            commitSession(session, context);
+        }
+    }
+
+    private void commitSession(PackageInstaller.Session session, Context context) {
+        String action = ACTION_INSTALL_DONE + mSessionId;
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(
+                context,
+                mSessionId,
+                new Intent(action),
+                FLAG_ONE_SHOT | FLAG_UPDATE_CURRENT | FLAG_MUTABLE);
+        try (TraceSpan ignored = startTraceSection("session commit")) {
             session.commit(pendingIntent.getIntentSender());
         }
     }
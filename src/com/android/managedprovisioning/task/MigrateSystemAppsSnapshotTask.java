@@ -49,6 +49,7 @@ public class MigrateSystemAppsSnapshotTask extends AbstractProvisioningTask {
     @Override
     public void run(int userId) {
         migrateIfNecessary();
+        success();
     }
 
     /**
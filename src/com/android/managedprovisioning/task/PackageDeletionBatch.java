@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static com.android.internal.util.Preconditions.checkArgument;
+import static com.android.internal.util.Preconditions.checkNotNull;
+
+import android.content.pm.IPackageDeleteObserver;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.common.ProvisionLogger;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.LongSupplier;
+
+/**
+ * Deletes a batch of packages for a user, with at most a given number of deletions in flight at
+ * any time.
+ *
+ * <p>A failed deletion doesn't stop the batch. Once every deletion finished, the
+ * {@link Callback} is called exactly once with the packages which couldn't be deleted.
+ */
+class PackageDeletionBatch {
+
+    interface Callback {
+        /**
+         * Called once every deletion of the batch finished.
+         *
+         * @param failedPackages the result code of every package which couldn't be deleted.
+         */
+        void onBatchFinished(Map<String, Integer> failedPackages);
+    }
+
+    private final PackageManager mPackageManager;
+    private final int mUserId;
+    private final int mMaxInFlight;
+    private final Callback mCallback;
+    private final LongSupplier mClock;
+    private final int mPackageCount;
+
+    private final Object mLock = new Object();
+    // The following fields are only accessed while holding mLock
+    private final Queue<String> mPendingPackages;
+    private final Map<String, Long> mStartTimesMillis = new ArrayMap<>();
+    private final Map<String, Integer> mFailedPackages = new ArrayMap<>();
+    private int mInFlightCount;
+    private int mFinishedCount;
+    private boolean mStartingDeletions;
+    private long mBatchStartTimeMillis;
+
+    PackageDeletionBatch(PackageManager packageManager, int userId,
+            Collection<String> packageNames, int maxInFlight, Callback callback) {
+        this(packageManager, userId, packageNames, maxInFlight, callback,
+                SystemClock::elapsedRealtime);
+    }
+
+    @VisibleForTesting
+    PackageDeletionBatch(PackageManager packageManager, int userId,
+            Collection<String> packageNames, int maxInFlight, Callback callback,
+            LongSupplier clock) {
+        checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        mPackageManager = checkNotNull(packageManager);
+        mUserId = userId;
+        mMaxInFlight = maxInFlight;
+        mCallback = checkNotNull(callback);
+        mClock = checkNotNull(clock);
+        mPendingPackages = new ArrayDeque<>(packageNames);
+        mPackageCount = mPendingPackages.size();
+    }
+
+    /**
+     * Starts the deletions. The callback may be called before this returns, e.g. if the batch is
+     * empty.
+     */
+    void start() {
+        synchronized (mLock) {
+            mBatchStartTimeMillis = mClock.getAsLong();
+        }
+        if (mPackageCount == 0) {
+            mCallback.onBatchFinished(Collections.emptyMap());
+            return;
+        }
+        startDeletions();
+    }
+
+    /**
+     * Starts deletions until {@link #mMaxInFlight} are in flight. Deletions may finish on the
+     * calling thread before {@link PackageManager#deletePackageAsUser} returns; the nested call
+     * then returns right away and this loop starts the next ones, rather than recursing.
+     */
+    private void startDeletions() {
+        synchronized (mLock) {
+            if (mStartingDeletions) {
+                return;
+            }
+            mStartingDeletions = true;
+        }
+        while (true) {
+            final String packageName;
+            synchronized (mLock) {
+                if (mInFlightCount >= mMaxInFlight || mPendingPackages.isEmpty()) {
+                    mStartingDeletions = false;
+                    return;
+                }
+                packageName = mPendingPackages.poll();
+                mInFlightCount++;
+                mStartTimesMillis.put(packageName, mClock.getAsLong());
+            }
+            ProvisionLogger.logd("Deleting package [" + packageName + "] as user " + mUserId);
+            mPackageManager.deletePackageAsUser(packageName,
+                    new PackageDeleteObserver(packageName), PackageManager.DELETE_SYSTEM_APP,
+                    mUserId);
+        }
+    }
+
+    private void onPackageDeleted(String packageName, int returnCode) {
+        final Map<String, Integer> failedPackages;
+        synchronized (mLock) {
+            final Long startTimeMillis = mStartTimesMillis.remove(packageName);
+            if (startTimeMillis == null) {
+                // The observer of a deletion is only called once
+                ProvisionLogger.logw("Duplicate deletion result for " + packageName);
+                return;
+            }
+            final long now = mClock.getAsLong();
+            ProvisionLogger.logd("Package " + packageName + " deleted in "
+                    + (now - startTimeMillis) + "ms, result code " + returnCode);
+            if (returnCode != PackageManager.DELETE_SUCCEEDED) {
+                mFailedPackages.put(packageName, returnCode);
+            }
+            mInFlightCount--;
+            mFinishedCount++;
+            if (mFinishedCount < mPackageCount) {
+                failedPackages = null;
+            } else {
+                ProvisionLogger.logi("Deleted " + (mPackageCount - mFailedPackages.size()) + " of "
+                        + mPackageCount + " packages in " + (now - mBatchStartTimeMillis) + "ms");
+                failedPackages = Collections.unmodifiableMap(new ArrayMap<>(mFailedPackages));
+            }
+        }
+        if (failedPackages != null) {
+            mCallback.onBatchFinished(failedPackages);
+        } else {
+            startDeletions();
+        }
+    }
+
+    private class PackageDeleteObserver extends IPackageDeleteObserver.Stub {
+        private final String mPackageName;
+
+        PackageDeleteObserver(String packageName) {
+            mPackageName = packageName;
+        }
+
+        @Override
+        public void packageDeleted(String packageName, int returnCode) {
+            onPackageDeleted(mPackageName, returnCode);
+        }
+    }
+}
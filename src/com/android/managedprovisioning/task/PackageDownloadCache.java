@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static java.util.Objects.requireNonNull;
+
+import android.annotation.Nullable;
+import android.content.Context;
+import android.system.ErrnoException;
+import android.system.Os;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.common.ProvisionLogger;
+import com.android.managedprovisioning.common.StoreUtils;
+import com.android.managedprovisioning.common.Utils;
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent cache of downloaded packages, so that provisioning the same device repeatedly does
+ * not download the same package every time.
+ *
+ * <p>Entries are keyed by {@link PackageDownloadInfo#packageChecksum}, which identifies a single
+ * package. Packages only identified by their signature aren't cached, since a newer package could
+ * be served from the same location. A package is only stored after checking that it matches its
+ * checksum, so a cache hit can go straight to verification. The cache lives in the app's files directory, outside the
+ * download manager's cache, and the least recently used entries are evicted once its size
+ * exceeds {@link #DEFAULT_MAX_SIZE_BYTES}.
+ *
+ * <p>Packages are copied into the cache on a background executor, off the critical path of
+ * provisioning.
+ */
+class PackageDownloadCache {
+
+    @VisibleForTesting
+    static final long DEFAULT_MAX_SIZE_BYTES = 256L * 1024 * 1024;
+
+    private static final String CACHE_DIRECTORY = "package_cache";
+    private static final String ENTRIES_DIRECTORY = "entries";
+    private static final String CHECKOUT_DIRECTORY = "checkout";
+    private static final String APK_SUFFIX = ".apk";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mEntriesDirectory;
+    private final File mCheckoutDirectory;
+    private final long mMaxSizeBytes;
+    private final Executor mExecutor;
+
+    private static Executor sExecutor;
+
+    PackageDownloadCache(Context context) {
+        this(new File(context.getFilesDir(), CACHE_DIRECTORY), DEFAULT_MAX_SIZE_BYTES,
+                getExecutor());
+    }
+
+    @VisibleForTesting
+    PackageDownloadCache(File directory, long maxSizeBytes, Executor executor) {
+        mEntriesDirectory = new File(requireNonNull(directory), ENTRIES_DIRECTORY);
+        mCheckoutDirectory = new File(directory, CHECKOUT_DIRECTORY);
+        mMaxSizeBytes = maxSizeBytes;
+        mExecutor = requireNonNull(executor);
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "PackageDownloadCache");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Returns the cache key of a package, or {@code null} if it can't be cached because no
+     * package checksum is provided.
+     */
+    @VisibleForTesting
+    @Nullable
+    static String getKey(PackageDownloadInfo packageDownloadInfo) {
+        if (packageDownloadInfo.packageChecksum.length == 0) {
+            return null;
+        }
+        return "sha256-" + StoreUtils.byteArrayToString(packageDownloadInfo.packageChecksum);
+    }
+
+    /**
+     * Returns a copy of the cached package matching {@code packageDownloadInfo}, or {@code null}
+     * on a cache miss.
+     *
+     * <p>The returned file can be deleted by the caller without affecting the cache entry.
+     */
+    @Nullable
+    synchronized File checkout(PackageDownloadInfo packageDownloadInfo) {
+        String key = getKey(packageDownloadInfo);
+        if (key == null) {
+            return null;
+        }
+        File entry = getEntryFile(key);
+        if (!entry.isFile()) {
+            return null;
+        }
+        mCheckoutDirectory.mkdirs();
+        File checkout = new File(mCheckoutDirectory, key + APK_SUFFIX);
+        checkout.delete();
+        try {
+            // Hard links are free, and both directories are on the same file system
+            Os.link(entry.getAbsolutePath(), checkout.getAbsolutePath());
+        } catch (ErrnoException e) {
+            ProvisionLogger.logw("Could not link cached package, copying it instead", e);
+            try (InputStream in = new FileInputStream(entry);
+                 OutputStream out = new FileOutputStream(checkout)) {
+                StoreUtils.copyStream(in, out);
+            } catch (IOException ioException) {
+                ProvisionLogger.loge("Could not copy cached package", ioException);
+                checkout.delete();
+                return null;
+            }
+        }
+        entry.setLastModified(System.currentTimeMillis());
+        ProvisionLogger.logi("Package cache hit for " + key);
+        return checkout;
+    }
+
+    /**
+     * Stores a downloaded package on the executor of the cache, if it matches the checksum of
+     * {@code packageDownloadInfo}. Failing to store a package is not an error.
+     *
+     * <p>The package file is opened before this returns, so the caller can delete it right away.
+     */
+    void put(PackageDownloadInfo packageDownloadInfo, File packageFile) {
+        String key = getKey(packageDownloadInfo);
+        if (key == null || packageFile.length() > mMaxSizeBytes) {
+            return;
+        }
+        final InputStream in;
+        try {
+            in = new FileInputStream(packageFile);
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not cache package", e);
+            return;
+        }
+        mExecutor.execute(() -> store(packageDownloadInfo, key, in));
+    }
+
+    private synchronized void store(
+            PackageDownloadInfo packageDownloadInfo, String key, InputStream packageStream) {
+        mEntriesDirectory.mkdirs();
+        File temp = new File(mEntriesDirectory, key + TEMP_SUFFIX);
+        try {
+            byte[] hash = copyAndHash(packageStream, temp);
+            if (!Arrays.equals(hash, packageDownloadInfo.packageChecksum)) {
+                ProvisionLogger.logw("Not caching package that does not match its checksum");
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(getEntryFile(key))) {
+                throw new IOException("Could not rename " + temp);
+            }
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not cache package", e);
+            temp.delete();
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits in its size cap.
+     */
+    private void evict() {
+        File[] entries = mEntriesDirectory.listFiles(
+                (dir, name) -> name.endsWith(APK_SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long totalSize = 0;
+        for (File entry : entries) {
+            totalSize += entry.length();
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < entries.length && totalSize > mMaxSizeBytes; i++) {
+            totalSize -= entries[i].length();
+            ProvisionLogger.logi("Evicting " + entries[i].getName() + " from package cache");
+            entries[i].delete();
+        }
+    }
+
+    private File getEntryFile(String key) {
+        return new File(mEntriesDirectory, key + APK_SUFFIX);
+    }
+
+    /**
+     * Copies {@code source} to {@code destination} and returns its hash. {@code source} is closed.
+     */
+    private static byte[] copyAndHash(InputStream source, File destination) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(Utils.SHA256_TYPE);
+        } catch (NoSuchAlgorithmException e) {
+            source.close();
+            throw new IOException("Hashing algorithm " + Utils.SHA256_TYPE + " not supported.", e);
+        }
+        try (InputStream in = new DigestInputStream(source, digest);
+             OutputStream out = new FileOutputStream(destination)) {
+            byte[] buffer = new byte[64 * 1024];
+            int numRead;
+            while ((numRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, numRead);
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -16,8 +16,29 @@
 
 package com.android.managedprovisioning.task;
 
+import android.annotation.Nullable;
+
 import java.io.File;
 
 interface PackageLocationProvider {
     File getPackageLocation();
+
+    /**
+     * Returns the {@link com.android.managedprovisioning.common.Utils#SHA256_TYPE} hash of the
+     * package, if it was already computed while the package was being downloaded.
+     */
+    @Nullable
+    default byte[] getPackageHash() {
+        return null;
+    }
+
+    /**
+     * Returns the id of a {@link android.content.pm.PackageInstaller.Session} the package has
+     * already been written to, or a value {@code <= 0} if nothing has been staged.
+     *
+     * <p>The session must only be committed once the package has been verified.
+     */
+    default int getStagedSessionId() {
+        return -1;
+    }
 }
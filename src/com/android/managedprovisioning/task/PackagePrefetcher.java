@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static java.util.Objects.requireNonNull;
+
+import android.annotation.Nullable;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.common.ProvisionLogger;
+import com.android.managedprovisioning.common.Utils;
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Downloads and verifies the device admin package in the background while the user is still
+ * going through the pre-provisioning screens.
+ *
+ * <p>{@link DownloadPackageTask} claims the prefetched package with {@link #claim}. A prefetch
+ * that is still running when it is claimed is waited for as long as it keeps receiving data,
+ * rather than started over. It is only given up once no data arrived for
+ * {@link #CLAIM_STALL_TIMEOUT_MILLIS}. A package is only handed out if it matched the checksum of
+ * its {@link PackageDownloadInfo}, and it still goes through the regular verification afterwards.
+ *
+ * <p>Packages left in the prefetch directory by an earlier process, which was killed or handed
+ * provisioning over before claiming them, are deleted when the prefetcher is created.
+ */
+public class PackagePrefetcher {
+
+    private static final String PREFETCH_DIRECTORY = "package_prefetch";
+    @VisibleForTesting
+    static final long CLAIM_STALL_TIMEOUT_MILLIS = 15 * 1000;
+
+    private static PackagePrefetcher sInstance;
+
+    private final File mDirectory;
+    private final StreamingPackageDownloader mDownloader;
+    private final PackageManager mPackageManager;
+    private final ChecksumUtils mChecksumUtils;
+    private final long mClaimStallTimeoutMillis;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private PackageDownloadInfo mPackageDownloadInfo;
+    private Future<PrefetchedPackage> mPrefetch;
+    private File mPrefetchFile;
+    private int mPrefetchCount;
+
+    public static synchronized PackagePrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            Context applicationContext = context.getApplicationContext();
+            sInstance = new PackagePrefetcher(
+                    new File(applicationContext.getFilesDir(), PREFETCH_DIRECTORY),
+                    new StreamingPackageDownloader(),
+                    applicationContext.getPackageManager(),
+                    new ChecksumUtils(new Utils()),
+                    CLAIM_STALL_TIMEOUT_MILLIS);
+            sInstance.deleteStaleFiles();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    PackagePrefetcher(
+            File directory,
+            StreamingPackageDownloader downloader,
+            PackageManager packageManager,
+            ChecksumUtils checksumUtils,
+            long claimStallTimeoutMillis) {
+        mDirectory = requireNonNull(directory);
+        mDownloader = requireNonNull(downloader);
+        mPackageManager = requireNonNull(packageManager);
+        mChecksumUtils = requireNonNull(checksumUtils);
+        mClaimStallTimeoutMillis = claimStallTimeoutMillis;
+    }
+
+    /**
+     * Deletes the files of the prefetch directory on the executor, before any prefetch starts.
+     */
+    @VisibleForTesting
+    void deleteStaleFiles() {
+        mExecutor.execute(() -> {
+            final File[] files = mDirectory.listFiles();
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                ProvisionLogger.logi("Deleting stale prefetched package " + file);
+                file.delete();
+            }
+        });
+    }
+
+    /**
+     * A downloaded package which matched its checksum.
+     */
+    static final class PrefetchedPackage {
+        final File mFile;
+        final byte[] mPackageHash;
+
+        PrefetchedPackage(File file, byte[] packageHash) {
+            mFile = file;
+            mPackageHash = packageHash;
+        }
+    }
+
+    /**
+     * Starts downloading the package described by {@code packageDownloadInfo} in the background.
+     * Any prefetch of a different package is discarded.
+     *
+     * @param shouldPrefetch checked in the background before downloading, so that checks which
+     *                       query the system, such as whether the package is already installed,
+     *                       don't run on the calling thread.
+     */
+    public synchronized void prefetch(
+            PackageDownloadInfo packageDownloadInfo, BooleanSupplier shouldPrefetch) {
+        if (mPrefetch != null) {
+            if (isSamePackage(mPackageDownloadInfo, packageDownloadInfo)) {
+                return;
+            }
+            discard();
+        }
+        ProvisionLogger.logi("Prefetching package from " + packageDownloadInfo.location);
+        final File file = new File(mDirectory, "prefetched_" + mPrefetchCount++ + ".apk");
+        mPackageDownloadInfo = packageDownloadInfo;
+        mPrefetchFile = file;
+        mPrefetch = mExecutor.submit(() -> shouldPrefetch.getAsBoolean()
+                ? downloadAndVerify(packageDownloadInfo, file)
+                : null);
+    }
+
+    /**
+     * Cancels the running prefetch, if any, and deletes the prefetched package.
+     */
+    public synchronized void discard() {
+        if (mPrefetch == null) {
+            return;
+        }
+        ProvisionLogger.logi("Discarding prefetched package");
+        cancel(mPrefetch, mPrefetchFile);
+        mPrefetch = null;
+        mPrefetchFile = null;
+        mPackageDownloadInfo = null;
+    }
+
+    /**
+     * Returns the prefetched package matching {@code packageDownloadInfo}, or {@code null} if there
+     * is none, it failed or it stalled. A running prefetch is waited for as long as its package
+     * file keeps growing; one which didn't receive data for {@link #CLAIM_STALL_TIMEOUT_MILLIS} is
+     * cancelled, and the package has to be downloaded again.
+     *
+     * <p>Ownership of the returned file moves to the caller.
+     */
+    @Nullable
+    PrefetchedPackage claim(PackageDownloadInfo packageDownloadInfo) {
+        final Future<PrefetchedPackage> prefetch;
+        final File file;
+        synchronized (this) {
+            if (mPrefetch == null) {
+                return null;
+            }
+            if (!isSamePackage(mPackageDownloadInfo, packageDownloadInfo)) {
+                discard();
+                return null;
+            }
+            prefetch = mPrefetch;
+            file = mPrefetchFile;
+            mPrefetch = null;
+            mPrefetchFile = null;
+            mPackageDownloadInfo = null;
+        }
+        long receivedBytes = file.length();
+        try {
+            while (true) {
+                try {
+                    return prefetch.get(mClaimStallTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    final long length = file.length();
+                    if (length == receivedBytes) {
+                        ProvisionLogger.logw("Prefetch stalled after " + length
+                                + " bytes, downloading the package again");
+                        cancel(prefetch, file);
+                        return null;
+                    }
+                    ProvisionLogger.logd("Prefetch still running, " + length + " bytes received");
+                    receivedBytes = length;
+                }
+            }
+        } catch (CancellationException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(prefetch, file);
+            return null;
+        }
+    }
+
+    private void cancel(Future<PrefetchedPackage> prefetch, File file) {
+        prefetch.cancel(/* mayInterruptIfRunning= */ true);
+        // Runs after the cancelled download has stopped, as the executor is single threaded
+        mExecutor.execute(file::delete);
+    }
+
+    @Nullable
+    private PrefetchedPackage downloadAndVerify(
+            PackageDownloadInfo packageDownloadInfo, File file) {
+        mDirectory.mkdirs();
+        try {
+            byte[] packageHash = mDownloader.download(
+                    packageDownloadInfo, file, /* stagingStreamFactory= */ null);
+            if (matchesChecksum(packageDownloadInfo, file, packageHash)) {
+                ProvisionLogger.logi("Prefetched package to " + file);
+                return new PrefetchedPackage(file, packageHash);
+            }
+            ProvisionLogger.logw("Prefetched package does not match its checksum");
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not prefetch package", e);
+        }
+        file.delete();
+        return null;
+    }
+
+    private boolean matchesChecksum(
+            PackageDownloadInfo packageDownloadInfo, File file, byte[] packageHash) {
+        if (packageDownloadInfo.packageChecksum.length > 0) {
+            return mChecksumUtils.doesComputedPackageHashMatch(
+                    packageHash, packageDownloadInfo.packageChecksum);
+        }
+        PackageInfo packageInfo = mPackageManager.getPackageArchiveInfo(
+                file.getAbsolutePath(), PackageManager.GET_SIGNATURES);
+        return packageInfo != null
+                && mChecksumUtils.doesASignatureHashMatch(
+                        packageInfo, packageDownloadInfo.signatureChecksum);
+    }
+
+    private static boolean isSamePackage(PackageDownloadInfo a, PackageDownloadInfo b) {
+        return Objects.equals(a.location, b.location)
+                && Objects.equals(a.cookieHeader, b.cookieHeader)
+                && Arrays.equals(a.packageChecksum, b.packageChecksum)
+                && Arrays.equals(a.signatureChecksum, b.signatureChecksum);
+    }
+}
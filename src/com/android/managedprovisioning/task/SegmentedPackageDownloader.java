@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static java.util.Objects.requireNonNull;
+
+import android.annotation.Nullable;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.common.ProvisionLogger;
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a package over several connections at once, each fetching its own byte range into a
+ * preallocated file.
+ *
+ * <p>The server is first probed with a {@code HEAD} request. If it doesn't advertise
+ * {@code Accept-Ranges: bytes} and a {@code Content-Length}, or the package is too small to be
+ * worth splitting, the download falls back to a single stream through
+ * {@link StreamingPackageDownloader}. The assembled file is not verified here; that is left to
+ * the regular verification task.
+ */
+class SegmentedPackageDownloader {
+
+    @VisibleForTesting
+    static final int DEFAULT_SEGMENT_COUNT = 4;
+    @VisibleForTesting
+    static final long MIN_SEGMENT_SIZE_BYTES = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final StreamingPackageDownloader mSingleStreamDownloader;
+    private final int mSegmentCount;
+    private final long mMinSegmentSizeBytes;
+
+    SegmentedPackageDownloader(StreamingPackageDownloader singleStreamDownloader) {
+        this(singleStreamDownloader, DEFAULT_SEGMENT_COUNT, MIN_SEGMENT_SIZE_BYTES);
+    }
+
+    @VisibleForTesting
+    SegmentedPackageDownloader(
+            StreamingPackageDownloader singleStreamDownloader,
+            int segmentCount,
+            long minSegmentSizeBytes) {
+        mSingleStreamDownloader = requireNonNull(singleStreamDownloader);
+        mSegmentCount = segmentCount;
+        mMinSegmentSizeBytes = minSegmentSizeBytes;
+    }
+
+    /**
+     * Downloads the package described by {@code packageDownloadInfo} to {@code destination}.
+     *
+     * @throws IOException if the download failed.
+     */
+    void download(PackageDownloadInfo packageDownloadInfo, File destination) throws IOException {
+        RangeSupport rangeSupport = probe(packageDownloadInfo);
+        long contentLength = rangeSupport == null ? -1 : rangeSupport.mContentLength;
+        int segmentCount = (int) Math.min(mSegmentCount, contentLength / mMinSegmentSizeBytes);
+        if (segmentCount < 2) {
+            ProvisionLogger.logd("Downloading package over a single connection");
+            mSingleStreamDownloader.download(
+                    packageDownloadInfo, destination, /* stagingStreamFactory= */ null);
+            return;
+        }
+        ProvisionLogger.logd("Downloading " + contentLength + " bytes over " + segmentCount
+                + " connections");
+
+        ExecutorService executor = Executors.newFixedThreadPool(segmentCount);
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            file.setLength(contentLength);
+            FileChannel channel = file.getChannel();
+            long segmentSize = contentLength / segmentCount;
+            List<Future<Void>> segments = new ArrayList<>();
+            for (int i = 0; i < segmentCount; i++) {
+                long start = i * segmentSize;
+                long end = i == segmentCount - 1 ? contentLength - 1 : start + segmentSize - 1;
+                segments.add(executor.submit(() -> {
+                    downloadSegment(packageDownloadInfo, rangeSupport.mValidator, channel,
+                            start, end);
+                    return null;
+                }));
+            }
+            for (Future<Void> segment : segments) {
+                segment.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Segment download failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading segments", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Result of probing the server for range support.
+     */
+    private static final class RangeSupport {
+        final long mContentLength;
+        @Nullable final String mValidator;
+
+        RangeSupport(long contentLength, @Nullable String validator) {
+            mContentLength = contentLength;
+            mValidator = validator;
+        }
+    }
+
+    /**
+     * Returns the size and validator of the package if the server supports range requests, or
+     * {@code null} otherwise.
+     */
+    @Nullable
+    private RangeSupport probe(PackageDownloadInfo packageDownloadInfo) {
+        HttpURLConnection connection = null;
+        try {
+            connection = mSingleStreamDownloader.openConnection(packageDownloadInfo);
+            connection.setRequestMethod("HEAD");
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK
+                    || !"bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"))) {
+                return null;
+            }
+            long contentLength = connection.getContentLengthLong();
+            return contentLength > 0
+                    ? new RangeSupport(contentLength, StreamingPackageDownloader.getValidator(
+                            connection))
+                    : null;
+        } catch (IOException e) {
+            ProvisionLogger.logw("Could not probe range support: " + e.getMessage());
+            return null;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Downloads the bytes {@code start} to {@code end} inclusive, resuming from where a failed
+     * attempt stopped.
+     */
+    private void downloadSegment(
+            PackageDownloadInfo packageDownloadInfo,
+            @Nullable String validator,
+            FileChannel channel,
+            long start,
+            long end) throws IOException {
+        long position = start;
+        IOException lastFailure = null;
+        for (int attempt = 1; attempt <= StreamingPackageDownloader.MAX_ATTEMPTS; attempt++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Segment download cancelled");
+            }
+            HttpURLConnection connection =
+                    mSingleStreamDownloader.openConnection(packageDownloadInfo);
+            try {
+                connection.setRequestProperty("Range", "bytes=" + position + "-" + end);
+                if (validator != null) {
+                    connection.setRequestProperty("If-Range", validator);
+                }
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL
+                        || StreamingPackageDownloader.getRangeStart(connection) != position) {
+                    // The package changed on the server, or ranges are no longer honoured
+                    throw new IOException("Server did not return the requested range");
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int numRead;
+                    while (position <= end && (numRead = in.read(buffer)) != -1) {
+                        numRead = (int) Math.min(numRead, end - position + 1);
+                        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, numRead);
+                        while (byteBuffer.hasRemaining()) {
+                            position += channel.write(byteBuffer, position);
+                        }
+                    }
+                }
+                if (position == end + 1) {
+                    return;
+                }
+                lastFailure = new IOException("Segment ended at " + position + " instead of "
+                        + (end + 1));
+            } catch (IOException e) {
+                lastFailure = e;
+            } finally {
+                connection.disconnect();
+            }
+            ProvisionLogger.logw("Segment " + start + "-" + end + " attempt " + attempt
+                    + " failed: " + lastFailure.getMessage());
+            if (attempt < StreamingPackageDownloader.MAX_ATTEMPTS) {
+                mSingleStreamDownloader.sleep(attempt * 1000L);
+            }
+        }
+        throw lastFailure;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static java.util.Objects.requireNonNull;
+
+import android.content.pm.PackageInstaller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stages a package downloaded by {@link StreamingPackageDownloader} into a
+ * {@link PackageInstaller.Session}.
+ *
+ * <p>A session file can't be truncated, so when the download starts over from the first byte the
+ * session holding the previous attempt is abandoned and a new one is created. Otherwise a stale
+ * tail of the previous attempt could be left after the end of the package.
+ */
+class SessionStagingStreamFactory implements StreamingPackageDownloader.StagingStreamFactory {
+
+    private final PackageInstaller mPackageInstaller;
+    private final String mName;
+    private int mSessionId = -1;
+    private PackageInstaller.Session mSession;
+
+    /**
+     * @param name the name of the file the package is written to in the session.
+     */
+    SessionStagingStreamFactory(PackageInstaller packageInstaller, String name) {
+        mPackageInstaller = requireNonNull(packageInstaller);
+        mName = requireNonNull(name);
+    }
+
+    @Override
+    public OutputStream openStagingStream(long offset, long contentLength) throws IOException {
+        if (mSession == null || offset == 0) {
+            abandon();
+            mSessionId = mPackageInstaller.createSession(
+                    InstallPackageTask.createSessionParams(/* allowTest= */ false));
+            mSession = mPackageInstaller.openSession(mSessionId);
+        }
+        return mSession.openWrite(mName, offset, contentLength);
+    }
+
+    /**
+     * Returns the id of the session the package was staged into, or {@code -1} if no stream was
+     * opened.
+     */
+    int getSessionId() {
+        return mSessionId;
+    }
+
+    /**
+     * Releases the session, which stays available to be committed by its id.
+     */
+    void close() {
+        if (mSession != null) {
+            mSession.close();
+            mSession = null;
+        }
+    }
+
+    /**
+     * Releases and abandons the session, if any.
+     */
+    void abandon() {
+        close();
+        if (mSessionId > 0) {
+            mPackageInstaller.abandonSession(mSessionId);
+            mSessionId = -1;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static java.util.Objects.requireNonNull;
+
+import android.annotation.Nullable;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.managedprovisioning.common.Globals;
+import com.android.managedprovisioning.common.ProvisionLogger;
+import com.android.managedprovisioning.common.Utils;
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Downloads a package over HTTP in a single pass, without going through
+ * {@link android.app.DownloadManager}.
+ *
+ * <p>Every chunk read from the network is written to a spill file, fed to a running
+ * {@link Utils#SHA256_TYPE} digest and, optionally, written to a staging stream such as a
+ * {@link android.content.pm.PackageInstaller.Session}. The digest of the whole package is
+ * therefore known as soon as the end of the stream is reached.
+ *
+ * <p>If the transfer fails midway, the partial spill file is kept and the download is retried up
+ * to {@link #MAX_ATTEMPTS} times. When the server provided an {@code ETag} or
+ * {@code Last-Modified} validator, the retry only requests the missing bytes with a
+ * {@code Range} request guarded by {@code If-Range}; otherwise it starts over.
+ */
+class StreamingPackageDownloader {
+
+    @VisibleForTesting
+    static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_RETRY_DELAY_MS = 1000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 30 * 1000;
+    private static final int READ_TIMEOUT_MS = 60 * 1000;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * Opens the stream the downloaded bytes are staged into.
+     */
+    interface StagingStreamFactory {
+        /**
+         * @param offset the offset in the package the first written byte corresponds to. This is
+         *               non-zero when a download is resumed.
+         * @param contentLength the size of the package in bytes, or {@code -1} if unknown.
+         */
+        OutputStream openStagingStream(long offset, long contentLength) throws IOException;
+    }
+
+    /**
+     * Progress of a download across attempts.
+     */
+    private static final class TransferState {
+        long mBytesReceived;
+        long mContentLength = -1;
+        @Nullable String mValidator;
+    }
+
+    /**
+     * Thrown for failures that retrying won't fix, such as a missing package.
+     */
+    private static final class NonRetryableException extends IOException {
+        NonRetryableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Downloads the package described by {@code packageDownloadInfo} to {@code spillFile}.
+     *
+     * @param stagingStreamFactory if non-null, the downloaded bytes are also written to the
+     *                             stream it opens.
+     * @return the {@link Utils#SHA256_TYPE} hash of the downloaded package.
+     * @throws IOException if the download failed after all attempts. The spill file may be left
+     *                     partially written.
+     */
+    byte[] download(
+            PackageDownloadInfo packageDownloadInfo,
+            File spillFile,
+            @Nullable StagingStreamFactory stagingStreamFactory) throws IOException {
+        requireNonNull(packageDownloadInfo);
+        requireNonNull(spillFile);
+        MessageDigest digest = createDigest();
+        TransferState state = new TransferState();
+
+        IOException lastFailure = null;
+        long retryDelayMs = INITIAL_RETRY_DELAY_MS;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                downloadAttempt(packageDownloadInfo, spillFile, stagingStreamFactory, digest,
+                        state);
+                return digest.digest();
+            } catch (NonRetryableException e) {
+                throw e;
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                lastFailure = e;
+                ProvisionLogger.logw("Download attempt " + attempt + " failed after "
+                        + state.mBytesReceived + " bytes: " + e.getMessage());
+            }
+            if (attempt < MAX_ATTEMPTS) {
+                sleep(retryDelayMs);
+                retryDelayMs *= 2;
+            }
+        }
+        throw lastFailure;
+    }
+
+    private void downloadAttempt(
+            PackageDownloadInfo packageDownloadInfo,
+            File spillFile,
+            @Nullable StagingStreamFactory stagingStreamFactory,
+            MessageDigest digest,
+            TransferState state) throws IOException {
+        HttpURLConnection connection = openConnection(packageDownloadInfo);
+        try {
+            boolean resuming = state.mBytesReceived > 0 && state.mValidator != null;
+            if (resuming) {
+                connection.setRequestProperty("Range", "bytes=" + state.mBytesReceived + "-");
+                connection.setRequestProperty("If-Range", state.mValidator);
+            }
+            int responseCode = connection.getResponseCode();
+            if (resuming && responseCode == HttpURLConnection.HTTP_PARTIAL
+                    && getRangeStart(connection) == state.mBytesReceived) {
+                ProvisionLogger.logi("Resuming download at byte " + state.mBytesReceived);
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                // Either a fresh download, or the package changed on the server
+                digest.reset();
+                state.mBytesReceived = 0;
+                state.mContentLength = connection.getContentLengthLong();
+                state.mValidator = getValidator(connection);
+            } else if (responseCode == HTTP_RANGE_NOT_SATISFIABLE
+                    || responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                // The partial file can't be used, start over on the next attempt
+                digest.reset();
+                state.mBytesReceived = 0;
+                state.mValidator = null;
+                throw new IOException("Could not resume download, response code "
+                        + responseCode);
+            } else if (responseCode >= 400 && responseCode < 500
+                    && responseCode != HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                    && responseCode != 429 /* Too Many Requests */) {
+                throw new NonRetryableException("Unexpected HTTP response code " + responseCode);
+            } else {
+                throw new IOException("Unexpected HTTP response code " + responseCode);
+            }
+            if (Globals.DEBUG) {
+                ProvisionLogger.logd("Streaming " + state.mContentLength + " bytes from "
+                        + packageDownloadInfo.location);
+            }
+
+            long offset = state.mBytesReceived;
+            try (InputStream in = connection.getInputStream();
+                 FileOutputStream spill = new FileOutputStream(spillFile, /* append= */ true);
+                 OutputStream staging = stagingStreamFactory == null
+                         ? null
+                         : stagingStreamFactory.openStagingStream(offset, state.mContentLength)) {
+                // Drop any bytes written after the last complete chunk of a failed attempt
+                spill.getChannel().truncate(offset);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int numRead;
+                while ((numRead = in.read(buffer)) != -1) {
+                    spill.write(buffer, 0, numRead);
+                    if (staging != null) {
+                        staging.write(buffer, 0, numRead);
+                    }
+                    digest.update(buffer, 0, numRead);
+                    state.mBytesReceived += numRead;
+                }
+                if (staging != null) {
+                    staging.flush();
+                }
+            }
+            if (state.mContentLength >= 0 && state.mBytesReceived != state.mContentLength) {
+                throw new IOException("Expected " + state.mContentLength
+                        + " bytes but received " + state.mBytesReceived);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    HttpURLConnection openConnection(PackageDownloadInfo packageDownloadInfo)
+            throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL(packageDownloadInfo.location).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (packageDownloadInfo.cookieHeader != null) {
+            connection.setRequestProperty("Cookie", packageDownloadInfo.cookieHeader);
+        }
+        return connection;
+    }
+
+    void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry the download");
+        }
+    }
+
+    /**
+     * Returns a validator that can be sent in an {@code If-Range} header, or {@code null} if the
+     * server didn't provide one. Weak entity tags can't be used for range requests.
+     */
+    @Nullable
+    static String getValidator(HttpURLConnection connection) {
+        String eTag = connection.getHeaderField("ETag");
+        if (eTag != null && !eTag.startsWith("W/")) {
+            return eTag;
+        }
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * Returns the first byte position of a {@code Content-Range: bytes start-end/total} header,
+     * or {@code -1} if it is missing or malformed.
+     */
+    @VisibleForTesting
+    static long getRangeStart(HttpURLConnection connection) {
+        return parseRangeStart(connection.getHeaderField("Content-Range"));
+    }
+
+    @VisibleForTesting
+    static long parseRangeStart(@Nullable String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(Utils.SHA256_TYPE);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Hashing algorithm " + Utils.SHA256_TYPE + " not supported.", e);
+        }
+    }
+}
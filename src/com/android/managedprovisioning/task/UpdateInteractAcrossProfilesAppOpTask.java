@@ -27,15 +27,19 @@ import android.content.pm.CrossProfileApps;
 import android.content.pm.PackageManager;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.util.ArrayMap;
 import android.util.ArraySet;
+import android.util.SparseArray;
 
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.model.ProvisioningParams;
 import com.android.managedprovisioning.task.interactacrossprofiles.CrossProfileAppsSnapshot;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -49,6 +53,7 @@ public class UpdateInteractAcrossProfilesAppOpTask extends AbstractProvisioningT
     private final AppOpsManager mAppOpsManager;
     private final PackageManager mPackageManager;
     private final UserManager mUserManager;
+    private final PackageIndex mPackageIndex;
 
     public UpdateInteractAcrossProfilesAppOpTask(Context context,
             ProvisioningParams provisioningParams,
@@ -61,6 +66,7 @@ public class UpdateInteractAcrossProfilesAppOpTask extends AbstractProvisioningT
         mAppOpsManager = context.getSystemService(AppOpsManager.class);
         mPackageManager = context.getPackageManager();
         mUserManager = context.getSystemService(UserManager.class);
+        mPackageIndex = PackageIndex.getInstance(context);
     }
 
     @Override
@@ -73,6 +79,7 @@ public class UpdateInteractAcrossProfilesAppOpTask extends AbstractProvisioningT
         Set<String> currentCrossProfileApps = mCrossProfileAppsSnapshot.getSnapshot(userId);
 
         updateAfterOtaChanges(previousCrossProfileApps, currentCrossProfileApps);
+        success();
     }
 
     private void updateAfterOtaChanges(
@@ -114,10 +121,85 @@ public class UpdateInteractAcrossProfilesAppOpTask extends AbstractProvisioningT
      *
      * <p>This is to fix an issue that existed in Android 11 where the appop was set per-package
      * instead of per-UID causing issues for applications with shared UIDs.
+     *
+     * <p>The package modes are fetched with a single query, and only the UIDs which have a
+     * package mode to move to the UID are written. If the query isn't allowed, every installed
+     * app is checked instead.
      */
     private void reapplyCrossProfileAppsPermission() {
-        final Set<Integer> uids = getUidsWithNonDefaultMode();
-        reapplyCrossProfileAppsPermissionForUids(uids);
+        final SparseArray<ArrayMap<String, Integer>> packageModes;
+        try {
+            packageModes = getNonDefaultPackageModesByUid();
+        } catch (SecurityException e) {
+            ProvisionLogger.logw("Could not query app ops in bulk, checking every app", e);
+            reapplyCrossProfileAppsPermissionForUids(getUidsWithNonDefaultMode());
+            return;
+        }
+        final Map<String, Boolean> configurablePackages = new ArrayMap<>();
+        for (int i = 0; i < packageModes.size(); i++) {
+            moveInteractAcrossProfilesAppOpToUid(
+                    packageModes.keyAt(i), packageModes.valueAt(i), configurablePackages);
+        }
+    }
+
+    /**
+     * Returns the package modes of the app-op which aren't the default mode, keyed by UID then by
+     * package name, for the apps of the current user and its managed profiles.
+     */
+    private SparseArray<ArrayMap<String, Integer>> getNonDefaultPackageModesByUid() {
+        final SparseArray<ArrayMap<String, Integer>> packageModes = new SparseArray<>();
+        final List<AppOpsManager.PackageOps> packageOpsList =
+                mAppOpsManager.getPackagesForOps(new int[] {OP_INTERACT_ACROSS_PROFILES});
+        if (packageOpsList == null) {
+            return packageModes;
+        }
+        final Set<Integer> userIds = getProfileUserIds();
+        for (AppOpsManager.PackageOps packageOps : packageOpsList) {
+            final int uid = packageOps.getUid();
+            if (!userIds.contains(UserHandle.getUserId(uid))) {
+                continue;
+            }
+            for (AppOpsManager.OpEntry opEntry : packageOps.getOps()) {
+                if (opEntry.getOp() != OP_INTERACT_ACROSS_PROFILES
+                        || !appOpIsChangedFromDefault(opEntry.getMode())) {
+                    continue;
+                }
+                ArrayMap<String, Integer> modes = packageModes.get(uid);
+                if (modes == null) {
+                    modes = new ArrayMap<>();
+                    packageModes.put(uid, modes);
+                }
+                modes.put(packageOps.getPackageName(), opEntry.getMode());
+            }
+        }
+        return packageModes;
+    }
+
+    /**
+     * Resets the given package modes of {@code uid} and sets the UID mode to their consolidated
+     * mode. Packages of the UID with the default mode don't change the consolidated mode, so they
+     * are left untouched.
+     */
+    private void moveInteractAcrossProfilesAppOpToUid(int uid, ArrayMap<String, Integer> modes,
+            Map<String, Boolean> configurablePackages) {
+        int uidMode = AppOpsManager.MODE_DEFAULT;
+        for (int i = 0; i < modes.size(); i++) {
+            final String packageName = modes.keyAt(i);
+            Boolean configurable = configurablePackages.get(packageName);
+            if (configurable == null) {
+                configurable = mCrossProfileApps.canConfigureInteractAcrossProfiles(packageName);
+                configurablePackages.put(packageName, configurable);
+            }
+            if (configurable && shouldUpdateUidMode(modes.valueAt(i), uidMode)) {
+                uidMode = modes.valueAt(i);
+            }
+        }
+        for (int i = 0; i < modes.size(); i++) {
+            mAppOpsManager.setMode(
+                    OP_INTERACT_ACROSS_PROFILES, uid, modes.keyAt(i),
+                    AppOpsManager.opToDefaultMode(OP_INTERACT_ACROSS_PROFILES));
+        }
+        mAppOpsManager.setUidMode(OP_INTERACT_ACROSS_PROFILES, uid, uidMode);
     }
 
     private Set<Integer> getUidsWithNonDefaultMode() {
@@ -135,24 +217,26 @@ public class UpdateInteractAcrossProfilesAppOpTask extends AbstractProvisioningT
 
     private Set<ApplicationInfo> getAllInstalledApps() {
         final Set<ApplicationInfo> apps = new HashSet<>();
-        List<UserHandle> profiles = mUserManager.getAllProfiles();
-        for (UserHandle profile : profiles) {
-            if (profile.getIdentifier() != mContext.getUserId()
-                    && !mUserManager.isManagedProfile(profile.getIdentifier())) {
-                continue;
-            }
-            try {
-                apps.addAll(
-                        mContext.createPackageContextAsUser(
-                        /* packageName= */ "android", /* flags= */ 0, profile)
-                                .getPackageManager().getInstalledApplications(/* flags= */ 0));
-            } catch (PackageManager.NameNotFoundException ignored) {
-                // Should never happen.
-            }
+        for (int userId : getProfileUserIds()) {
+            apps.addAll(mPackageIndex.getInstalledApplications(userId));
         }
         return apps;
     }
 
+    /**
+     * Returns the current user and its managed profiles.
+     */
+    private Set<Integer> getProfileUserIds() {
+        final Set<Integer> userIds = new HashSet<>();
+        userIds.add(mContext.getUserId());
+        for (UserHandle profile : mUserManager.getAllProfiles()) {
+            if (mUserManager.isManagedProfile(profile.getIdentifier())) {
+                userIds.add(profile.getIdentifier());
+            }
+        }
+        return userIds;
+    }
+
     private void reapplyCrossProfileAppsPermissionForUids(Set<Integer> uids) {
         for (int uid : uids) {
             reapplyCrossProfileAppsPermissionForUid(uid);
@@ -27,6 +27,7 @@ import android.content.pm.PackageManager;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.analytics.TraceSpan;
 import com.android.managedprovisioning.common.ManagedProvisioningSharedPreferences;
 import com.android.managedprovisioning.common.ProvisionLogger;
 import com.android.managedprovisioning.common.SettingsFacade;
@@ -89,6 +90,11 @@ public class VerifyAdminPackageTask extends AbstractProvisioningTask {
         mChecksumUtils = requireNonNull(checksumUtils);
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
     @Override
     public void run(int userId) {
         final File packageLocation = mDownloadLocationProvider.getPackageLocation();
@@ -107,30 +113,53 @@ public class VerifyAdminPackageTask extends AbstractProvisioningTask {
         // Device admin package name can't be null
         if (packageInfo == null || packageName == null) {
             ProvisionLogger.loge("Device admin package info or name is null");
-            error(ERROR_DEVICE_ADMIN_MISSING);
+            failVerification(packageLocation, ERROR_DEVICE_ADMIN_MISSING);
             return;
         }
 
         if (mUtils.findDeviceAdminInPackageInfo(packageName,
                 mProvisioningParams.deviceAdminComponentName, packageInfo) == null) {
-            error(ERROR_DEVICE_ADMIN_MISSING);
+            failVerification(packageLocation, ERROR_DEVICE_ADMIN_MISSING);
             return;
         }
 
         if (mPackageDownloadInfo.packageChecksum.length > 0) {
-            if (!mChecksumUtils.doesPackageHashMatch(
-                    packageLocation.getAbsolutePath(), mPackageDownloadInfo.packageChecksum)) {
-                error(ERROR_HASH_MISMATCH);
+            final boolean packageHashMatches;
+            try (TraceSpan ignored = startTraceSection("hash")) {
+                packageHashMatches = doesPackageHashMatch(packageLocation);
+            }
+            if (!packageHashMatches) {
+                failVerification(packageLocation, ERROR_HASH_MISMATCH);
                 return;
             }
         } else {
             if (!mChecksumUtils.doesASignatureHashMatch(
                     packageInfo, mPackageDownloadInfo.signatureChecksum)) {
-                error(ERROR_HASH_MISMATCH);
+                failVerification(packageLocation, ERROR_HASH_MISMATCH);
                 return;
             }
         }
 
         success();
     }
+
+    /**
+     * Deletes a package which failed verification, so that it is neither installed nor left on
+     * disk, as is the case of a prefetched or cached package.
+     */
+    private void failVerification(File packageLocation, int resultCode) {
+        packageLocation.delete();
+        error(resultCode);
+    }
+
+    private boolean doesPackageHashMatch(File packageLocation) {
+        // The hash may already have been computed while the package was being downloaded
+        byte[] packageHash = mDownloadLocationProvider.getPackageHash();
+        if (packageHash != null) {
+            return mChecksumUtils.doesComputedPackageHashMatch(
+                    packageHash, mPackageDownloadInfo.packageChecksum);
+        }
+        return mChecksumUtils.doesPackageHashMatch(
+                packageLocation.getAbsolutePath(), mPackageDownloadInfo.packageChecksum);
+    }
 }
@@ -100,8 +100,7 @@ public class VerifyRoleHolderPackageTask extends AbstractProvisioningTask {
                 PackageManager.GET_SIGNATURES | PackageManager.GET_RECEIVERS);
 
         if (mPackageDownloadInfo.packageChecksum.length > 0) {
-            if (!mChecksumUtils.doesPackageHashMatch(
-                    packageLocation.getAbsolutePath(), mPackageDownloadInfo.packageChecksum)) {
+            if (!doesPackageHashMatch(packageLocation)) {
                 error(ERROR_HASH_MISMATCH);
                 return;
             }
@@ -115,4 +114,15 @@ public class VerifyRoleHolderPackageTask extends AbstractProvisioningTask {
 
         success();
     }
+
+    private boolean doesPackageHashMatch(File packageLocation) {
+        // The hash may already have been computed while the package was being downloaded
+        byte[] packageHash = mDownloadLocationProvider.getPackageHash();
+        if (packageHash != null) {
+            return mChecksumUtils.doesComputedPackageHashMatch(
+                    packageHash, mPackageDownloadInfo.packageChecksum);
+        }
+        return mChecksumUtils.doesPackageHashMatch(
+                packageLocation.getAbsolutePath(), mPackageDownloadInfo.packageChecksum);
+    }
 }
@@ -19,14 +19,13 @@ package com.android.managedprovisioning.task.nonrequiredapps;
 import static com.android.internal.util.Preconditions.checkNotNull;
 
 import android.annotation.IntDef;
-import android.app.AppGlobals;
 import android.app.admin.DevicePolicyManager;
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.pm.IPackageManager;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.managedprovisioning.common.IllegalProvisioningArgumentException;
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.ProvisioningParams;
 
@@ -56,7 +55,7 @@ public class NonRequiredAppsLogic {
     }
 
     private final Context mContext;
-    private final IPackageManager mIPackageManager;
+    private final PackageIndex mPackageIndex;
     private final DevicePolicyManager mDevicePolicyManager;
     private final boolean mNewProfile;
     private final ProvisioningParams mParams;
@@ -69,7 +68,7 @@ public class NonRequiredAppsLogic {
             ProvisioningParams params) {
         this(
                 context,
-                AppGlobals.getPackageManager(),
+                PackageIndex.getInstance(context),
                 (DevicePolicyManager) context.getSystemService(Context.DEVICE_POLICY_SERVICE),
                 newProfile,
                 params,
@@ -80,14 +79,14 @@ public class NonRequiredAppsLogic {
     @VisibleForTesting
     NonRequiredAppsLogic(
             Context context,
-            IPackageManager iPackageManager,
+            PackageIndex packageIndex,
             DevicePolicyManager devicePolicyManager,
             boolean newProfile,
             ProvisioningParams params,
             SystemAppsSnapshot snapshot,
             Utils utils) {
         mContext = context;
-        mIPackageManager = checkNotNull(iPackageManager);
+        mPackageIndex = checkNotNull(packageIndex);
         mDevicePolicyManager = checkNotNull(devicePolicyManager);
         mNewProfile = newProfile;
         mParams = checkNotNull(params);
@@ -123,7 +122,7 @@ public class NonRequiredAppsLogic {
      */
     private void filterOutSystemAppsFromOta(Set<String> packagesToDelete, int userId) {
         // Start with all system apps
-        Set<String> newSystemApps = mUtils.getCurrentSystemApps(mIPackageManager, userId);
+        Set<String> newSystemApps = mPackageIndex.getSystemPackages(userId);
 
         // Remove the ones that were already present in the last snapshot
         newSystemApps.removeAll(mSnapshot.getSnapshot(userId));
@@ -41,6 +41,7 @@ public class TimeLoggerTest extends AndroidTestCase {
     private static final int CATEGORY = PROVISIONING_PROVISIONING_ACTIVITY_TIME_MS;
     private static final long START_TIME_MS = 1500;
     private static final long STOP_TIME_MS = 2500;
+    private static final String SOURCE = "SomeTask";
 
     private TimeLogger mTimeLogger;
 
@@ -49,6 +50,7 @@ public class TimeLoggerTest extends AndroidTestCase {
     @Mock private AnalyticsUtils mAnalyticsUtils;
     @Mock private MetricsWriter mMetricsWriter;
     @Mock private ManagedProvisioningSharedPreferences mSharedPreferences;
+    @Mock private LatencyHistograms mLatencyHistograms;
 
     @Override
     public void setUp() {
@@ -57,8 +59,10 @@ public class TimeLoggerTest extends AndroidTestCase {
 
         MockitoAnnotations.initMocks(this);
 
-        mTimeLogger = new TimeLogger(mContext, CATEGORY, mMetricsLoggerWrapper, mAnalyticsUtils,
-                new ProvisioningAnalyticsTracker(mMetricsWriter, mSharedPreferences));
+        mTimeLogger = new TimeLogger(mContext, CATEGORY, SOURCE, mMetricsLoggerWrapper,
+                mAnalyticsUtils,
+                new ProvisioningAnalyticsTracker(mMetricsWriter, mSharedPreferences),
+                mLatencyHistograms);
     }
 
     @SmallTest
@@ -76,6 +80,8 @@ public class TimeLoggerTest extends AndroidTestCase {
         // THEN time taken should be logged and the value should be stop time - start time.
         verify(mMetricsLoggerWrapper).logAction(mContext, CATEGORY,
                 (int) (STOP_TIME_MS - START_TIME_MS));
+        // THEN the time should be added to the latency histogram of the source.
+        verify(mLatencyHistograms).record(CATEGORY, SOURCE, STOP_TIME_MS - START_TIME_MS);
     }
 
     @SmallTest
@@ -98,6 +104,7 @@ public class TimeLoggerTest extends AndroidTestCase {
         mTimeLogger.stop();
         // THEN nothing should be logged.
         verifyNoMoreInteractions(mMetricsLoggerWrapper);
+        verify(mLatencyHistograms).record(CATEGORY, SOURCE, STOP_TIME_MS - START_TIME_MS);
     }
 
     @SmallTest
@@ -107,5 +114,6 @@ public class TimeLoggerTest extends AndroidTestCase {
         mTimeLogger.stop();
         // THEN nothing should be logged.
         verifyZeroInteractions(mMetricsLoggerWrapper);
+        verifyZeroInteractions(mLatencyHistograms);
     }
 }
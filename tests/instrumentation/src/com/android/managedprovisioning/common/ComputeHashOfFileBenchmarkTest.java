@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Benchmark comparing {@link Utils#computeHashOfFile(String, String)} with the previous
+ * implementation, which read the file through a 256-byte buffer.
+ *
+ * <p>Timings are written to logcat under the {@link #TAG} tag.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ComputeHashOfFileBenchmarkTest {
+
+    private static final String TAG = "ComputeHashOfFileBenchmark";
+    private static final int MB = 1024 * 1024;
+    private static final int ITERATIONS = 3;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final Utils mUtils = new Utils();
+    private final File mFile = new File(mContext.getCacheDir(), "hash_benchmark.apk");
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void benchmark_10MB() throws Exception {
+        runBenchmark(10);
+    }
+
+    @Test
+    public void benchmark_50MB() throws Exception {
+        runBenchmark(50);
+    }
+
+    @Test
+    public void benchmark_200MB() throws Exception {
+        runBenchmark(200);
+    }
+
+    private void runBenchmark(int sizeMb) throws Exception {
+        writeRandomFile(sizeMb);
+        String path = mFile.getAbsolutePath();
+
+        long legacyNanos = Long.MAX_VALUE;
+        long mappedNanos = Long.MAX_VALUE;
+        byte[] legacyHash = null;
+        byte[] mappedHash = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            legacyHash = computeHashOfFileLegacy(path);
+            legacyNanos = Math.min(legacyNanos, SystemClock.elapsedRealtimeNanos() - start);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            mappedHash = mUtils.computeHashOfFile(path, Utils.SHA256_TYPE);
+            mappedNanos = Math.min(mappedNanos, SystemClock.elapsedRealtimeNanos() - start);
+        }
+
+        Log.i(TAG, sizeMb + " MB: 256-byte reads " + legacyNanos / 1_000_000 + " ms, mapped "
+                + mappedNanos / 1_000_000 + " ms, speedup "
+                + String.format("%.2fx", (double) legacyNanos / mappedNanos));
+        assertThat(mappedHash).isEqualTo(legacyHash);
+    }
+
+    private void writeRandomFile(int sizeMb) throws IOException {
+        byte[] chunk = new byte[MB];
+        Random random = new Random(sizeMb);
+        try (OutputStream out = new FileOutputStream(mFile)) {
+            for (int i = 0; i < sizeMb; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+    }
+
+    private static byte[] computeHashOfFileLegacy(String fileLocation) throws Exception {
+        MessageDigest md = MessageDigest.getInstance(Utils.SHA256_TYPE);
+        try (InputStream fis = new FileInputStream(fileLocation)) {
+            byte[] buffer = new byte[256];
+            int n;
+            while ((n = fis.read(buffer)) != -1) {
+                md.update(buffer, 0, n);
+            }
+        }
+        return md.digest();
+    }
+}
@@ -88,6 +88,12 @@ public class DeviceManagementRoleHolderHelperTest {
     private boolean mCanDelegateProvisioningToRoleHolder;
     private final FeatureFlagChecker mFeatureFlagChecker =
             () -> mCanDelegateProvisioningToRoleHolder;
+    private static final int REQUIRED_ROLE_HOLDER_ACTION_COUNT =
+            DeviceManagementRoleHolderHelper.getRequiredRoleHolderActions().size();
+    private final RoleHolderValidationCache mValidationCache =
+            new RoleHolderValidationCache(Runnable::run);
+    private int mResolvedIntentCount;
+    private boolean mRoleHolderResolvesIntents = true;
 
     @Before
     public void setUp() {
@@ -410,6 +416,109 @@ public class DeviceManagementRoleHolderHelperTest {
         assertThat(roleHolderHelper.isRoleHolderProvisioningEnabled()).isFalse();
     }
 
+    @Test
+    public void isRoleHolderReadyForProvisioning_calledTwice_resolvesIntentsOnce() {
+        DeviceManagementRoleHolderHelper roleHolderHelper =
+                createRoleHolderHelperWithValidationCache(mContext.getPackageName());
+
+        roleHolderHelper.isRoleHolderReadyForProvisioning(mContext, MANAGED_PROVISIONING_INTENT);
+        roleHolderHelper.isRoleHolderReadyForProvisioning(mContext, MANAGED_PROVISIONING_INTENT);
+
+        assertThat(mResolvedIntentCount).isEqualTo(REQUIRED_ROLE_HOLDER_ACTION_COUNT);
+    }
+
+    @Test
+    public void isRoleHolderReadyForProvisioning_afterPrefetch_doesNotResolveIntents() {
+        DeviceManagementRoleHolderHelper roleHolderHelper =
+                createRoleHolderHelperWithValidationCache(mContext.getPackageName());
+
+        roleHolderHelper.prefetchRoleHolderValidation(mContext);
+        mResolvedIntentCount = 0;
+
+        assertThat(roleHolderHelper.isRoleHolderReadyForProvisioning(
+                mContext, MANAGED_PROVISIONING_INTENT)).isTrue();
+        assertThat(mResolvedIntentCount).isEqualTo(0);
+    }
+
+    @Test
+    public void isRoleHolderReadyForProvisioning_cacheInvalidated_resolvesIntentsAgain() {
+        DeviceManagementRoleHolderHelper roleHolderHelper =
+                createRoleHolderHelperWithValidationCache(mContext.getPackageName());
+        roleHolderHelper.isRoleHolderReadyForProvisioning(mContext, MANAGED_PROVISIONING_INTENT);
+
+        mValidationCache.invalidate(mContext.getPackageName());
+        roleHolderHelper.isRoleHolderReadyForProvisioning(mContext, MANAGED_PROVISIONING_INTENT);
+
+        assertThat(mResolvedIntentCount).isEqualTo(2 * REQUIRED_ROLE_HOLDER_ACTION_COUNT);
+    }
+
+    @Test
+    public void prefetchRoleHolderValidation_featureFlagDisabled_doesNotResolveIntents() {
+        mCanDelegateProvisioningToRoleHolder = false;
+        DeviceManagementRoleHolderHelper roleHolderHelper =
+                createRoleHolderHelperWithValidationCache(mContext.getPackageName());
+
+        roleHolderHelper.prefetchRoleHolderValidation(mContext);
+
+        assertThat(mResolvedIntentCount).isEqualTo(0);
+    }
+
+    @Test
+    public void isRoleHolderReadyForProvisioning_invalidRoleHolderUpdated_isTrue() {
+        DeviceManagementRoleHolderHelper roleHolderHelper =
+                createRoleHolderHelperWithValidationCache(mContext.getPackageName());
+        mRoleHolderResolvesIntents = false;
+        roleHolderHelper.prefetchRoleHolderValidation(mContext);
+
+        mRoleHolderResolvesIntents = true;
+
+        assertThat(roleHolderHelper.isRoleHolderReadyForProvisioning(
+                mContext, MANAGED_PROVISIONING_INTENT)).isTrue();
+    }
+
+    @Test
+    public void invalidateRoleHolderValidation_resolvesIntentsAgain() {
+        DeviceManagementRoleHolderHelper roleHolderHelper =
+                createRoleHolderHelperWithValidationCache(mContext.getPackageName());
+        roleHolderHelper.isRoleHolderReadyForProvisioning(mContext, MANAGED_PROVISIONING_INTENT);
+
+        roleHolderHelper.invalidateRoleHolderValidation();
+        roleHolderHelper.isRoleHolderReadyForProvisioning(mContext, MANAGED_PROVISIONING_INTENT);
+
+        assertThat(mResolvedIntentCount).isEqualTo(2 * REQUIRED_ROLE_HOLDER_ACTION_COUNT);
+    }
+
+    @Test
+    public void isRoleHolderReadyForProvisioning_validationTooSlow_validatesOnCallingThread() {
+        // The executor of the cache never runs the validation
+        DeviceManagementRoleHolderHelper roleHolderHelper =
+                createRoleHolderHelperWithValidationCache(mContext.getPackageName(),
+                        new RoleHolderValidationCache(runnable -> {}));
+
+        assertThat(roleHolderHelper.isRoleHolderReadyForProvisioning(
+                mContext, MANAGED_PROVISIONING_INTENT)).isTrue();
+        assertThat(mResolvedIntentCount).isEqualTo(REQUIRED_ROLE_HOLDER_ACTION_COUNT);
+    }
+
+    private DeviceManagementRoleHolderHelper createRoleHolderHelperWithValidationCache(
+            String roleHolderPackageName) {
+        return createRoleHolderHelperWithValidationCache(roleHolderPackageName, mValidationCache);
+    }
+
+    private DeviceManagementRoleHolderHelper createRoleHolderHelperWithValidationCache(
+            String roleHolderPackageName, RoleHolderValidationCache validationCache) {
+        return new DeviceManagementRoleHolderHelper(
+                roleHolderPackageName,
+                /* packageInstallChecker= */ (packageName) -> true,
+                /* resolveIntentChecker= */ (intent, packageManager) -> {
+                    mResolvedIntentCount++;
+                    return mRoleHolderResolvesIntents;
+                },
+                /* roleHolderStubChecker= */ (packageName, packageManager) -> false,
+                mFeatureFlagChecker,
+                validationCache);
+    }
+
     private DeviceManagementRoleHolderHelper createRoleHolderHelper() {
         return new DeviceManagementRoleHolderHelper(
                 ROLE_HOLDER_PACKAGE_NAME,
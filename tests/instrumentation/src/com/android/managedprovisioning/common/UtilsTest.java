@@ -16,9 +16,6 @@
 
 package com.android.managedprovisioning.common;
 
-import static android.content.pm.PackageManager.MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS;
-import static android.content.pm.PackageManager.MATCH_UNINSTALLED_PACKAGES;
-
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.eq;
@@ -36,7 +33,6 @@ import android.content.pm.IPackageManager;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
-import android.content.pm.ParceledListSlice;
 import android.content.pm.ResolveInfo;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
@@ -49,9 +45,6 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.FileOutputStream;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Unit-tests for {@link Utils}.
@@ -60,7 +53,6 @@ import java.util.stream.Collectors;
 public class UtilsTest extends AndroidTestCase {
     private static final String TEST_PACKAGE_NAME_1 = "com.test.packagea";
     private static final String TEST_PACKAGE_NAME_2 = "com.test.packageb";
-    private static final String TEST_PACKAGE_NAME_3 = "com.test.packagec";
     private static final String TEST_DEVICE_ADMIN_NAME = TEST_PACKAGE_NAME_1 + ".DeviceAdmin";
     // Another DeviceAdmin in package 1
     private static final String TEST_DEVICE_ADMIN_NAME_2 = TEST_PACKAGE_NAME_1 + ".DeviceAdmin2";
@@ -99,34 +91,6 @@ public class UtilsTest extends AndroidTestCase {
         mContext.deleteFile(TEST_FILE_NAME);
     }
 
-    public void testGetCurrentSystemApps() throws Exception {
-        // GIVEN two currently installed apps, one of which is system
-        final List<ApplicationInfo> systemAppsWithHiddenUntilInstalled = Arrays.asList(
-                createApplicationInfo(
-                        TEST_PACKAGE_NAME_1, /* system */ false, /* hiddenUntilInstalled */ false),
-                createApplicationInfo(
-                        TEST_PACKAGE_NAME_2, /* system */ true, /* hiddenUntilInstalled */ false),
-                createApplicationInfo(
-                        TEST_PACKAGE_NAME_3, /* system */ true, /* hiddenUntilInstalled */ true));
-        final List<ApplicationInfo> systemApps =
-                systemAppsWithHiddenUntilInstalled.stream()
-                        .filter(applicationInfo -> !applicationInfo.hiddenUntilInstalled)
-                        .collect(Collectors.toList());
-        when(mockIPackageManager.getInstalledApplications(
-                MATCH_UNINSTALLED_PACKAGES, TEST_USER_ID))
-                .thenReturn(new ParceledListSlice<>(systemApps));
-        when(mockIPackageManager.getInstalledApplications(
-                MATCH_UNINSTALLED_PACKAGES | MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS, TEST_USER_ID))
-                .thenReturn(new ParceledListSlice<>(systemAppsWithHiddenUntilInstalled));
-
-        // WHEN requesting the current system apps
-        Set<String> res = mUtils.getCurrentSystemApps(mockIPackageManager, TEST_USER_ID);
-        // THEN two system apps should be returned
-        assertEquals(2, res.size());
-        assertTrue(res.contains(TEST_PACKAGE_NAME_2));
-        assertTrue(res.contains(TEST_PACKAGE_NAME_3));
-    }
-
     public void testSetComponentEnabledSetting() throws Exception {
         // GIVEN a component name and a user id
         // WHEN disabling a component
@@ -422,17 +386,6 @@ public class UtilsTest extends AndroidTestCase {
         assertTrue(mUtils.canResolveIntentAsUser(mockContext, intent, TEST_USER_ID));
     }
 
-    private ApplicationInfo createApplicationInfo(
-            String packageName, boolean system, boolean hiddenUntilInstalled) {
-        ApplicationInfo ai = new ApplicationInfo();
-        ai.packageName = packageName;
-        if (system) {
-            ai.flags = ApplicationInfo.FLAG_SYSTEM;
-        }
-        ai.hiddenUntilInstalled = hiddenUntilInstalled;
-        return ai;
-    }
-
     private void setCurrentNetworkMock(int type, boolean connected) {
         NetworkInfo networkInfo = new NetworkInfo(type, 0, null, null);
         networkInfo.setDetailedState(
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.model;
+
+import static com.android.managedprovisioning.TestUtils.createTestAdminExtras;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.accounts.Account;
+import android.app.admin.DevicePolicyManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Benchmark comparing a save and load round trip of {@link ProvisioningParams} in the binary
+ * format with the legacy XML one.
+ *
+ * <p>Timings are written to logcat under the {@link #TAG} tag.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ProvisioningParamsFileBenchmarkTest {
+
+    private static final String TAG = "ProvisioningParamsFileBenchmark";
+    private static final int ITERATIONS = 200;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final File mFile = new File(mContext.getCacheDir(), "params_benchmark");
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void benchmark_roundTrip() {
+        final ProvisioningParams params = createParams();
+
+        long xmlSaveNanos = Long.MAX_VALUE;
+        long xmlLoadNanos = Long.MAX_VALUE;
+        long binarySaveNanos = Long.MAX_VALUE;
+        long binaryLoadNanos = Long.MAX_VALUE;
+        long xmlBytes = 0;
+        long binaryBytes = 0;
+        ProvisioningParams xmlCopy = null;
+        ProvisioningParams binaryCopy = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            params.saveAsXml(mFile);
+            xmlSaveNanos = Math.min(xmlSaveNanos, SystemClock.elapsedRealtimeNanos() - start);
+            xmlBytes = mFile.length();
+            start = SystemClock.elapsedRealtimeNanos();
+            xmlCopy = ProvisioningParams.load(mFile);
+            xmlLoadNanos = Math.min(xmlLoadNanos, SystemClock.elapsedRealtimeNanos() - start);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            params.save(mFile);
+            binarySaveNanos = Math.min(binarySaveNanos,
+                    SystemClock.elapsedRealtimeNanos() - start);
+            binaryBytes = mFile.length();
+            start = SystemClock.elapsedRealtimeNanos();
+            binaryCopy = ProvisioningParams.load(mFile);
+            binaryLoadNanos = Math.min(binaryLoadNanos,
+                    SystemClock.elapsedRealtimeNanos() - start);
+        }
+
+        Log.i(TAG, "XML: " + xmlBytes + " bytes, save " + xmlSaveNanos / 1000 + " us, load "
+                + xmlLoadNanos / 1000 + " us");
+        Log.i(TAG, "Binary: " + binaryBytes + " bytes, save " + binarySaveNanos / 1000
+                + " us, load " + binaryLoadNanos / 1000 + " us, load speedup "
+                + String.format("%.2fx", (double) xmlLoadNanos / binaryLoadNanos));
+        assertThat(xmlCopy).isEqualTo(params);
+        assertThat(binaryCopy).isEqualTo(params);
+    }
+
+    private static ProvisioningParams createParams() {
+        return ProvisioningParams.Builder.builder()
+                .setProvisioningAction(DevicePolicyManager.ACTION_PROVISION_MANAGED_DEVICE)
+                .setDeviceAdminComponentName(ComponentName.unflattenFromString(
+                        "com.afwsamples.testdpc/com.afwsamples.testdpc.DeviceAdminReceiver"))
+                .setDeviceAdminDownloadInfo(PackageDownloadInfo.Builder.builder()
+                        .setLocation("https://example.com/dpc.apk")
+                        .setCookieHeader("Set-Cookie: sessionToken=1234")
+                        .setSignatureChecksum(new byte[] {1, 2, 3, 4, 5, 6, 7, 8})
+                        .build())
+                .setLocalTime(1456939524713L)
+                .setLocale(Locale.UK)
+                .setTimeZone("Europe/London")
+                .setStartedByTrustedSource(true)
+                .setIsQrProvisioning(true)
+                .setAccountToMigrate(new Account("user@example.com", "com.example"))
+                .setWifiInfo(WifiInfo.Builder.builder()
+                        .setSsid("CorpNet")
+                        .setSecurityType("WPA2")
+                        .setPassword("correct horse battery staple")
+                        .setProxyHost("proxy.example.com")
+                        .setProxyPort(8080)
+                        .setProxyBypassHosts("*.example.com")
+                        .build())
+                .setAdminExtrasBundle(createTestAdminExtras())
+                .setIsOrganizationOwnedProvisioning(true)
+                .setFlowType(ProvisioningParams.FLOW_TYPE_ADMIN_INTEGRATED)
+                .setProvisioningTrigger(DevicePolicyManager.PROVISIONING_TRIGGER_QR_CODE)
+                .build();
+    }
+}
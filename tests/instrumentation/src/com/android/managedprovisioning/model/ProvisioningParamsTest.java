@@ -38,6 +38,7 @@ import android.accounts.Account;
 import android.app.admin.DevicePolicyManager;
 import android.content.ComponentName;
 import android.os.Parcel;
+import android.os.PersistableBundle;
 import android.os.UserHandle;
 import android.test.AndroidTestCase;
 
@@ -50,6 +51,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -224,6 +226,17 @@ public class ProvisioningParamsTest extends AndroidTestCase {
                 .build());
     }
 
+    @SmallTest
+    public void testSaveAndRestore_stringArrayWithNullElement() throws Exception {
+        PersistableBundle adminExtras = createTestAdminExtras();
+        adminExtras.putStringArray("string_array_with_null", new String[] {"a", null});
+        testSaveAndRestore(ProvisioningParams.Builder.builder()
+                .setProvisioningAction(TEST_PROVISIONING_ACTION)
+                .setDeviceAdminPackageName(TEST_PACKAGE_NAME)
+                .setAdminExtrasBundle(adminExtras)
+                .build());
+    }
+
     private void testSaveAndRestore(ProvisioningParams original) {
         // GIVEN a ProvisioningParams object
         // WHEN the ProvisioningParams is written to xml and then read back
@@ -234,6 +247,35 @@ public class ProvisioningParamsTest extends AndroidTestCase {
         assertThat(original).isEqualTo(copy);
     }
 
+    @SmallTest
+    public void testLoad_legacyXml() {
+        // GIVEN a ProvisioningParams object written in XML by an earlier version
+        ProvisioningParams original = getCompleteProvisioningParams();
+        File file = new File(mContext.getFilesDir(), "test_store.xml");
+        original.saveAsXml(file);
+
+        // WHEN the ProvisioningParams is read back
+        ProvisioningParams copy = ProvisioningParams.load(file);
+
+        // THEN the same ProvisioningParams is obtained
+        assertThat(original).isEqualTo(copy);
+    }
+
+    @SmallTest
+    public void testLoad_laterSchemaVersion_returnsNull() throws Exception {
+        // GIVEN a ProvisioningParams object written with a later schema version
+        File file = new File(mContext.getFilesDir(), "test_store.xml");
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(ProvisioningParamsProtoConverter.toBytes(
+                    getCompleteProvisioningParams().toPersistableBundle(),
+                    ProvisioningParamsProtoConverter.SCHEMA_VERSION + 1));
+        }
+
+        // WHEN the ProvisioningParams is read back
+        // THEN it can't be read
+        assertThat(ProvisioningParams.load(file)).isNull();
+    }
+
     @SmallTest
     public void testParceable() {
         // GIVEN a ProvisioningParams object.
@@ -17,7 +17,9 @@
 package com.android.managedprovisioning.ota;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -28,6 +30,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.pm.UserInfo;
+import android.os.Build;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.ArraySet;
@@ -36,7 +39,9 @@ import android.util.Pair;
 import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 
+import com.android.managedprovisioning.DevicePolicyProtos.OtaState;
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.task.AbstractProvisioningTask;
 import com.android.managedprovisioning.task.DeleteNonRequiredAppsTask;
 import com.android.managedprovisioning.task.DisallowAddUserTask;
@@ -46,9 +51,11 @@ import com.android.managedprovisioning.task.UpdateInteractAcrossProfilesAppOpTas
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -76,6 +83,8 @@ public class OtaControllerTest {
     @Mock private PackageManager mPackageManager;
     @Mock private UserManager mUserManager;
     @Mock private ProvisioningAnalyticsTracker mProvisioningAnalyticsTracker;
+    @Mock private PackageIndex mPackageIndex;
+    @Mock private OtaStateStore mOtaStateStore;
 
     private TaskExecutor mTaskExecutor;
 
@@ -104,9 +113,8 @@ public class OtaControllerTest {
 
     @Test
     public void testDeviceOwnerSystemUser() {
-        OtaController controller = new OtaController(mContext, mTaskExecutor,
-                NO_MISSING_SYSTEM_IME_PROVIDER,
-                mProvisioningAnalyticsTracker);
+        OtaController controller = new OtaController(mContext, mTaskExecutor, mPackageIndex,
+                mOtaStateStore, NO_MISSING_SYSTEM_IME_PROVIDER, mProvisioningAnalyticsTracker);
 
         // GIVEN that there is a device owner on the system user
         setDeviceOwner(UserHandle.USER_SYSTEM, ADMIN_COMPONENT);
@@ -123,13 +131,15 @@ public class OtaControllerTest {
 
         // THEN cross profile intent filters setter should be invoked for system user
         verify(mDevicePolicyManager).resetDefaultCrossProfileIntentFilters(UserHandle.USER_SYSTEM);
+
+        // THEN the index of installed applications should have been refreshed
+        verify(mPackageIndex).invalidateAll();
     }
 
     @Test
     public void testManagedProfileWithoutMissingSystemIme() {
-        OtaController controller = new OtaController(mContext, mTaskExecutor,
-                NO_MISSING_SYSTEM_IME_PROVIDER,
-                mProvisioningAnalyticsTracker);
+        OtaController controller = new OtaController(mContext, mTaskExecutor, mPackageIndex,
+                mOtaStateStore, NO_MISSING_SYSTEM_IME_PROVIDER, mProvisioningAnalyticsTracker);
 
         // GIVEN that there is a managed profile
         addManagedProfile(MANAGED_PROFILE_USER_ID, ADMIN_COMPONENT);
@@ -159,9 +169,8 @@ public class OtaControllerTest {
         IntFunction<ArraySet<String>> missingSystemImeProvider =
                 (IntFunction<ArraySet<String>>) mock(IntFunction.class);
 
-        OtaController controller = new OtaController(mContext, mTaskExecutor,
-                missingSystemImeProvider,
-                mProvisioningAnalyticsTracker);
+        OtaController controller = new OtaController(mContext, mTaskExecutor, mPackageIndex,
+                mOtaStateStore, missingSystemImeProvider, mProvisioningAnalyticsTracker);
 
         // GIVEN that there is a managed profile
         addManagedProfile(MANAGED_PROFILE_USER_ID, ADMIN_COMPONENT);
@@ -198,8 +207,8 @@ public class OtaControllerTest {
 
     @Test
     public void testManagedUser() {
-        OtaController controller = new OtaController(mContext, mTaskExecutor,
-                NO_MISSING_SYSTEM_IME_PROVIDER, mProvisioningAnalyticsTracker);
+        OtaController controller = new OtaController(mContext, mTaskExecutor, mPackageIndex,
+                mOtaStateStore, NO_MISSING_SYSTEM_IME_PROVIDER, mProvisioningAnalyticsTracker);
 
         // GIVEN that there is a managed profile
         addManagedUser(MANAGED_USER_USER_ID, ADMIN_COMPONENT);
@@ -214,6 +223,84 @@ public class OtaControllerTest {
                 Pair.create(UserHandle.USER_SYSTEM, UpdateInteractAcrossProfilesAppOpTask.class));
     }
 
+    @Test
+    public void testUnchangedState_skipsHeavyTasks() {
+        OtaController controller = new OtaController(mContext, mTaskExecutor, mPackageIndex,
+                mOtaStateStore, NO_MISSING_SYSTEM_IME_PROVIDER, mProvisioningAnalyticsTracker);
+
+        // GIVEN that there is a managed user and that a previous run stored its state
+        addManagedUser(MANAGED_USER_USER_ID, ADMIN_COMPONENT);
+        controller.run();
+        ArgumentCaptor<OtaState> state = ArgumentCaptor.forClass(OtaState.class);
+        verify(mOtaStateStore).write(state.capture());
+        when(mOtaStateStore.read()).thenReturn(state.getValue());
+        mTasks.clear();
+
+        // WHEN running the OtaController again on the same build with the same apps
+        controller.run();
+
+        // THEN only the migration task should run
+        assertTaskList(
+                Pair.create(UserHandle.USER_SYSTEM, MigrateSystemAppsSnapshotTask.class));
+
+        // THEN the cross profile intent filters should only have been reset by the first run
+        verify(mDevicePolicyManager).resetDefaultCrossProfileIntentFilters(UserHandle.USER_SYSTEM);
+    }
+
+    @Test
+    public void testChangedSystemApps_deletesNonRequiredAppsOfThatUserOnly() {
+        OtaController controller = new OtaController(mContext, mTaskExecutor, mPackageIndex,
+                mOtaStateStore, NO_MISSING_SYSTEM_IME_PROVIDER, mProvisioningAnalyticsTracker);
+
+        // GIVEN that there is a device owner and a managed user, and that a previous run
+        // stored their state
+        setDeviceOwner(UserHandle.USER_SYSTEM, ADMIN_COMPONENT);
+        addManagedUser(MANAGED_USER_USER_ID, ADMIN_COMPONENT);
+        mUsers.get(mUsers.size() - 1).serialNumber = MANAGED_USER_USER_ID;
+        controller.run();
+        ArgumentCaptor<OtaState> state = ArgumentCaptor.forClass(OtaState.class);
+        verify(mOtaStateStore).write(state.capture());
+        when(mOtaStateStore.read()).thenReturn(state.getValue());
+        mTasks.clear();
+
+        // GIVEN that a system app was added for the managed user
+        when(mPackageIndex.getSystemPackages(MANAGED_USER_USER_ID))
+                .thenReturn(Collections.singleton(DUMMY_SYSTEM_IME_PACKAGE_NAME));
+
+        // WHEN running the OtaController again
+        controller.run();
+
+        // THEN non-required apps should only be deleted for the managed user
+        assertTaskList(
+                Pair.create(UserHandle.USER_SYSTEM, MigrateSystemAppsSnapshotTask.class),
+                Pair.create(UserHandle.USER_SYSTEM, DisallowAddUserTask.class),
+                Pair.create(MANAGED_USER_USER_ID, DeleteNonRequiredAppsTask.class));
+    }
+
+    @Test
+    public void testRealTaskExecutor_tasksComplete() {
+        TaskExecutor taskExecutor = new TaskExecutor();
+        OtaController controller = new OtaController(mContext, taskExecutor, mPackageIndex,
+                mOtaStateStore, NO_MISSING_SYSTEM_IME_PROVIDER, mProvisioningAnalyticsTracker);
+
+        // GIVEN that a previous run stored the same build and cross-profile packages, so that
+        // only the tasks which can run against mocks are executed
+        when(mContext.getFilesDir()).thenReturn(
+                new File(InstrumentationRegistry.getTargetContext().getFilesDir(), "test"));
+        when(mOtaStateStore.read()).thenReturn(OtaState.newBuilder()
+                .setBuildFingerprint(Build.FINGERPRINT)
+                .setCrossProfileAppsDigest(OtaStateStore.digest(
+                        mDevicePolicyManager.getDefaultCrossProfilePackages()))
+                .build());
+
+        // WHEN running the OtaController with an executor which waits for the task results
+        controller.run();
+
+        // THEN every task reported its result and the new state is stored
+        assertTrue(taskExecutor.awaitIdle(/* timeoutMillis= */ 0));
+        verify(mOtaStateStore).write(any(OtaState.class));
+    }
+
     private class FakeTaskExecutor extends TaskExecutor {
 
         public FakeTaskExecutor() {
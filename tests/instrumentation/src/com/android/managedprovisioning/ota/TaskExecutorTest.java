@@ -16,6 +16,11 @@
 
 package com.android.managedprovisioning.ota;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 
 import android.content.Context;
@@ -29,16 +34,26 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Unit tests for {@link TaskExecutor}.
  */
 @SmallTest
 public class TaskExecutorTest {
     private final int TEST_USER_ID = 123;
+    private final int OTHER_USER_ID = 456;
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
 
     @Mock private Context mContext;
     @Mock private AbstractProvisioningTask mTask1;
     @Mock private AbstractProvisioningTask mTask2;
+    @Mock private AbstractProvisioningTask mTask3;
 
     private TaskExecutor mExecutor;
 
@@ -72,4 +87,128 @@ public class TaskExecutorTest {
         // THEN run method of the task should be called
         verify(mTask2).run(TEST_USER_ID);
     }
+
+    @Test
+    public void testExecuteParallel_keepsOrderWithinUser() {
+        // GIVEN a parallel executor
+        TaskExecutor executor = new TaskExecutor(Executors.newFixedThreadPool(2));
+        List<AbstractProvisioningTask> ranTasks = Collections.synchronizedList(new ArrayList<>());
+        recordRun(executor, mTask1, TEST_USER_ID, ranTasks);
+        recordRun(executor, mTask2, TEST_USER_ID, ranTasks);
+        recordRun(executor, mTask3, TEST_USER_ID, ranTasks);
+
+        // WHEN executing three tasks for the same user
+        executor.execute(TEST_USER_ID, mTask1);
+        executor.execute(TEST_USER_ID, mTask2);
+        executor.execute(TEST_USER_ID, mTask3);
+
+        // THEN they all run, in the order they were given
+        assertTrue(executor.awaitIdle(TIMEOUT_MILLIS));
+        assertThat(ranTasks).containsExactly(mTask1, mTask2, mTask3).inOrder();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testExecuteParallel_runsUsersConcurrently() throws Exception {
+        // GIVEN a parallel executor and a task of a user which waits for a task of another user
+        TaskExecutor executor = new TaskExecutor(Executors.newFixedThreadPool(2));
+        CountDownLatch otherUserTaskRan = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertTrue(otherUserTaskRan.await(5, TimeUnit.SECONDS));
+            executor.onSuccess(mTask1);
+            return null;
+        }).when(mTask1).run(TEST_USER_ID);
+        doAnswer(invocation -> {
+            otherUserTaskRan.countDown();
+            executor.onSuccess(mTask2);
+            return null;
+        }).when(mTask2).run(OTHER_USER_ID);
+
+        // WHEN executing both tasks
+        executor.execute(TEST_USER_ID, mTask1);
+        executor.execute(OTHER_USER_ID, mTask2);
+
+        // THEN both tasks complete
+        assertTrue(executor.awaitIdle(TIMEOUT_MILLIS));
+        verify(mTask1).run(TEST_USER_ID);
+        verify(mTask2).run(OTHER_USER_ID);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testExecuteParallel_failingTask_runsNextTask() {
+        // GIVEN a parallel executor and a task which throws
+        TaskExecutor executor = new TaskExecutor(Executors.newFixedThreadPool(1));
+        doAnswer(invocation -> {
+            throw new IllegalStateException();
+        }).when(mTask1).run(TEST_USER_ID);
+        reportSuccessOnRun(executor, mTask2, TEST_USER_ID);
+
+        // WHEN executing it and another task for the same user
+        executor.execute(TEST_USER_ID, mTask1);
+        executor.execute(TEST_USER_ID, mTask2);
+
+        // THEN the second task still runs
+        assertTrue(executor.awaitIdle(TIMEOUT_MILLIS));
+        verify(mTask2).run(TEST_USER_ID);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testAwaitIdle_waitsForAsynchronousResult() throws Exception {
+        // GIVEN a task which reports its result after its run method returned
+        mExecutor.execute(TEST_USER_ID, mTask1);
+        CountDownLatch idle = new CountDownLatch(1);
+        new Thread(() -> {
+            if (mExecutor.awaitIdle(TIMEOUT_MILLIS)) {
+                idle.countDown();
+            }
+        }).start();
+
+        // THEN the executor isn't idle until the task reports its result
+        assertFalse(idle.await(100, TimeUnit.MILLISECONDS));
+        mExecutor.onSuccess(mTask1);
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitIdle_errorReported_isIdle() {
+        // GIVEN a task which reports an error
+        doAnswer(invocation -> {
+            mExecutor.onError(mTask1, /* errorCode= */ 0, /* errorMessage= */ null);
+            return null;
+        }).when(mTask1).run(TEST_USER_ID);
+
+        // WHEN executing it
+        mExecutor.execute(TEST_USER_ID, mTask1);
+
+        // THEN the executor is idle
+        assertTrue(mExecutor.awaitIdle(TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void testAwaitIdle_noResultReported_timesOut() {
+        // GIVEN a task which never reports its result
+        mExecutor.execute(TEST_USER_ID, mTask1);
+
+        // THEN waiting for the executor to be idle gives up
+        assertFalse(mExecutor.awaitIdle(/* timeoutMillis= */ 100));
+    }
+
+    private static void recordRun(TaskExecutor executor, AbstractProvisioningTask task,
+            int userId, List<AbstractProvisioningTask> ranTasks) {
+        doAnswer(invocation -> {
+            ranTasks.add(task);
+            executor.onSuccess(task);
+            return null;
+        }).when(task).run(userId);
+    }
+
+    private static void reportSuccessOnRun(TaskExecutor executor, AbstractProvisioningTask task,
+            int userId) {
+        doAnswer(invocation -> {
+            executor.onSuccess(task);
+            return null;
+        }).when(task).run(userId);
+    }
 }
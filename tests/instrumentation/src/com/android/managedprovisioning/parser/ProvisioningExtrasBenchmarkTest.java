@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.parser;
+
+import static android.app.admin.DevicePolicyManager.ACTION_PROVISION_MANAGED_DEVICE_FROM_TRUSTED_SOURCE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_ACCOUNT_TO_MIGRATE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_ADMIN_EXTRAS_BUNDLE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_ALLOW_OFFLINE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DEVICE_ADMIN_MINIMUM_VERSION_CODE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_CHECKSUM;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_COOKIE_HEADER;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_LOCATION;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DEVICE_ADMIN_SIGNATURE_CHECKSUM;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DISCLAIMERS;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_KEEP_SCREEN_ON;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_LEAVE_ALL_SYSTEM_APPS_ENABLED;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_LOCALE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_LOCAL_TIME;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_ORGANIZATION_NAME;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_RETURN_BEFORE_POLICY_COMPLIANCE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_COOKIE_HEADER;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_LOCATION;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_ROLE_HOLDER_SIGNATURE_CHECKSUM;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_SENSORS_PERMISSION_GRANT_OPT_OUT;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_SHOULD_LAUNCH_RESULT_INTENT;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_SKIP_EDUCATION_SCREENS;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_SKIP_ENCRYPTION;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_SKIP_OWNERSHIP_DISCLAIMER;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_SUPPORTED_MODES;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_SUPPORT_URL;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_TIME_ZONE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_USE_MOBILE_DATA;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_ANONYMOUS_IDENTITY;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_CA_CERTIFICATE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_DOMAIN;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_EAP_METHOD;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_HIDDEN;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_IDENTITY;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_PAC_URL;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_PASSWORD;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_PHASE2_AUTH;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_PROXY_BYPASS;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_PROXY_HOST;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_PROXY_PORT;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_SECURITY_TYPE;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_SSID;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_USER_CERTIFICATE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Parcel;
+import android.os.PersistableBundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmark comparing the lookups of {@link ExtrasProvisioningDataParser} through
+ * {@link ProvisioningExtras} with the previous lookups, which queried the intent for both the
+ * long and the short name of every extra.
+ *
+ * <p>The payload is a QR code provisioning intent using the short extra names, freshly
+ * unparcelled for every iteration as it would be when received. Timings are written to logcat
+ * under the {@link #TAG} tag.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ProvisioningExtrasBenchmarkTest {
+
+    private static final String TAG = "ProvisioningExtrasBenchmark";
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 2000;
+
+    private static final String[] STRING_EXTRAS = {
+            EXTRA_PROVISIONING_ORGANIZATION_NAME,
+            EXTRA_PROVISIONING_SUPPORT_URL,
+            EXTRA_PROVISIONING_TIME_ZONE,
+            EXTRA_PROVISIONING_LOCALE,
+            EXTRA_PROVISIONING_WIFI_SSID,
+            EXTRA_PROVISIONING_WIFI_SECURITY_TYPE,
+            EXTRA_PROVISIONING_WIFI_PASSWORD,
+            EXTRA_PROVISIONING_WIFI_PROXY_HOST,
+            EXTRA_PROVISIONING_WIFI_PROXY_BYPASS,
+            EXTRA_PROVISIONING_WIFI_PAC_URL,
+            EXTRA_PROVISIONING_WIFI_EAP_METHOD,
+            EXTRA_PROVISIONING_WIFI_PHASE2_AUTH,
+            EXTRA_PROVISIONING_WIFI_CA_CERTIFICATE,
+            EXTRA_PROVISIONING_WIFI_USER_CERTIFICATE,
+            EXTRA_PROVISIONING_WIFI_IDENTITY,
+            EXTRA_PROVISIONING_WIFI_ANONYMOUS_IDENTITY,
+            EXTRA_PROVISIONING_WIFI_DOMAIN,
+            EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_LOCATION,
+            EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_COOKIE_HEADER,
+            EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_CHECKSUM,
+            EXTRA_PROVISIONING_DEVICE_ADMIN_SIGNATURE_CHECKSUM,
+            EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_LOCATION,
+            EXTRA_PROVISIONING_ROLE_HOLDER_SIGNATURE_CHECKSUM,
+            EXTRA_PROVISIONING_ROLE_HOLDER_PACKAGE_DOWNLOAD_COOKIE_HEADER,
+    };
+
+    private static final String[] BOOLEAN_EXTRAS = {
+            EXTRA_PROVISIONING_SKIP_EDUCATION_SCREENS,
+            EXTRA_PROVISIONING_LEAVE_ALL_SYSTEM_APPS_ENABLED,
+            EXTRA_PROVISIONING_SENSORS_PERMISSION_GRANT_OPT_OUT,
+            EXTRA_PROVISIONING_SKIP_ENCRYPTION,
+            EXTRA_PROVISIONING_SKIP_OWNERSHIP_DISCLAIMER,
+            EXTRA_PROVISIONING_RETURN_BEFORE_POLICY_COMPLIANCE,
+            EXTRA_PROVISIONING_KEEP_SCREEN_ON,
+            EXTRA_PROVISIONING_ALLOW_OFFLINE,
+            EXTRA_PROVISIONING_SHOULD_LAUNCH_RESULT_INTENT,
+            EXTRA_PROVISIONING_USE_MOBILE_DATA,
+            EXTRA_PROVISIONING_WIFI_HIDDEN,
+    };
+
+    private static final String[] INT_EXTRAS = {
+            EXTRA_PROVISIONING_SUPPORTED_MODES,
+            EXTRA_PROVISIONING_WIFI_PROXY_PORT,
+            EXTRA_PROVISIONING_DEVICE_ADMIN_MINIMUM_VERSION_CODE,
+    };
+
+    private static final String[] PARCELABLE_EXTRAS = {
+            EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME,
+            EXTRA_PROVISIONING_ADMIN_EXTRAS_BUNDLE,
+            EXTRA_PROVISIONING_ACCOUNT_TO_MIGRATE,
+    };
+
+    @Test
+    public void benchmark_qrPayload() {
+        final byte[] payload = marshall(createQrIntent());
+
+        long legacyChecksum = 0;
+        long normalizedChecksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            legacyChecksum = readLegacy(unmarshall(payload));
+            normalizedChecksum = readNormalized(unmarshall(payload));
+        }
+
+        long legacyNanos = 0;
+        long normalizedNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            Intent intent = unmarshall(payload);
+            long start = SystemClock.elapsedRealtimeNanos();
+            legacyChecksum = readLegacy(intent);
+            legacyNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+            intent = unmarshall(payload);
+            start = SystemClock.elapsedRealtimeNanos();
+            normalizedChecksum = readNormalized(intent);
+            normalizedNanos += SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        Log.i(TAG, "QR payload: per-name lookups " + legacyNanos / ITERATIONS / 1000
+                + " us, normalized " + normalizedNanos / ITERATIONS / 1000 + " us, speedup "
+                + String.format("%.2fx", (double) legacyNanos / normalizedNanos));
+        assertThat(normalizedChecksum).isEqualTo(legacyChecksum);
+    }
+
+    private static Intent createQrIntent() {
+        final PersistableBundle adminExtras = new PersistableBundle();
+        adminExtras.putString("enrollment_token", "0123456789abcdefghijklmnopqrstuvwxyz");
+        adminExtras.putString("server_url", "https://mdm.example.com/enroll");
+        return new Intent(ACTION_PROVISION_MANAGED_DEVICE_FROM_TRUSTED_SOURCE)
+                .putExtra(shortName(EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME),
+                        new ComponentName("com.example.dpc", "com.example.dpc.AdminReceiver"))
+                .putExtra(shortName(EXTRA_PROVISIONING_DEVICE_ADMIN_PACKAGE_DOWNLOAD_LOCATION),
+                        "https://mdm.example.com/dpc.apk")
+                .putExtra(shortName(EXTRA_PROVISIONING_DEVICE_ADMIN_SIGNATURE_CHECKSUM),
+                        "I5YvS0O5hXY46mb01BlRjq4oJJGs2kuUcHvVkAPEXlg")
+                .putExtra(shortName(EXTRA_PROVISIONING_WIFI_SSID), "\"CorpNet\"")
+                .putExtra(shortName(EXTRA_PROVISIONING_WIFI_SECURITY_TYPE), "WPA")
+                .putExtra(shortName(EXTRA_PROVISIONING_WIFI_PASSWORD), "correct horse battery")
+                .putExtra(shortName(EXTRA_PROVISIONING_WIFI_HIDDEN), false)
+                .putExtra(shortName(EXTRA_PROVISIONING_LOCALE), "en_US")
+                .putExtra(shortName(EXTRA_PROVISIONING_TIME_ZONE), "America/New_York")
+                .putExtra(shortName(EXTRA_PROVISIONING_SKIP_ENCRYPTION), true)
+                .putExtra(shortName(EXTRA_PROVISIONING_LEAVE_ALL_SYSTEM_APPS_ENABLED), true)
+                .putExtra(shortName(EXTRA_PROVISIONING_USE_MOBILE_DATA), false)
+                .putExtra(shortName(EXTRA_PROVISIONING_ORGANIZATION_NAME), "Example Corp")
+                .putExtra(shortName(EXTRA_PROVISIONING_SUPPORT_URL), "https://example.com/help")
+                .putExtra(shortName(EXTRA_PROVISIONING_ADMIN_EXTRAS_BUNDLE), adminExtras)
+                .putExtra(EXTRA_PROVISIONING_SUPPORTED_MODES, 1)
+                .putExtra(EXTRA_PROVISIONING_LOCAL_TIME, 1_700_000_000_000L);
+    }
+
+    private static String shortName(String name) {
+        final String shortName = ExtrasProvisioningDataParser.getShortExtraNames(name);
+        return shortName != null ? shortName : name;
+    }
+
+    private static byte[] marshall(Intent intent) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            intent.writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static Intent unmarshall(byte[] payload) {
+        final Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(payload, 0, payload.length);
+            parcel.setDataPosition(0);
+            return Intent.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Reads every extra the way the parser did before {@link ProvisioningExtras}.
+     */
+    private static long readLegacy(Intent intent) {
+        long checksum = 0;
+        for (String name : STRING_EXTRAS) {
+            checksum += hash(getLegacyString(intent, name));
+        }
+        for (String name : BOOLEAN_EXTRAS) {
+            checksum += getLegacyBoolean(intent, name) ? 1 : 0;
+        }
+        for (String name : INT_EXTRAS) {
+            checksum += getLegacyInt(intent, name);
+        }
+        for (String name : PARCELABLE_EXTRAS) {
+            checksum += hash(getLegacyParcelable(intent, name));
+        }
+        checksum += getLegacyLong(intent, EXTRA_PROVISIONING_LOCAL_TIME);
+        checksum += hash(getLegacyParcelableArray(intent, EXTRA_PROVISIONING_DISCLAIMERS));
+        return checksum;
+    }
+
+    private static long readNormalized(Intent intent) {
+        final ProvisioningExtras extras = ProvisioningExtras.from(
+                intent.getExtras(), ExtrasProvisioningDataParser.CANONICAL_EXTRAS);
+        long checksum = 0;
+        for (String name : STRING_EXTRAS) {
+            checksum += hash(extras.getString(name));
+        }
+        for (String name : BOOLEAN_EXTRAS) {
+            checksum += extras.getBoolean(name, false) ? 1 : 0;
+        }
+        for (String name : INT_EXTRAS) {
+            checksum += extras.getInt(name, 0);
+        }
+        for (String name : PARCELABLE_EXTRAS) {
+            checksum += hash(extras.getParcelable(name));
+        }
+        checksum += extras.getLong(EXTRA_PROVISIONING_LOCAL_TIME, 0);
+        checksum += hash(extras.getParcelableArray(EXTRA_PROVISIONING_DISCLAIMERS));
+        return checksum;
+    }
+
+    private static long hash(Object value) {
+        return value == null ? 0 : value.toString().length();
+    }
+
+    private static String getLegacyString(Intent intent, String longName) {
+        if (intent.getStringExtra(longName) != null) {
+            return intent.getStringExtra(longName);
+        }
+        final String shortName = ExtrasProvisioningDataParser.getShortExtraNames(longName);
+        if (intent.getStringExtra(shortName) != null) {
+            return intent.getStringExtra(shortName);
+        }
+        return null;
+    }
+
+    private static boolean getLegacyBoolean(Intent intent, String longName) {
+        if (intent.hasExtra(longName)) {
+            return intent.getBooleanExtra(longName, false);
+        }
+        final String shortName = ExtrasProvisioningDataParser.getShortExtraNames(longName);
+        if (intent.hasExtra(shortName)) {
+            return intent.getBooleanExtra(shortName, false);
+        }
+        return false;
+    }
+
+    private static int getLegacyInt(Intent intent, String longName) {
+        if (intent.hasExtra(longName)) {
+            return intent.getIntExtra(longName, 0);
+        }
+        final String shortName = ExtrasProvisioningDataParser.getShortExtraNames(longName);
+        if (intent.hasExtra(shortName)) {
+            return intent.getIntExtra(shortName, 0);
+        }
+        return 0;
+    }
+
+    private static long getLegacyLong(Intent intent, String longName) {
+        if (intent.hasExtra(longName)) {
+            return intent.getLongExtra(longName, 0);
+        }
+        final String shortName = ExtrasProvisioningDataParser.getShortExtraNames(longName);
+        if (intent.hasExtra(shortName)) {
+            return intent.getLongExtra(shortName, 0);
+        }
+        return 0;
+    }
+
+    private static Object getLegacyParcelable(Intent intent, String longName) {
+        if (intent.hasExtra(longName)) {
+            return intent.getParcelableExtra(longName);
+        }
+        final String shortName = ExtrasProvisioningDataParser.getShortExtraNames(longName);
+        if (intent.hasExtra(shortName)) {
+            return intent.getParcelableExtra(shortName);
+        }
+        return null;
+    }
+
+    private static Object getLegacyParcelableArray(Intent intent, String longName) {
+        if (intent.hasExtra(longName)) {
+            return intent.getParcelableArrayExtra(longName);
+        }
+        final String shortName = ExtrasProvisioningDataParser.getShortExtraNames(longName);
+        if (intent.hasExtra(shortName)) {
+            return intent.getParcelableArrayExtra(shortName);
+        }
+        return null;
+    }
+}
@@ -26,6 +26,7 @@ import androidx.test.filters.SmallTest;
 
 import com.android.managedprovisioning.model.PackageDownloadInfo;
 import com.android.managedprovisioning.model.ProvisioningParams;
+import com.android.managedprovisioning.task.AbstractProvisioningTask;
 import com.android.managedprovisioning.task.DeviceOwnerInitializeProvisioningTask;
 import com.android.managedprovisioning.task.DisallowAddUserTask;
 import com.android.managedprovisioning.task.DownloadPackageTask;
@@ -83,6 +84,42 @@ public class FinancedDeviceProvisioningControllerTest extends ProvisioningContro
         verify(mCallback).provisioningTasksCompleted();
     }
 
+    @SmallTest
+    public void testRunAllTasks_taskGraph() throws Exception {
+        // GIVEN financed device provisioning was invoked with the task graph enabled
+        Constants.ENABLE_PROVISIONING_TASK_GRAPH = true;
+        try {
+            createController(createProvisioningParamsBuilder().build());
+        } finally {
+            Constants.ENABLE_PROVISIONING_TASK_GRAPH = false;
+        }
+        mHandler = new FakeTaskHandler(mHandler.getLooper(),
+                AbstractProvisioningController.MAX_CONCURRENT_TASKS);
+
+        // WHEN starting the test run
+        mController.start(mHandler);
+
+        // THEN the initialization task is run first
+        taskSucceeded(DeviceOwnerInitializeProvisioningTask.class);
+
+        // THEN the download package task and the disallow add user task run at the same time
+        AbstractProvisioningTask downloadTask = verifyTaskRun(DownloadPackageTask.class);
+        taskSucceeded(DisallowAddUserTask.class);
+        mController.onSuccess(downloadTask);
+
+        // THEN the verify package task should be run
+        taskSucceeded(VerifyAdminPackageTask.class);
+
+        // THEN the install package tasks should be run
+        tasksDownloadAndInstallDeviceOwnerPackageSucceeded(TEST_USER_ID);
+
+        // THEN the set device policy task should be run last
+        taskSucceeded(SetDeviceOwnerPolicyTask.class);
+
+        // THEN the provisioning complete callback should have happened
+        verify(mCallback).provisioningTasksCompleted();
+    }
+
     @SmallTest
     public void testNoDownloadInfo() throws Exception {
         // GIVEN financed device provisioning was invoked with no download info
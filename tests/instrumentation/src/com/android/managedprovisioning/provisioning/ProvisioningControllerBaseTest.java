@@ -89,12 +89,16 @@ public abstract class ProvisioningControllerBaseTest extends AndroidTestCase {
 
     protected class FakeTaskHandler extends Handler {
 
+        private final BlockingQueue<AbstractProvisioningTask> mBlockingQueue;
+
         FakeTaskHandler(Looper looper) {
-            super(looper);
+            this(looper, /* capacity= */ 1);
         }
 
-        private BlockingQueue<AbstractProvisioningTask> mBlockingQueue
-                = new ArrayBlockingQueue<>(1);
+        FakeTaskHandler(Looper looper, int capacity) {
+            super(looper);
+            mBlockingQueue = new ArrayBlockingQueue<>(capacity);
+        }
 
         public AbstractProvisioningTask getLastTask() throws Exception {
             return mBlockingQueue.poll(10, TimeUnit.SECONDS);
@@ -48,6 +48,8 @@ import org.junit.runners.JUnit4;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Collections;
+
 /**
  * Unit tests for {@link CreateAndProvisionManagedProfileTask}.
  */
@@ -125,6 +127,15 @@ public class CreateAndProvisionManagedProfileTaskTest {
         verifyNoMoreInteractions(mCallback);
     }
 
+    @Test
+    public void restoreJournalOutput_invalidUserId_returnsFalse() {
+        CreateAndProvisionManagedProfileTask task = createProvisioningTask(TEST_PARAMS);
+
+        assertThat(task.restoreJournalOutput(Collections.singletonMap(
+                CreateAndProvisionManagedProfileTask.JOURNAL_KEY_PROFILE_USER_ID, "corrupt")))
+                .isFalse();
+    }
+
     private CreateAndProvisionManagedProfileTask createProvisioningTask(ProvisioningParams params) {
         return new CreateAndProvisionManagedProfileTask(
                 mUtils,
@@ -28,7 +28,6 @@ import static org.mockito.Mockito.when;
 
 import android.content.Context;
 import android.content.pm.IPackageDeleteObserver;
-import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.RemoteException;
 import android.test.mock.MockPackageManager;
@@ -37,6 +36,7 @@ import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 
 import com.android.managedprovisioning.analytics.ProvisioningAnalyticsTracker;
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.model.ProvisioningParams;
 import com.android.managedprovisioning.task.nonrequiredapps.NonRequiredAppsLogic;
 
@@ -62,6 +62,7 @@ public class DeleteNonRequiredAppsTaskTest {
     private @Mock AbstractProvisioningTask.Callback mCallback;
     private @Mock Context mTestContext;
     private @Mock NonRequiredAppsLogic mLogic;
+    private @Mock PackageIndex mPackageIndex;
 
     private FakePackageManager mPackageManager;
     private Set<String> mDeletedApps;
@@ -76,11 +77,13 @@ public class DeleteNonRequiredAppsTaskTest {
         when(mTestContext.getPackageManager()).thenReturn(mPackageManager);
         when(mTestContext.getFilesDir()).thenReturn(InstrumentationRegistry.getTargetContext()
                 .getFilesDir());
+        when(mPackageIndex.getInstalledPackages(TEST_USER_ID))
+                .thenAnswer(invocation -> new HashSet<>(mPackageManager.mInstalledApps));
 
         mDeletedApps = new HashSet<>();
 
         mTask = new DeleteNonRequiredAppsTask(mTestContext, TEST_PARAMS, mCallback, mLogic,
-                mock(ProvisioningAnalyticsTracker.class));
+                mPackageIndex, mock(ProvisioningAnalyticsTracker.class));
     }
 
     @Test
@@ -166,6 +169,28 @@ public class DeleteNonRequiredAppsTaskTest {
         verifyNoMoreInteractions(mCallback);
     }
 
+    @Test
+    public void testSeveralDeletionsFailed_errorReportedOnce() {
+        // GIVEN that several apps should be deleted
+        when(mLogic.getSystemAppsToRemove(TEST_USER_ID))
+            .thenReturn(setFromArray("app.a", "app.b", "app.c", "app.d", "app.e", "app.f"));
+        mPackageManager.setInstalledApps(
+                setFromArray("app.a", "app.b", "app.c", "app.d", "app.e", "app.f"));
+
+        // GIVEN that deletion fails
+        mPackageManager.setDeletionSucceeds(false);
+
+        // WHEN running the task
+        mTask.run(TEST_USER_ID);
+
+        // THEN the deletion of every app should have been attempted
+        assertTrue(mPackageManager.mInstalledApps.isEmpty());
+
+        // THEN error should be returned only once
+        verify(mCallback).onError(mTask, 0, /* errorMessage= */ null);
+        verifyNoMoreInteractions(mCallback);
+    }
+
     private <T> Set<T> setFromArray(T... array) {
         if (array == null) {
             return null;
@@ -213,14 +238,5 @@ public class DeleteNonRequiredAppsTaskTest {
                 fail(e.toString());
             }
         }
-
-        @Override
-        public PackageInfo getPackageInfoAsUser(String pkg, int flag, int userId)
-                throws NameNotFoundException {
-            if (mInstalledApps.contains(pkg) && userId == TEST_USER_ID) {
-                return new PackageInfo();
-            }
-            throw new NameNotFoundException();
-        }
     }
 }
@@ -22,6 +22,7 @@ import static com.android.managedprovisioning.task.DownloadPackageTask.ERROR_DOW
 import static com.android.managedprovisioning.task.DownloadPackageTask.ERROR_OTHER;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.nullable;
 import static org.mockito.Mockito.doReturn;
@@ -56,6 +57,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
+import java.util.Collections;
+
 @SmallTest
 @FlakyTest // TODO: http://b/34117742
 public class DownloadPackageTaskTest {
@@ -191,6 +195,20 @@ public class DownloadPackageTaskTest {
         verifyNoMoreInteractions(mCallback);
     }
 
+    @Test
+    public void testCleanUp_packageNotFromDownloadManager_deletesPackage() throws Exception {
+        // GIVEN a package that wasn't downloaded through the DownloadManager
+        File packageFile = File.createTempFile("package", ".apk");
+        mTask.restoreJournalOutput(Collections.singletonMap(
+                DownloadPackageTask.JOURNAL_KEY_PACKAGE_LOCATION, packageFile.getAbsolutePath()));
+
+        // WHEN cleaning up the task
+        mTask.cleanUp();
+
+        // THEN the package is deleted
+        assertFalse(packageFile.exists());
+    }
+
     private void mockSuccessfulDownload(int downloadStatus) {
         doReturn(true).when(mUtils).isConnectedToNetwork(any(Context.class));
         when(mDownloadManager.enqueue(any(Request.class))).thenReturn(TEST_DOWNLOAD_ID);
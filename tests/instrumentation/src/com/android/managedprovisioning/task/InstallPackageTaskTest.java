@@ -24,9 +24,15 @@ import static com.android.managedprovisioning.task.InstallPackageTask.ERROR_INST
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import android.app.Instrumentation;
 import android.content.Context;
+import android.content.pm.PackageInstaller;
+import android.os.FileBridge;
+import android.os.ParcelFileDescriptor;
 import android.os.UserHandle;
 
 import androidx.test.InstrumentationRegistry;
@@ -41,10 +47,14 @@ import com.android.managedprovisioning.model.ProvisioningParams;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Random;
 
 
 @SmallTest
@@ -62,6 +72,9 @@ public class InstallPackageTaskTest {
     private static final PackageLocationProvider FILE_INVALID_PATH_PROVIDER =
             () -> new File("invalid/path");
     private static final String TEST_APP = "com.android.bedstead.testapp.EmptyTestApp";
+    // Three transfer chunks
+    private static final int SOURCE_FILE_BYTES = 3 * 1024 * 1024;
+    private static final long BRIDGE_TIMEOUT_MILLIS = 10_000;
 
     private InstallPackageBlockingCallback mInstallPackageBlockingCallback;
 
@@ -94,6 +107,70 @@ public class InstallPackageTaskTest {
         assertFileDeleted(appToInstallFile);
     }
 
+    @Test
+    public void writeToSession_fileBridgeStream_transfersWholeFileAndReportsProgress()
+            throws Exception {
+        // Default session stream, when fw.revocable_fd is false
+        File source = new File(sContext.getCacheDir(), "source.apk");
+        File staged = new File(sContext.getCacheDir(), "staged.apk");
+        byte[] contents = writeSourceFile(source);
+        FileBridge bridge = new FileBridge();
+        bridge.setTargetFile(ParcelFileDescriptor.open(staged,
+                ParcelFileDescriptor.MODE_READ_WRITE | ParcelFileDescriptor.MODE_CREATE));
+        bridge.start();
+        PackageInstaller.Session session = mock(PackageInstaller.Session.class);
+        when(session.openWrite(source.getName(), 0, contents.length))
+                .thenReturn(new FileBridge.FileBridgeOutputStream(bridge.getClientSocket()));
+
+        try {
+            InstallPackageTask.writeToSession(source, session);
+            bridge.join(BRIDGE_TIMEOUT_MILLIS);
+
+            assertThat(bridge.isClosed()).isTrue();
+            assertThat(Files.readAllBytes(staged.toPath())).isEqualTo(contents);
+            verifyIncrementalProgress(session);
+        } finally {
+            bridge.forceClose();
+            source.delete();
+            staged.delete();
+        }
+    }
+
+    @Test
+    public void writeToSession_revocableFdStream_transfersWholeFileAndReportsProgress()
+            throws Exception {
+        File source = new File(sContext.getCacheDir(), "source.apk");
+        File staged = new File(sContext.getCacheDir(), "staged.apk");
+        byte[] contents = writeSourceFile(source);
+        PackageInstaller.Session session = mock(PackageInstaller.Session.class);
+        when(session.openWrite(source.getName(), 0, contents.length))
+                .thenReturn(new FileOutputStream(staged));
+
+        try {
+            InstallPackageTask.writeToSession(source, session);
+
+            assertThat(Files.readAllBytes(staged.toPath())).isEqualTo(contents);
+            verifyIncrementalProgress(session);
+        } finally {
+            source.delete();
+            staged.delete();
+        }
+    }
+
+    private static byte[] writeSourceFile(File source) throws IOException {
+        byte[] contents = new byte[SOURCE_FILE_BYTES];
+        new Random(0).nextBytes(contents);
+        Files.write(source.toPath(), contents);
+        return contents;
+    }
+
+    private static void verifyIncrementalProgress(PackageInstaller.Session session) {
+        InOrder inOrder = inOrder(session);
+        inOrder.verify(session).setStagingProgress(1f / 3);
+        inOrder.verify(session).setStagingProgress(2f / 3);
+        inOrder.verify(session).setStagingProgress(1f);
+    }
+
     @Test
     public void run_fileIsNull_success() throws InterruptedException {
         InstallPackageTask task = new InstallPackageTask(
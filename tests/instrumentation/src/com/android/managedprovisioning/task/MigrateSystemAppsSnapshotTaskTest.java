@@ -20,6 +20,7 @@ import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -114,6 +115,7 @@ public class MigrateSystemAppsSnapshotTaskTest {
         mMigrateSystemAppsSnapshotTask.run(UserHandle.USER_SYSTEM);
 
         assertFalse(SystemAppsSnapshot.getFolder(mContext).exists());
+        verify(mCallback).onSuccess(mMigrateSystemAppsSnapshotTask);
     }
 
     @Test
@@ -136,6 +138,7 @@ public class MigrateSystemAppsSnapshotTaskTest {
         assertFilesAreMigrated(new String[] {"20.xml", "21.xml"});
         assertSnapshotFileContent(10, SNAPSHOT_A);
         assertSnapshotFileContent(11, SNAPSHOT_B);
+        verify(mCallback).onSuccess(mMigrateSystemAppsSnapshotTask);
     }
 
     @Test
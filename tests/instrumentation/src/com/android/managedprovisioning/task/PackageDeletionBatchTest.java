@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.pm.IPackageDeleteObserver;
+import android.content.pm.PackageManager;
+import android.os.RemoteException;
+import android.test.mock.MockPackageManager;
+import android.util.Pair;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link PackageDeletionBatch}.
+ */
+@SmallTest
+public class PackageDeletionBatchTest {
+    private static final int TEST_USER_ID = 123;
+    private static final List<String> PACKAGES =
+            Arrays.asList("app.a", "app.b", "app.c", "app.d", "app.e");
+
+    private final DeferredPackageManager mPackageManager = new DeferredPackageManager();
+    private final List<Map<String, Integer>> mResults = new ArrayList<>();
+
+    @Test
+    public void testEmptyBatch_finishesRightAway() {
+        createBatch(Collections.emptyList(), /* maxInFlight= */ 2).start();
+
+        assertEquals(1, mResults.size());
+        assertTrue(mResults.get(0).isEmpty());
+    }
+
+    @Test
+    public void testDeletions_keepWithinWindow() {
+        // WHEN starting a batch of five deletions with two in flight at most
+        createBatch(PACKAGES, /* maxInFlight= */ 2).start();
+
+        // THEN only two deletions should have been started
+        assertEquals(2, mPackageManager.mPendingDeletions.size());
+
+        // WHEN deletions finish one at a time
+        for (int i = 0; i < PACKAGES.size() - 1; i++) {
+            mPackageManager.finishNextDeletion(PackageManager.DELETE_SUCCEEDED);
+
+            // THEN a new deletion should start each time, never exceeding the window
+            assertTrue(mPackageManager.mPendingDeletions.size() <= 2);
+            assertTrue(mResults.isEmpty());
+        }
+        mPackageManager.finishNextDeletion(PackageManager.DELETE_SUCCEEDED);
+
+        // THEN every package should have been deleted, and the batch should have succeeded once
+        assertEquals(PACKAGES, mPackageManager.mStartedDeletions);
+        assertEquals(1, mResults.size());
+        assertTrue(mResults.get(0).isEmpty());
+    }
+
+    @Test
+    public void testFailedDeletions_areAggregated() {
+        // GIVEN a batch where the second and fourth deletions fail
+        createBatch(PACKAGES, /* maxInFlight= */ 3).start();
+
+        // WHEN all deletions finish
+        int index = 0;
+        while (!mPackageManager.mPendingDeletions.isEmpty()) {
+            mPackageManager.finishNextDeletion(index == 1 || index == 3
+                    ? PackageManager.DELETE_FAILED_INTERNAL_ERROR
+                    : PackageManager.DELETE_SUCCEEDED);
+            index++;
+        }
+
+        // THEN every deletion should still have been attempted, with one result for the batch
+        assertEquals(PACKAGES, mPackageManager.mStartedDeletions);
+        assertEquals(1, mResults.size());
+        Map<String, Integer> failedPackages = mResults.get(0);
+        assertEquals(2, failedPackages.size());
+        assertEquals(PackageManager.DELETE_FAILED_INTERNAL_ERROR,
+                (int) failedPackages.get("app.b"));
+        assertEquals(PackageManager.DELETE_FAILED_INTERNAL_ERROR,
+                (int) failedPackages.get("app.d"));
+        assertNull(failedPackages.get("app.a"));
+    }
+
+    @Test
+    public void testSynchronousDeletions_allStarted() {
+        // GIVEN a package manager which finishes deletions before returning
+        mPackageManager.mSynchronous = true;
+
+        // WHEN starting a batch
+        createBatch(PACKAGES, /* maxInFlight= */ 1).start();
+
+        // THEN every package should have been deleted, and the batch should have succeeded once
+        assertEquals(PACKAGES, mPackageManager.mStartedDeletions);
+        assertEquals(1, mResults.size());
+        assertTrue(mResults.get(0).isEmpty());
+    }
+
+    private PackageDeletionBatch createBatch(List<String> packageNames, int maxInFlight) {
+        return new PackageDeletionBatch(mPackageManager, TEST_USER_ID, packageNames, maxInFlight,
+                mResults::add, () -> 0L);
+    }
+
+    private static class DeferredPackageManager extends MockPackageManager {
+        private final List<Pair<String, IPackageDeleteObserver>> mPendingDeletions =
+                new ArrayList<>();
+        private final List<String> mStartedDeletions = new ArrayList<>();
+        private boolean mSynchronous;
+
+        @Override
+        public void deletePackageAsUser(String packageName, IPackageDeleteObserver observer,
+                int flags, int userId) {
+            assertTrue((flags & PackageManager.DELETE_SYSTEM_APP) != 0);
+            assertEquals(TEST_USER_ID, userId);
+            mStartedDeletions.add(packageName);
+            mPendingDeletions.add(Pair.create(packageName, observer));
+            if (mSynchronous) {
+                finishNextDeletion(PackageManager.DELETE_SUCCEEDED);
+            }
+        }
+
+        void finishNextDeletion(int returnCode) {
+            Pair<String, IPackageDeleteObserver> deletion = mPendingDeletions.remove(0);
+            try {
+                deletion.second.packageDeleted(deletion.first, returnCode);
+            } catch (RemoteException e) {
+                fail(e.toString());
+            }
+        }
+    }
+}
@@ -22,8 +22,11 @@ import static android.app.admin.DevicePolicyManager.ACTION_PROVISION_MANAGED_DEV
 import static com.android.managedprovisioning.task.VerifyAdminPackageTask.ERROR_DEVICE_ADMIN_MISSING;
 import static com.android.managedprovisioning.task.VerifyAdminPackageTask.ERROR_HASH_MISMATCH;
 
+import static junit.framework.Assert.assertFalse;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -143,6 +146,51 @@ public class VerifyAdminPackageTaskTest {
         verifyNoMoreInteractions(mCallback);
     }
 
+    @Test
+    public void testPackageChecksumSha256_streamedHash_success() throws Exception {
+        // GIVEN the hash computed while downloading matches the parameter value
+        when(mDownloadPackageTask.getPackageHash()).thenReturn(TEST_PACKAGE_CHECKSUM_HASH);
+
+        // WHEN running the VerifyPackageTask
+        runWithDownloadInfo(TEST_PACKAGE_CHECKSUM_HASH, EMPTY_BYTE_ARRAY);
+
+        // THEN success should be called without hashing the file again
+        verify(mCallback).onSuccess(mTask);
+        verifyNoMoreInteractions(mCallback);
+        verify(mUtils, never()).computeHashOfFile(any(String.class), any(String.class));
+    }
+
+    @Test
+    public void testPackageChecksumSha256_streamedHash_failure() throws Exception {
+        // GIVEN the hash computed while downloading does not match the parameter value
+        when(mDownloadPackageTask.getPackageHash()).thenReturn(TEST_BAD_HASH);
+
+        // WHEN running the VerifyPackageTask
+        runWithDownloadInfo(TEST_PACKAGE_CHECKSUM_HASH, EMPTY_BYTE_ARRAY);
+
+        // THEN hash mismatch error should be called
+        verify(mCallback).onError(mTask, ERROR_HASH_MISMATCH, /* errorMessage= */ null);
+        verifyNoMoreInteractions(mCallback);
+    }
+
+    @Test
+    public void testPackageChecksumSha256_failure_deletesPackage() throws Exception {
+        // GIVEN a downloaded package whose hash does not match the parameter value
+        final File packageFile = File.createTempFile("package", ".apk");
+        when(mDownloadPackageTask.getPackageLocation()).thenReturn(packageFile);
+        when(mPackageManager.getPackageArchiveInfo(packageFile.getAbsolutePath(),
+                PackageManager.GET_SIGNATURES | PackageManager.GET_RECEIVERS))
+                .thenReturn(mPackageInfo);
+        when(mDownloadPackageTask.getPackageHash()).thenReturn(TEST_BAD_HASH);
+
+        // WHEN running the VerifyPackageTask
+        runWithDownloadInfo(TEST_PACKAGE_CHECKSUM_HASH, EMPTY_BYTE_ARRAY);
+
+        // THEN hash mismatch error should be called and the package deleted
+        verify(mCallback).onError(mTask, ERROR_HASH_MISMATCH, /* errorMessage= */ null);
+        assertFalse(packageFile.exists());
+    }
+
     @Test
     public void testSignatureHash_success() throws Exception {
         // GIVEN the hash of the signature matches the parameter value
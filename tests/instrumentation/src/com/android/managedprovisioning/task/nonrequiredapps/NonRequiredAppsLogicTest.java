@@ -30,10 +30,10 @@ import static org.mockito.Mockito.when;
 import android.app.admin.DevicePolicyManager;
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.pm.IPackageManager;
 
 import androidx.test.filters.SmallTest;
 
+import com.android.managedprovisioning.common.PackageIndex;
 import com.android.managedprovisioning.common.Utils;
 import com.android.managedprovisioning.model.ProvisioningParams;
 
@@ -67,7 +67,7 @@ public class NonRequiredAppsLogicTest {
     @Mock
     private DevicePolicyManager mDevicePolicyManager;
     @Mock
-    private IPackageManager mIPackageManager;
+    private PackageIndex mPackageIndex;
     @Mock
     private SystemAppsSnapshot mSnapshot;
     @Mock
@@ -219,7 +219,7 @@ public class NonRequiredAppsLogicTest {
     }
 
     private void setCurrentSystemApps(Set<String> set) {
-        when(mUtils.getCurrentSystemApps(mIPackageManager, TEST_USER_ID)).thenReturn(set);
+        when(mPackageIndex.getSystemPackages(TEST_USER_ID)).thenReturn(set);
     }
 
     private void setLastSnapshot(Set<String> set) {
@@ -239,7 +239,7 @@ public class NonRequiredAppsLogicTest {
     private NonRequiredAppsLogic createLogic(boolean newProfile) {
         return new NonRequiredAppsLogic(
                 mContext,
-                mIPackageManager,
+                mPackageIndex,
                 mDevicePolicyManager,
                 newProfile,
                 mParamsBuilder.build(),
@@ -22,14 +22,13 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
-import android.content.pm.IPackageManager;
 import android.os.FileUtils;
 import android.os.UserManager;
 
 import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.SmallTest;
 
-import com.android.managedprovisioning.common.Utils;
+import com.android.managedprovisioning.common.PackageIndex;
 
 import org.junit.After;
 import org.junit.Before;
@@ -52,9 +51,8 @@ public class SystemAppsSnapshotTest {
     private static final int TEST_USER_ID = 123;
     private static final int TEST_USER_SERIAL_NUMBER = 456;
 
-    @Mock private IPackageManager mockIPackageManager;
+    @Mock private PackageIndex mPackageIndex;
     @Mock private Context mContext;
-    @Mock private Utils mUtils;
     @Mock private UserManager mUserManager;
     private SystemAppsSnapshot mSystemAppsSnapshot;
 
@@ -68,7 +66,7 @@ public class SystemAppsSnapshotTest {
         when(mContext.getSystemService(Context.USER_SERVICE)).thenReturn(mUserManager);
         when(mUserManager.getUserSerialNumber(TEST_USER_ID)).thenReturn(TEST_USER_SERIAL_NUMBER);
 
-        mSystemAppsSnapshot = new SystemAppsSnapshot(mContext, mockIPackageManager, mUtils);
+        mSystemAppsSnapshot = new SystemAppsSnapshot(mContext, mPackageIndex);
     }
 
     @After
@@ -109,7 +107,7 @@ public class SystemAppsSnapshotTest {
     }
 
     private void setCurrentSystemApps(String... packages) throws Exception {
-        when(mUtils.getCurrentSystemApps(mockIPackageManager, TEST_USER_ID))
+        when(mPackageIndex.getSystemPackages(TEST_USER_ID))
                 .thenReturn(new HashSet<>(Arrays.asList(packages)));
     }
 
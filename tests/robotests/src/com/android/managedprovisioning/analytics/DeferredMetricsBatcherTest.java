@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+
+import com.android.managedprovisioning.DevicePolicyProtos.DevicePolicyEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Test class for {@link DeferredMetricsBatcher}. */
+@RunWith(RobolectricTestRunner.class)
+public class DeferredMetricsBatcherTest {
+
+    private final Context mContext = RuntimeEnvironment.application;
+
+    @Mock private ScheduledExecutorService mExecutor;
+    private File mFile;
+    private DeferredMetricsBatcher mBatcher;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mFile = new File(mContext.getFilesDir(), "test_deferred_metrics");
+        mFile.delete();
+        mBatcher = new DeferredMetricsBatcher(mFile, mExecutor);
+        // Run flushes on the calling thread
+        when(mExecutor.submit(any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Test
+    public void enqueue_smallBatch_schedulesDelayedWrite() {
+        mBatcher.enqueue(createEvents(1));
+        mBatcher.enqueue(createEvents(1));
+
+        verify(mExecutor).schedule(any(Runnable.class),
+                eq(DeferredMetricsBatcher.MAX_BATCH_DELAY_MILLIS), eq(TimeUnit.MILLISECONDS));
+        verify(mExecutor, never()).execute(any());
+        assertThat(mFile.exists()).isFalse();
+    }
+
+    @Test
+    public void enqueue_fullBatch_writesImmediately() throws Exception {
+        mBatcher.enqueue(createEvents(DeferredMetricsBatcher.MAX_BATCH_SIZE));
+
+        ArgumentCaptor<Runnable> batch = ArgumentCaptor.forClass(Runnable.class);
+        verify(mExecutor).execute(batch.capture());
+        batch.getValue().run();
+        assertThat(readEventIds()).hasSize(DeferredMetricsBatcher.MAX_BATCH_SIZE);
+    }
+
+    @Test
+    public void flush_writesQueuedEventsInOrder() throws Exception {
+        mBatcher.enqueue(createEvents(3));
+
+        mBatcher.flush();
+
+        assertThat(readEventIds()).containsExactly(0, 1, 2).inOrder();
+    }
+
+    @Test
+    public void flush_afterFileDeleted_writesNewFile() throws Exception {
+        mBatcher.enqueue(createEvents(2));
+        mBatcher.flush();
+        mFile.delete();
+
+        mBatcher.enqueue(createEvents(1));
+        mBatcher.flush();
+
+        assertThat(readEventIds()).containsExactly(0);
+    }
+
+    @Test
+    public void flush_overSizeCap_evictsOldestEvents() throws Exception {
+        long frameBytes = DeferredMetricsFile.toFrame(createEvents(1).get(0)).length;
+        mBatcher = new DeferredMetricsBatcher(
+                mFile, mExecutor, /* maxFileBytes= */ 4 * frameBytes);
+        mBatcher.enqueue(createEvents(4));
+        mBatcher.flush();
+
+        mBatcher.enqueue(createEvents(1));
+        mBatcher.flush();
+
+        assertThat(mFile.length()).isAtMost(4 * frameBytes);
+        assertThat(readEventIds()).containsExactly(2, 3, 0).inOrder();
+    }
+
+    @Test
+    public void flush_runsOnWriterThread() {
+        mBatcher.enqueue(createEvents(1));
+
+        mBatcher.flush();
+
+        verify(mExecutor).submit(any(Runnable.class));
+    }
+
+    @Test
+    public void flush_nothingQueued_doesNotCreateFile() {
+        mBatcher.flush();
+
+        assertThat(mFile.exists()).isFalse();
+        verify(mExecutor, never()).schedule(any(Runnable.class), anyLong(), any());
+    }
+
+    private static List<DevicePolicyEvent> createEvents(int count) {
+        List<DevicePolicyEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(DevicePolicyEvent.newBuilder().setEventId(i).build());
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    private List<Integer> readEventIds() throws Exception {
+        List<Integer> eventIds = new ArrayList<>();
+        DeferredMetricsFile.Reader reader = new DeferredMetricsFile.Reader(mFile, /* offset= */ 0);
+        DevicePolicyEvent event;
+        while ((event = reader.next()) != null) {
+            eventIds.add(event.getEventId());
+        }
+        return eventIds;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.managedprovisioning.DevicePolicyProtos.DevicePolicyEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Test class for {@link DeferredMetricsFile}. */
+@RunWith(RobolectricTestRunner.class)
+public class DeferredMetricsFileTest {
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mContext.getFilesDir(), "test_deferred_metrics");
+        mFile.delete();
+        DeferredMetricsFile.deleteCheckpoint(mFile);
+        DeferredMetricsFile.getReplayFile(mFile).delete();
+        DeferredMetricsFile.deleteCheckpoint(DeferredMetricsFile.getReplayFile(mFile));
+    }
+
+    @Test
+    public void read_corruptFrame_isSkipped() throws Exception {
+        byte[] corruptFrame = DeferredMetricsFile.toFrame(createEvent(2));
+        corruptFrame[corruptFrame.length - 1] ^= 0x7f;
+        writeFile(frame(1), corruptFrame, frame(3));
+
+        DeferredMetricsFile.Reader reader = new DeferredMetricsFile.Reader(mFile, 0);
+
+        assertThat(readEventIds(reader)).containsExactly(1, 3).inOrder();
+        assertThat(reader.getCorruptFrameCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void read_tornLastFrame_isSkipped() throws Exception {
+        byte[] frame = frame(2);
+        byte[] tornFrame = new byte[frame.length - 2];
+        System.arraycopy(frame, 0, tornFrame, 0, tornFrame.length);
+        writeFile(frame(1), tornFrame);
+
+        DeferredMetricsFile.Reader reader = new DeferredMetricsFile.Reader(mFile, 0);
+
+        assertThat(readEventIds(reader)).containsExactly(1);
+    }
+
+    @Test
+    public void read_fromPosition_resumesAfterLastEvent() throws Exception {
+        writeFile(frame(1), frame(2), frame(3));
+        DeferredMetricsFile.Reader reader = new DeferredMetricsFile.Reader(mFile, 0);
+        reader.next();
+
+        DeferredMetricsFile.Reader resumed =
+                new DeferredMetricsFile.Reader(mFile, reader.getPosition());
+
+        assertThat(readEventIds(resumed)).containsExactly(2, 3).inOrder();
+    }
+
+    @Test
+    public void compact_dropsReplayedAndOldestEvents() throws Exception {
+        writeFile(frame(1), frame(2), frame(3), frame(4), frame(5));
+        long frameBytes = frame(1).length;
+        DeferredMetricsFile.writeCheckpoint(mFile, frameBytes);
+
+        DeferredMetricsFile.compact(mFile, /* maxBytes= */ 4 * frameBytes, frameBytes);
+
+        assertThat(readEventIds(new DeferredMetricsFile.Reader(mFile, 0)))
+                .containsExactly(4, 5).inOrder();
+        assertThat(DeferredMetricsFile.readCheckpoint(mFile)).isEqualTo(0);
+    }
+
+    @Test
+    public void rotateForReplay_movesFileAndCheckpoint() throws Exception {
+        writeFile(frame(1), frame(2));
+        long frameBytes = frame(1).length;
+        DeferredMetricsFile.writeCheckpoint(mFile, frameBytes);
+
+        File replayFile = DeferredMetricsFile.rotateForReplay(mFile);
+
+        assertThat(mFile.exists()).isFalse();
+        assertThat(DeferredMetricsFile.readCheckpoint(replayFile)).isEqualTo(frameBytes);
+        assertThat(readEventIds(new DeferredMetricsFile.Reader(replayFile, frameBytes)))
+                .containsExactly(2);
+    }
+
+    @Test
+    public void rotateForReplay_unfinishedReplay_isResumedBeforeNewEvents() throws Exception {
+        writeFile(frame(1));
+        File replayFile = DeferredMetricsFile.rotateForReplay(mFile);
+        writeFile(frame(2));
+
+        assertThat(DeferredMetricsFile.rotateForReplay(mFile)).isEqualTo(replayFile);
+        assertThat(readEventIds(new DeferredMetricsFile.Reader(replayFile, 0)))
+                .containsExactly(1);
+        assertThat(readEventIds(new DeferredMetricsFile.Reader(mFile, 0))).containsExactly(2);
+    }
+
+    @Test
+    public void rotateForReplay_noEvents_returnsNull() {
+        assertThat(DeferredMetricsFile.rotateForReplay(mFile)).isNull();
+    }
+
+    private static DevicePolicyEvent createEvent(int eventId) {
+        return DevicePolicyEvent.newBuilder()
+                .setEventId(eventId)
+                .setAdminPackageName("com.test.admin")
+                .build();
+    }
+
+    private static byte[] frame(int eventId) {
+        return DeferredMetricsFile.toFrame(createEvent(eventId));
+    }
+
+    private void writeFile(byte[]... frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            bytes.write(frame);
+        }
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    private static List<Integer> readEventIds(DeferredMetricsFile.Reader reader) {
+        List<Integer> eventIds = new ArrayList<>();
+        DevicePolicyEvent event;
+        while ((event = reader.next()) != null) {
+            eventIds.add(event.getEventId());
+        }
+        return eventIds;
+    }
+}
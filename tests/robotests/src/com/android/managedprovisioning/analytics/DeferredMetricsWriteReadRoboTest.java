@@ -18,6 +18,8 @@ package com.android.managedprovisioning.analytics;
 
 import static com.android.managedprovisioning.analytics.AnalyticsRoboTestUtils.assertDevicePolicyEventLoggersEqual;
 
+import static com.google.common.truth.Truth.assertThat;
+
 import android.app.admin.DevicePolicyEventLogger;
 
 import org.junit.Test;
@@ -29,6 +31,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Robolectric integration tests for {@link DeferredMetricsWriter} and
@@ -64,6 +67,66 @@ public class DeferredMetricsWriteReadRoboTest {
         assertDevicePolicyEventLoggersEqual(EVENTS_TO_WRITE, eventsRead);
     }
 
+    @Test
+    public void writeRead_jobStoppedAfterFirstBatch_resumesWithoutDuplicates() {
+        final File file = new File("test-file");
+        writeMetricsToFile(EVENTS_TO_WRITE, file);
+        final List<DevicePolicyEventLogger> eventsList = new ArrayList<>();
+        final ProcessMetricsJobService[] stoppedService = new ProcessMetricsJobService[1];
+        stoppedService[0] = new ProcessMetricsJobService(loggers -> {
+            eventsList.addAll(Arrays.asList(loggers));
+            stoppedService[0].onStopJob(/* params= */ null);
+        }, new MetricsRateLimiter(/* eventsPerSecond= */ 1000, /* burst= */ 2));
+
+        stoppedService[0].executeReadDeferredMetrics(/* params */ null, file);
+        Robolectric.flushBackgroundThreadScheduler();
+        assertThat(eventsList).hasSize(2);
+        assertThat(DeferredMetricsFile.hasEventsToReplay(file)).isTrue();
+        eventsList.addAll(Arrays.asList(readMetricsFromFile(file)));
+
+        assertDevicePolicyEventLoggersEqual(
+                EVENTS_TO_WRITE, eventsList.toArray(new DevicePolicyEventLogger[0]));
+        assertThat(DeferredMetricsFile.hasEventsToReplay(file)).isFalse();
+    }
+
+    @Test
+    public void writeRead_eventsWrittenDuringReplay_areKept() {
+        final File file = new File("test-file");
+        writeMetricsToFile(EVENTS_TO_WRITE, file);
+        final DevicePolicyEventLogger[] newEvents = new DevicePolicyEventLogger[] {
+                DevicePolicyEventLogger.createEvent(128)
+        };
+        final List<DevicePolicyEventLogger> eventsList = new ArrayList<>();
+        final ProcessMetricsJobService processMetricsJobService = new ProcessMetricsJobService(
+                loggers -> {
+                    if (eventsList.isEmpty()) {
+                        writeMetricsToFile(newEvents, file);
+                    }
+                    eventsList.addAll(Arrays.asList(loggers));
+                });
+
+        processMetricsJobService.executeReadDeferredMetrics(/* params */ null, file);
+        Robolectric.flushBackgroundThreadScheduler();
+
+        assertDevicePolicyEventLoggersEqual(
+                EVENTS_TO_WRITE, eventsList.toArray(new DevicePolicyEventLogger[0]));
+        assertDevicePolicyEventLoggersEqual(newEvents, readMetricsFromFile(file));
+        assertThat(DeferredMetricsFile.hasEventsToReplay(file)).isFalse();
+    }
+
+    @Test
+    public void read_fileCannotBeRead_keepsEvents() {
+        // A directory can't be opened for reading
+        final File file = new File("test-unreadable-file");
+        file.mkdir();
+
+        final DevicePolicyEventLogger[] eventsRead = readMetricsFromFile(file);
+
+        assertThat(eventsRead).isEmpty();
+        assertThat(DeferredMetricsFile.hasEventsToReplay(file)).isTrue();
+        DeferredMetricsFile.getReplayFile(file).delete();
+    }
+
     private DevicePolicyEventLogger[] readMetricsFromFile(File file) {
         final List<DevicePolicyEventLogger> eventsList = new ArrayList<>();
         final ProcessMetricsJobService processMetricsJobService = new ProcessMetricsJobService(
@@ -77,6 +140,10 @@ public class DeferredMetricsWriteReadRoboTest {
             DevicePolicyEventLogger[] devicePolicyEvent, File file) {
         final DeferredMetricsWriter writer = new DeferredMetricsWriter(file);
         writer.write(devicePolicyEvent);
-        Robolectric.flushBackgroundThreadScheduler();
+        try {
+            DeferredMetricsWriter.flush(file).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AssertionError(e);
+        }
     }
 }
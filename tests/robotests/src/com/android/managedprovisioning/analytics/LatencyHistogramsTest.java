@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import static com.android.internal.logging.nano.MetricsProto.MetricsEvent.PROVISIONING_DOWNLOAD_PACKAGE_TASK_MS;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Test class for {@link LatencyHistograms}. */
+@RunWith(RobolectricTestRunner.class)
+public class LatencyHistogramsTest {
+
+    private static final int CATEGORY = 1;
+    private static final String SOURCE = "SomeTask";
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private final LatencyHistograms mHistograms = new LatencyHistograms(mContext, Runnable::run);
+
+    @Test
+    public void getBucketIndex_smallValues_areExact() {
+        for (int i = 0; i < LatencyHistograms.SUB_BUCKETS; i++) {
+            assertThat(LatencyHistograms.getBucketIndex(i)).isEqualTo(i);
+            assertThat(LatencyHistograms.getBucketUpperBound(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void getBucketIndex_largeValues_withinUpperBoundAndPrecision() {
+        final long maxValue = (1L << LatencyHistograms.MAX_VALUE_BITS) - 1;
+        for (long value = 1; value <= maxValue; value = value * 3 + 1) {
+            final long upperBound =
+                    LatencyHistograms.getBucketUpperBound(LatencyHistograms.getBucketIndex(value));
+            assertThat(upperBound).isAtLeast(value);
+            assertThat((double) upperBound - value).isAtMost(value / 16.0 + 1);
+        }
+    }
+
+    @Test
+    public void getBucketIndex_outOfRange_isClamped() {
+        assertThat(LatencyHistograms.getBucketIndex(-5)).isEqualTo(0);
+        assertThat(LatencyHistograms.getBucketIndex(Long.MAX_VALUE))
+                .isEqualTo(LatencyHistograms.BUCKET_COUNT - 1);
+    }
+
+    @Test
+    public void getPercentile_noSamples_returnsMinusOne() {
+        assertThat(mHistograms.getPercentile(CATEGORY, SOURCE, 50)).isEqualTo(-1);
+    }
+
+    @Test
+    public void getPercentile_uniformSamples() {
+        for (int i = 1; i <= 100; i++) {
+            mHistograms.record(CATEGORY, SOURCE, i * 100);
+        }
+
+        assertThat((double) mHistograms.getPercentile(CATEGORY, SOURCE, 50))
+                .isWithin(5000 * 0.07).of(5000);
+        assertThat((double) mHistograms.getPercentile(CATEGORY, SOURCE, 99))
+                .isWithin(9900 * 0.07).of(9900);
+    }
+
+    @Test
+    public void record_differentSources_keptApart() {
+        mHistograms.record(CATEGORY, SOURCE, 10);
+        mHistograms.record(CATEGORY, /* source= */ null, 3);
+
+        assertThat(mHistograms.getPercentile(CATEGORY, SOURCE, 50)).isEqualTo(10);
+        assertThat(mHistograms.getPercentile(CATEGORY, null, 50)).isEqualTo(3);
+    }
+
+    @Test
+    public void record_moreThanTwoWindows_dropsOldestSamples() {
+        for (int i = 0; i < LatencyHistograms.WINDOW_SIZE; i++) {
+            mHistograms.record(CATEGORY, SOURCE, 1);
+        }
+        for (int i = 0; i < 2 * LatencyHistograms.WINDOW_SIZE; i++) {
+            mHistograms.record(CATEGORY, SOURCE, 5);
+        }
+
+        assertThat(mHistograms.getPercentile(CATEGORY, SOURCE, 0)).isEqualTo(5);
+    }
+
+    @Test
+    public void record_persistedAcrossInstances() {
+        mHistograms.record(CATEGORY, SOURCE, 7);
+        mHistograms.record(CATEGORY, SOURCE, 9);
+
+        final LatencyHistograms reloaded = new LatencyHistograms(mContext, Runnable::run);
+
+        assertThat(reloaded.getPercentile(CATEGORY, SOURCE, 50)).isEqualTo(7);
+        assertThat(reloaded.getPercentile(CATEGORY, SOURCE, 100)).isEqualTo(9);
+    }
+
+    @Test
+    public void record_burstOfSamples_writtenOnce() {
+        final List<Runnable> tasks = new ArrayList<>();
+        final LatencyHistograms histograms = new LatencyHistograms(mContext, tasks::add);
+
+        histograms.record(CATEGORY, SOURCE, 1);
+        histograms.record(CATEGORY, SOURCE, 2);
+        histograms.record(CATEGORY, SOURCE, 3);
+        assertThat(tasks).hasSize(3);
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+
+        // A single write follows the three samples
+        assertThat(tasks).hasSize(4);
+        final LatencyHistograms reloaded = new LatencyHistograms(mContext, Runnable::run);
+        assertThat(reloaded.getPercentile(CATEGORY, SOURCE, 100)).isEqualTo(3);
+    }
+
+    @Test
+    public void dump_printsPercentiles() {
+        mHistograms.record(CATEGORY, SOURCE, 12);
+        final StringWriter output = new StringWriter();
+
+        mHistograms.dump(new PrintWriter(output));
+
+        assertThat(output.toString()).contains("1/SomeTask: count=1 p50=12");
+    }
+
+    @Test
+    public void dump_printsCategoryNames() {
+        mHistograms.record(PROVISIONING_DOWNLOAD_PACKAGE_TASK_MS, SOURCE, 12);
+        final StringWriter output = new StringWriter();
+
+        mHistograms.dump(new PrintWriter(output));
+
+        assertThat(output.toString())
+                .contains("PROVISIONING_DOWNLOAD_PACKAGE_TASK_MS/SomeTask: count=1");
+    }
+}
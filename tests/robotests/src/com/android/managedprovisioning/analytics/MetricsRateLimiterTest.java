@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.testng.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Test class for {@link MetricsRateLimiter}. */
+@RunWith(RobolectricTestRunner.class)
+public class MetricsRateLimiterTest {
+
+    private static final int EVENTS_PER_SECOND = 100;
+    private static final int BURST = 10;
+
+    private final FakeRateLimiter mRateLimiter = new FakeRateLimiter();
+
+    @Test
+    public void acquire_withinBurst_doesNotWait() {
+        assertThat(mRateLimiter.acquire(BURST)).isTrue();
+
+        assertThat(mRateLimiter.mNowMillis).isEqualTo(0);
+    }
+
+    @Test
+    public void acquire_bucketEmpty_waitsForRefill() {
+        mRateLimiter.acquire(BURST);
+
+        assertThat(mRateLimiter.acquire(BURST)).isTrue();
+
+        // 10 events at 100 events per second
+        assertThat(mRateLimiter.mNowMillis).isEqualTo(100);
+    }
+
+    @Test
+    public void acquire_afterIdle_refillsUpToBurst() {
+        mRateLimiter.acquire(BURST);
+        mRateLimiter.mNowMillis = 10_000;
+
+        mRateLimiter.acquire(BURST);
+
+        assertThat(mRateLimiter.mNowMillis).isEqualTo(10_000);
+    }
+
+    @Test
+    public void acquire_moreThanBurst_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> mRateLimiter.acquire(BURST + 1));
+    }
+
+    private static class FakeRateLimiter extends MetricsRateLimiter {
+        long mNowMillis;
+
+        FakeRateLimiter() {
+            super(EVENTS_PER_SECOND, BURST);
+        }
+
+        @Override
+        long now() {
+            return mNowMillis;
+        }
+
+        @Override
+        void sleep(long millis) {
+            mNowMillis += millis;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.managedprovisioning.DevicePolicyProtos.ProvisioningTrace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/** Test class for {@link ProvisioningTracer}. */
+@RunWith(RobolectricTestRunner.class)
+public class ProvisioningTracerTest {
+
+    private final FakeTracer mTracer = new FakeTracer();
+
+    @Test
+    public void getLastTrace_noSession_returnsNull() {
+        assertThat(mTracer.getLastTrace()).isNull();
+    }
+
+    @Test
+    public void endSession_exportsNestedSpans() {
+        mTracer.startSession("session");
+        mTracer.mNowMillis = 10;
+        final TraceSpan controller = mTracer.startChild("controller");
+        mTracer.mNowMillis = 20;
+        final TraceSpan task = controller.startChild("task");
+        try (TraceSpan ignored = task.startSection("hash")) {
+            mTracer.mNowMillis = 25;
+        }
+        mTracer.mNowMillis = 30;
+        task.end();
+        controller.end();
+        mTracer.mNowMillis = 40;
+        mTracer.endSession();
+
+        final ProvisioningTrace.Span session = mTracer.getLastTrace().getSession();
+        assertThat(session.getName()).isEqualTo("session");
+        assertThat(session.getDurationMicros()).isEqualTo(40_000);
+        final ProvisioningTrace.Span controllerProto = session.getChildren(0);
+        assertThat(controllerProto.getName()).isEqualTo("controller");
+        assertThat(controllerProto.getStartOffsetMicros()).isEqualTo(10_000);
+        assertThat(controllerProto.getDurationMicros()).isEqualTo(20_000);
+        final ProvisioningTrace.Span hash = controllerProto.getChildren(0).getChildren(0);
+        assertThat(hash.getName()).isEqualTo("hash");
+        assertThat(hash.getStartOffsetMicros()).isEqualTo(20_000);
+        assertThat(hash.getDurationMicros()).isEqualTo(5_000);
+        assertThat(hash.getThreadName()).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void startSection_nestsInOpenSectionOfThread() {
+        mTracer.startSession("session");
+        try (TraceSpan outer = mTracer.startSection("outer")) {
+            mTracer.startSection("inner").end();
+        }
+        mTracer.startSection("after").end();
+        mTracer.endSession();
+
+        final ProvisioningTrace.Span session = mTracer.getLastTrace().getSession();
+        assertThat(session.getChildrenCount()).isEqualTo(2);
+        assertThat(session.getChildren(0).getChildren(0).getName()).isEqualTo("inner");
+        assertThat(session.getChildren(1).getName()).isEqualTo("after");
+    }
+
+    @Test
+    public void endSpan_sectionEndedBeforeInnerSection_endsInnerSection() {
+        mTracer.startSession("session");
+        final TraceSpan outer = mTracer.startSection("outer");
+        mTracer.startSection("inner");
+        mTracer.mNowMillis = 10;
+        outer.end();
+        mTracer.startSection("after").end();
+        mTracer.endSession();
+
+        final ProvisioningTrace.Span session = mTracer.getLastTrace().getSession();
+        assertThat(session.getChildrenCount()).isEqualTo(2);
+        assertThat(session.getChildren(0).getChildren(0).getDurationMicros()).isEqualTo(10_000);
+        assertThat(session.getChildren(1).getName()).isEqualTo("after");
+    }
+
+    @Test
+    public void endSpan_sectionEndedOnOtherThread_staysOpen() throws Exception {
+        mTracer.startSession("session");
+        final TraceSpan section = mTracer.startSection("section");
+        final Thread thread = new Thread(section::end);
+        thread.start();
+        thread.join();
+        mTracer.startSection("inner").end();
+        mTracer.endSession();
+
+        final ProvisioningTrace.Span sectionProto =
+                mTracer.getLastTrace().getSession().getChildren(0);
+        assertThat(sectionProto.hasDurationMicros()).isFalse();
+        assertThat(sectionProto.getChildren(0).getName()).isEqualTo("inner");
+    }
+
+    @Test
+    public void endSession_unfinishedSpan_hasNoDuration() {
+        mTracer.startSession("session");
+        mTracer.startChild("unfinished");
+        mTracer.endSession();
+
+        assertThat(mTracer.getLastTrace().getSession().getChildren(0).hasDurationMicros())
+                .isFalse();
+    }
+
+    @Test
+    public void startChild_tooManySpans_dropped() {
+        mTracer.startSession("session");
+        for (int i = 0; i < ProvisioningTracer.MAX_SPANS + 3; i++) {
+            mTracer.startChild("span").end();
+        }
+        mTracer.endSession();
+
+        final ProvisioningTrace trace = mTracer.getLastTrace();
+        assertThat(trace.getSession().getChildrenCount()).isEqualTo(ProvisioningTracer.MAX_SPANS);
+        assertThat(trace.getDroppedSpanCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void startSession_newSession_resetsTree() {
+        mTracer.startSession("first");
+        mTracer.startChild("span").end();
+        mTracer.startSession("second");
+        mTracer.endSession();
+
+        assertThat(mTracer.getLastTrace().getSession().getName()).isEqualTo("second");
+        assertThat(mTracer.getLastTrace().getSession().getChildrenCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dump_printsTree() {
+        mTracer.startSession("session");
+        mTracer.startChild("task").end();
+        mTracer.endSession();
+        final StringWriter output = new StringWriter();
+
+        mTracer.dump(new PrintWriter(output), new String[0]);
+
+        assertThat(output.toString()).contains("  session [");
+        assertThat(output.toString()).contains("    task [");
+    }
+
+    private static class FakeTracer extends ProvisioningTracer {
+        long mNowMillis;
+
+        @Override
+        long now() {
+            return mNowMillis * 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.ApplicationInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit-tests for {@link PackageIndex}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PackageIndexTest {
+    private static final int TEST_USER_ID = 10;
+    private static final int OTHER_USER_ID = 11;
+    private static final String SYSTEM_PACKAGE = "com.test.system";
+    private static final String UNINSTALLED_SYSTEM_PACKAGE = "com.test.system.uninstalled";
+    private static final String HIDDEN_SYSTEM_PACKAGE = "com.test.system.hidden";
+    private static final String USER_PACKAGE = "com.test.user";
+
+    private final List<Integer> mLoadedUserIds = new ArrayList<>();
+    private long mNowMillis = 1000;
+    private final PackageIndex mIndex = new PackageIndex(this::loadApplications, () -> mNowMillis);
+
+    @Test
+    public void getSystemPackages_includesUninstalledAndHiddenSystemPackages() {
+        assertThat(mIndex.getSystemPackages(TEST_USER_ID)).containsExactly(
+                SYSTEM_PACKAGE, UNINSTALLED_SYSTEM_PACKAGE, HIDDEN_SYSTEM_PACKAGE);
+    }
+
+    @Test
+    public void getSystemPackages_returnsModifiableCopy() {
+        Set<String> packages = mIndex.getSystemPackages(TEST_USER_ID);
+        packages.clear();
+
+        assertThat(mIndex.getSystemPackages(TEST_USER_ID)).hasSize(3);
+    }
+
+    @Test
+    public void getInstalledApplications_excludesUninstalledAndHiddenPackages() {
+        assertThat(getPackageNames(mIndex.getInstalledApplications(TEST_USER_ID)))
+                .containsExactly(SYSTEM_PACKAGE, USER_PACKAGE);
+    }
+
+    @Test
+    public void getInstalledSystemApplications_onlyInstalledSystemPackages() {
+        assertThat(getPackageNames(mIndex.getInstalledSystemApplications(TEST_USER_ID)))
+                .containsExactly(SYSTEM_PACKAGE);
+    }
+
+    @Test
+    public void getInstalledPackages_excludesUninstalledAndHiddenPackages() {
+        assertThat(mIndex.getInstalledPackages(TEST_USER_ID))
+                .containsExactly(SYSTEM_PACKAGE, USER_PACKAGE);
+    }
+
+    @Test
+    public void getInstalledPackages_excludesPackagesHiddenForUser() {
+        PackageIndex index = new PackageIndex(userId -> {
+            ApplicationInfo info = createApplicationInfo(USER_PACKAGE, /* system= */ false,
+                    /* installed= */ true, /* hidden= */ false);
+            info.privateFlags |= ApplicationInfo.PRIVATE_FLAG_HIDDEN;
+            return Arrays.asList(info);
+        }, () -> mNowMillis);
+
+        assertThat(index.getInstalledPackages(TEST_USER_ID)).isEmpty();
+    }
+
+    @Test
+    public void views_loadOncePerUser() {
+        mIndex.getSystemPackages(TEST_USER_ID);
+        mIndex.getInstalledApplications(TEST_USER_ID);
+        mIndex.getInstalledSystemApplications(TEST_USER_ID);
+        mIndex.getInstalledApplications(OTHER_USER_ID);
+
+        assertThat(mLoadedUserIds).containsExactly(TEST_USER_ID, OTHER_USER_ID);
+    }
+
+    @Test
+    public void invalidate_reloadsOnlyThatUser() {
+        mIndex.getSystemPackages(TEST_USER_ID);
+        mIndex.getSystemPackages(OTHER_USER_ID);
+
+        mIndex.invalidate(TEST_USER_ID);
+        mIndex.getSystemPackages(TEST_USER_ID);
+        mIndex.getSystemPackages(OTHER_USER_ID);
+
+        assertThat(mLoadedUserIds).containsExactly(TEST_USER_ID, OTHER_USER_ID, TEST_USER_ID);
+    }
+
+    @Test
+    public void invalidateAll_reloadsEveryUser() {
+        mIndex.getSystemPackages(TEST_USER_ID);
+        mIndex.getSystemPackages(OTHER_USER_ID);
+
+        mIndex.invalidateAll();
+        mIndex.getSystemPackages(TEST_USER_ID);
+        mIndex.getSystemPackages(OTHER_USER_ID);
+
+        assertThat(mLoadedUserIds).hasSize(4);
+    }
+
+    @Test
+    public void entryOlderThanMaxAge_isReloaded() {
+        mIndex.getSystemPackages(TEST_USER_ID);
+
+        mNowMillis += PackageIndex.MAX_AGE_MILLIS;
+        mIndex.getSystemPackages(TEST_USER_ID);
+        assertThat(mLoadedUserIds).hasSize(1);
+
+        mNowMillis += 1;
+        mIndex.getSystemPackages(TEST_USER_ID);
+        assertThat(mLoadedUserIds).hasSize(2);
+    }
+
+    private List<ApplicationInfo> loadApplications(int userId) {
+        mLoadedUserIds.add(userId);
+        return Arrays.asList(
+                createApplicationInfo(SYSTEM_PACKAGE, /* system= */ true, /* installed= */ true,
+                        /* hidden= */ false),
+                createApplicationInfo(UNINSTALLED_SYSTEM_PACKAGE, /* system= */ true,
+                        /* installed= */ false, /* hidden= */ false),
+                createApplicationInfo(HIDDEN_SYSTEM_PACKAGE, /* system= */ true,
+                        /* installed= */ true, /* hidden= */ true),
+                createApplicationInfo(USER_PACKAGE, /* system= */ false, /* installed= */ true,
+                        /* hidden= */ false));
+    }
+
+    private static ApplicationInfo createApplicationInfo(
+            String packageName, boolean system, boolean installed, boolean hidden) {
+        ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        if (system) {
+            info.flags |= ApplicationInfo.FLAG_SYSTEM;
+        }
+        if (installed) {
+            info.flags |= ApplicationInfo.FLAG_INSTALLED;
+        }
+        info.hiddenUntilInstalled = hidden;
+        return info;
+    }
+
+    private static List<String> getPackageNames(List<ApplicationInfo> applications) {
+        List<String> packageNames = new ArrayList<>();
+        for (ApplicationInfo info : applications) {
+            packageNames.add(info.packageName);
+        }
+        return packageNames;
+    }
+}
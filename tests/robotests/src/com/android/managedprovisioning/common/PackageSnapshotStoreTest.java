@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.testng.Assert.assertThrows;
+
+import android.os.FileUtils;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit-tests for {@link PackageSnapshotStore}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PackageSnapshotStoreTest {
+    private static final int TEST_USER_SERIAL_NUMBER = 20;
+    private static final Set<String> TEST_PACKAGES = new HashSet<>(Arrays.asList(
+            "com.android.settings",
+            "com.android.systemui",
+            "com.android.systemui.plugin",
+            "com.google.android.gms",
+            "a",
+            "com.example.été"));
+    private static final String LEGACY_SNAPSHOT = "<?xml version='1.0' encoding='utf-8' "
+            + "standalone='yes' ?><system-apps>"
+            + "<item value=\"com.android.settings\" />"
+            + "<item value=\"com.android.systemui\" />"
+            + "</system-apps>";
+
+    private final File mFolder =
+            new File(RuntimeEnvironment.application.getFilesDir(), "snapshot_store_test");
+    private final PackageSnapshotStore mStore = new PackageSnapshotStore(mFolder);
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteContentsAndDir(mFolder);
+    }
+
+    @Test
+    public void encode_decode_roundTrips() throws Exception {
+        assertThat(PackageSnapshotStore.decode(PackageSnapshotStore.encode(TEST_PACKAGES)))
+                .isEqualTo(TEST_PACKAGES);
+    }
+
+    @Test
+    public void encode_emptySet_decodesToEmptySet() throws Exception {
+        assertThat(PackageSnapshotStore.decode(PackageSnapshotStore.encode(new HashSet<>())))
+                .isEmpty();
+    }
+
+    @Test
+    public void encode_sharedPrefixes_storedOnce() {
+        final int namesLength = TEST_PACKAGES.stream()
+                .mapToInt(name -> name.getBytes(StandardCharsets.UTF_8).length)
+                .sum();
+
+        assertThat(PackageSnapshotStore.encode(TEST_PACKAGES).length).isLessThan(namesLength);
+    }
+
+    @Test
+    public void decode_truncated_throwsIOException() {
+        final byte[] bytes = PackageSnapshotStore.encode(TEST_PACKAGES);
+
+        assertThrows(IOException.class,
+                () -> PackageSnapshotStore.decode(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+
+    @Test
+    public void decode_notASnapshot_throwsIOException() {
+        assertThrows(IOException.class,
+                () -> PackageSnapshotStore.decode(LEGACY_SNAPSHOT.getBytes()));
+    }
+
+    @Test
+    public void hasSnapshot_nothingWritten_returnsFalse() {
+        assertThat(mStore.hasSnapshot(TEST_USER_SERIAL_NUMBER)).isFalse();
+        assertThat(mStore.read(TEST_USER_SERIAL_NUMBER)).isEmpty();
+    }
+
+    @Test
+    public void read_afterWrite_returnsWrittenSet() {
+        mStore.write(TEST_USER_SERIAL_NUMBER, TEST_PACKAGES);
+
+        assertThat(mStore.hasSnapshot(TEST_USER_SERIAL_NUMBER)).isTrue();
+        assertThat(mStore.read(TEST_USER_SERIAL_NUMBER)).isEqualTo(TEST_PACKAGES);
+        assertThat(new PackageSnapshotStore(mFolder).read(TEST_USER_SERIAL_NUMBER))
+                .isEqualTo(TEST_PACKAGES);
+    }
+
+    @Test
+    public void write_replacesPreviousSet() {
+        mStore.write(TEST_USER_SERIAL_NUMBER, TEST_PACKAGES);
+
+        mStore.write(TEST_USER_SERIAL_NUMBER, new HashSet<>(Arrays.asList("com.example")));
+
+        assertThat(new PackageSnapshotStore(mFolder).read(TEST_USER_SERIAL_NUMBER))
+                .containsExactly("com.example");
+    }
+
+    @Test
+    public void read_legacySnapshot_migratesIt() throws Exception {
+        final File legacyFile = new File(mFolder, TEST_USER_SERIAL_NUMBER + ".xml");
+        mFolder.mkdirs();
+        try (OutputStream out = new FileOutputStream(legacyFile)) {
+            out.write(LEGACY_SNAPSHOT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(mStore.hasSnapshot(TEST_USER_SERIAL_NUMBER)).isTrue();
+        assertThat(mStore.read(TEST_USER_SERIAL_NUMBER))
+                .containsExactly("com.android.settings", "com.android.systemui");
+        assertThat(legacyFile.exists()).isFalse();
+        assertThat(new PackageSnapshotStore(mFolder).read(TEST_USER_SERIAL_NUMBER))
+                .containsExactly("com.android.settings", "com.android.systemui");
+    }
+}
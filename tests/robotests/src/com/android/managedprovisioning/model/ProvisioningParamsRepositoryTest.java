@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.model;
+
+import static android.app.admin.DevicePolicyManager.ACTION_PROVISION_MANAGED_DEVICE;
+import static android.app.admin.DevicePolicyManager.ACTION_PROVISION_MANAGED_PROFILE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+
+/**
+ * Robolectric tests for {@link ProvisioningParamsRepository}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProvisioningParamsRepositoryTest {
+
+    private static final String TEST_PACKAGE_NAME = "com.example.dpc";
+
+    private final File mFile =
+            new File(RuntimeEnvironment.application.getFilesDir(), "params_repository_test");
+    private final ProvisioningParamsRepository mRepository = new ProvisioningParamsRepository();
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void load_noFile_returnsNull() {
+        assertThat(mRepository.load(mFile)).isNull();
+    }
+
+    @Test
+    public void load_afterSave_returnsSavedParams() {
+        final ProvisioningParams params = createParams(ACTION_PROVISION_MANAGED_PROFILE);
+        mRepository.save(mFile, params);
+
+        assertSame(params, mRepository.load(mFile));
+        assertThat(ProvisioningParams.load(mFile)).isEqualTo(params);
+    }
+
+    @Test
+    public void load_twice_readsFileOnce() {
+        createParams(ACTION_PROVISION_MANAGED_PROFILE).save(mFile);
+
+        final ProvisioningParams params = mRepository.load(mFile);
+
+        assertThat(params).isNotNull();
+        assertSame(params, mRepository.load(mFile));
+    }
+
+    @Test
+    public void load_fileWrittenElsewhere_readsFileAgain() {
+        mRepository.save(mFile, createParams(ACTION_PROVISION_MANAGED_PROFILE));
+        final ProvisioningParams params = createParams(ACTION_PROVISION_MANAGED_DEVICE);
+        params.save(mFile);
+
+        assertThat(mRepository.load(mFile)).isEqualTo(params);
+    }
+
+    @Test
+    public void load_fileDeletedElsewhere_returnsNull() {
+        mRepository.save(mFile, createParams(ACTION_PROVISION_MANAGED_PROFILE));
+        mFile.delete();
+
+        assertThat(mRepository.load(mFile)).isNull();
+    }
+
+    @Test
+    public void delete_deletesFile() {
+        mRepository.save(mFile, createParams(ACTION_PROVISION_MANAGED_PROFILE));
+
+        mRepository.delete(mFile);
+
+        assertThat(mFile.exists()).isFalse();
+        assertThat(mRepository.load(mFile)).isNull();
+    }
+
+    @Test
+    public void invalidate_readsFileAgain() {
+        final ProvisioningParams params = createParams(ACTION_PROVISION_MANAGED_PROFILE);
+        mRepository.save(mFile, params);
+
+        mRepository.invalidate(params);
+
+        final ProvisioningParams loaded = mRepository.load(mFile);
+        assertNotSame(params, loaded);
+        assertThat(loaded).isEqualTo(params);
+    }
+
+    private static ProvisioningParams createParams(String action) {
+        return ProvisioningParams.Builder.builder()
+                .setProvisioningAction(action)
+                .setDeviceAdminPackageName(TEST_PACKAGE_NAME)
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.ota;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.managedprovisioning.DevicePolicyProtos.OtaState;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit-tests for {@link OtaStateStore}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OtaStateStoreTest {
+    private static final String TEST_PACKAGE_NAME_1 = "com.test.packagea";
+    private static final String TEST_PACKAGE_NAME_2 = "com.test.packageb";
+
+    private final File mFile =
+            new File(RuntimeEnvironment.application.getFilesDir(), "ota_state_test.pb");
+    private final OtaStateStore mStore = new OtaStateStore(mFile);
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void read_noFile_returnsNull() {
+        assertThat(mStore.read()).isNull();
+    }
+
+    @Test
+    public void write_read_roundTrips() {
+        OtaState state = OtaState.newBuilder()
+                .setBuildFingerprint("fingerprint")
+                .setCrossProfileAppsDigest(
+                        OtaStateStore.digest(Collections.singleton(TEST_PACKAGE_NAME_1)))
+                .addUsers(OtaState.UserState.newBuilder()
+                        .setUserSerialNumber(10)
+                        .setSystemAppsDigest(OtaStateStore.digest(
+                                Arrays.asList(TEST_PACKAGE_NAME_1, TEST_PACKAGE_NAME_2))))
+                .build();
+
+        mStore.write(state);
+
+        assertThat(mStore.read()).isEqualTo(state);
+    }
+
+    @Test
+    public void read_invalidFile_returnsNull() throws IOException {
+        try (OutputStream stream = new FileOutputStream(mFile)) {
+            stream.write(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff});
+        }
+
+        assertThat(mStore.read()).isNull();
+    }
+
+    @Test
+    public void digest_doesNotDependOnOrder() {
+        assertThat(OtaStateStore.digest(Arrays.asList(TEST_PACKAGE_NAME_1, TEST_PACKAGE_NAME_2)))
+                .isEqualTo(OtaStateStore.digest(
+                        Arrays.asList(TEST_PACKAGE_NAME_2, TEST_PACKAGE_NAME_1)));
+    }
+
+    @Test
+    public void digest_differentPackages_differ() {
+        assertThat(OtaStateStore.digest(Collections.singleton(TEST_PACKAGE_NAME_1)))
+                .isNotEqualTo(OtaStateStore.digest(Collections.singleton(TEST_PACKAGE_NAME_2)));
+    }
+
+    @Test
+    public void digest_null_isDigestOfEmptySet() {
+        assertThat(OtaStateStore.digest(null))
+                .isEqualTo(OtaStateStore.digest(Collections.emptySet()));
+    }
+}
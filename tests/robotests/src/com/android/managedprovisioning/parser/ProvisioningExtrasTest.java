@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.parser;
+
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_DISCLAIMERS;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_HIDDEN;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_PROXY_PORT;
+import static android.app.admin.DevicePolicyManager.EXTRA_PROVISIONING_WIFI_SSID;
+
+import static com.android.managedprovisioning.parser.ExtrasProvisioningDataParser.CANONICAL_EXTRAS;
+import static com.android.managedprovisioning.parser.ExtrasProvisioningDataParser.EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME_SHORT;
+import static com.android.managedprovisioning.parser.ExtrasProvisioningDataParser.EXTRA_PROVISIONING_WIFI_HIDDEN_SHORT;
+import static com.android.managedprovisioning.parser.ExtrasProvisioningDataParser.EXTRA_PROVISIONING_WIFI_SSID_SHORT;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ComponentName;
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Test class for {@link ProvisioningExtras}. */
+@RunWith(RobolectricTestRunner.class)
+public class ProvisioningExtrasTest {
+
+    private static final ComponentName ADMIN = new ComponentName("com.example.dpc", ".Admin");
+
+    @Test
+    public void from_nullBundle_isEmpty() {
+        final ProvisioningExtras extras = ProvisioningExtras.from(null, CANONICAL_EXTRAS);
+
+        assertThat(extras.getString(EXTRA_PROVISIONING_WIFI_SSID)).isNull();
+        assertThat(extras.getBoolean(EXTRA_PROVISIONING_WIFI_HIDDEN, true)).isTrue();
+    }
+
+    @Test
+    public void from_shortNames_mappedToCanonicalNames() {
+        final Bundle bundle = new Bundle();
+        bundle.putString(EXTRA_PROVISIONING_WIFI_SSID_SHORT, "ssid");
+        bundle.putBoolean(EXTRA_PROVISIONING_WIFI_HIDDEN_SHORT, true);
+        bundle.putParcelable(EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME_SHORT, ADMIN);
+
+        final ProvisioningExtras extras = ProvisioningExtras.from(bundle, CANONICAL_EXTRAS);
+
+        assertThat(extras.getString(EXTRA_PROVISIONING_WIFI_SSID)).isEqualTo("ssid");
+        assertThat(extras.getBoolean(EXTRA_PROVISIONING_WIFI_HIDDEN, false)).isTrue();
+        assertThat((ComponentName) extras.getParcelable(
+                EXTRA_PROVISIONING_DEVICE_ADMIN_COMPONENT_NAME)).isEqualTo(ADMIN);
+        assertThat(extras.getString(EXTRA_PROVISIONING_WIFI_SSID_SHORT)).isNull();
+    }
+
+    @Test
+    public void from_bothNames_canonicalNameWins() {
+        final Bundle bundle = new Bundle();
+        bundle.putString(EXTRA_PROVISIONING_WIFI_SSID_SHORT, "short");
+        bundle.putString(EXTRA_PROVISIONING_WIFI_SSID, "long");
+
+        final ProvisioningExtras extras = ProvisioningExtras.from(bundle, CANONICAL_EXTRAS);
+
+        assertThat(extras.getString(EXTRA_PROVISIONING_WIFI_SSID)).isEqualTo("long");
+    }
+
+    @Test
+    public void from_nullCanonicalValue_fallsBackToShortName() {
+        final Bundle bundle = new Bundle();
+        bundle.putString(EXTRA_PROVISIONING_WIFI_SSID, null);
+        bundle.putString(EXTRA_PROVISIONING_WIFI_SSID_SHORT, "short");
+
+        final ProvisioningExtras extras = ProvisioningExtras.from(bundle, CANONICAL_EXTRAS);
+
+        assertThat(extras.getString(EXTRA_PROVISIONING_WIFI_SSID)).isEqualTo("short");
+    }
+
+    @Test
+    public void getters_wrongType_returnDefault() {
+        final Bundle bundle = new Bundle();
+        bundle.putString(EXTRA_PROVISIONING_WIFI_PROXY_PORT, "8080");
+        bundle.putInt(EXTRA_PROVISIONING_WIFI_SSID, 1);
+        bundle.putString(EXTRA_PROVISIONING_DISCLAIMERS, "disclaimer");
+
+        final ProvisioningExtras extras = ProvisioningExtras.from(bundle, CANONICAL_EXTRAS);
+
+        assertThat(extras.getInt(EXTRA_PROVISIONING_WIFI_PROXY_PORT, 0)).isEqualTo(0);
+        assertThat(extras.getString(EXTRA_PROVISIONING_WIFI_SSID)).isNull();
+        assertThat(extras.getParcelableArray(EXTRA_PROVISIONING_DISCLAIMERS)).isNull();
+    }
+
+    @Test
+    public void getParcelableArray_returnsArray() {
+        final Bundle bundle = new Bundle();
+        final Parcelable[] disclaimers = new Parcelable[] {new Bundle()};
+        bundle.putParcelableArray(EXTRA_PROVISIONING_DISCLAIMERS, disclaimers);
+
+        final ProvisioningExtras extras = ProvisioningExtras.from(bundle, CANONICAL_EXTRAS);
+
+        assertThat(extras.getParcelableArray(EXTRA_PROVISIONING_DISCLAIMERS))
+                .isEqualTo(disclaimers);
+    }
+}
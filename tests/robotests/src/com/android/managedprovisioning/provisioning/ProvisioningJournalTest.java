@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.provisioning;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** Test class for {@link ProvisioningJournal}. */
+@RunWith(RobolectricTestRunner.class)
+public class ProvisioningJournalTest {
+
+    private static final String SESSION_KEY = "session";
+    private static final List<String> TASK_NAMES = Arrays.asList("TaskA", "TaskB", "TaskC");
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mContext.getFilesDir(), "test_provisioning_journal");
+        mFile.delete();
+    }
+
+    @Test
+    public void newJournal_noTaskStarted() {
+        ProvisioningJournal journal = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+
+        for (int i = 0; i < TASK_NAMES.size(); i++) {
+            assertThat(journal.getState(i)).isEqualTo(ProvisioningJournal.STATE_NOT_STARTED);
+        }
+    }
+
+    @Test
+    public void reopen_restoresStatesAndOutput() {
+        ProvisioningJournal journal = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+        journal.recordStarted(0);
+        journal.recordSucceeded(0, Collections.singletonMap("key", "value"));
+        journal.recordStarted(1);
+        journal.flush();
+
+        ProvisioningJournal reopened = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+
+        assertThat(reopened.getState(0)).isEqualTo(ProvisioningJournal.STATE_SUCCEEDED);
+        assertThat(reopened.getOutput(0)).containsExactly("key", "value");
+        assertThat(reopened.getState(1)).isEqualTo(ProvisioningJournal.STATE_STARTED);
+        assertThat(reopened.getState(2)).isEqualTo(ProvisioningJournal.STATE_NOT_STARTED);
+    }
+
+    @Test
+    public void reopen_otherSession_isIgnored() {
+        ProvisioningJournal journal = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+        journal.recordSucceeded(0, Collections.emptyMap());
+        journal.flush();
+
+        ProvisioningJournal reopened =
+                new ProvisioningJournal(mFile, "other session", TASK_NAMES);
+
+        assertThat(reopened.getState(0)).isEqualTo(ProvisioningJournal.STATE_NOT_STARTED);
+    }
+
+    @Test
+    public void reopen_differentTasks_isIgnored() {
+        ProvisioningJournal journal = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+        journal.recordSucceeded(0, Collections.emptyMap());
+        journal.flush();
+
+        ProvisioningJournal reopened = new ProvisioningJournal(
+                mFile, SESSION_KEY, Arrays.asList("TaskA", "TaskC", "TaskB"));
+
+        assertThat(reopened.getState(0)).isEqualTo(ProvisioningJournal.STATE_NOT_STARTED);
+    }
+
+    @Test
+    public void reopen_afterDelete_noTaskStarted() {
+        ProvisioningJournal journal = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+        journal.recordSucceeded(0, Collections.emptyMap());
+        journal.flush();
+        journal.delete();
+
+        ProvisioningJournal reopened = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+
+        assertThat(reopened.getState(0)).isEqualTo(ProvisioningJournal.STATE_NOT_STARTED);
+    }
+
+    @Test
+    public void reopen_notFlushed_noTaskStarted() {
+        ProvisioningJournal journal = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+        journal.recordSucceeded(0, Collections.emptyMap());
+
+        ProvisioningJournal reopened = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+
+        assertThat(reopened.getState(0)).isEqualTo(ProvisioningJournal.STATE_NOT_STARTED);
+    }
+
+    @Test
+    public void flush_afterDelete_doesNotWrite() {
+        ProvisioningJournal journal = new ProvisioningJournal(mFile, SESSION_KEY, TASK_NAMES);
+        journal.recordSucceeded(0, Collections.emptyMap());
+        journal.delete();
+        journal.flush();
+
+        assertThat(mFile.exists()).isFalse();
+    }
+}
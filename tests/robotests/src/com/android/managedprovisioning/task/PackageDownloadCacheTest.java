@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.managedprovisioning.common.Utils;
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Test class for {@link PackageDownloadCache}. */
+@RunWith(RobolectricTestRunner.class)
+public class PackageDownloadCacheTest {
+
+    private static final String TEST_PACKAGE_LOCATION = "http://test.location/test.apk";
+    private static final byte[] TEST_PACKAGE_1 = "package one".getBytes();
+    private static final byte[] TEST_PACKAGE_2 = "package two".getBytes();
+    private static final long TEST_MAX_SIZE_BYTES = TEST_PACKAGE_1.length + 4;
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private final List<Runnable> mPendingWrites = new ArrayList<>();
+    private File mDirectory;
+    private PackageDownloadCache mCache;
+
+    @Before
+    public void setUp() {
+        mDirectory = new File(mContext.getCacheDir(), "test_package_cache");
+        mCache = new PackageDownloadCache(mDirectory, TEST_MAX_SIZE_BYTES, mPendingWrites::add);
+    }
+
+    @Test
+    public void checkout_emptyCache_returnsNull() throws Exception {
+        assertThat(mCache.checkout(createDownloadInfo(sha256(TEST_PACKAGE_1)))).isNull();
+    }
+
+    @Test
+    public void checkout_afterPut_returnsPackage() throws Exception {
+        PackageDownloadInfo downloadInfo = createDownloadInfo(sha256(TEST_PACKAGE_1));
+        mCache.put(downloadInfo, writeFile("downloaded.apk", TEST_PACKAGE_1));
+        runPendingWrites();
+
+        File checkout = mCache.checkout(downloadInfo);
+
+        assertThat(Files.readAllBytes(checkout.toPath())).isEqualTo(TEST_PACKAGE_1);
+    }
+
+    @Test
+    public void checkout_deletingCheckout_keepsEntry() throws Exception {
+        PackageDownloadInfo downloadInfo = createDownloadInfo(sha256(TEST_PACKAGE_1));
+        mCache.put(downloadInfo, writeFile("downloaded.apk", TEST_PACKAGE_1));
+        runPendingWrites();
+
+        mCache.checkout(downloadInfo).delete();
+
+        assertThat(mCache.checkout(downloadInfo)).isNotNull();
+    }
+
+    @Test
+    public void put_checksumMismatch_doesNotCache() throws Exception {
+        PackageDownloadInfo downloadInfo = createDownloadInfo(sha256(TEST_PACKAGE_1));
+        mCache.put(downloadInfo, writeFile("downloaded.apk", TEST_PACKAGE_2));
+        runPendingWrites();
+
+        assertThat(mCache.checkout(downloadInfo)).isNull();
+    }
+
+    @Test
+    public void put_overSizeCap_evictsLeastRecentlyUsed() throws Exception {
+        PackageDownloadInfo downloadInfo1 = createDownloadInfo(sha256(TEST_PACKAGE_1));
+        PackageDownloadInfo downloadInfo2 = createDownloadInfo(sha256(TEST_PACKAGE_2));
+        mCache.put(downloadInfo1, writeFile("downloaded1.apk", TEST_PACKAGE_1));
+        runPendingWrites();
+        new File(mDirectory, "entries").listFiles()[0].setLastModified(0);
+
+        mCache.put(downloadInfo2, writeFile("downloaded2.apk", TEST_PACKAGE_2));
+        runPendingWrites();
+
+        assertThat(mCache.checkout(downloadInfo1)).isNull();
+        assertThat(mCache.checkout(downloadInfo2)).isNotNull();
+    }
+
+    @Test
+    public void put_writesInBackground() throws Exception {
+        PackageDownloadInfo downloadInfo = createDownloadInfo(sha256(TEST_PACKAGE_1));
+        mCache.put(downloadInfo, writeFile("downloaded.apk", TEST_PACKAGE_1));
+
+        assertThat(mCache.checkout(downloadInfo)).isNull();
+        runPendingWrites();
+        assertThat(mCache.checkout(downloadInfo)).isNotNull();
+    }
+
+    @Test
+    public void put_packageDeletedBeforeWrite_isStillCached() throws Exception {
+        PackageDownloadInfo downloadInfo = createDownloadInfo(sha256(TEST_PACKAGE_1));
+        File downloaded = writeFile("downloaded.apk", TEST_PACKAGE_1);
+        mCache.put(downloadInfo, downloaded);
+
+        // The install task deletes the package once it is installed
+        downloaded.delete();
+        runPendingWrites();
+
+        File checkout = mCache.checkout(downloadInfo);
+        assertThat(Files.readAllBytes(checkout.toPath())).isEqualTo(TEST_PACKAGE_1);
+    }
+
+    @Test
+    public void getKey_signatureChecksumOnly_isNotCached() {
+        PackageDownloadInfo downloadInfo = new PackageDownloadInfo.Builder()
+                .setLocation(TEST_PACKAGE_LOCATION)
+                .setSignatureChecksum(new byte[]{1, 2, 3})
+                .setMinVersion(42)
+                .build();
+
+        assertThat(PackageDownloadCache.getKey(downloadInfo)).isNull();
+    }
+
+    private void runPendingWrites() {
+        for (Runnable write : mPendingWrites) {
+            write.run();
+        }
+        mPendingWrites.clear();
+    }
+
+    private static PackageDownloadInfo createDownloadInfo(byte[] packageChecksum) {
+        return new PackageDownloadInfo.Builder()
+                .setLocation(TEST_PACKAGE_LOCATION)
+                .setPackageChecksum(packageChecksum)
+                .build();
+    }
+
+    private File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(mContext.getCacheDir(), name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] sha256(byte[] bytes) throws Exception {
+        return MessageDigest.getInstance(Utils.SHA256_TYPE).digest(bytes);
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.annotation.Nullable;
+import android.content.Context;
+
+import com.android.managedprovisioning.common.Utils;
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/** Test class for {@link PackagePrefetcher}. */
+@RunWith(RobolectricTestRunner.class)
+public class PackagePrefetcherTest {
+
+    private static final String TEST_PACKAGE_LOCATION = "http://test.location/test.apk";
+    private static final String OTHER_PACKAGE_LOCATION = "http://test.location/other.apk";
+    private static final byte[] TEST_PACKAGE = "test package".getBytes();
+    private static final long TEST_TIMEOUT_SECONDS = 5;
+    private static final BooleanSupplier ALWAYS = () -> true;
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private File mDirectory;
+
+    @Before
+    public void setUp() {
+        mDirectory = new File(mContext.getCacheDir(), "test_package_prefetch");
+    }
+
+    @Test
+    public void claim_nothingPrefetched_returnsNull() throws Exception {
+        PackagePrefetcher prefetcher = createPrefetcher(new FakeDownloader(TEST_PACKAGE));
+
+        assertThat(prefetcher.claim(createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE)))
+                .isNull();
+    }
+
+    @Test
+    public void claim_afterPrefetch_returnsVerifiedPackage() throws Exception {
+        PackagePrefetcher prefetcher = createPrefetcher(new FakeDownloader(TEST_PACKAGE));
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+        PackagePrefetcher.PrefetchedPackage prefetchedPackage = prefetcher.claim(downloadInfo);
+
+        assertThat(Files.readAllBytes(prefetchedPackage.mFile.toPath())).isEqualTo(TEST_PACKAGE);
+        assertThat(prefetchedPackage.mPackageHash).isEqualTo(sha256(TEST_PACKAGE));
+    }
+
+    @Test
+    public void claim_checksumMismatch_returnsNull() throws Exception {
+        PackagePrefetcher prefetcher =
+                createPrefetcher(new FakeDownloader("tampered package".getBytes()));
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+
+        assertThat(prefetcher.claim(downloadInfo)).isNull();
+    }
+
+    @Test
+    public void claim_differentPackage_returnsNull() throws Exception {
+        PackagePrefetcher prefetcher = createPrefetcher(new FakeDownloader(TEST_PACKAGE));
+
+        prefetcher.prefetch(createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE), ALWAYS);
+
+        assertThat(prefetcher.claim(createDownloadInfo(OTHER_PACKAGE_LOCATION, TEST_PACKAGE)))
+                .isNull();
+    }
+
+    @Test
+    public void claim_afterDiscard_returnsNull() throws Exception {
+        PackagePrefetcher prefetcher = createPrefetcher(new FakeDownloader(TEST_PACKAGE));
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+        prefetcher.discard();
+
+        assertThat(prefetcher.claim(downloadInfo)).isNull();
+    }
+
+    @Test
+    public void prefetch_samePackageTwice_downloadsOnce() throws Exception {
+        FakeDownloader downloader = new FakeDownloader(TEST_PACKAGE);
+        PackagePrefetcher prefetcher = createPrefetcher(downloader);
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+        prefetcher.claim(downloadInfo);
+
+        assertThat(downloader.mDownloads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void claim_prefetchStalled_returnsNullAndDeletesPackage() throws Exception {
+        BlockingDownloader downloader = new BlockingDownloader();
+        PackagePrefetcher prefetcher =
+                createPrefetcher(downloader, /* claimStallTimeoutMillis= */ 10);
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+        assertThat(prefetcher.claim(downloadInfo)).isNull();
+
+        // The deletion runs after the cancelled download, before any later prefetch
+        prefetcher.prefetch(createDownloadInfo(OTHER_PACKAGE_LOCATION, TEST_PACKAGE), ALWAYS);
+        assertThat(downloader.mLaterDownloadStarted.await(
+                TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(downloader.mInterrupted).isTrue();
+        assertThat(downloader.mSpillFile.exists()).isFalse();
+    }
+
+    @Test
+    public void claim_prefetchStillReceivingData_waitsForPackage() throws Exception {
+        PackagePrefetcher prefetcher = createPrefetcher(
+                new SlowDownloader(/* byteDelayMillis= */ 50),
+                /* claimStallTimeoutMillis= */ 300);
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+        PackagePrefetcher.PrefetchedPackage prefetchedPackage = prefetcher.claim(downloadInfo);
+
+        assertThat(prefetchedPackage).isNotNull();
+        assertThat(Files.readAllBytes(prefetchedPackage.mFile.toPath())).isEqualTo(TEST_PACKAGE);
+    }
+
+    @Test
+    public void prefetch_shouldNotPrefetch_doesNotDownload() throws Exception {
+        FakeDownloader downloader = new FakeDownloader(TEST_PACKAGE);
+        PackagePrefetcher prefetcher = createPrefetcher(downloader);
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+
+        prefetcher.prefetch(downloadInfo, () -> false);
+
+        assertThat(prefetcher.claim(downloadInfo)).isNull();
+        assertThat(downloader.mDownloads.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void deleteStaleFiles_deletesFilesOfEarlierProcess() throws Exception {
+        mDirectory.mkdirs();
+        File staleFile = new File(mDirectory, "prefetched_stale.apk");
+        Files.write(staleFile.toPath(), TEST_PACKAGE);
+        PackagePrefetcher prefetcher = createPrefetcher(new FakeDownloader(TEST_PACKAGE));
+
+        prefetcher.deleteStaleFiles();
+        // Runs after the deletion, as the executor is single threaded
+        PackageDownloadInfo downloadInfo = createDownloadInfo(TEST_PACKAGE_LOCATION, TEST_PACKAGE);
+        prefetcher.prefetch(downloadInfo, ALWAYS);
+        prefetcher.claim(downloadInfo);
+
+        assertThat(staleFile.exists()).isFalse();
+    }
+
+    private PackagePrefetcher createPrefetcher(StreamingPackageDownloader downloader) {
+        return createPrefetcher(downloader, PackagePrefetcher.CLAIM_STALL_TIMEOUT_MILLIS);
+    }
+
+    private PackagePrefetcher createPrefetcher(
+            StreamingPackageDownloader downloader, long claimStallTimeoutMillis) {
+        return new PackagePrefetcher(mDirectory, downloader, mContext.getPackageManager(),
+                new ChecksumUtils(new Utils()), claimStallTimeoutMillis);
+    }
+
+    private static PackageDownloadInfo createDownloadInfo(String location, byte[] content)
+            throws Exception {
+        return new PackageDownloadInfo.Builder()
+                .setLocation(location)
+                .setPackageChecksum(sha256(content))
+                .build();
+    }
+
+    private static byte[] sha256(byte[] bytes) throws Exception {
+        return MessageDigest.getInstance(Utils.SHA256_TYPE).digest(bytes);
+    }
+
+    private static class FakeDownloader extends StreamingPackageDownloader {
+        private final byte[] mContent;
+        final AtomicInteger mDownloads = new AtomicInteger();
+
+        FakeDownloader(byte[] content) {
+            mContent = content;
+        }
+
+        @Override
+        byte[] download(PackageDownloadInfo packageDownloadInfo, File spillFile,
+                @Nullable StagingStreamFactory stagingStreamFactory) throws IOException {
+            mDownloads.incrementAndGet();
+            try (FileOutputStream out = new FileOutputStream(spillFile)) {
+                out.write(mContent);
+            }
+            try {
+                return sha256(mContent);
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the package one byte at a time, waiting between bytes.
+     */
+    private static class SlowDownloader extends FakeDownloader {
+        private final long mByteDelayMillis;
+
+        SlowDownloader(long byteDelayMillis) {
+            super(TEST_PACKAGE);
+            mByteDelayMillis = byteDelayMillis;
+        }
+
+        @Override
+        byte[] download(PackageDownloadInfo packageDownloadInfo, File spillFile,
+                @Nullable StagingStreamFactory stagingStreamFactory) throws IOException {
+            try (FileOutputStream out = new FileOutputStream(spillFile)) {
+                for (byte b : TEST_PACKAGE) {
+                    out.write(b);
+                    out.flush();
+                    Thread.sleep(mByteDelayMillis);
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Prefetch cancelled");
+            }
+            try {
+                return sha256(TEST_PACKAGE);
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a partial package on the first download, then blocks until it is interrupted.
+     */
+    private static class BlockingDownloader extends FakeDownloader {
+        volatile File mSpillFile;
+        volatile boolean mInterrupted;
+        final CountDownLatch mLaterDownloadStarted = new CountDownLatch(1);
+
+        BlockingDownloader() {
+            super(TEST_PACKAGE);
+        }
+
+        @Override
+        byte[] download(PackageDownloadInfo packageDownloadInfo, File spillFile,
+                @Nullable StagingStreamFactory stagingStreamFactory) throws IOException {
+            if (mSpillFile != null) {
+                mLaterDownloadStarted.countDown();
+                return super.download(packageDownloadInfo, spillFile, stagingStreamFactory);
+            }
+            mSpillFile = spillFile;
+            try (FileOutputStream out = new FileOutputStream(spillFile)) {
+                out.write(TEST_PACKAGE, 0, 1);
+            }
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                mInterrupted = true;
+            }
+            throw new InterruptedIOException("Prefetch cancelled");
+        }
+    }
+}
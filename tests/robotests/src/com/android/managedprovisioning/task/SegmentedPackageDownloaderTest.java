@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Test class for {@link SegmentedPackageDownloader}. */
+@RunWith(RobolectricTestRunner.class)
+public class SegmentedPackageDownloaderTest {
+
+    private static final String TEST_PACKAGE_LOCATION = "http://test.location/test.apk";
+    private static final PackageDownloadInfo TEST_DOWNLOAD_INFO =
+            new PackageDownloadInfo.Builder()
+                    .setLocation(TEST_PACKAGE_LOCATION)
+                    .setPackageChecksum(new byte[]{1})
+                    .build();
+    private static final int SEGMENT_COUNT = 3;
+    private static final int MIN_SEGMENT_SIZE = 10;
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private final File mDestination = new File(mContext.getCacheDir(), "test.apk");
+    private final byte[] mPackage = createPackage(100);
+
+    @Test
+    public void download_rangesSupported_downloadsSegmentsInParallel() throws Exception {
+        FakeServer server = new FakeServer(mPackage, /* supportsRanges= */ true);
+        SegmentedPackageDownloader downloader =
+                new SegmentedPackageDownloader(server, SEGMENT_COUNT, MIN_SEGMENT_SIZE);
+
+        downloader.download(TEST_DOWNLOAD_INFO, mDestination);
+
+        assertThat(Files.readAllBytes(mDestination.toPath())).isEqualTo(mPackage);
+        assertThat(server.mRangeRequests.get()).isEqualTo(SEGMENT_COUNT);
+    }
+
+    @Test
+    public void download_rangesNotSupported_fallsBackToSingleStream() throws Exception {
+        FakeServer server = new FakeServer(mPackage, /* supportsRanges= */ false);
+        SegmentedPackageDownloader downloader =
+                new SegmentedPackageDownloader(server, SEGMENT_COUNT, MIN_SEGMENT_SIZE);
+
+        downloader.download(TEST_DOWNLOAD_INFO, mDestination);
+
+        assertThat(Files.readAllBytes(mDestination.toPath())).isEqualTo(mPackage);
+        assertThat(server.mRangeRequests.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void download_packageTooSmall_fallsBackToSingleStream() throws Exception {
+        byte[] smallPackage = createPackage(MIN_SEGMENT_SIZE + 1);
+        FakeServer server = new FakeServer(smallPackage, /* supportsRanges= */ true);
+        SegmentedPackageDownloader downloader =
+                new SegmentedPackageDownloader(server, SEGMENT_COUNT, MIN_SEGMENT_SIZE);
+
+        downloader.download(TEST_DOWNLOAD_INFO, mDestination);
+
+        assertThat(Files.readAllBytes(mDestination.toPath())).isEqualTo(smallPackage);
+        assertThat(server.mRangeRequests.get()).isEqualTo(0);
+    }
+
+    private static byte[] createPackage(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static class FakeServer extends StreamingPackageDownloader {
+        private final byte[] mContent;
+        private final boolean mSupportsRanges;
+        final AtomicInteger mRangeRequests = new AtomicInteger();
+
+        FakeServer(byte[] content, boolean supportsRanges) {
+            mContent = content;
+            mSupportsRanges = supportsRanges;
+        }
+
+        @Override
+        HttpURLConnection openConnection(PackageDownloadInfo packageDownloadInfo)
+                throws IOException {
+            return new FakeConnection(new URL(packageDownloadInfo.location));
+        }
+
+        @Override
+        void sleep(long millis) {}
+
+        private class FakeConnection extends HttpURLConnection {
+            private final Map<String, String> mRequestProperties = new HashMap<>();
+            private int mStart = -1;
+            private int mEnd = -1;
+
+            FakeConnection(URL url) {
+                super(url);
+            }
+
+            @Override
+            public void setRequestProperty(String key, String value) {
+                mRequestProperties.put(key, value);
+            }
+
+            @Override
+            public int getResponseCode() {
+                String range = mRequestProperties.get("Range");
+                if (range == null || !mSupportsRanges) {
+                    return HTTP_OK;
+                }
+                mRangeRequests.incrementAndGet();
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                mStart = Integer.parseInt(bounds[0]);
+                mEnd = bounds.length > 1 ? Integer.parseInt(bounds[1]) : mContent.length - 1;
+                return HTTP_PARTIAL;
+            }
+
+            @Override
+            public String getHeaderField(String name) {
+                switch (name) {
+                    case "Accept-Ranges":
+                        return mSupportsRanges ? "bytes" : null;
+                    case "Content-Range":
+                        return mStart < 0
+                                ? null
+                                : "bytes " + mStart + "-" + mEnd + "/" + mContent.length;
+                    default:
+                        return null;
+                }
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return mStart < 0 ? mContent.length : mEnd - mStart + 1;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return mStart < 0
+                        ? new ByteArrayInputStream(mContent)
+                        : new ByteArrayInputStream(
+                                Arrays.copyOfRange(mContent, mStart, mEnd + 1));
+            }
+
+            @Override
+            public void connect() {}
+
+            @Override
+            public void disconnect() {}
+
+            @Override
+            public boolean usingProxy() {
+                return false;
+            }
+        }
+    }
+}
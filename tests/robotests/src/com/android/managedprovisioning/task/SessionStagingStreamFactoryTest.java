@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.PackageInstaller;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/** Test class for {@link SessionStagingStreamFactory}. */
+@RunWith(RobolectricTestRunner.class)
+public class SessionStagingStreamFactoryTest {
+
+    private static final String TEST_NAME = "test.apk";
+    private static final int FIRST_SESSION_ID = 1;
+    private static final int SECOND_SESSION_ID = 2;
+    private static final long TEST_CONTENT_LENGTH = 10;
+
+    private final PackageInstaller mPackageInstaller = mock(PackageInstaller.class);
+    private final PackageInstaller.Session mFirstSession = mock(PackageInstaller.Session.class);
+    private final PackageInstaller.Session mSecondSession = mock(PackageInstaller.Session.class);
+    private final SessionStagingStreamFactory mFactory =
+            new SessionStagingStreamFactory(mPackageInstaller, TEST_NAME);
+
+    @Before
+    public void setUp() throws IOException {
+        when(mPackageInstaller.createSession(any()))
+                .thenReturn(FIRST_SESSION_ID, SECOND_SESSION_ID);
+        when(mPackageInstaller.openSession(FIRST_SESSION_ID)).thenReturn(mFirstSession);
+        when(mPackageInstaller.openSession(SECOND_SESSION_ID)).thenReturn(mSecondSession);
+        when(mFirstSession.openWrite(anyString(), anyLong(), anyLong()))
+                .thenReturn(new ByteArrayOutputStream());
+        when(mSecondSession.openWrite(anyString(), anyLong(), anyLong()))
+                .thenReturn(new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void openStagingStream_resumed_reusesSession() throws IOException {
+        mFactory.openStagingStream(/* offset= */ 0, TEST_CONTENT_LENGTH);
+        mFactory.openStagingStream(/* offset= */ 4, TEST_CONTENT_LENGTH);
+
+        verify(mFirstSession).openWrite(TEST_NAME, 4, TEST_CONTENT_LENGTH);
+        verify(mPackageInstaller, never()).abandonSession(anyInt());
+        assertThat(mFactory.getSessionId()).isEqualTo(FIRST_SESSION_ID);
+    }
+
+    @Test
+    public void openStagingStream_restartedFromStart_replacesSession() throws IOException {
+        mFactory.openStagingStream(/* offset= */ 0, TEST_CONTENT_LENGTH);
+        mFactory.openStagingStream(/* offset= */ 0, TEST_CONTENT_LENGTH);
+
+        verify(mFirstSession).close();
+        verify(mPackageInstaller).abandonSession(FIRST_SESSION_ID);
+        verify(mSecondSession).openWrite(TEST_NAME, 0, TEST_CONTENT_LENGTH);
+        assertThat(mFactory.getSessionId()).isEqualTo(SECOND_SESSION_ID);
+    }
+
+    @Test
+    public void close_keepsSession() throws IOException {
+        mFactory.openStagingStream(/* offset= */ 0, TEST_CONTENT_LENGTH);
+
+        mFactory.close();
+
+        verify(mFirstSession).close();
+        verify(mPackageInstaller, never()).abandonSession(anyInt());
+        assertThat(mFactory.getSessionId()).isEqualTo(FIRST_SESSION_ID);
+    }
+
+    @Test
+    public void abandon_abandonsSession() throws IOException {
+        mFactory.openStagingStream(/* offset= */ 0, TEST_CONTENT_LENGTH);
+
+        mFactory.abandon();
+
+        verify(mPackageInstaller).abandonSession(FIRST_SESSION_ID);
+        assertThat(mFactory.getSessionId()).isEqualTo(-1);
+    }
+
+    @Test
+    public void abandon_noStreamOpened_doesNothing() {
+        mFactory.abandon();
+
+        verify(mPackageInstaller, never()).abandonSession(anyInt());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.managedprovisioning.task;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertThrows;
+
+import android.content.Context;
+
+import com.android.managedprovisioning.model.PackageDownloadInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/** Test class for {@link StreamingPackageDownloader}. */
+@RunWith(RobolectricTestRunner.class)
+public class StreamingPackageDownloaderTest {
+
+    private static final String TEST_PACKAGE_LOCATION = "http://test.location/test.apk";
+    private static final String TEST_ETAG = "\"abc\"";
+    private static final byte[] TEST_PACKAGE = "0123456789".getBytes();
+    private static final PackageDownloadInfo TEST_DOWNLOAD_INFO =
+            new PackageDownloadInfo.Builder()
+                    .setLocation(TEST_PACKAGE_LOCATION)
+                    .setPackageChecksum(new byte[]{1})
+                    .build();
+
+    private final Context mContext = RuntimeEnvironment.application;
+    private final File mSpillFile = new File(mContext.getCacheDir(), "test.apk");
+    private final FakeDownloader mDownloader = new FakeDownloader();
+
+    @Test
+    public void download_singleAttempt_returnsHashAndWritesFile() throws Exception {
+        mDownloader.mConnections.add(createConnection(
+                HttpURLConnection.HTTP_OK, TEST_PACKAGE, TEST_PACKAGE.length, null));
+
+        byte[] hash = mDownloader.download(TEST_DOWNLOAD_INFO, mSpillFile, null);
+
+        assertThat(hash).isEqualTo(sha256(TEST_PACKAGE));
+        assertThat(Files.readAllBytes(mSpillFile.toPath())).isEqualTo(TEST_PACKAGE);
+    }
+
+    @Test
+    public void download_interrupted_resumesWithRange() throws Exception {
+        HttpURLConnection first = createConnection(HttpURLConnection.HTTP_OK,
+                Arrays.copyOf(TEST_PACKAGE, 4), TEST_PACKAGE.length, TEST_ETAG);
+        HttpURLConnection second = createConnection(HttpURLConnection.HTTP_PARTIAL,
+                Arrays.copyOfRange(TEST_PACKAGE, 4, TEST_PACKAGE.length),
+                TEST_PACKAGE.length - 4, null);
+        when(second.getHeaderField("Content-Range")).thenReturn("bytes 4-9/10");
+        mDownloader.mConnections.add(first);
+        mDownloader.mConnections.add(second);
+
+        byte[] hash = mDownloader.download(TEST_DOWNLOAD_INFO, mSpillFile, null);
+
+        verify(second).setRequestProperty("Range", "bytes=4-");
+        verify(second).setRequestProperty("If-Range", TEST_ETAG);
+        assertThat(hash).isEqualTo(sha256(TEST_PACKAGE));
+        assertThat(Files.readAllBytes(mSpillFile.toPath())).isEqualTo(TEST_PACKAGE);
+    }
+
+    @Test
+    public void download_interruptedWithoutValidator_startsOver() throws Exception {
+        HttpURLConnection first = createConnection(HttpURLConnection.HTTP_OK,
+                Arrays.copyOf(TEST_PACKAGE, 4), TEST_PACKAGE.length, null);
+        HttpURLConnection second = createConnection(
+                HttpURLConnection.HTTP_OK, TEST_PACKAGE, TEST_PACKAGE.length, null);
+        mDownloader.mConnections.add(first);
+        mDownloader.mConnections.add(second);
+
+        byte[] hash = mDownloader.download(TEST_DOWNLOAD_INFO, mSpillFile, null);
+
+        verify(second, never()).setRequestProperty("Range", "bytes=4-");
+        assertThat(hash).isEqualTo(sha256(TEST_PACKAGE));
+        assertThat(Files.readAllBytes(mSpillFile.toPath())).isEqualTo(TEST_PACKAGE);
+    }
+
+    @Test
+    public void download_notFound_doesNotRetry() throws Exception {
+        mDownloader.mConnections.add(createConnection(
+                HttpURLConnection.HTTP_NOT_FOUND, new byte[0], 0, null));
+
+        assertThrows(IOException.class,
+                () -> mDownloader.download(TEST_DOWNLOAD_INFO, mSpillFile, null));
+        assertThat(mDownloader.mConnectionCount).isEqualTo(1);
+    }
+
+    @Test
+    public void download_alwaysFailing_givesUpAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < StreamingPackageDownloader.MAX_ATTEMPTS; i++) {
+            mDownloader.mConnections.add(createConnection(
+                    HttpURLConnection.HTTP_UNAVAILABLE, new byte[0], 0, null));
+        }
+
+        assertThrows(IOException.class,
+                () -> mDownloader.download(TEST_DOWNLOAD_INFO, mSpillFile, null));
+        assertThat(mDownloader.mConnectionCount)
+                .isEqualTo(StreamingPackageDownloader.MAX_ATTEMPTS);
+    }
+
+    @Test
+    public void parseRangeStart() {
+        assertThat(StreamingPackageDownloader.parseRangeStart("bytes 4-9/10")).isEqualTo(4);
+        assertThat(StreamingPackageDownloader.parseRangeStart("bytes */10")).isEqualTo(-1);
+        assertThat(StreamingPackageDownloader.parseRangeStart(null)).isEqualTo(-1);
+    }
+
+    private static HttpURLConnection createConnection(int responseCode, byte[] body,
+            long contentLength, String eTag) throws IOException {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(responseCode);
+        when(connection.getContentLengthLong()).thenReturn(contentLength);
+        when(connection.getHeaderField("ETag")).thenReturn(eTag);
+        InputStream in = new ByteArrayInputStream(body);
+        when(connection.getInputStream()).thenReturn(in);
+        return connection;
+    }
+
+    private static byte[] sha256(byte[] bytes) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(bytes);
+    }
+
+    private static class FakeDownloader extends StreamingPackageDownloader {
+        final Queue<HttpURLConnection> mConnections = new ArrayDeque<>();
+        int mConnectionCount;
+
+        @Override
+        HttpURLConnection openConnection(PackageDownloadInfo packageDownloadInfo)
+                throws IOException {
+            mConnectionCount++;
+            HttpURLConnection connection = mConnections.poll();
+            if (connection == null) {
+                throw new IOException("No more connections");
+            }
+            return connection;
+        }
+
+        @Override
+        void sleep(long millis) {}
+    }
+}
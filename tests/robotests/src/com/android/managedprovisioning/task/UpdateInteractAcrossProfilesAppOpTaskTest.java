@@ -18,9 +18,12 @@ package com.android.managedprovisioning.task;
 
 import static android.app.AppOpsManager.MODE_ALLOWED;
 import static android.app.AppOpsManager.MODE_DEFAULT;
+import static android.app.AppOpsManager.OP_INTERACT_ACROSS_PROFILES;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.robolectric.Shadows.shadowOf;
 
 import android.Manifest;
@@ -29,6 +32,7 @@ import android.app.admin.DevicePolicyManager;
 import android.content.Context;
 import android.content.pm.CrossProfileApps;
 import android.content.pm.PackageManager;
+import android.os.UserHandle;
 import android.os.UserManager;
 
 import com.android.managedprovisioning.analytics.MetricsWriterFactory;
@@ -44,6 +48,7 @@ import org.robolectric.RuntimeEnvironment;
 import org.junit.runner.RunWith;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -54,6 +59,7 @@ public class UpdateInteractAcrossProfilesAppOpTaskTest {
     private static final String TEST_PACKAGE_NAME_1 = "com.test.packagea";
     private static final String TEST_PACKAGE_NAME_2 = "com.test.packageb";
     private static final int TEST_USER_ID = 123;
+    private static final int TEST_UID = UserHandle.getUid(UserHandle.USER_SYSTEM, 10050);
 
     private final Context mContext = RuntimeEnvironment.application;
     private final UserManager mUserManager = mContext.getSystemService(UserManager.class);
@@ -131,6 +137,60 @@ public class UpdateInteractAcrossProfilesAppOpTaskTest {
                 .isEqualTo(MODE_ALLOWED);
     }
 
+    @Test
+    public void run_packageModeOfConfigurablePackage_isMovedToUid() {
+        setDefaultCrossProfilePackages(TEST_PACKAGE_NAME_1);
+        shadowOf(mCrossProfileApps).addCrossProfilePackage(TEST_PACKAGE_NAME_2);
+        mAppOpsManager.setMode(
+                OP_INTERACT_ACROSS_PROFILES, TEST_UID, TEST_PACKAGE_NAME_2, MODE_ALLOWED);
+
+        task.run(TEST_USER_ID);
+
+        assertThat(getPackageMode(TEST_UID, TEST_PACKAGE_NAME_2)).isEqualTo(MODE_DEFAULT);
+    }
+
+    @Test
+    public void run_packageModeOfNonConfigurablePackage_isReset() {
+        setDefaultCrossProfilePackages(TEST_PACKAGE_NAME_1);
+        mAppOpsManager.setMode(
+                OP_INTERACT_ACROSS_PROFILES, TEST_UID, TEST_PACKAGE_NAME_2, MODE_ALLOWED);
+
+        task.run(TEST_USER_ID);
+
+        assertThat(getPackageMode(TEST_UID, TEST_PACKAGE_NAME_2)).isEqualTo(MODE_DEFAULT);
+    }
+
+    @Test
+    public void run_reportsSuccess() {
+        AbstractProvisioningTask.Callback callback = mock(AbstractProvisioningTask.Callback.class);
+        UpdateInteractAcrossProfilesAppOpTask task = new UpdateInteractAcrossProfilesAppOpTask(
+                mContext, /* params= */ null, callback, mProvisioningAnalyticsTracker);
+        setDefaultCrossProfilePackages(TEST_PACKAGE_NAME_1);
+
+        task.run(TEST_USER_ID);
+
+        verify(callback).onSuccess(task);
+    }
+
+    private int getPackageMode(int uid, String packageName) {
+        List<AppOpsManager.PackageOps> packageOpsList =
+                mAppOpsManager.getPackagesForOps(new int[] {OP_INTERACT_ACROSS_PROFILES});
+        if (packageOpsList == null) {
+            return MODE_DEFAULT;
+        }
+        for (AppOpsManager.PackageOps packageOps : packageOpsList) {
+            if (packageOps.getUid() != uid || !packageOps.getPackageName().equals(packageName)) {
+                continue;
+            }
+            for (AppOpsManager.OpEntry opEntry : packageOps.getOps()) {
+                if (opEntry.getOp() == OP_INTERACT_ACROSS_PROFILES) {
+                    return opEntry.getMode();
+                }
+            }
+        }
+        return MODE_DEFAULT;
+    }
+
     private void setDefaultCrossProfilePackages(String... defaultCrossProfilePackages) {
         Set<String> packages = new HashSet<>();
         for (String packageName : defaultCrossProfilePackages) {